@@ -37,11 +37,13 @@
  * Version  Programmer        Changes
  * 1.0.0    Filippo Sestini   Creazione file e scrittura
  *                            codice e documentazione Javadoc
+ * 1.0.1    Filippo Sestini   Aggiunto getPersistenceExecutor()
  */
 
 package com.kyloth.serleena.activity;
 
 import com.kyloth.serleena.model.ISerleenaDataSource;
+import com.kyloth.serleena.model.PersistenceExecutor;
 import com.kyloth.serleena.persistence.IPersistenceDataSink;
 import com.kyloth.serleena.sensors.ISensorManager;
 
@@ -64,6 +66,14 @@ public interface ISerleenaApplication {
      */
     ISerleenaDataSource getDataSource();
 
+    /**
+     * Restituisce l'esecutore delle richieste asincrone alla persistenza,
+     * condiviso da tutta l'applicazione.
+     *
+     * @return Esecutore delle richieste alla persistenza.
+     */
+    PersistenceExecutor getPersistenceExecutor();
+
     /**
      * Restituisce il gestore dei sensori dell'applicazione,
      * dietro interfaccia ISensorManager.
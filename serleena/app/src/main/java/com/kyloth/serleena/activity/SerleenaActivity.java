@@ -37,6 +37,7 @@
  * Version   Programmer         Changes
  * 1.0.0     Filippo Sestini    Creazione del file, scrittura del codice e di
  *                              Javadoc
+ * 1.0.1     Filippo Sestini    Aggiunto getAsyncDataSource()
  */
 package com.kyloth.serleena.activity;
 
@@ -148,6 +149,18 @@ public class SerleenaActivity extends Activity
         return application.getDataSource();
     }
 
+    /**
+     * Implementa ISerleenaActivity.getAsyncDataSource().
+     *
+     * Le richieste vengono eseguite sull'oggetto restituito da
+     * getDataSource(), attraverso l'esecutore condiviso dell'applicazione.
+     */
+    @Override
+    public AsyncSerleenaDataSource getAsyncDataSource() {
+        return new AsyncSerleenaDataSource(getDataSource(),
+                application.getPersistenceExecutor());
+    }
+
     /**
      * Implementa ISerleenaActivity.getSensorManager().
      *
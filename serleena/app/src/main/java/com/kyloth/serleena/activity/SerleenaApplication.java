@@ -37,20 +37,44 @@
  * Version  Programmer        Changes
  * 1.0.0    Filippo Sestini   Creazione file e scrittura
  *                            codice e documentazione Javadoc
+ * 1.0.1    Filippo Sestini   Memorizzazione suddivisa per Esperienza
+ * 1.0.2    Filippo Sestini   Misure delle chiamate alla persistenza
+ * 1.0.3    Filippo Sestini   Avvio della politica di conservazione
+ * 1.0.4    Filippo Sestini   Manutenzione del database in background
+ * 1.0.5    Filippo Sestini   Esecutore delle richieste alla persistenza
+ * 1.0.6    Filippo Sestini   Scrittura delle modifiche in attesa quando
+ *                            l'applicazione passa in background
+ * 1.0.7    Filippo Sestini   Misure delle chiamate alla persistenza anche
+ *                            con la memorizzazione suddivisa
  */
 
 package com.kyloth.serleena.activity;
 
 import android.app.Application;
+import android.content.ComponentCallbacks2;
 
 import com.kyloth.serleena.R;
+import com.kyloth.serleena.model.AsyncSerleenaDataSource;
+import com.kyloth.serleena.model.IDataSourceRequest;
 import com.kyloth.serleena.model.ISerleenaDataSource;
+import com.kyloth.serleena.model.PersistenceExecutor;
+import com.kyloth.serleena.model.RequestPriority;
 import com.kyloth.serleena.model.SerleenaDataSource;
 import com.kyloth.serleena.persistence.IPersistenceDataSink;
 import com.kyloth.serleena.persistence.IPersistenceDataSource;
+import com.kyloth.serleena.persistence.sqlite.DatabaseMaintenance;
+import com.kyloth.serleena.persistence.sqlite.IMaintenanceGuard;
+import com.kyloth.serleena.persistence.sqlite.InstrumentedSQLiteDataSink;
+import com.kyloth.serleena.persistence.sqlite.InstrumentedSQLiteDataSource;
+import com.kyloth.serleena.persistence.sqlite.PersistenceMetrics;
+import com.kyloth.serleena.persistence.sqlite.RetentionEngine;
+import com.kyloth.serleena.persistence.sqlite.RetentionPolicy;
 import com.kyloth.serleena.persistence.sqlite.SerleenaDatabase;
+import com.kyloth.serleena.persistence.sqlite.SerleenaDatabaseShards;
 import com.kyloth.serleena.persistence.sqlite.SerleenaSQLiteDataSink;
 import com.kyloth.serleena.persistence.sqlite.SerleenaSQLiteDataSource;
+import com.kyloth.serleena.persistence.sqlite.ShardedSQLiteDataSink;
+import com.kyloth.serleena.persistence.sqlite.ShardedSQLiteDataSource;
 import com.kyloth.serleena.sensors.ISensorManager;
 import com.kyloth.serleena.sensors.SerleenaSensorManager;
 import com.kyloth.serleena.synchronization.Synchronizer;
@@ -72,6 +96,10 @@ import java.net.URL;
  * @field dataSource : ISerleenaDataSource Datasource dell'applicazione.
  * @field sensorManager : ISensorManager Gestore della sensoristica dell'applicazione
  * @field dataSink : IPersistenceDataSink Datasink dell'applicazione
+ * @field persistenceMetrics : PersistenceMetrics Misure delle chiamate alla persistenza
+ * @field retentionEngine : RetentionEngine Applica la politica di conservazione al database
+ * @field databaseMaintenance : DatabaseMaintenance Manutenzione del database
+ * @field persistenceExecutor : PersistenceExecutor Esecutore delle richieste alla persistenza
  * @author Filippo Sestini <sestini.filippo@gmail.com>
  * @version 1.0.0
 */
@@ -80,12 +108,30 @@ public class SerleenaApplication extends Application implements ISerleenaApplica
     private ISerleenaDataSource dataSource;
     private ISensorManager sensorManager;
     private IPersistenceDataSink dataSink;
+    private PersistenceMetrics persistenceMetrics;
+    private RetentionEngine retentionEngine;
+    private DatabaseMaintenance databaseMaintenance;
+    private PersistenceExecutor persistenceExecutor;
 
     /**
      * Ridefinisce Application.onCreate().
      *
      * Inizializza gli elementi principali dell'applicazione, quali gestore dei
      * sensori, della sincronizzazione, datasource e datasink.
+     *
+     * Se la risorsa R.bool.sharded_storage è attiva, ogni Esperienza viene
+     * memorizzata in un proprio database, affiancato da un catalogo;
+     * altrimenti tutti i dati risiedono in un unico database.
+     *
+     * Le chiamate alla persistenza vengono misurate da un oggetto
+     * PersistenceMetrics, la cui raccolta è inizialmente attiva se lo è la
+     * risorsa R.bool.persistence_metrics; con la memorizzazione suddivisa
+     * vengono misurate le chiamate ai DAO di catalogo e shard.
+     *
+     * Con il database unico, all'avvio viene applicata in background la
+     * politica di conservazione RetentionPolicy.DEFAULT, e viene avviata la
+     * manutenzione periodica del database, sospesa durante gli
+     * attraversamenti di Percorso.
      */
     @Override
     public void onCreate() {
@@ -93,11 +139,39 @@ public class SerleenaApplication extends Application implements ISerleenaApplica
 
         sensorManager = SerleenaSensorManager.getInstance(this);
 
-        SerleenaDatabase serleenaDatabase = new SerleenaDatabase(this, 1);
-        IPersistenceDataSource persistenceDataSource =
-                new SerleenaSQLiteDataSource(new SerleenaDatabase(this, 1));
+        persistenceMetrics = new PersistenceMetrics();
+        persistenceMetrics.setEnabled(
+                getResources().getBoolean(R.bool.persistence_metrics));
+
+        IPersistenceDataSource persistenceDataSource;
+        if (getResources().getBoolean(R.bool.sharded_storage)) {
+            SerleenaDatabaseShards shards = new SerleenaDatabaseShards(this);
+            persistenceDataSource = new ShardedSQLiteDataSource(shards,
+                    persistenceMetrics);
+            dataSink = new ShardedSQLiteDataSink(this, shards);
+        } else {
+            SerleenaDatabase serleenaDatabase = new SerleenaDatabase(this);
+            persistenceDataSource = new InstrumentedSQLiteDataSource(
+                    new SerleenaSQLiteDataSource(serleenaDatabase),
+                    persistenceMetrics);
+            dataSink = new SerleenaSQLiteDataSink(this, serleenaDatabase);
+            retentionEngine = new RetentionEngine(serleenaDatabase,
+                    RetentionPolicy.DEFAULT);
+            retentionEngine.start();
+            databaseMaintenance = new DatabaseMaintenance(serleenaDatabase,
+                    new IMaintenanceGuard() {
+                        @Override
+                        public boolean canRunMaintenance() {
+                            return !sensorManager.getTrackCrossingManager()
+                                    .isTrackCrossing();
+                        }
+                    }, DatabaseMaintenance.DEFAULT_FREE_PAGES_THRESHOLD);
+            databaseMaintenance.start();
+        }
+        dataSink = new InstrumentedSQLiteDataSink(dataSink, persistenceMetrics);
         dataSource = new SerleenaDataSource(persistenceDataSource);
-        dataSink = new SerleenaSQLiteDataSink(this, serleenaDatabase);
+        persistenceExecutor = new PersistenceExecutor(
+                PersistenceExecutor.DEFAULT_READER_THREADS);
 
         try {
             INetProxy netProxy = new SerleenaJSONNetProxy(
@@ -110,6 +184,49 @@ public class SerleenaApplication extends Application implements ISerleenaApplica
         }
     }
 
+    /**
+     * Ridefinisce Application.onTrimMemory().
+     *
+     * Quando l'interfaccia dell'applicazione non è più visibile, il processo
+     * può essere terminato dal sistema senza ulteriori notifiche: vengono
+     * quindi scritte le modifiche ancora in attesa nella persistenza.
+     *
+     * @param level Livello di riduzione della memoria richiesto.
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN)
+            flushDataSource();
+    }
+
+    /**
+     * Ridefinisce Application.onTerminate().
+     *
+     * Scrive le modifiche ancora in attesa nella persistenza.
+     */
+    @Override
+    public void onTerminate() {
+        flushDataSource();
+        super.onTerminate();
+    }
+
+    /**
+     * Richiede la scrittura delle modifiche in attesa, attraverso
+     * l'esecutore delle richieste alla persistenza, dopo le scritture già
+     * inviate.
+     */
+    private void flushDataSource() {
+        new AsyncSerleenaDataSource(dataSource, persistenceExecutor).write(
+                new IDataSourceRequest<Void>() {
+                    @Override
+                    public Void execute(ISerleenaDataSource dataSource) {
+                        dataSource.flush();
+                        return null;
+                    }
+                }, RequestPriority.Low, null);
+    }
+
     /**
      * Implementa ISerleenaApplication.getDataSource().
      */
@@ -118,6 +235,14 @@ public class SerleenaApplication extends Application implements ISerleenaApplica
         return dataSource;
     }
 
+    /**
+     * Implementa ISerleenaApplication.getPersistenceExecutor().
+     */
+    @Override
+    public PersistenceExecutor getPersistenceExecutor() {
+        return persistenceExecutor;
+    }
+
     /**
      * Implementa ISerleenaApplication.getSensorManager().
      */
@@ -134,4 +259,26 @@ public class SerleenaApplication extends Application implements ISerleenaApplica
         return dataSink;
     }
 
+    /**
+     * Restituisce le misure delle chiamate alla persistenza, la cui raccolta
+     * può essere attivata e disattivata durante l'esecuzione e il cui
+     * resoconto può essere allegato alle segnalazioni di errore.
+     *
+     * @return Misure delle chiamate alla persistenza.
+     */
+    public PersistenceMetrics getPersistenceMetrics() {
+        return persistenceMetrics;
+    }
+
+    /**
+     * Restituisce l'oggetto che esegue la manutenzione del database, da cui
+     * ottenere dimensione e frammentazione rilevate nell'ultimo intervento.
+     *
+     * @return Manutenzione del database, o null se i dati sono memorizzati
+     * in più database.
+     */
+    public DatabaseMaintenance getDatabaseMaintenance() {
+        return databaseMaintenance;
+    }
+
 }
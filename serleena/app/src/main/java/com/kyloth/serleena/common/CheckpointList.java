@@ -0,0 +1,251 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: CheckpointList.java
+ * Package: com.kyloth.serleena.common
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ */
+
+package com.kyloth.serleena.common;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Lista immutabile di Checkpoint memorizzata in due array paralleli di
+ * latitudini e longitudini.
+ *
+ * Rispetto a una lista di oggetti Checkpoint, occupa in memoria i soli
+ * valori delle coordinate. Gli oggetti Checkpoint vengono creati solo
+ * quando richiesti da get() o dall'iterazione; i metodi latitude() e
+ * longitude() permettono di leggere le coordinate senza creare oggetti.
+ *
+ * @use Viene creata tramite CheckpointList.Builder da SerleenaSQLiteDataSource, che vi inserisce i Checkpoint dei Percorsi direttamente dal cursore della query. Viene restituita dagli oggetti ITrack come DirectAccessList<Checkpoint>.
+ * @field latitudes : double[] Latitudini dei Checkpoint, in ordine
+ * @field longitudes : double[] Longitudini dei Checkpoint, in ordine
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ * @see DirectAccessList
+ */
+public class CheckpointList implements DirectAccessList<Checkpoint> {
+
+    private final double[] latitudes;
+    private final double[] longitudes;
+
+    /**
+     * Crea una lista a partire dai suoi array, già dimensionati, di cui
+     * acquisisce la proprietà.
+     */
+    private CheckpointList(double[] latitudes, double[] longitudes) {
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+    }
+
+    /**
+     * Implementa DirectAccessList.size().
+     */
+    @Override
+    public int size() {
+        return latitudes.length;
+    }
+
+    /**
+     * Implementa DirectAccessList.get().
+     *
+     * Restituisce un nuovo oggetto Checkpoint a ogni chiamata.
+     */
+    @Override
+    public Checkpoint get(int index) {
+        return new Checkpoint(latitudes[index], longitudes[index]);
+    }
+
+    /**
+     * Restituisce la latitudine del Checkpoint alla posizione specificata,
+     * senza creare oggetti.
+     *
+     * @param index Indice del Checkpoint.
+     * @return Latitudine in gradi.
+     */
+    public double latitude(int index) {
+        return latitudes[index];
+    }
+
+    /**
+     * Restituisce la longitudine del Checkpoint alla posizione specificata,
+     * senza creare oggetti.
+     *
+     * @param index Indice del Checkpoint.
+     * @return Longitudine in gradi.
+     */
+    public double longitude(int index) {
+        return longitudes[index];
+    }
+
+    /**
+     * Implementa Iterable.iterator().
+     */
+    @Override
+    public Iterator<Checkpoint> iterator() {
+        return new Iterator<Checkpoint>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < latitudes.length;
+            }
+
+            @Override
+            public Checkpoint next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return get(next++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Ridefinisce Object.equals()
+     *
+     * @param other Oggetto da confrontare
+     * @return True se entrambi gli oggetti sono di tipo CheckpointList e
+     * contengono, nello stesso ordine, Checkpoint con uguali valori di
+     * latitudine e longitudine. False altrimenti.
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (other != null && other instanceof CheckpointList) {
+            CheckpointList otherList = (CheckpointList) other;
+            if (size() != otherList.size())
+                return false;
+            for (int i = 0; i < size(); i++)
+                if (latitudes[i] != otherList.latitudes[i] ||
+                        longitudes[i] != otherList.longitudes[i])
+                    return false;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Ridefinisce Object.hashCode()
+     */
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (int i = 0; i < size(); i++)
+            hash = 31 * hash + (int) (latitudes[i] + longitudes[i]);
+        return hash;
+    }
+
+    /**
+     * Costruisce una CheckpointList aggiungendo i Checkpoint uno alla volta,
+     * nell'ordine del Percorso.
+     *
+     * @field latitudes : double[] Latitudini aggiunte
+     * @field longitudes : double[] Longitudini aggiunte
+     * @field size : int Numero di Checkpoint aggiunti
+     */
+    public static class Builder {
+
+        private double[] latitudes;
+        private double[] longitudes;
+        private int size;
+
+        /**
+         * Crea un Builder vuoto.
+         */
+        public Builder() {
+            this(8);
+        }
+
+        /**
+         * Crea un Builder vuoto, con spazio per il numero di Checkpoint
+         * specificato.
+         *
+         * @param capacity Numero previsto di Checkpoint.
+         */
+        public Builder(int capacity) {
+            if (capacity < 0)
+                throw new IllegalArgumentException("Illegal capacity");
+            latitudes = new double[capacity];
+            longitudes = new double[capacity];
+        }
+
+        /**
+         * Aggiunge un Checkpoint in coda alla lista.
+         *
+         * @param latitude Latitudine in gradi.
+         * @param longitude Longitudine in gradi.
+         * @return Il Builder stesso.
+         */
+        public Builder add(double latitude, double longitude) {
+            if (size == latitudes.length) {
+                int capacity = Math.max(8, size * 2);
+                latitudes = Arrays.copyOf(latitudes, capacity);
+                longitudes = Arrays.copyOf(longitudes, capacity);
+            }
+            latitudes[size] = latitude;
+            longitudes[size] = longitude;
+            size++;
+            return this;
+        }
+
+        /**
+         * Restituisce la lista dei Checkpoint aggiunti. Il Builder torna
+         * vuoto e può essere riutilizzato.
+         *
+         * @return Lista di Checkpoint.
+         */
+        public CheckpointList build() {
+            CheckpointList list;
+            if (size == latitudes.length)
+                list = new CheckpointList(latitudes, longitudes);
+            else
+                list = new CheckpointList(Arrays.copyOf(latitudes, size),
+                        Arrays.copyOf(longitudes, size));
+            latitudes = new double[0];
+            longitudes = new double[0];
+            size = 0;
+            return list;
+        }
+    }
+}
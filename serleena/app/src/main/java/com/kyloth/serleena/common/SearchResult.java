@@ -0,0 +1,152 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: SearchResult.java
+ * Package: com.kyloth.serleena.common
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ */
+
+package com.kyloth.serleena.common;
+
+import java.util.UUID;
+
+/**
+ * Elemento restituito dalla ricerca per nome tra Esperienze, Percorsi e
+ * contatti di emergenza.
+ *
+ * @use Viene restituito dai metodi search() di ISerleenaDataSource e IPersistenceDataSource, che ordinano i risultati per pertinenza.
+ * @field type : SearchResultType Tipo dell'elemento trovato
+ * @field name : String Nome dell'elemento
+ * @field uuid : UUID UUID dell'Esperienza o del Percorso, null per i contatti
+ * @field experience : UUID UUID dell'Esperienza a cui l'elemento appartiene, null per i contatti
+ * @field value : String Recapito del contatto, null per Esperienze e Percorsi
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+public final class SearchResult {
+
+    private final SearchResultType type;
+    private final String name;
+    private final UUID uuid;
+    private final UUID experience;
+    private final String value;
+
+    /**
+     * Crea un nuovo oggetto SearchResult.
+     *
+     * @param type Tipo dell'elemento trovato.
+     * @param name Nome dell'elemento.
+     * @param uuid UUID dell'Esperienza o del Percorso, null per i contatti.
+     * @param experience UUID dell'Esperienza a cui l'elemento appartiene,
+     *                   null per i contatti.
+     * @param value Recapito del contatto, null per Esperienze e Percorsi.
+     */
+    public SearchResult(SearchResultType type, String name, UUID uuid,
+                        UUID experience, String value) {
+        if (type == null)
+            throw new IllegalArgumentException("Illegal null type");
+        if (name == null)
+            throw new IllegalArgumentException("Illegal null name");
+        this.type = type;
+        this.name = name;
+        this.uuid = uuid;
+        this.experience = experience;
+        this.value = value;
+    }
+
+    /**
+     * @return Tipo dell'elemento trovato.
+     */
+    public SearchResultType type() {
+        return type;
+    }
+
+    /**
+     * @return Nome dell'elemento.
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * @return UUID dell'Esperienza o del Percorso, null per i contatti.
+     */
+    public UUID uuid() {
+        return uuid;
+    }
+
+    /**
+     * @return UUID dell'Esperienza a cui l'elemento appartiene, null per i
+     * contatti. Per le Esperienze coincide con uuid().
+     */
+    public UUID experience() {
+        return experience;
+    }
+
+    /**
+     * @return Recapito del contatto, null per Esperienze e Percorsi.
+     */
+    public String value() {
+        return value;
+    }
+
+    /**
+     * Ridefinisce Object.equals().
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof SearchResult) {
+            SearchResult other = (SearchResult) o;
+            return type == other.type && name.equals(other.name) &&
+                    equal(uuid, other.uuid) &&
+                    equal(experience, other.experience) &&
+                    equal(value, other.value);
+        }
+        return false;
+    }
+
+    /**
+     * Ridefinisce Object.hashCode().
+     */
+    @Override
+    public int hashCode() {
+        return type.hashCode() * 31 + name.hashCode();
+    }
+
+    private static boolean equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -0,0 +1,141 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: AsyncSerleenaDataSource.java
+ * Package: com.kyloth.serleena.model
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ */
+
+package com.kyloth.serleena.model;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+/**
+ * Permette di accedere in modo asincrono a una sorgente dati
+ * ISerleenaDataSource.
+ *
+ * Le richieste vengono eseguite da un PersistenceExecutor, al di fuori del
+ * thread principale: le scritture una alla volta e nell'ordine di invio, le
+ * letture in parallelo tra loro ma dopo le scritture inviate in precedenza.
+ * Il risultato di ogni richiesta viene consegnato al relativo callback sul
+ * thread principale.
+ *
+ * @use Viene restituito dall'Activity ai Presenter, che lo utilizzano al posto di AsyncTask per ogni accesso alla persistenza.
+ * @field dataSource : ISerleenaDataSource Sorgente dati su cui vengono eseguite le richieste
+ * @field executor : PersistenceExecutor Esecutore delle richieste
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+public final class AsyncSerleenaDataSource {
+
+    private final ISerleenaDataSource dataSource;
+    private final PersistenceExecutor executor;
+
+    /**
+     * Crea un nuovo oggetto AsyncSerleenaDataSource.
+     *
+     * @param dataSource Sorgente dati su cui eseguire le richieste. Se null,
+     *                   viene sollevata un'eccezione
+     *                   IllegalArgumentException.
+     * @param executor Esecutore delle richieste. Se null, viene sollevata
+     *                 un'eccezione IllegalArgumentException.
+     * @throws IllegalArgumentException
+     */
+    public AsyncSerleenaDataSource(ISerleenaDataSource dataSource,
+                                   PersistenceExecutor executor)
+            throws IllegalArgumentException {
+        if (dataSource == null)
+            throw new IllegalArgumentException("Illegal null data source");
+        if (executor == null)
+            throw new IllegalArgumentException("Illegal null executor");
+
+        this.dataSource = dataSource;
+        this.executor = executor;
+    }
+
+    /**
+     * Invia una richiesta di lettura dalla sorgente dati.
+     *
+     * @param request Operazione da eseguire. Se null, viene sollevata
+     *                un'eccezione IllegalArgumentException.
+     * @param priority Priorità della richiesta. Se null, viene sollevata
+     *                 un'eccezione IllegalArgumentException.
+     * @param callback Oggetto a cui consegnare il risultato sul thread
+     *                 principale, o null se il risultato non interessa.
+     * @return Future che rappresenta la richiesta, attraverso cui è
+     * possibile annullarla.
+     * @throws IllegalArgumentException
+     */
+    public <T> Future<T> read(IDataSourceRequest<T> request,
+                              RequestPriority priority,
+                              IDataSourceCallback<T> callback)
+            throws IllegalArgumentException {
+        return executor.read(bind(request), priority, callback);
+    }
+
+    /**
+     * Invia una richiesta di scrittura sulla sorgente dati.
+     *
+     * @param request Operazione da eseguire. Se null, viene sollevata
+     *                un'eccezione IllegalArgumentException.
+     * @param priority Priorità della richiesta. Se null, viene sollevata
+     *                 un'eccezione IllegalArgumentException.
+     * @param callback Oggetto a cui consegnare il risultato sul thread
+     *                 principale, o null se il risultato non interessa.
+     * @return Future che rappresenta la richiesta, attraverso cui è
+     * possibile annullarla.
+     * @throws IllegalArgumentException
+     */
+    public <T> Future<T> write(IDataSourceRequest<T> request,
+                               RequestPriority priority,
+                               IDataSourceCallback<T> callback)
+            throws IllegalArgumentException {
+        return executor.write(bind(request), priority, callback);
+    }
+
+    private <T> Callable<T> bind(final IDataSourceRequest<T> request) {
+        if (request == null)
+            throw new IllegalArgumentException("Illegal null request");
+        return new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                return request.execute(dataSource);
+            }
+        };
+    }
+
+}
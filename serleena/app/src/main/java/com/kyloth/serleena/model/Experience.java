@@ -37,12 +37,14 @@
  * Version    Programmer       Changes
  * 1.0        Filippo Sestini  Creazione del file e stesura
  *                                          della documentazione Javadoc.
+ * 1.0.1      Filippo Sestini  Aggiunto getUserPoints(IRegion)
  */
 
 package com.kyloth.serleena.model;
 
 import com.kyloth.serleena.common.GeoPoint;
 import com.kyloth.serleena.common.IQuadrant;
+import com.kyloth.serleena.common.IRegion;
 import com.kyloth.serleena.common.UserPoint;
 import com.kyloth.serleena.persistence.IExperienceStorage;
 import com.kyloth.serleena.persistence.ITrackStorage;
@@ -100,6 +102,19 @@ final class Experience implements IExperience {
         return storage.getUserPoints();
     }
 
+    /**
+     * Implementa IExperience.getUserPoints(IRegion).
+     *
+     * @param region Area geografica entro cui devono trovarsi i punti utente.
+     * @return Insieme enumerabile di punti utente.
+     */
+    @Override
+    public Iterable<UserPoint> getUserPoints(IRegion region) {
+        if (region == null)
+            throw new IllegalArgumentException("Illegal null region");
+        return storage.getUserPoints(region);
+    }
+
     /**
      * Implementa IExperience.addUserPoints().
      *
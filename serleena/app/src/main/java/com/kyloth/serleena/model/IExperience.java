@@ -36,12 +36,14 @@
  * History:
  * Version    Programmer   Changes
  * 1.0        Tobia Tesan  Creazione del file
+ * 1.0.1      Filippo Sestini  Aggiunto getUserPoints(IRegion)
  */
 
 package com.kyloth.serleena.model;
 
 import com.kyloth.serleena.common.GeoPoint;
 import com.kyloth.serleena.common.IQuadrant;
+import com.kyloth.serleena.common.IRegion;
 import com.kyloth.serleena.common.UserPoint;
 import com.kyloth.serleena.persistence.NoSuchQuadrantException;
 
@@ -73,6 +75,20 @@ public interface IExperience {
      */
     Iterable<UserPoint> getUserPoints();
 
+    /**
+     * Restituisce i punti utente dell'Esperienza contenuti nell'area
+     * geografica specificata.
+     *
+     * @param region Area geografica entro cui devono trovarsi i punti
+     *               utente. Se null, viene sollevata un'eccezione
+     *               IllegalArgumentException.
+     * @return  Ritorna un Iterable che contiene i Punti Utente
+     *          dell'Esperienza contenuti nell'area.
+     * @throws IllegalArgumentException
+     */
+    Iterable<UserPoint> getUserPoints(IRegion region)
+            throws IllegalArgumentException;
+
     /**
      * Aggiunge un punto utente dato all'Esperienza.
      */
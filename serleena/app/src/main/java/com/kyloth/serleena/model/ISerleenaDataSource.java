@@ -36,6 +36,8 @@
  * History:
  * Version    Programmer   Changes
  * 1.0        Tobia Tesan  Creazione del file
+ * 1.0.1      Filippo Sestini  Aggiunto search()
+ * 1.0.2      Filippo Sestini  Aggiunto flush()
  */
 
 package com.kyloth.serleena.model;
@@ -45,6 +47,7 @@ import com.kyloth.serleena.common.EmergencyContact;
 import com.kyloth.serleena.common.GeoPoint;
 import com.kyloth.serleena.common.IQuadrant;
 import com.kyloth.serleena.common.NoSuchWeatherForecastException;
+import com.kyloth.serleena.common.SearchResult;
 import com.kyloth.serleena.persistence.NoSuchQuadrantException;
 
 import java.util.Date;
@@ -89,4 +92,22 @@ public interface ISerleenaDataSource {
      */
     DirectAccessList<EmergencyContact> getContacts(GeoPoint loc);
 
+    /**
+     * Cerca per nome Esperienze, Percorsi e contatti di emergenza.
+     *
+     * @param text Testo della ricerca.
+     * @return Lista dei risultati, ordinati per pertinenza e letti a pagine
+     * solo quando richiesti.
+     *
+     * @version 1.0
+     */
+    DirectAccessList<SearchResult> search(String text);
+
+    /**
+     * Scrive sulla memoria permanente le modifiche ancora in attesa.
+     *
+     * @version 1.0
+     */
+    void flush();
+
 }
@@ -0,0 +1,313 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: PersistenceExecutor.java
+ * Package: com.kyloth.serleena.model
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ */
+
+package com.kyloth.serleena.model;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Esegue le richieste alla persistenza su thread dedicati.
+ *
+ * Le scritture vengono eseguite da un unico thread, una alla volta; le
+ * letture da un insieme di thread, anche in parallelo tra loro. In entrambi
+ * i casi le richieste in attesa vengono servite in ordine di priorità e, a
+ * parità di priorità, nell'ordine di invio. Una lettura attende il termine
+ * delle scritture inviate prima di essa, in modo da osservarne gli effetti.
+ *
+ * I risultati vengono consegnati ai callback sul thread principale, mentre
+ * le eccezioni sollevate da una richiesta vengono rilanciate su di esso.
+ *
+ * @use Viene creato da SerleenaApplication, che lo mantiene per tutta la durata dell'applicazione. Le richieste gli vengono inviate da AsyncSerleenaDataSource.
+ * @field writer : Executor Esecutore delle scritture
+ * @field readers : Executor Esecutore delle letture
+ * @field delivery : Executor Esecutore dei callback
+ * @field sequence : AtomicLong Contatore dell'ordine di invio delle richieste
+ * @field pendingWrites : List<Future<?>> Scritture inviate e non ancora terminate
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+public final class PersistenceExecutor {
+
+    /**
+     * Numero predefinito di thread dedicati alle letture.
+     */
+    public static final int DEFAULT_READER_THREADS = 2;
+
+    private final Executor writer;
+    private final Executor readers;
+    private final Executor delivery;
+    private final AtomicLong sequence;
+    private final List<Future<?>> pendingWrites;
+
+    /**
+     * Crea un nuovo oggetto PersistenceExecutor, con un thread per le
+     * scritture e il numero specificato di thread per le letture. I
+     * risultati vengono consegnati sul Looper principale dell'applicazione.
+     *
+     * @param readerThreads Numero di thread dedicati alle letture. Se minore
+     *                      di 1, viene sollevata un'eccezione
+     *                      IllegalArgumentException.
+     * @throws IllegalArgumentException
+     */
+    public PersistenceExecutor(int readerThreads)
+            throws IllegalArgumentException {
+        this(newPool(1, "serleena-persistence-writer"),
+                newPool(checkReaderThreads(readerThreads),
+                        "serleena-persistence-reader"),
+                mainThread());
+    }
+
+    /**
+     * Crea un nuovo oggetto PersistenceExecutor che utilizza gli esecutori
+     * specificati.
+     *
+     * L'esecutore delle scritture deve eseguire una sola richiesta alla
+     * volta, nell'ordine in cui gli vengono sottoposte.
+     *
+     * @param writer Esecutore delle scritture. Se null, viene sollevata
+     *               un'eccezione IllegalArgumentException.
+     * @param readers Esecutore delle letture. Se null, viene sollevata
+     *                un'eccezione IllegalArgumentException.
+     * @param delivery Esecutore dei callback. Se null, viene sollevata
+     *                 un'eccezione IllegalArgumentException.
+     * @throws IllegalArgumentException
+     */
+    public PersistenceExecutor(Executor writer, Executor readers,
+                               Executor delivery)
+            throws IllegalArgumentException {
+        if (writer == null)
+            throw new IllegalArgumentException("Illegal null writer");
+        if (readers == null)
+            throw new IllegalArgumentException("Illegal null readers");
+        if (delivery == null)
+            throw new IllegalArgumentException("Illegal null delivery");
+
+        this.writer = writer;
+        this.readers = readers;
+        this.delivery = delivery;
+        this.sequence = new AtomicLong();
+        this.pendingWrites = new ArrayList<Future<?>>();
+    }
+
+    /**
+     * Invia una richiesta di lettura.
+     *
+     * @param work Operazione da eseguire.
+     * @param priority Priorità della richiesta.
+     * @param callback Oggetto a cui consegnare il risultato, o null.
+     * @return Future che rappresenta la richiesta.
+     */
+    <T> Future<T> read(final Callable<T> work, RequestPriority priority,
+                       IDataSourceCallback<T> callback) {
+        final List<Future<?>> writes;
+        synchronized (pendingWrites) {
+            writes = new ArrayList<Future<?>>(pendingWrites);
+        }
+        Request<T> request = new Request<T>(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                for (Future<?> w : writes)
+                    awaitWrite(w);
+                return work.call();
+            }
+        }, priority, callback, false);
+        readers.execute(request);
+        return request;
+    }
+
+    /**
+     * Invia una richiesta di scrittura.
+     *
+     * @param work Operazione da eseguire.
+     * @param priority Priorità della richiesta.
+     * @param callback Oggetto a cui consegnare il risultato, o null.
+     * @return Future che rappresenta la richiesta.
+     */
+    <T> Future<T> write(Callable<T> work, RequestPriority priority,
+                        IDataSourceCallback<T> callback) {
+        Request<T> request = new Request<T>(work, priority, callback, true);
+        synchronized (pendingWrites) {
+            pendingWrites.add(request);
+        }
+        writer.execute(request);
+        return request;
+    }
+
+    /**
+     * Arresta i thread dedicati alla persistenza, annullando le richieste
+     * non ancora avviate.
+     *
+     * Non ha effetto sugli esecutori forniti al costruttore che non siano
+     * ExecutorService.
+     */
+    public void shutdown() {
+        shutdown(writer);
+        shutdown(readers);
+    }
+
+    private static void shutdown(Executor executor) {
+        if (executor instanceof ExecutorService)
+            for (Runnable r : ((ExecutorService) executor).shutdownNow())
+                if (r instanceof Future)
+                    ((Future<?>) r).cancel(false);
+    }
+
+    private static void awaitWrite(Future<?> write)
+            throws InterruptedException {
+        try {
+            write.get();
+        } catch (ExecutionException | CancellationException e) {
+            // L'errore viene segnalato dalla scrittura stessa
+        }
+    }
+
+    private static int checkReaderThreads(int readerThreads) {
+        if (readerThreads < 1)
+            throw new IllegalArgumentException("Illegal reader threads");
+        return readerThreads;
+    }
+
+    private static ExecutorService newPool(int threads, final String name) {
+        return new ThreadPoolExecutor(threads, threads, 0,
+                TimeUnit.MILLISECONDS, new PriorityBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, name);
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+    }
+
+    private static Executor mainThread() {
+        final Handler handler = new Handler(Looper.getMainLooper());
+        return new Executor() {
+            @Override
+            public void execute(Runnable r) {
+                handler.post(r);
+            }
+        };
+    }
+
+    /**
+     * Richiesta in attesa di esecuzione, ordinata per priorità e ordine di
+     * invio nelle code degli esecutori.
+     */
+    private final class Request<T> extends FutureTask<T>
+            implements Comparable<Request<?>> {
+
+        private final RequestPriority priority;
+        private final long order;
+        private final IDataSourceCallback<T> callback;
+        private final boolean isWrite;
+
+        Request(Callable<T> work, RequestPriority priority,
+                IDataSourceCallback<T> callback, boolean isWrite) {
+            super(work);
+            if (priority == null)
+                throw new IllegalArgumentException("Illegal null priority");
+            this.priority = priority;
+            this.order = sequence.getAndIncrement();
+            this.callback = callback;
+            this.isWrite = isWrite;
+        }
+
+        @Override
+        public int compareTo(Request<?> other) {
+            int c = priority.compareTo(other.priority);
+            if (c != 0)
+                return c;
+            return order < other.order ? -1 : (order > other.order ? 1 : 0);
+        }
+
+        @Override
+        protected void done() {
+            if (isWrite)
+                synchronized (pendingWrites) {
+                    pendingWrites.remove(this);
+                }
+            if (!isCancelled())
+                delivery.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        deliver();
+                    }
+                });
+        }
+
+        private void deliver() {
+            T result;
+            try {
+                result = get();
+            } catch (CancellationException | InterruptedException e) {
+                return;
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException)
+                    throw (RuntimeException) cause;
+                if (cause instanceof Error)
+                    throw (Error) cause;
+                throw new RuntimeException(cause);
+            }
+            if (callback != null)
+                callback.onResult(result);
+        }
+
+    }
+
+}
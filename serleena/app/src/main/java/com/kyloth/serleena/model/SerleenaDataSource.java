@@ -37,6 +37,8 @@
  * Version    Programmer       Changes
  * 1.0        Filippo Sestini  Creazione del file e stesura
  *                                          della documentazione Javadoc.
+ * 1.0.1      Filippo Sestini  Aggiunto search().
+ * 1.0.2      Filippo Sestini  Aggiunto flush().
  */
 
 package com.kyloth.serleena.model;
@@ -45,6 +47,7 @@ import com.kyloth.serleena.common.DirectAccessList;
 import com.kyloth.serleena.common.EmergencyContact;
 import com.kyloth.serleena.common.GeoPoint;
 import com.kyloth.serleena.common.IQuadrant;
+import com.kyloth.serleena.common.SearchResult;
 import com.kyloth.serleena.persistence.IExperienceStorage;
 import com.kyloth.serleena.persistence.IPersistenceDataSource;
 import com.kyloth.serleena.common.NoSuchWeatherForecastException;
@@ -118,4 +121,23 @@ public class SerleenaDataSource implements ISerleenaDataSource {
         return dataSource.getContacts(loc);
     }
 
+    /**
+     * Implementa ISerleenaDataSource.search().
+     *
+     * @param text Testo della ricerca.
+     * @return Lista dei risultati, ordinati per pertinenza.
+     */
+    @Override
+    public DirectAccessList<SearchResult> search(String text) {
+        return dataSource.search(text);
+    }
+
+    /**
+     * Implementa ISerleenaDataSource.flush().
+     */
+    @Override
+    public void flush() {
+        dataSource.flush();
+    }
+
 }
@@ -37,6 +37,8 @@
  * Version    Programmer       Changes
  * 1.0        Filippo Sestini  Creazione del file e stesura
  *                                          della documentazione Javadoc.
+ * 1.0.1      Filippo Sestini  Durata e inizio calcolati dai tempi dei
+ *                                          checkpoint.
  */
 
 package com.kyloth.serleena.model;
@@ -47,6 +49,7 @@ import com.kyloth.serleena.common.TelemetryEvent;
 import com.kyloth.serleena.persistence.ITelemetryStorage;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * Concretizza ITelemetry.
@@ -56,12 +59,14 @@ import java.util.ArrayList;
  * @field allEvents : Iterable<TelemetryEvent> Insieme di tutti gli eventi del Tracciamento
  * @field locEvents : Iterable<TelemetryEvent> Insieme di tutti gli eventi del Tracciamento relativi alla posizione utente
  * @field duration : int Durata in secondi del Tracciamento
+ * @field timestamps : long[] Tempi dei checkpoint del Tracciamento, letti al primo utilizzo
  * @author Filippo Sestini <sestini.filippo@gmail.com>
  * @version 1.0.0
  */
 class Telemetry implements  ITelemetry {
 
     private ITelemetryStorage storage;
+    private long[] timestamps;
 
     /**
      * Crea un nuovo oggetto Telemetry.
@@ -111,12 +116,10 @@ class Telemetry implements  ITelemetry {
      */
     @Override
     public int getDuration() {
-        int duration = 0;
-        Iterable<TelemetryEvent> allEvents = this.getEvents();
-        for (TelemetryEvent e : allEvents)
-            if (e.timestamp() > duration)
-                duration = (int)(e.timestamp() - startTimestamp());
-        return duration;
+        long[] timestamps = checkpointTimestamps();
+        if (timestamps.length == 0)
+            return 0;
+        return (int) (timestamps[timestamps.length - 1] - startTimestamp());
     }
 
     /**
@@ -124,20 +127,50 @@ class Telemetry implements  ITelemetry {
      */
     @Override
     public long startTimestamp() {
-        Iterable<TelemetryEvent> firstEvent = null;
-        try {
-            firstEvent = getEvents(new Predicate<TelemetryEvent>() {
-                @Override
-                public boolean apply(TelemetryEvent telemetryEvent) {
-                    return ((CheckpointReachedTelemetryEvent) telemetryEvent)
-                            .checkpointNumber() == 1;
-                }
-            });
-        } catch (NoSuchTelemetryEventException e) {
+        long[] timestamps = checkpointTimestamps();
+        if (timestamps.length == 0 ||
+                timestamps[0] == ITelemetryStorage.NO_TIMESTAMP)
             throw new RuntimeException(
                     "Illegal telemetry without first checkpoint");
+        return timestamps[0];
+    }
+
+    /**
+     * Restituisce i tempi dei checkpoint del Tracciamento, indicizzati per
+     * numero di checkpoint.
+     *
+     * I tempi sono ottenuti una sola volta dall'oggetto di persistenza, o
+     * ricavati dai suoi eventi se questo non li fornisce in forma compatta.
+     *
+     * @return Tempi dei checkpoint.
+     */
+    private synchronized long[] checkpointTimestamps() {
+        if (timestamps == null) {
+            long[] stored = storage.getCheckpointTimestamps();
+            timestamps = (stored != null) ? stored : timestampsFromEvents();
         }
-        return firstEvent.iterator().next().timestamp();
+        return timestamps;
+    }
+
+    /**
+     * Ricava i tempi dei checkpoint dagli eventi del Tracciamento.
+     */
+    private long[] timestampsFromEvents() {
+        long[] result = new long[0];
+        for (TelemetryEvent e : getEvents()) {
+            if (e instanceof CheckpointReachedTelemetryEvent) {
+                int checkpoint =
+                        ((CheckpointReachedTelemetryEvent) e).checkpointNumber();
+                if (checkpoint > result.length) {
+                    int length = result.length;
+                    result = Arrays.copyOf(result, checkpoint);
+                    Arrays.fill(result, length, checkpoint,
+                            ITelemetryStorage.NO_TIMESTAMP);
+                }
+                result[checkpoint - 1] = e.timestamp();
+            }
+        }
+        return result;
     }
 
 }
@@ -37,6 +37,7 @@
  * Version    Programmer       Changes
  * 1.0        Filippo Sestini  Creazione del file e stesura
  *                                          della documentazione Javadoc.
+ * 1.0.1      Filippo Sestini  Tracciamento migliore letto dalla persistenza.
  */
 
 package com.kyloth.serleena.model;
@@ -120,23 +121,16 @@ class Track implements ITrack {
 
     /**
      * Implementa ITrack.getBestTelemetry().
+     *
+     * Il Tracciamento migliore è mantenuto dal livello di persistenza, e
+     * non richiede la lettura degli altri Tracciamenti del Percorso.
      */
     @Override
     public ITelemetry getBestTelemetry() throws NoSuchTelemetryException {
-        Iterable<ITelemetry> telemetries = getTelemetries();
-        int min = Integer.MAX_VALUE;
-        ITelemetry best = null;
-
-        for (ITelemetry t : telemetries)
-            if (t.getDuration() < min) {
-                best = t;
-                min = t.getDuration();
-            }
-
+        ITelemetryStorage best = storage.getBestTelemetry();
         if (best == null)
             throw new NoSuchTelemetryException();
-
-        return best;
+        return new Telemetry(best);
     }
 
     /**
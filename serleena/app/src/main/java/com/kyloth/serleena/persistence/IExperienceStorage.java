@@ -37,12 +37,15 @@
  * Version  Programmer       Changes
  * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
  *                                          e documentazione in Javadoc.
+ * 1.0.1    Filippo Sestini  Aggiunto getTracks(boolean).
+ * 1.0.2    Filippo Sestini  Aggiunto getUserPoints(IRegion).
  */
 
 package com.kyloth.serleena.persistence;
 
 import com.kyloth.serleena.common.GeoPoint;
 import com.kyloth.serleena.common.IQuadrant;
+import com.kyloth.serleena.common.IRegion;
 import com.kyloth.serleena.common.UserPoint;
 
 import java.util.UUID;
@@ -64,6 +67,19 @@ public interface IExperienceStorage {
      */
     Iterable<ITrackStorage> getTracks();
 
+    /**
+     * Restituisce i Percorsi associati all'Esperienza.
+     *
+     * Se withCheckpoints è false, i Checkpoint di ciascun Percorso vengono
+     * letti solo al primo accesso. Se è true, i Checkpoint di tutti i
+     * Percorsi vengono letti subito, complessivamente, ed è quindi
+     * preferibile quando si intende accedere ai Checkpoint di molti Percorsi.
+     *
+     * @param withCheckpoints Indica se leggere subito i Checkpoint.
+     * @return Insieme enumerabile di Percorsi.
+     */
+    Iterable<ITrackStorage> getTracks(boolean withCheckpoints);
+
     /**
      * Restituisce i Punti Utente associati all'Esperienza.
      *
@@ -71,6 +87,19 @@ public interface IExperienceStorage {
      */
     Iterable<UserPoint> getUserPoints();
 
+    /**
+     * Restituisce i Punti Utente associati all'Esperienza contenuti
+     * nell'area geografica specificata.
+     *
+     * @param region Area geografica entro cui devono trovarsi i Punti Utente.
+     *               Se null, viene sollevata un'eccezione
+     *               IllegalArgumentException.
+     * @return Insieme enumerabile di Punti Utente.
+     * @throws IllegalArgumentException
+     */
+    Iterable<UserPoint> getUserPoints(IRegion region)
+            throws IllegalArgumentException;
+
     /**
      * Aggiunge un punto utente all'esperienza.
      * @param p     Punto utente.
@@ -37,6 +37,8 @@
  * Version  Programmer       Changes
  * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
  *                                          e documentazione in Javadoc.
+ * 1.0.1    Filippo Sestini  Aggiunto search().
+ * 1.0.2    Filippo Sestini  Aggiunto flush().
  */
 
 package com.kyloth.serleena.persistence;
@@ -46,6 +48,7 @@ import com.kyloth.serleena.common.EmergencyContact;
 import com.kyloth.serleena.common.GeoPoint;
 import com.kyloth.serleena.common.IQuadrant;
 import com.kyloth.serleena.common.NoSuchWeatherForecastException;
+import com.kyloth.serleena.common.SearchResult;
 
 import java.util.Date;
 
@@ -91,4 +94,27 @@ public interface IPersistenceDataSource {
      */
     DirectAccessList<EmergencyContact> getContacts(GeoPoint location);
 
+    /**
+     * Cerca per nome Esperienze, Percorsi e contatti di emergenza.
+     *
+     * Un elemento viene trovato se ogni parola del testo è prefisso di una
+     * parola del suo nome, secondo SearchQuery. I risultati sono ordinati per
+     * pertinenza: a parità di parole trovate, i nomi più corti precedono
+     * quelli più lunghi.
+     *
+     * @param text Testo della ricerca.
+     * @return Lista ordinata dei risultati, vuota se il testo non contiene
+     * parole.
+     */
+    DirectAccessList<SearchResult> search(String text);
+
+    /**
+     * Scrive sulla memoria permanente le modifiche ancora in attesa, come i
+     * Punti Utente aggiunti e non ancora salvati.
+     *
+     * Al termine della chiamata, le modifiche effettuate in precedenza non
+     * vanno perse anche se il processo viene terminato.
+     */
+    void flush();
+
 }
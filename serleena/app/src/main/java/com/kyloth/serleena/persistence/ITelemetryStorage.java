@@ -37,6 +37,8 @@
  * Version  Programmer       Changes
  * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
  *                                          e documentazione in Javadoc.
+ * 1.0.1    Filippo Sestini  Aggiunti i tempi dei checkpoint in forma
+ *                                          compatta.
  */
 
 package com.kyloth.serleena.persistence;
@@ -53,10 +55,29 @@ import com.kyloth.serleena.common.TelemetryEvent;
  */
 public interface ITelemetryStorage {
 
+    /**
+     * Valore dei tempi dei checkpoint per cui il Tracciamento non contiene
+     * alcun evento.
+     */
+    long NO_TIMESTAMP = -1;
+
     /**
      * Restituisce gli eventi di tracciamento associati a questo Tracciamento.
      *
      * @return Insieme enumerabile di eventi di tracciamento.
      */
     Iterable<TelemetryEvent> getEvents();
+
+    /**
+     * Restituisce i tempi di attraversamento dei checkpoint del Tracciamento.
+     *
+     * L'elemento di indice i contiene il timestamp dell'evento relativo al
+     * checkpoint numero i + 1, o NO_TIMESTAMP se il Tracciamento non contiene
+     * un evento per quel checkpoint. L'array ha lunghezza pari al numero
+     * del checkpoint più alto raggiunto, e non deve essere modificato.
+     *
+     * @return Tempi dei checkpoint, o null se l'oggetto non ne dispone in
+     * forma compatta e vanno quindi ricavati da getEvents().
+     */
+    long[] getCheckpointTimestamps();
 }
@@ -37,6 +37,8 @@
  * Version  Programmer       Changes
  * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
  *                                          e documentazione in Javadoc.
+ * 1.0.1    Filippo Sestini  Aggiunto createTelemetries().
+ * 1.0.2    Filippo Sestini  Aggiunto getBestTelemetry().
  */
 
 package com.kyloth.serleena.persistence;
@@ -65,6 +67,16 @@ public interface ITrackStorage {
      */
     void createTelemetry(Iterable<TelemetryEvent> events);
 
+    /**
+     * Aggiunge più Tracciamenti al Percorso in un'unica operazione,
+     * costruendo ciascuno da un elenco di eventi di Tracciamento.
+     *
+     * I Tracciamenti vengono aggiunti tutti o, in caso di errore, nessuno.
+     *
+     * @param telemetries Elenchi di eventi, uno per Tracciamento.
+     */
+    void createTelemetries(Iterable<Iterable<TelemetryEvent>> telemetries);
+
     /**
      * Restituisce i Tracciamenti che compongono il Percorso.
      *
@@ -72,6 +84,14 @@ public interface ITrackStorage {
      */
     Iterable<ITelemetryStorage> getTelemetries();
 
+    /**
+     * Restituisce il Tracciamento di durata minima del Percorso.
+     *
+     * @return Tracciamento migliore, o null se il Percorso non ha
+     * Tracciamenti di cui sia possibile stabilire la durata.
+     */
+    ITelemetryStorage getBestTelemetry();
+
     /**
      * Restituisce i Checkpoint che compongono il percorso.
      *
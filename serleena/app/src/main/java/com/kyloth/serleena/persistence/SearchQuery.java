@@ -0,0 +1,148 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: SearchQuery.java
+ * Package: com.kyloth.serleena.persistence
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ */
+
+package com.kyloth.serleena.persistence;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Testo di una ricerca per nome, suddiviso in parole.
+ *
+ * Le parole sono le sequenze massimali di lettere e cifre ASCII e di
+ * caratteri non ASCII, confrontate senza distinguere maiuscole e minuscole
+ * ASCII, come fa il tokenizer "simple" delle tabelle FTS di SQLite. Un nome
+ * corrisponde alla ricerca se ogni parola della ricerca è prefisso di una
+ * sua parola.
+ *
+ * @use Viene creato dalle implementazioni di IPersistenceDataSource.search(), che lo usano per interrogare l'indice FTS del database o per filtrare i nomi in memoria, con lo stesso risultato.
+ * @field words : List<String> Parole della ricerca, in minuscolo
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+public final class SearchQuery {
+
+    private final List<String> words;
+
+    private SearchQuery(List<String> words) {
+        this.words = words;
+    }
+
+    /**
+     * Suddivide in parole il testo di una ricerca.
+     *
+     * @param text Testo della ricerca.
+     * @return Ricerca corrispondente al testo.
+     */
+    public static SearchQuery parse(String text) {
+        if (text == null)
+            throw new IllegalArgumentException("Illegal null text");
+        return new SearchQuery(words(text));
+    }
+
+    /**
+     * Indica se la ricerca non contiene parole, e quindi non trova alcun
+     * elemento.
+     *
+     * @return True se la ricerca non contiene parole.
+     */
+    public boolean isEmpty() {
+        return words.isEmpty();
+    }
+
+    /**
+     * Restituisce l'espressione MATCH di SQLite FTS equivalente alla
+     * ricerca, in cui ogni parola è cercata come prefisso.
+     *
+     * Le parole sono in minuscolo e prive di punteggiatura, per cui non
+     * possono essere interpretate come operatori o sintassi FTS.
+     *
+     * @return Espressione MATCH.
+     */
+    public String toMatchExpression() {
+        StringBuilder sb = new StringBuilder();
+        for (String word : words) {
+            if (sb.length() > 0)
+                sb.append(' ');
+            sb.append(word).append('*');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Indica se un nome corrisponde alla ricerca.
+     *
+     * @param name Nome da confrontare.
+     * @return True se ogni parola della ricerca è prefisso di una parola del
+     * nome.
+     */
+    public boolean matches(String name) {
+        if (words.isEmpty())
+            return false;
+        List<String> nameWords = words(name);
+        for (String word : words) {
+            boolean found = false;
+            for (int i = 0; i < nameWords.size() && !found; i++)
+                found = nameWords.get(i).startsWith(word);
+            if (!found)
+                return false;
+        }
+        return true;
+    }
+
+    private static List<String> words(String text) {
+        List<String> list = new ArrayList<String>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (c >= 'A' && c <= 'Z')
+                word.append((char) (c - 'A' + 'a'));
+            else if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') ||
+                    c > 127)
+                word.append(c);
+            else if (word.length() > 0) {
+                list.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        return list;
+    }
+}
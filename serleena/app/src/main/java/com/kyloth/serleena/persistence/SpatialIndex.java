@@ -0,0 +1,355 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: SpatialIndex.java
+ * Package: com.kyloth.serleena.persistence
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ * 1.0.1    Filippo Sestini  Aggiunto accesso ai riquadri indicizzati.
+ * 1.0.2    Filippo Sestini  Classe pubblica, aggiunto findEntries().
+ * 1.0.3    Filippo Sestini  Rinominata da RasterIndex e spostata nel
+ *                                          package persistence; ordinamento
+ *                                          di findEntries() senza boxing.
+ */
+
+package com.kyloth.serleena.persistence;
+
+import com.kyloth.serleena.common.GeoPoint;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Indice spaziale in memoria di riquadri geografici, ciascuno associato a un
+ * identificativo.
+ *
+ * Realizza un R-tree impacchettato secondo l'algoritmo Sort-Tile-Recursive:
+ * i riquadri vengono ordinati e raggruppati in nodi di NODE_SIZE elementi,
+ * memorizzati livello per livello in array di double. La ricerca del
+ * riquadro contenente un punto richiede quindi un numero di confronti
+ * logaritmico nel numero di riquadri.
+ *
+ * @use Viene utilizzato dai DAO dei package sqlite e memory per individuare i riquadri che contengono un punto geografico senza scandirli tutti.
+ * @field ids : long[] Identificativi dei riquadri, nell'ordine delle foglie dell'albero
+ * @field minLat : double[][] Latitudine minima dei nodi, per livello
+ * @field maxLat : double[][] Latitudine massima dei nodi, per livello
+ * @field minLon : double[][] Longitudine minima dei nodi, per livello
+ * @field maxLon : double[][] Longitudine massima dei nodi, per livello
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+public class SpatialIndex {
+
+    /**
+     * Numero massimo di figli di un nodo dell'albero.
+     */
+    public static final int NODE_SIZE = 16;
+
+    /**
+     * Valore restituito da find() se nessun riquadro contiene il punto.
+     */
+    public static final long NOT_FOUND = -1;
+
+    /**
+     * Valore restituito da findEntry() se nessun riquadro contiene il punto.
+     */
+    public static final int NO_ENTRY = -1;
+
+    private final long[] ids;
+    private final double[][] minLat;
+    private final double[][] maxLat;
+    private final double[][] minLon;
+    private final double[][] maxLon;
+
+    /**
+     * Crea un indice a partire dai riquadri.
+     *
+     * Gli array devono avere tutti la stessa lunghezza, e l'elemento i-esimo
+     * di ciascuno si riferisce al medesimo riquadro.
+     *
+     * @param ids Identificativi dei riquadri.
+     * @param nwLat Latitudini degli angoli nord-ovest.
+     * @param nwLon Longitudini degli angoli nord-ovest.
+     * @param seLat Latitudini degli angoli sud-est.
+     * @param seLon Longitudini degli angoli sud-est.
+     */
+    public SpatialIndex(long[] ids, double[] nwLat, double[] nwLon,
+                       double[] seLat, double[] seLon) {
+        if (ids == null || nwLat == null || nwLon == null || seLat == null ||
+                seLon == null)
+            throw new IllegalArgumentException("Illegal null bounds");
+        final int n = ids.length;
+        if (nwLat.length != n || nwLon.length != n || seLat.length != n ||
+                seLon.length != n)
+            throw new IllegalArgumentException("Mismatching bounds arrays");
+
+        Integer[] order = strOrder(nwLat, nwLon, seLat, seLon);
+
+        int levels = 1;
+        for (int size = n; size > 1; size = parentCount(size))
+            levels++;
+
+        this.ids = new long[n];
+        minLat = new double[levels][];
+        maxLat = new double[levels][];
+        minLon = new double[levels][];
+        maxLon = new double[levels][];
+
+        minLat[0] = new double[n];
+        maxLat[0] = new double[n];
+        minLon[0] = new double[n];
+        maxLon[0] = new double[n];
+        for (int i = 0; i < n; i++) {
+            int j = order[i];
+            this.ids[i] = ids[j];
+            minLat[0][i] = seLat[j];
+            maxLat[0][i] = nwLat[j];
+            minLon[0][i] = nwLon[j];
+            maxLon[0][i] = seLon[j];
+        }
+
+        for (int level = 1; level < levels; level++) {
+            int childCount = minLat[level - 1].length;
+            int count = parentCount(childCount);
+            minLat[level] = new double[count];
+            maxLat[level] = new double[count];
+            minLon[level] = new double[count];
+            maxLon[level] = new double[count];
+            for (int node = 0; node < count; node++) {
+                int first = node * NODE_SIZE;
+                int last = Math.min(first + NODE_SIZE, childCount);
+                minLat[level][node] = Double.POSITIVE_INFINITY;
+                maxLat[level][node] = Double.NEGATIVE_INFINITY;
+                minLon[level][node] = Double.POSITIVE_INFINITY;
+                maxLon[level][node] = Double.NEGATIVE_INFINITY;
+                for (int c = first; c < last; c++) {
+                    minLat[level][node] =
+                            Math.min(minLat[level][node], minLat[level - 1][c]);
+                    maxLat[level][node] =
+                            Math.max(maxLat[level][node], maxLat[level - 1][c]);
+                    minLon[level][node] =
+                            Math.min(minLon[level][node], minLon[level - 1][c]);
+                    maxLon[level][node] =
+                            Math.max(maxLon[level][node], maxLon[level - 1][c]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Restituisce l'identificativo di un riquadro che contiene il punto
+     * specificato, estremi inclusi.
+     *
+     * @param latitude Latitudine del punto.
+     * @param longitude Longitudine del punto.
+     * @return Identificativo del riquadro, o NOT_FOUND se nessun riquadro
+     *         contiene il punto.
+     */
+    public long find(double latitude, double longitude) {
+        int entry = findEntry(latitude, longitude);
+        return (entry == NO_ENTRY) ? NOT_FOUND : ids[entry];
+    }
+
+    /**
+     * Restituisce la posizione nell'indice di un riquadro che contiene il
+     * punto specificato, estremi inclusi.
+     *
+     * La posizione permette di ottenere identificativo ed estremi del
+     * riquadro tramite id(), northWest() e southEast().
+     *
+     * @param latitude Latitudine del punto.
+     * @param longitude Longitudine del punto.
+     * @return Posizione del riquadro, o NO_ENTRY se nessun riquadro contiene
+     *         il punto.
+     */
+    public int findEntry(double latitude, double longitude) {
+        if (ids.length == 0)
+            return NO_ENTRY;
+        return findEntry(minLat.length - 1, 0, latitude, longitude);
+    }
+
+    /**
+     * Restituisce le posizioni nell'indice di tutti i riquadri che
+     * contengono il punto specificato, estremi inclusi.
+     *
+     * @param latitude Latitudine del punto.
+     * @param longitude Longitudine del punto.
+     * @return Posizioni dei riquadri, in ordine crescente di identificativo.
+     */
+    public int[] findEntries(double latitude, double longitude) {
+        int[] entries = new int[0];
+        if (ids.length > 0)
+            entries = collectEntries(minLat.length - 1, 0, latitude,
+                    longitude, entries);
+
+        // I riquadri che contengono un punto sono pochi: un ordinamento per
+        // inserimento sugli array primitivi evita di creare oggetti Integer.
+        for (int i = 1; i < entries.length; i++) {
+            int entry = entries[i];
+            long id = ids[entry];
+            int j = i - 1;
+            for (; j >= 0 && ids[entries[j]] > id; j--)
+                entries[j + 1] = entries[j];
+            entries[j + 1] = entry;
+        }
+        return entries;
+    }
+
+    /**
+     * Restituisce l'identificativo del riquadro nella posizione specificata.
+     *
+     * @param entry Posizione del riquadro nell'indice.
+     * @return Identificativo del riquadro.
+     */
+    public long id(int entry) {
+        return ids[entry];
+    }
+
+    /**
+     * Restituisce l'angolo nord-ovest del riquadro nella posizione
+     * specificata.
+     *
+     * @param entry Posizione del riquadro nell'indice.
+     * @return Angolo nord-ovest del riquadro.
+     */
+    public GeoPoint northWest(int entry) {
+        return new GeoPoint(maxLat[0][entry], minLon[0][entry]);
+    }
+
+    /**
+     * Restituisce l'angolo sud-est del riquadro nella posizione specificata.
+     *
+     * @param entry Posizione del riquadro nell'indice.
+     * @return Angolo sud-est del riquadro.
+     */
+    public GeoPoint southEast(int entry) {
+        return new GeoPoint(minLat[0][entry], maxLon[0][entry]);
+    }
+
+    /**
+     * Restituisce il numero di riquadri indicizzati.
+     *
+     * @return Numero di riquadri.
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    private int findEntry(int level, int node, double latitude,
+                          double longitude) {
+        if (!contains(level, node, latitude, longitude))
+            return NO_ENTRY;
+        if (level == 0)
+            return node;
+
+        int first = node * NODE_SIZE;
+        int last = Math.min(first + NODE_SIZE, minLat[level - 1].length);
+        for (int child = first; child < last; child++) {
+            int entry = findEntry(level - 1, child, latitude, longitude);
+            if (entry != NO_ENTRY)
+                return entry;
+        }
+        return NO_ENTRY;
+    }
+
+    private int[] collectEntries(int level, int node, double latitude,
+                                 double longitude, int[] entries) {
+        if (!contains(level, node, latitude, longitude))
+            return entries;
+        if (level == 0) {
+            int[] grown = Arrays.copyOf(entries, entries.length + 1);
+            grown[entries.length] = node;
+            return grown;
+        }
+
+        int first = node * NODE_SIZE;
+        int last = Math.min(first + NODE_SIZE, minLat[level - 1].length);
+        for (int child = first; child < last; child++)
+            entries = collectEntries(level - 1, child, latitude, longitude,
+                    entries);
+        return entries;
+    }
+
+    private boolean contains(int level, int node, double latitude,
+                             double longitude) {
+        return minLat[level][node] <= latitude &&
+                latitude <= maxLat[level][node] &&
+                minLon[level][node] <= longitude &&
+                longitude <= maxLon[level][node];
+    }
+
+    private static int parentCount(int childCount) {
+        return (childCount + NODE_SIZE - 1) / NODE_SIZE;
+    }
+
+    /**
+     * Calcola l'ordine Sort-Tile-Recursive dei riquadri: questi vengono
+     * ordinati per longitudine del centro, suddivisi in fasce verticali, e
+     * ciascuna fascia viene ordinata per latitudine del centro.
+     */
+    private static Integer[] strOrder(double[] nwLat, double[] nwLon,
+                                      double[] seLat, double[] seLon) {
+        final int n = nwLat.length;
+        final double[] centerLat = new double[n];
+        final double[] centerLon = new double[n];
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            centerLat[i] = (nwLat[i] + seLat[i]) / 2;
+            centerLon[i] = (nwLon[i] + seLon[i]) / 2;
+            order[i] = i;
+        }
+
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Double.compare(centerLon[a], centerLon[b]);
+            }
+        });
+
+        int leaves = parentCount(n);
+        int slices = (int) Math.ceil(Math.sqrt(leaves));
+        int sliceSize = slices * NODE_SIZE;
+        for (int start = 0; start < n; start += sliceSize)
+            Arrays.sort(order, start, Math.min(start + sliceSize, n),
+                    new Comparator<Integer>() {
+                        @Override
+                        public int compare(Integer a, Integer b) {
+                            return Double.compare(centerLat[a], centerLat[b]);
+                        }
+                    });
+        return order;
+    }
+
+}
@@ -0,0 +1,84 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: HeapDataSink.java
+ * Package: com.kyloth.serleena.persistence.memory
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ */
+
+package com.kyloth.serleena.persistence.memory;
+
+import com.kyloth.serleena.persistence.IPersistenceDataSink;
+import com.kyloth.serleena.synchronization.InboundDump;
+
+/**
+ * Implementazione di IPersistenceDataSink per la persistenza in memoria.
+ *
+ * @use Viene usato dalla sincronizzazione per caricare i dati ricevuti in un HeapDataSource.
+ * @field source : HeapDataSource Sorgente dati in cui caricare i dump
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+public class HeapDataSink implements IPersistenceDataSink {
+
+    private final HeapDataSource source;
+
+    /**
+     * Crea un nuovo oggetto HeapDataSink.
+     *
+     * @param source Sorgente dati in cui caricare i dump.
+     */
+    public HeapDataSink(HeapDataSource source) {
+        if (source == null)
+            throw new IllegalArgumentException("Illegal null source");
+        this.source = source;
+    }
+
+    /**
+     * Implementa IPersistenceDataSink.load().
+     *
+     * Il contenuto della sorgente dati viene sostituito per intero.
+     *
+     * @param dump Dump da caricare. Se non è un HeapInboundDump, viene
+     *             sollevata un'eccezione IllegalArgumentException.
+     */
+    @Override
+    public void load(InboundDump dump) {
+        if (!(dump instanceof HeapInboundDump))
+            throw new IllegalArgumentException("Illegal dump");
+        source.load(((HeapInboundDump) dump).root());
+    }
+}
@@ -0,0 +1,180 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: HeapDataSource.java
+ * Package: com.kyloth.serleena.persistence.memory
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ * 1.0.1    Filippo Sestini  Aggiunto search().
+ * 1.0.2    Filippo Sestini  Aggiunto flush().
+ */
+
+package com.kyloth.serleena.persistence.memory;
+
+import com.kyloth.serleena.common.DirectAccessList;
+import com.kyloth.serleena.common.EmergencyContact;
+import com.kyloth.serleena.common.GeoPoint;
+import com.kyloth.serleena.common.NoSuchWeatherForecastException;
+import com.kyloth.serleena.common.SearchResult;
+import com.kyloth.serleena.persistence.IExperienceStorage;
+import com.kyloth.serleena.persistence.IPersistenceDataSource;
+import com.kyloth.serleena.persistence.IWeatherStorage;
+import com.kyloth.serleena.persistence.SearchQuery;
+import com.kyloth.serleena.synchronization.kylothcloud.InboundRootEntity;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+/**
+ * Implementazione di IPersistenceDataSource che mantiene tutti i dati in
+ * memoria, senza accedere al database.
+ *
+ * Il contenuto viene sostituito per intero a ogni caricamento: i lettori
+ * continuano a vedere i dati precedenti finché la sostituzione non è
+ * completa, senza bisogno di sincronizzazione.
+ *
+ * @use Può essere usato al posto di SerleenaSQLiteDataSource quando i dati sono di dimensioni contenute, o nei test. I dati vengono caricati tramite HeapDataSink o load().
+ * @field snapshot : HeapSnapshot Contenuto corrente della persistenza
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+public class HeapDataSource implements IPersistenceDataSource {
+
+    private volatile HeapSnapshot snapshot;
+
+    /**
+     * Crea un nuovo oggetto HeapDataSource, privo di dati.
+     */
+    public HeapDataSource() {
+        this(new InboundRootEntity());
+    }
+
+    /**
+     * Crea un nuovo oggetto HeapDataSource contenente i dati specificati.
+     *
+     * @param root Dati ricevuti dalla sincronizzazione.
+     */
+    public HeapDataSource(InboundRootEntity root) {
+        load(root);
+    }
+
+    /**
+     * Sostituisce il contenuto della sorgente dati.
+     *
+     * @param root Dati ricevuti dalla sincronizzazione.
+     */
+    public void load(InboundRootEntity root) {
+        snapshot = HeapSnapshot.from(root);
+    }
+
+    /**
+     * Implementa IPersistenceDataSource.getExperiences().
+     *
+     * @return Esperienze.
+     */
+    @Override
+    public Iterable<IExperienceStorage> getExperiences() {
+        return snapshot.getExperiences();
+    }
+
+    /**
+     * Implementa IPersistenceDataSource.getWeatherInfo().
+     *
+     * @param location Posizione geografica di cui si vogliono ottenere le
+     *                 previsioni. Se null, viene sollevata un'eccezione
+     *                 IllegalArgumentException.
+     * @param date Data di cui si vogliono ottenere le previsioni, alla
+     *             mezzanotte GMT. Se null, viene sollevata un'eccezione
+     *             IllegalArgumentException.
+     * @return Previsioni metereologiche.
+     */
+    @Override
+    public IWeatherStorage getWeatherInfo(GeoPoint location, Date date)
+            throws NoSuchWeatherForecastException {
+        if (date == null)
+            throw new IllegalArgumentException("Illegal null date");
+        if (location == null)
+            throw new IllegalArgumentException("Illegal null location");
+
+        GregorianCalendar c = new GregorianCalendar(TimeZone.getTimeZone("GMT"));
+        c.setTimeInMillis(date.getTime());
+        if (c.get(Calendar.HOUR_OF_DAY) != 0 ||
+                c.get(Calendar.MINUTE) != 0 ||
+                c.get(Calendar.SECOND) != 0 ||
+                c.get(Calendar.MILLISECOND) != 0)
+            throw new IllegalArgumentException(
+                    "Illegal date, 00:00:00.000 required");
+
+        return snapshot.getWeatherInfo(location, date.getTime());
+    }
+
+    /**
+     * Implementa IPersistenceDataSource.getContacts().
+     *
+     * @param location Punto geografico del cui intorno si vogliono ottenere
+     *                 i contatti di autorità locali.
+     * @return Contatti di emergenza.
+     */
+    @Override
+    public DirectAccessList<EmergencyContact> getContacts(GeoPoint location) {
+        if (location == null)
+            throw new IllegalArgumentException("Illegal null location");
+        return snapshot.getContacts(location);
+    }
+
+    /**
+     * Implementa IPersistenceDataSource.search().
+     *
+     * @param text Testo della ricerca. Se null, viene sollevata
+     *             un'eccezione IllegalArgumentException.
+     * @return Risultati della ricerca, in ordine di pertinenza.
+     */
+    @Override
+    public DirectAccessList<SearchResult> search(String text) {
+        return snapshot.search(SearchQuery.parse(text));
+    }
+
+    /**
+     * Implementa IPersistenceDataSource.flush().
+     *
+     * I dati sono mantenuti solo in memoria, per cui non vi sono modifiche
+     * da scrivere.
+     */
+    @Override
+    public void flush() {
+    }
+}
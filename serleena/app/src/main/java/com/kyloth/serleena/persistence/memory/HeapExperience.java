@@ -0,0 +1,278 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: HeapExperience.java
+ * Package: com.kyloth.serleena.persistence.memory
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ * 1.0.1    Filippo Sestini  Aggiunto getUserPoints(IRegion).
+ * 1.0.2    Filippo Sestini  Raster indicizzati con SpatialIndex.
+ */
+
+package com.kyloth.serleena.persistence.memory;
+
+import android.graphics.BitmapFactory;
+
+import com.kyloth.serleena.common.GeoPoint;
+import com.kyloth.serleena.common.IQuadrant;
+import com.kyloth.serleena.common.IRegion;
+import com.kyloth.serleena.common.Quadrant;
+import com.kyloth.serleena.common.UserPoint;
+import com.kyloth.serleena.persistence.IExperienceStorage;
+import com.kyloth.serleena.persistence.ITrackStorage;
+import com.kyloth.serleena.persistence.NoSuchQuadrantException;
+import com.kyloth.serleena.persistence.SpatialIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Implementazione di IExperienceStorage per la persistenza in memoria.
+ *
+ * I punti utente sono memorizzati in array paralleli di coordinate; quelli
+ * caricati dalla sincronizzazione precedono quelli aggiunti localmente. I
+ * raster sono mantenuti compressi e indicizzati da un SpatialIndex, e
+ * vengono decodificati solo quando richiesti.
+ *
+ * @use Viene creato da HeapSnapshot durante il caricamento dei dati, e restituito da HeapDataSource dietro interfaccia IExperienceStorage.
+ * @field uuid : UUID UUID dell'Esperienza
+ * @field name : String Nome dell'Esperienza
+ * @field tracks : List<ITrackStorage> Percorsi dell'Esperienza
+ * @field latitudes : double[] Latitudini dei punti utente
+ * @field longitudes : double[] Longitudini dei punti utente
+ * @field pointCount : int Numero di punti utente
+ * @field syncedCount : int Numero di punti utente provenienti dalla sincronizzazione
+ * @field rasterIndex : SpatialIndex Indice spaziale dei raster
+ * @field rasters : byte[][] Immagini compresse dei raster, per identificativo
+ * @field lastEntry : int Posizione nell'indice dell'ultimo quadrante decodificato
+ * @field lastQuadrant : IQuadrant Ultimo quadrante decodificato
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+class HeapExperience implements IExperienceStorage {
+
+    private final UUID uuid;
+    private final String name;
+    private final List<ITrackStorage> tracks;
+    private double[] latitudes;
+    private double[] longitudes;
+    private int pointCount;
+    private final int syncedCount;
+    private final SpatialIndex rasterIndex;
+    private final byte[][] rasters;
+    private int lastEntry;
+    private IQuadrant lastQuadrant;
+
+    /**
+     * Crea un nuovo oggetto HeapExperience.
+     *
+     * @param uuid UUID dell'Esperienza.
+     * @param name Nome dell'Esperienza.
+     * @param tracks Percorsi dell'Esperienza.
+     * @param latitudes Latitudini dei punti utente sincronizzati.
+     * @param longitudes Longitudini dei punti utente sincronizzati.
+     * @param rasterIndex Indice spaziale dei raster, i cui identificativi
+     *                    sono posizioni nell'array rasters.
+     * @param rasters Immagini compresse dei raster.
+     */
+    HeapExperience(UUID uuid, String name, List<? extends ITrackStorage> tracks,
+                   double[] latitudes, double[] longitudes,
+                   SpatialIndex rasterIndex, byte[][] rasters) {
+        if (uuid == null || name == null || tracks == null ||
+                latitudes == null || longitudes == null ||
+                latitudes.length != longitudes.length ||
+                rasterIndex == null || rasters == null)
+            throw new IllegalArgumentException();
+        this.uuid = uuid;
+        this.name = name;
+        this.tracks = new ArrayList<ITrackStorage>(tracks);
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.pointCount = latitudes.length;
+        this.syncedCount = latitudes.length;
+        this.rasterIndex = rasterIndex;
+        this.rasters = rasters;
+        this.lastEntry = SpatialIndex.NO_ENTRY;
+    }
+
+    /**
+     * Implementa IExperienceStorage.getTracks().
+     *
+     * @return Percorsi dell'Esperienza.
+     */
+    @Override
+    public Iterable<ITrackStorage> getTracks() {
+        return getTracks(true);
+    }
+
+    /**
+     * Implementa IExperienceStorage.getTracks(boolean).
+     *
+     * I Checkpoint sono già in memoria, per cui il parametro non ha effetto.
+     *
+     * @param withCheckpoints Ignorato.
+     * @return Percorsi dell'Esperienza.
+     */
+    @Override
+    public Iterable<ITrackStorage> getTracks(boolean withCheckpoints) {
+        return new ArrayList<ITrackStorage>(tracks);
+    }
+
+    /**
+     * Implementa IExperienceStorage.getUserPoints().
+     *
+     * @return Tutti i punti utente dell'Esperienza.
+     */
+    @Override
+    public Iterable<UserPoint> getUserPoints() {
+        return getUserPoints(false);
+    }
+
+    /**
+     * Implementa IExperienceStorage.getUserPoints(boolean).
+     *
+     * @param localOnly Se true, vengono restituiti solo i punti utente
+     *                  aggiunti dopo la sincronizzazione.
+     * @return Punti utente dell'Esperienza.
+     */
+    @Override
+    public synchronized Iterable<UserPoint> getUserPoints(boolean localOnly) {
+        int from = localOnly ? syncedCount : 0;
+        ArrayList<UserPoint> list = new ArrayList<UserPoint>(pointCount - from);
+        for (int i = from; i < pointCount; i++)
+            list.add(new UserPoint(latitudes[i], longitudes[i]));
+        return list;
+    }
+
+    /**
+     * Implementa IExperienceStorage.getUserPoints(IRegion).
+     *
+     * Le coordinate vengono confrontate direttamente sugli array, creando
+     * oggetti UserPoint solo per i punti contenuti nell'area.
+     *
+     * @param region Area geografica entro cui devono trovarsi i Punti Utente.
+     * @return Punti Utente dell'Esperienza contenuti nell'area.
+     */
+    @Override
+    public synchronized Iterable<UserPoint> getUserPoints(IRegion region) {
+        if (region == null)
+            throw new IllegalArgumentException("Illegal null region");
+
+        GeoPoint nw = region.getNorthWestPoint();
+        GeoPoint se = region.getSouthEastPoint();
+        ArrayList<UserPoint> list = new ArrayList<UserPoint>();
+        for (int i = 0; i < pointCount; i++)
+            if (se.latitude() <= latitudes[i] &&
+                    latitudes[i] <= nw.latitude() &&
+                    nw.longitude() <= longitudes[i] &&
+                    longitudes[i] <= se.longitude())
+                list.add(new UserPoint(latitudes[i], longitudes[i]));
+        return list;
+    }
+
+    /**
+     * Implementa IExperienceStorage.addUserPoint().
+     *
+     * @param p Punto utente da aggiungere.
+     */
+    @Override
+    public synchronized void addUserPoint(UserPoint p) {
+        if (p == null)
+            throw new IllegalArgumentException("Illegal null point");
+        if (pointCount == latitudes.length) {
+            int capacity = Math.max(8, latitudes.length * 2);
+            latitudes = Arrays.copyOf(latitudes, capacity);
+            longitudes = Arrays.copyOf(longitudes, capacity);
+        }
+        latitudes[pointCount] = p.latitude();
+        longitudes[pointCount] = p.longitude();
+        pointCount++;
+    }
+
+    /**
+     * Implementa IExperienceStorage.getName().
+     *
+     * @return Nome dell'Esperienza.
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Implementa IExperienceStorage.getUUID().
+     *
+     * @return UUID dell'Esperienza.
+     */
+    @Override
+    public UUID getUUID() {
+        return uuid;
+    }
+
+    /**
+     * Implementa IExperienceStorage.getQuadrant().
+     *
+     * L'ultimo quadrante decodificato viene mantenuto, in modo che
+     * richieste successive all'interno dello stesso quadrante non ne
+     * decodifichino nuovamente l'immagine.
+     *
+     * @param location Posizione geografica contenuta dal quadrante richiesto.
+     * @return Oggetto IQuadrant rappresentante il quadrante.
+     * @throws NoSuchQuadrantException
+     */
+    @Override
+    public synchronized IQuadrant getQuadrant(GeoPoint location)
+            throws NoSuchQuadrantException {
+        if (location == null)
+            throw new IllegalArgumentException("Illegal null location");
+
+        int entry = rasterIndex.findEntry(location.latitude(),
+                location.longitude());
+        if (entry == SpatialIndex.NO_ENTRY)
+            throw new NoSuchQuadrantException();
+
+        if (entry != lastEntry) {
+            byte[] data = rasters[(int) rasterIndex.id(entry)];
+            lastQuadrant = new Quadrant(
+                    rasterIndex.northWest(entry),
+                    rasterIndex.southEast(entry),
+                    BitmapFactory.decodeByteArray(data, 0, data.length));
+            lastEntry = entry;
+        }
+        return lastQuadrant;
+    }
+}
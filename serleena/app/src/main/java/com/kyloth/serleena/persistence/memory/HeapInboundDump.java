@@ -0,0 +1,94 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: HeapInboundDump.java
+ * Package: com.kyloth.serleena.persistence.memory
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ */
+
+package com.kyloth.serleena.persistence.memory;
+
+import com.kyloth.serleena.synchronization.InboundDump;
+import com.kyloth.serleena.synchronization.kylothcloud.InboundRootEntity;
+
+import java.util.Collections;
+import java.util.Iterator;
+
+/**
+ * InboundDump destinato alla persistenza in memoria.
+ *
+ * Non contiene istruzioni SQL, ma i dati ricevuti dalla sincronizzazione,
+ * che HeapDataSink carica direttamente in memoria.
+ *
+ * @use Viene creato a partire dai dati ricevuti dalla sincronizzazione e passato a HeapDataSink.load().
+ * @field root : InboundRootEntity Dati ricevuti dalla sincronizzazione
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+public class HeapInboundDump implements InboundDump {
+
+    private final InboundRootEntity root;
+
+    /**
+     * Crea un nuovo oggetto HeapInboundDump.
+     *
+     * @param root Dati ricevuti dalla sincronizzazione.
+     */
+    public HeapInboundDump(InboundRootEntity root) {
+        if (root == null)
+            throw new IllegalArgumentException("Illegal null root");
+        this.root = root;
+    }
+
+    /**
+     * Restituisce i dati ricevuti dalla sincronizzazione.
+     *
+     * @return Dati ricevuti dalla sincronizzazione.
+     */
+    public InboundRootEntity root() {
+        return root;
+    }
+
+    /**
+     * Implementa Iterable.iterator().
+     *
+     * @return Iteratore vuoto, il dump non contiene istruzioni.
+     */
+    @Override
+    public Iterator<String> iterator() {
+        return Collections.<String>emptyList().iterator();
+    }
+}
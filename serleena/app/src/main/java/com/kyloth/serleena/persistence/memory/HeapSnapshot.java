@@ -0,0 +1,406 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: HeapSnapshot.java
+ * Package: com.kyloth.serleena.persistence.memory
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ * 1.0.1    Filippo Sestini  Ricerca per nome.
+ * 1.0.2    Filippo Sestini  Indici costruiti con SpatialIndex.
+ */
+
+package com.kyloth.serleena.persistence.memory;
+
+import android.util.Base64;
+
+import com.kyloth.serleena.common.CheckpointList;
+import com.kyloth.serleena.common.DirectAccessList;
+import com.kyloth.serleena.common.EmergencyContact;
+import com.kyloth.serleena.common.GeoPoint;
+import com.kyloth.serleena.common.IRegion;
+import com.kyloth.serleena.common.ListAdapter;
+import com.kyloth.serleena.common.NoSuchWeatherForecastException;
+import com.kyloth.serleena.common.SearchResult;
+import com.kyloth.serleena.common.SearchResultType;
+import com.kyloth.serleena.persistence.IExperienceStorage;
+import com.kyloth.serleena.persistence.IWeatherStorage;
+import com.kyloth.serleena.persistence.SearchQuery;
+import com.kyloth.serleena.persistence.SpatialIndex;
+import com.kyloth.serleena.persistence.WeatherForecastEnum;
+import com.kyloth.serleena.synchronization.kylothcloud.CheckpointEntity;
+import com.kyloth.serleena.synchronization.kylothcloud.EmergencyDataEntity;
+import com.kyloth.serleena.synchronization.kylothcloud.ExperienceEntity;
+import com.kyloth.serleena.synchronization.kylothcloud.InboundRootEntity;
+import com.kyloth.serleena.synchronization.kylothcloud.RasterDataEntity;
+import com.kyloth.serleena.synchronization.kylothcloud.TelemetryEntity;
+import com.kyloth.serleena.synchronization.kylothcloud.TrackEntity;
+import com.kyloth.serleena.synchronization.kylothcloud.UserPointEntity;
+import com.kyloth.serleena.synchronization.kylothcloud.WeatherDataEntity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import static java.lang.Math.round;
+
+/**
+ * Contenuto completo della persistenza in memoria, costruito a partire dai
+ * dati ricevuti dalla sincronizzazione.
+ *
+ * Contatti e previsioni meteo sono indicizzati per area geografica da
+ * oggetti SpatialIndex, le previsioni separatamente per ogni giorno. Gli
+ * identificativi usati negli indici sono le posizioni degli elementi negli
+ * array corrispondenti, per cui a parità di area gli elementi vengono
+ * restituiti nell'ordine in cui sono stati ricevuti.
+ *
+ * Gli elementi cercabili per nome sono ordinati alla costruzione come i
+ * risultati dell'indice full-text del database, per lunghezza e poi per
+ * nome, in modo che la ricerca debba solo filtrarli.
+ *
+ * Le conversioni seguono quelle operate da
+ * CloudSerleenaSQLiteInboundDumpBuilder, in modo che i dati letti siano gli
+ * stessi della persistenza su database.
+ *
+ * @use Viene creato da HeapDataSource a ogni caricamento, e sostituito per intero da quello successivo.
+ * @field experiences : List<IExperienceStorage> Esperienze
+ * @field contacts : EmergencyContact[] Contatti di emergenza
+ * @field contactIndex : SpatialIndex Indice spaziale dei contatti
+ * @field weather : Map<Long, WeatherDay> Previsioni meteo, per data
+ * @field searchEntries : SearchResult[] Elementi cercabili per nome, in ordine di pertinenza
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+final class HeapSnapshot {
+
+    private final List<IExperienceStorage> experiences;
+    private final EmergencyContact[] contacts;
+    private final SpatialIndex contactIndex;
+    private final Map<Long, WeatherDay> weather;
+    private final SearchResult[] searchEntries;
+
+    private HeapSnapshot(List<IExperienceStorage> experiences,
+                         EmergencyContact[] contacts,
+                         SpatialIndex contactIndex,
+                         Map<Long, WeatherDay> weather,
+                         SearchResult[] searchEntries) {
+        this.experiences = experiences;
+        this.contacts = contacts;
+        this.contactIndex = contactIndex;
+        this.weather = weather;
+        this.searchEntries = searchEntries;
+    }
+
+    /**
+     * Costruisce il contenuto della persistenza a partire dai dati ricevuti
+     * dalla sincronizzazione.
+     *
+     * @param root Dati ricevuti dalla sincronizzazione.
+     * @return Contenuto della persistenza.
+     */
+    static HeapSnapshot from(InboundRootEntity root) {
+        if (root == null)
+            throw new IllegalArgumentException("Illegal null root");
+
+        List<IExperienceStorage> experiences =
+                new ArrayList<IExperienceStorage>(root.experiences.size());
+        for (ExperienceEntity experience : root.experiences)
+            experiences.add(buildExperience(experience));
+
+        EmergencyContact[] contacts =
+                new EmergencyContact[root.emergencyData.size()];
+        List<IRegion> contactRegions = new ArrayList<IRegion>();
+        for (EmergencyDataEntity contact : root.emergencyData) {
+            contacts[contactRegions.size()] =
+                    new EmergencyContact(contact.name, contact.number);
+            contactRegions.add(contact.rect);
+        }
+
+        return new HeapSnapshot(experiences, contacts,
+                buildIndex(contactRegions), buildWeather(root.weatherData),
+                buildSearchEntries(root));
+    }
+
+    /**
+     * Restituisce le Esperienze.
+     *
+     * @return Esperienze.
+     */
+    Iterable<IExperienceStorage> getExperiences() {
+        return new ArrayList<IExperienceStorage>(experiences);
+    }
+
+    /**
+     * Restituisce i contatti di emergenza la cui area contiene la posizione
+     * specificata.
+     *
+     * @param location Posizione geografica.
+     * @return Contatti di emergenza, nell'ordine in cui sono stati ricevuti.
+     */
+    DirectAccessList<EmergencyContact> getContacts(GeoPoint location) {
+        int[] entries = contactIndex.findEntries(location.latitude(),
+                location.longitude());
+        List<EmergencyContact> list =
+                new ArrayList<EmergencyContact>(entries.length);
+        for (int entry : entries)
+            list.add(contacts[(int) contactIndex.id(entry)]);
+        return new ListAdapter<EmergencyContact>(list);
+    }
+
+    /**
+     * Restituisce le previsioni meteo per la posizione e la data
+     * specificate.
+     *
+     * @param location Posizione geografica.
+     * @param date Data delle previsioni, in millisecondi.
+     * @return Previsioni meteo.
+     * @throws NoSuchWeatherForecastException Se non vi sono previsioni per
+     * la posizione e la data specificate.
+     */
+    IWeatherStorage getWeatherInfo(GeoPoint location, long date)
+            throws NoSuchWeatherForecastException {
+        WeatherDay day = weather.get(date);
+        if (day != null) {
+            int[] entries = day.index.findEntries(location.latitude(),
+                    location.longitude());
+            if (entries.length > 0)
+                return day.forecasts[(int) day.index.id(entries[0])];
+        }
+        throw new NoSuchWeatherForecastException();
+    }
+
+    /**
+     * Restituisce gli elementi il cui nome corrisponde alla ricerca.
+     *
+     * @param query Ricerca.
+     * @return Elementi trovati, in ordine di pertinenza.
+     */
+    DirectAccessList<SearchResult> search(SearchQuery query) {
+        List<SearchResult> list = new ArrayList<SearchResult>();
+        for (SearchResult entry : searchEntries)
+            if (query.matches(entry.name()))
+                list.add(entry);
+        return new ListAdapter<SearchResult>(list);
+    }
+
+    /**
+     * Costruisce gli elementi cercabili per nome, nell'ordine in cui
+     * SerleenaDatabase li inserisce nell'indice di ricerca, e li ordina per
+     * lunghezza del nome e per nome.
+     */
+    private static SearchResult[] buildSearchEntries(InboundRootEntity root) {
+        List<SearchResult> list = new ArrayList<SearchResult>();
+        for (ExperienceEntity experience : root.experiences)
+            list.add(new SearchResult(SearchResultType.Experience,
+                    experience.name, experience.uuid, experience.uuid, null));
+        for (ExperienceEntity experience : root.experiences)
+            for (TrackEntity track : experience.tracks)
+                list.add(new SearchResult(SearchResultType.Track, track.name,
+                        track.uuid, experience.uuid, null));
+        for (EmergencyDataEntity contact : root.emergencyData)
+            list.add(new SearchResult(SearchResultType.Contact, contact.name,
+                    null, null, contact.number));
+
+        SearchResult[] entries = list.toArray(new SearchResult[list.size()]);
+        Arrays.sort(entries, new Comparator<SearchResult>() {
+            @Override
+            public int compare(SearchResult a, SearchResult b) {
+                int length = a.name().length() - b.name().length();
+                return length != 0 ? length : a.name().compareTo(b.name());
+            }
+        });
+        return entries;
+    }
+
+    /**
+     * Costruisce un'Esperienza, con i suoi Percorsi, punti utente e raster.
+     */
+    private static HeapExperience buildExperience(ExperienceEntity entity) {
+        List<HeapTrack> tracks = new ArrayList<HeapTrack>();
+        for (TrackEntity track : entity.tracks)
+            tracks.add(buildTrack(track));
+
+        double[] latitudes = new double[entity.userPoints.size()];
+        double[] longitudes = new double[entity.userPoints.size()];
+        int i = 0;
+        for (UserPointEntity point : entity.userPoints) {
+            latitudes[i] = point.point.latitude();
+            longitudes[i] = point.point.longitude();
+            i++;
+        }
+
+        byte[][] rasters = new byte[entity.rasterData.size()][];
+        List<IRegion> rasterRegions = new ArrayList<IRegion>();
+        for (RasterDataEntity raster : entity.rasterData) {
+            rasters[rasterRegions.size()] =
+                    Base64.decode(raster.base64Raster, Base64.DEFAULT);
+            rasterRegions.add(raster.boundingRect);
+        }
+
+        return new HeapExperience(entity.uuid, entity.name, tracks,
+                latitudes, longitudes, buildIndex(rasterRegions), rasters);
+    }
+
+    /**
+     * Costruisce un Percorso, con i suoi Checkpoint in ordine di numero e il
+     * suo eventuale Tracciamento sincronizzato.
+     */
+    private static HeapTrack buildTrack(TrackEntity entity) {
+        CheckpointEntity[] sorted = entity.checkpoints.toArray(
+                new CheckpointEntity[entity.checkpoints.size()]);
+        Arrays.sort(sorted, new Comparator<CheckpointEntity>() {
+            @Override
+            public int compare(CheckpointEntity a, CheckpointEntity b) {
+                return a.id < b.id ? -1 : (a.id == b.id ? 0 : 1);
+            }
+        });
+        CheckpointList.Builder builder =
+                new CheckpointList.Builder(sorted.length);
+        for (CheckpointEntity checkpoint : sorted)
+            builder.add(checkpoint.point.latitude(),
+                    checkpoint.point.longitude());
+
+        HeapTrack track = new HeapTrack(entity.uuid, entity.name,
+                builder.build());
+
+        if (entity.telemetries.size() > 1)
+            throw new IllegalArgumentException();
+        for (TelemetryEntity telemetry : entity.telemetries)
+            track.addTelemetry(buildGhostTelemetry(telemetry.events));
+        return track;
+    }
+
+    /**
+     * Costruisce un Tracciamento sincronizzato. I tempi sono ricevuti in
+     * millisecondi e memorizzati in secondi, come nel database.
+     */
+    private static HeapTelemetry buildGhostTelemetry(Collection<Long> events) {
+        long[] timestamps = new long[events.size()];
+        int i = 0;
+        for (Long event : events)
+            timestamps[i++] = event / 1000;
+        return new HeapTelemetry(timestamps, true);
+    }
+
+    /**
+     * Raggruppa le previsioni meteo per giorno. Le previsioni la cui data
+     * non corrisponde alla mezzanotte GMT vengono scartate.
+     */
+    private static Map<Long, WeatherDay> buildWeather(
+            Collection<WeatherDataEntity> entities) {
+        Map<Long, List<WeatherDataEntity>> byDate =
+                new HashMap<Long, List<WeatherDataEntity>>();
+        GregorianCalendar c = new GregorianCalendar(
+                TimeZone.getTimeZone("GMT"));
+        for (WeatherDataEntity entity : entities) {
+            c.setTimeInMillis(entity.date);
+            if (c.get(Calendar.HOUR_OF_DAY) != 0 ||
+                    c.get(Calendar.MINUTE) != 0 ||
+                    c.get(Calendar.SECOND) != 0)
+                continue;
+
+            List<WeatherDataEntity> day = byDate.get(entity.date);
+            if (day == null) {
+                day = new ArrayList<WeatherDataEntity>();
+                byDate.put(entity.date, day);
+            }
+            day.add(entity);
+        }
+
+        Map<Long, WeatherDay> weather = new HashMap<Long, WeatherDay>();
+        for (Map.Entry<Long, List<WeatherDataEntity>> day : byDate.entrySet()) {
+            List<WeatherDataEntity> list = day.getValue();
+            HeapWeather[] forecasts = new HeapWeather[list.size()];
+            List<IRegion> regions = new ArrayList<IRegion>(list.size());
+            for (WeatherDataEntity entity : list) {
+                forecasts[regions.size()] = new HeapWeather(
+                        new WeatherForecastEnum[] {
+                                entity.morning.forecast,
+                                entity.afternoon.forecast,
+                                entity.night.forecast },
+                        new int[] {
+                                round(entity.morning.temperature),
+                                round(entity.afternoon.temperature),
+                                round(entity.night.temperature) },
+                        entity.date);
+                regions.add(entity.boundingRect);
+            }
+            weather.put(day.getKey(),
+                    new WeatherDay(forecasts, buildIndex(regions)));
+        }
+        return weather;
+    }
+
+    /**
+     * Costruisce un indice spaziale delle aree specificate, usando come
+     * identificativi le loro posizioni nella lista.
+     */
+    private static SpatialIndex buildIndex(List<IRegion> regions) {
+        int count = regions.size();
+        long[] ids = new long[count];
+        double[] nwLat = new double[count];
+        double[] nwLon = new double[count];
+        double[] seLat = new double[count];
+        double[] seLon = new double[count];
+        for (int i = 0; i < count; i++) {
+            IRegion region = regions.get(i);
+            ids[i] = i;
+            nwLat[i] = region.getNorthWestPoint().latitude();
+            nwLon[i] = region.getNorthWestPoint().longitude();
+            seLat[i] = region.getSouthEastPoint().latitude();
+            seLon[i] = region.getSouthEastPoint().longitude();
+        }
+        return new SpatialIndex(ids, nwLat, nwLon, seLat, seLon);
+    }
+
+    /**
+     * Previsioni meteo di un giorno, con il relativo indice spaziale.
+     */
+    private static class WeatherDay {
+        final HeapWeather[] forecasts;
+        final SpatialIndex index;
+
+        WeatherDay(HeapWeather[] forecasts, SpatialIndex index) {
+            this.forecasts = forecasts;
+            this.index = index;
+        }
+    }
+}
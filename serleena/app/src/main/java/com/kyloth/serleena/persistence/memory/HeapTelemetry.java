@@ -0,0 +1,167 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: HeapTelemetry.java
+ * Package: com.kyloth.serleena.persistence.memory
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ */
+
+package com.kyloth.serleena.persistence.memory;
+
+import com.kyloth.serleena.common.CheckpointReachedTelemetryEvent;
+import com.kyloth.serleena.common.TelemetryEvent;
+import com.kyloth.serleena.persistence.ITelemetryStorage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Implementazione di ITelemetryStorage per la persistenza in memoria.
+ *
+ * Il Tracciamento è memorizzato come array dei tempi dei checkpoint, nel
+ * formato di ITelemetryStorage.getCheckpointTimestamps(); gli eventi sono
+ * ricostruiti su richiesta.
+ *
+ * @use Viene creato da HeapTrack e HeapSnapshot, e restituito all'esterno dietro interfaccia ITelemetryStorage.
+ * @field timestamps : long[] Tempi dei checkpoint
+ * @field ghost : boolean Indica se il Tracciamento proviene dalla sincronizzazione
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+class HeapTelemetry implements ITelemetryStorage {
+
+    /**
+     * Valore restituito da duration() per Tracciamenti di cui non è
+     * possibile stabilire la durata.
+     */
+    static final long NO_DURATION = -1;
+
+    private final long[] timestamps;
+    private final boolean ghost;
+
+    /**
+     * Crea un nuovo oggetto HeapTelemetry.
+     *
+     * @param timestamps Tempi dei checkpoint.
+     * @param ghost Indica se il Tracciamento proviene dalla
+     *              sincronizzazione.
+     */
+    HeapTelemetry(long[] timestamps, boolean ghost) {
+        if (timestamps == null)
+            throw new IllegalArgumentException("Illegal null timestamps");
+        this.timestamps = timestamps;
+        this.ghost = ghost;
+    }
+
+    /**
+     * Crea un Tracciamento locale a partire dai suoi eventi.
+     *
+     * @param events Eventi del Tracciamento.
+     * @return Tracciamento creato.
+     */
+    static HeapTelemetry fromEvents(Iterable<TelemetryEvent> events) {
+        if (events == null)
+            throw new IllegalArgumentException("Illegal null events");
+
+        long[] timestamps = new long[0];
+        for (TelemetryEvent event : events)
+            if (event instanceof CheckpointReachedTelemetryEvent) {
+                int checkpoint = ((CheckpointReachedTelemetryEvent) event)
+                        .checkpointNumber();
+                if (checkpoint <= 0)
+                    throw new IllegalArgumentException(
+                            "Illegal checkpoint number");
+                if (checkpoint > timestamps.length) {
+                    int from = timestamps.length;
+                    timestamps = Arrays.copyOf(timestamps, checkpoint);
+                    Arrays.fill(timestamps, from, checkpoint, NO_TIMESTAMP);
+                }
+                timestamps[checkpoint - 1] = event.timestamp();
+            }
+        return new HeapTelemetry(timestamps, false);
+    }
+
+    /**
+     * Implementa ITelemetryStorage.getEvents().
+     *
+     * @return Eventi di attraversamento dei checkpoint, in ordine di
+     * checkpoint.
+     */
+    @Override
+    public Iterable<TelemetryEvent> getEvents() {
+        ArrayList<TelemetryEvent> list =
+                new ArrayList<TelemetryEvent>(timestamps.length);
+        for (int i = 0; i < timestamps.length; i++)
+            if (timestamps[i] != NO_TIMESTAMP)
+                list.add(new CheckpointReachedTelemetryEvent(timestamps[i],
+                        i + 1));
+        return list;
+    }
+
+    /**
+     * Implementa ITelemetryStorage.getCheckpointTimestamps().
+     *
+     * @return Tempi dei checkpoint.
+     */
+    @Override
+    public long[] getCheckpointTimestamps() {
+        return timestamps;
+    }
+
+    /**
+     * Indica se il Tracciamento proviene dalla sincronizzazione.
+     *
+     * @return True se il Tracciamento è "fantasma", false se è stato
+     * registrato localmente.
+     */
+    boolean isGhost() {
+        return ghost;
+    }
+
+    /**
+     * Restituisce la durata del Tracciamento, come differenza tra il tempo
+     * dell'ultimo checkpoint e quello del primo.
+     *
+     * @return Durata, o NO_DURATION se il Tracciamento non contiene il primo
+     * o l'ultimo checkpoint.
+     */
+    long duration() {
+        if (timestamps.length == 0 || timestamps[0] == NO_TIMESTAMP ||
+                timestamps[timestamps.length - 1] == NO_TIMESTAMP)
+            return NO_DURATION;
+        return timestamps[timestamps.length - 1] - timestamps[0];
+    }
+}
@@ -0,0 +1,209 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: HeapTrack.java
+ * Package: com.kyloth.serleena.persistence.memory
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ */
+
+package com.kyloth.serleena.persistence.memory;
+
+import com.kyloth.serleena.common.Checkpoint;
+import com.kyloth.serleena.common.CheckpointList;
+import com.kyloth.serleena.common.DirectAccessList;
+import com.kyloth.serleena.common.TelemetryEvent;
+import com.kyloth.serleena.persistence.ITelemetryStorage;
+import com.kyloth.serleena.persistence.ITrackStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Implementazione di ITrackStorage per la persistenza in memoria.
+ *
+ * I Checkpoint sono memorizzati in una CheckpointList. Il Tracciamento
+ * migliore viene aggiornato a ogni inserimento, senza scandire gli altri
+ * Tracciamenti.
+ *
+ * @use Viene creato da HeapSnapshot durante il caricamento dei dati, e restituito da HeapExperience dietro interfaccia ITrackStorage.
+ * @field uuid : UUID UUID del Percorso
+ * @field name : String Nome del Percorso
+ * @field checkpoints : CheckpointList Checkpoint del Percorso
+ * @field telemetries : List<HeapTelemetry> Tracciamenti del Percorso
+ * @field best : HeapTelemetry Tracciamento di durata minima
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+class HeapTrack implements ITrackStorage {
+
+    private final UUID uuid;
+    private final String name;
+    private final CheckpointList checkpoints;
+    private final List<HeapTelemetry> telemetries;
+    private HeapTelemetry best;
+
+    /**
+     * Crea un nuovo oggetto HeapTrack, privo di Tracciamenti.
+     *
+     * @param uuid UUID del Percorso.
+     * @param name Nome del Percorso.
+     * @param checkpoints Checkpoint del Percorso.
+     */
+    HeapTrack(UUID uuid, String name, CheckpointList checkpoints) {
+        if (uuid == null || name == null || checkpoints == null)
+            throw new IllegalArgumentException();
+        this.uuid = uuid;
+        this.name = name;
+        this.checkpoints = checkpoints;
+        this.telemetries = new ArrayList<HeapTelemetry>();
+    }
+
+    /**
+     * Aggiunge un Tracciamento al Percorso, aggiornando il Tracciamento
+     * migliore.
+     *
+     * @param telemetry Tracciamento da aggiungere.
+     */
+    synchronized void addTelemetry(HeapTelemetry telemetry) {
+        telemetries.add(telemetry);
+        long duration = telemetry.duration();
+        if (duration != HeapTelemetry.NO_DURATION &&
+                (best == null || duration < best.duration()))
+            best = telemetry;
+    }
+
+    /**
+     * Implementa ITrackStorage.createTelemetry().
+     *
+     * @param events Eventi del Tracciamento.
+     */
+    @Override
+    public void createTelemetry(Iterable<TelemetryEvent> events) {
+        addTelemetry(HeapTelemetry.fromEvents(events));
+    }
+
+    /**
+     * Implementa ITrackStorage.createTelemetries().
+     *
+     * I Tracciamenti vengono convertiti tutti prima di essere aggiunti, per
+     * cui un errore in uno di essi non ne aggiunge nessuno.
+     *
+     * @param telemetries Elenchi di eventi, uno per Tracciamento.
+     */
+    @Override
+    public void createTelemetries(
+            Iterable<Iterable<TelemetryEvent>> telemetries) {
+        if (telemetries == null)
+            throw new IllegalArgumentException();
+
+        List<HeapTelemetry> created = new ArrayList<HeapTelemetry>();
+        for (Iterable<TelemetryEvent> events : telemetries)
+            created.add(HeapTelemetry.fromEvents(events));
+        synchronized (this) {
+            for (HeapTelemetry telemetry : created)
+                addTelemetry(telemetry);
+        }
+    }
+
+    /**
+     * Implementa ITrackStorage.getTelemetries().
+     *
+     * @return Tutti i Tracciamenti del Percorso.
+     */
+    @Override
+    public Iterable<ITelemetryStorage> getTelemetries() {
+        return getTelemetries(true);
+    }
+
+    /**
+     * Implementa ITrackStorage.getTelemetries(boolean).
+     *
+     * @param includeGhost Indica se includere i Tracciamenti provenienti
+     *                     dalla sincronizzazione.
+     * @return Tracciamenti del Percorso.
+     */
+    @Override
+    public synchronized Iterable<ITelemetryStorage> getTelemetries(
+            boolean includeGhost) {
+        ArrayList<ITelemetryStorage> list =
+                new ArrayList<ITelemetryStorage>(telemetries.size());
+        for (HeapTelemetry telemetry : telemetries)
+            if (includeGhost || !telemetry.isGhost())
+                list.add(telemetry);
+        return list;
+    }
+
+    /**
+     * Implementa ITrackStorage.getBestTelemetry().
+     *
+     * @return Tracciamento di durata minima, o null se assente.
+     */
+    @Override
+    public synchronized ITelemetryStorage getBestTelemetry() {
+        return best;
+    }
+
+    /**
+     * Implementa ITrackStorage.getCheckpoints().
+     *
+     * @return Checkpoint del Percorso.
+     */
+    @Override
+    public DirectAccessList<Checkpoint> getCheckpoints() {
+        return checkpoints;
+    }
+
+    /**
+     * Implementa ITrackStorage.name().
+     *
+     * @return Nome del Percorso.
+     */
+    @Override
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Implementa ITrackStorage.getUUID().
+     *
+     * @return UUID del Percorso.
+     */
+    @Override
+    public UUID getUUID() {
+        return uuid;
+    }
+}
@@ -0,0 +1,116 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: HeapWeather.java
+ * Package: com.kyloth.serleena.persistence.memory
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ */
+
+package com.kyloth.serleena.persistence.memory;
+
+import com.kyloth.serleena.persistence.IWeatherStorage;
+import com.kyloth.serleena.persistence.WeatherForecastEnum;
+
+import java.util.Date;
+
+/**
+ * Implementazione di IWeatherStorage per la persistenza in memoria.
+ *
+ * @use Viene creato da HeapSnapshot durante il caricamento dei dati, e restituito da HeapDataSource dietro interfaccia IWeatherStorage.
+ * @field forecasts : WeatherForecastEnum[] Previsioni di mattino, pomeriggio e notte
+ * @field temperatures : int[] Temperature di mattino, pomeriggio e notte
+ * @field date : long Data delle previsioni, in millisecondi
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+class HeapWeather implements IWeatherStorage {
+
+    private final WeatherForecastEnum[] forecasts;
+    private final int[] temperatures;
+    private final long date;
+
+    /**
+     * Crea un nuovo oggetto HeapWeather.
+     *
+     * @param forecasts Previsioni di mattino, pomeriggio e notte.
+     * @param temperatures Temperature di mattino, pomeriggio e notte.
+     * @param date Data delle previsioni, in millisecondi.
+     */
+    HeapWeather(WeatherForecastEnum[] forecasts, int[] temperatures,
+                long date) {
+        if (forecasts == null || forecasts.length != 3 ||
+                temperatures == null || temperatures.length != 3)
+            throw new IllegalArgumentException();
+        this.forecasts = forecasts;
+        this.temperatures = temperatures;
+        this.date = date;
+    }
+
+    @Override
+    public WeatherForecastEnum getMorningForecast() {
+        return forecasts[0];
+    }
+
+    @Override
+    public WeatherForecastEnum getAfternoonForecast() {
+        return forecasts[1];
+    }
+
+    @Override
+    public WeatherForecastEnum getNightForecast() {
+        return forecasts[2];
+    }
+
+    @Override
+    public int getMorningTemperature() {
+        return temperatures[0];
+    }
+
+    @Override
+    public int getAfternoonTemperature() {
+        return temperatures[1];
+    }
+
+    @Override
+    public int getNightTemperature() {
+        return temperatures[2];
+    }
+
+    @Override
+    public Date date() {
+        return new Date(date);
+    }
+}
@@ -0,0 +1,151 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: CheckpointTimestamps.java
+ * Package: com.kyloth.serleena.persistence.sqlite
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ */
+
+package com.kyloth.serleena.persistence.sqlite;
+
+import com.kyloth.serleena.persistence.ITelemetryStorage;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Raccoglie i tempi dei checkpoint di un Tracciamento nel formato di
+ * ITelemetryStorage.getCheckpointTimestamps(), riutilizzando lo stesso
+ * array tra un Tracciamento e il successivo.
+ *
+ * Fornisce inoltre le operazioni comuni su tale formato: il calcolo della
+ * durata del Tracciamento e la conversione da e verso BLOB.
+ *
+ * @use Viene utilizzato da SerleenaSQLiteDataSource e SerleenaDatabase per costruire i tempi dei Tracciamenti durante la scansione dei cursori, e per memorizzare e rileggere il Tracciamento migliore di ciascun Percorso nella tabella TABLE_BEST_TELEMETRIES.
+ * @field buffer : long[] Tempi raccolti
+ * @field count : int Numero di elementi validi di buffer
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+class CheckpointTimestamps {
+
+    /**
+     * Valore restituito da duration() per Tracciamenti di cui non è
+     * possibile stabilire la durata.
+     */
+    public static final int NO_DURATION = -1;
+
+    private long[] buffer = new long[16];
+    private int count = 0;
+
+    /**
+     * Rimuove i tempi raccolti.
+     */
+    public void clear() {
+        count = 0;
+    }
+
+    /**
+     * Registra il tempo di attraversamento di un checkpoint.
+     *
+     * @param checkpoint Numero del checkpoint, a partire da 1.
+     * @param timestamp Tempo di attraversamento.
+     */
+    public void put(int checkpoint, long timestamp) {
+        if (checkpoint <= 0)
+            throw new IllegalArgumentException("Illegal checkpoint number");
+
+        if (checkpoint > buffer.length)
+            buffer = Arrays.copyOf(buffer,
+                    Math.max(checkpoint, buffer.length * 2));
+        if (checkpoint > count) {
+            Arrays.fill(buffer, count, checkpoint - 1,
+                    ITelemetryStorage.NO_TIMESTAMP);
+            count = checkpoint;
+        }
+        buffer[checkpoint - 1] = timestamp;
+    }
+
+    /**
+     * Restituisce una copia dei tempi raccolti.
+     *
+     * @return Tempi dei checkpoint.
+     */
+    public long[] toArray() {
+        return Arrays.copyOf(buffer, count);
+    }
+
+    /**
+     * Calcola la durata di un Tracciamento come differenza tra il tempo
+     * dell'ultimo checkpoint e quello del primo.
+     *
+     * @param timestamps Tempi dei checkpoint.
+     * @return Durata, o NO_DURATION se il Tracciamento non contiene il primo
+     * o l'ultimo checkpoint.
+     */
+    public static int duration(long[] timestamps) {
+        if (timestamps.length == 0 ||
+                timestamps[0] == ITelemetryStorage.NO_TIMESTAMP ||
+                timestamps[timestamps.length - 1] ==
+                        ITelemetryStorage.NO_TIMESTAMP)
+            return NO_DURATION;
+        return (int) (timestamps[timestamps.length - 1] - timestamps[0]);
+    }
+
+    /**
+     * Converte i tempi dei checkpoint in un BLOB.
+     *
+     * @param timestamps Tempi dei checkpoint.
+     * @return BLOB di 8 byte per checkpoint.
+     */
+    public static byte[] pack(long[] timestamps) {
+        ByteBuffer bytes = ByteBuffer.allocate(timestamps.length * 8);
+        bytes.asLongBuffer().put(timestamps);
+        return bytes.array();
+    }
+
+    /**
+     * Ricostruisce i tempi dei checkpoint da un BLOB prodotto da pack().
+     *
+     * @param blob BLOB da convertire.
+     * @return Tempi dei checkpoint.
+     */
+    public static long[] unpack(byte[] blob) {
+        long[] timestamps = new long[blob.length / 8];
+        ByteBuffer.wrap(blob).asLongBuffer().get(timestamps);
+        return timestamps;
+    }
+}
@@ -0,0 +1,278 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: DatabaseMaintenance.java
+ * Package: com.kyloth.serleena.persistence.sqlite
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ * 1.0.1    Filippo Sestini  Conversione all'auto_vacuum incrementale
+ *                                          affidata ai caricamenti, errori
+ *                                          del controllo periodico
+ *                                          segnalati nel log.
+ */
+
+package com.kyloth.serleena.persistence.sqlite;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+/**
+ * Esegue in background la manutenzione del database dopo i caricamenti.
+ *
+ * Ogni caricamento di SerleenaSQLiteDataSink cancella e reinserisce tutti
+ * i dati, lasciando nel file pagine libere e sparse e statistiche del
+ * pianificatore non aggiornate. Quando la versione dei dati di
+ * SerleenaDatabase cambia, viene eseguito ANALYZE; quando la frazione di
+ * pagine libere supera la soglia, queste vengono restituite al file system
+ * con PRAGMA incremental_vacuum, a blocchi di VACUUM_STEP_PAGES pagine
+ * ciascuno in una propria transazione. Un database creato prima
+ * dell'introduzione di auto_vacuum richiede un VACUUM completo, che non
+ * può essere interrotto: la conversione è quindi lasciata al successivo
+ * caricamento di SerleenaSQLiteDataSink, e fino ad allora le pagine libere
+ * non vengono restituite.
+ *
+ * L'oggetto IMaintenanceGuard viene interrogato prima di ogni intervento e
+ * tra un blocco e l'altro, in modo che la manutenzione non venga eseguita
+ * e si interrompa quando non è consentita. Un errore del database durante
+ * il controllo periodico viene segnalato nel log, e il controllo riprova
+ * all'intervallo successivo.
+ *
+ * @use Viene creato da SerleenaApplication, che con start() ne avvia il controllo periodico in un thread in background. L'esito dell'ultimo intervento è disponibile con getLastReport().
+ * @field dbHelper : SerleenaDatabase Database da mantenere
+ * @field guard : IMaintenanceGuard Stabilisce se la manutenzione è consentita
+ * @field freePagesThreshold : double Frazione di pagine libere oltre la quale vengono liberate
+ * @field analyzedVersion : int Versione dei dati delle ultime statistiche calcolate
+ * @field lastReport : MaintenanceReport Esito dell'ultimo intervento, o null
+ * @field runLock : Object Serializza gli interventi
+ * @field worker : Thread Thread del controllo periodico, o null
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+public class DatabaseMaintenance {
+
+    /**
+     * Intervallo tra due controlli consecutivi, in millisecondi.
+     */
+    public static final long CHECK_INTERVAL_MILLIS = 60000;
+
+    /**
+     * Soglia predefinita della frazione di pagine libere.
+     */
+    public static final double DEFAULT_FREE_PAGES_THRESHOLD = 0.1;
+
+    /**
+     * Numero di pagine liberate in ciascuna transazione.
+     */
+    public static final int VACUUM_STEP_PAGES = 64;
+
+    /**
+     * Valore di PRAGMA auto_vacuum per la modalità incrementale.
+     */
+    static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    private static final String TAG = "DatabaseMaintenance";
+    private static final String QUERY_HAS_STATISTICS =
+            "SELECT COUNT(*) FROM sqlite_master WHERE name = 'sqlite_stat1'";
+
+    private final SerleenaDatabase dbHelper;
+    private final IMaintenanceGuard guard;
+    private final double freePagesThreshold;
+    private final Object runLock = new Object();
+    private int analyzedVersion;
+    private volatile MaintenanceReport lastReport;
+    private Thread worker;
+
+    /**
+     * Crea un nuovo oggetto DatabaseMaintenance.
+     *
+     * @param dbHelper Database da mantenere.
+     * @param guard Stabilisce se la manutenzione è consentita.
+     * @param freePagesThreshold Frazione di pagine libere oltre la quale
+     *                           queste vengono liberate, compresa tra 0 e 1.
+     */
+    public DatabaseMaintenance(SerleenaDatabase dbHelper,
+                               IMaintenanceGuard guard,
+                               double freePagesThreshold) {
+        if (dbHelper == null)
+            throw new IllegalArgumentException("Illegal null database");
+        if (guard == null)
+            throw new IllegalArgumentException("Illegal null guard");
+        if (!(freePagesThreshold >= 0 && freePagesThreshold < 1))
+            throw new IllegalArgumentException("Illegal threshold");
+        this.dbHelper = dbHelper;
+        this.guard = guard;
+        this.freePagesThreshold = freePagesThreshold;
+        this.analyzedVersion = dbHelper.dataVersion();
+    }
+
+    /**
+     * Avvia in un thread in background il controllo periodico, eseguito
+     * ogni CHECK_INTERVAL_MILLIS millisecondi. Se il controllo è già in
+     * corso, il metodo non ha effetto.
+     */
+    public synchronized void start() {
+        if (worker != null && worker.isAlive())
+            return;
+
+        worker = new Thread("serleena-maintenance") {
+            @Override
+            public void run() {
+                try {
+                    while (!isInterrupted()) {
+                        try {
+                            runOnce();
+                        } catch (SQLiteException e) {
+                            Log.e(TAG, "Maintenance check failed", e);
+                        }
+                        Thread.sleep(CHECK_INTERVAL_MILLIS);
+                    }
+                } catch (InterruptedException e) {
+                    // Interrotto da stop()
+                }
+            }
+        };
+        worker.setPriority(Thread.MIN_PRIORITY);
+        worker.start();
+    }
+
+    /**
+     * Interrompe il controllo periodico.
+     */
+    public synchronized void stop() {
+        if (worker != null)
+            worker.interrupt();
+        worker = null;
+    }
+
+    /**
+     * Restituisce l'esito dell'ultimo intervento eseguito.
+     *
+     * @return Esito dell'ultimo intervento, o null se non ne è stato
+     * eseguito alcuno.
+     */
+    public MaintenanceReport getLastReport() {
+        return lastReport;
+    }
+
+    /**
+     * Esegue un intervento di manutenzione, se necessario e consentito.
+     *
+     * Le statistiche vengono aggiornate se i dati sono stati caricati
+     * dall'ultimo intervento o se non sono mai state calcolate; le pagine
+     * libere vengono restituite se superano la soglia e il database usa
+     * l'auto_vacuum incrementale.
+     *
+     * @return Esito dell'intervento, o null se non è stato necessario o
+     * consentito.
+     */
+    public MaintenanceReport runOnce() {
+        synchronized (runLock) {
+            if (!guard.canRunMaintenance())
+                return null;
+
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            int version = dbHelper.dataVersion();
+            long pageSize = pragma(db, "page_size");
+            long pagesBefore = pragma(db, "page_count");
+            long freeBefore = pragma(db, "freelist_count");
+
+            boolean analyze = version != analyzedVersion ||
+                    DatabaseUtils.longForQuery(db, QUERY_HAS_STATISTICS,
+                            null) == 0;
+            boolean vacuum =
+                    pragma(db, "auto_vacuum") == AUTO_VACUUM_INCREMENTAL &&
+                    fragmentation(freeBefore, pagesBefore) > freePagesThreshold;
+            if (!analyze && !vacuum)
+                return null;
+
+            if (analyze) {
+                db.execSQL("ANALYZE");
+                analyzedVersion = version;
+            }
+            if (vacuum)
+                vacuum(db, freeBefore);
+
+            long pagesAfter = pragma(db, "page_count");
+            long freeAfter = pragma(db, "freelist_count");
+            MaintenanceReport report = new MaintenanceReport(
+                    pagesBefore * pageSize,
+                    fragmentation(freeBefore, pagesBefore),
+                    pagesAfter * pageSize,
+                    fragmentation(freeAfter, pagesAfter),
+                    analyze, freeAfter < freeBefore);
+            lastReport = report;
+            return report;
+        }
+    }
+
+    /**
+     * Restituisce al file system le pagine libere del database, fermandosi
+     * se la manutenzione smette di essere consentita.
+     */
+    private void vacuum(SQLiteDatabase db, long freePages) {
+        // Ogni esecuzione di incremental_vacuum(1) libera una pagina: le
+        // pagine sono liberate a blocchi per poter interrompere il lavoro
+        // tra una transazione e l'altra.
+        SQLiteStatement step = db.compileStatement(
+                "PRAGMA incremental_vacuum(1)");
+        try {
+            long freed = 0;
+            while (freed < freePages && guard.canRunMaintenance()) {
+                db.beginTransactionNonExclusive();
+                try {
+                    for (int i = 0; i < VACUUM_STEP_PAGES && freed < freePages;
+                         i++, freed++)
+                        step.execute();
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+            }
+        } finally {
+            step.close();
+        }
+    }
+
+    private static long pragma(SQLiteDatabase db, String name) {
+        return DatabaseUtils.longForQuery(db, "PRAGMA " + name, null);
+    }
+
+    private static double fragmentation(long freePages, long pages) {
+        return pages == 0 ? 0 : (double) freePages / pages;
+    }
+}
@@ -37,17 +37,33 @@
  * Version  Programmer       Changes
  * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
  *                                          e documentazione in Javadoc.
+ * 1.0.1    Filippo Sestini  Aggiunti getTracks(SQLiteDAOExperience,
+ *                                          boolean) e getCheckpoints().
+ * 1.0.2    Filippo Sestini  Aggiunto createTelemetries().
+ * 1.0.3    Filippo Sestini  Aggiunto getBestTelemetry().
+ * 1.0.4    Filippo Sestini  Aggiunti getTelemetryDurations(),
+ *                                          getTrackStatistics() e
+ *                                          getBestSplits().
+ * 1.0.5    Filippo Sestini  Aggiunto getUserPoints(SQLiteDAOExperience,
+ *                                          IRegion).
+ * 1.0.6    Filippo Sestini  Tracciamenti archiviati inclusi nelle
+ *                                          statistiche sui Percorsi.
  */
 
 package com.kyloth.serleena.persistence.sqlite;
 
+import com.kyloth.serleena.common.Checkpoint;
+import com.kyloth.serleena.common.DirectAccessList;
 import com.kyloth.serleena.common.GeoPoint;
 import com.kyloth.serleena.common.IQuadrant;
+import com.kyloth.serleena.common.IRegion;
 import com.kyloth.serleena.common.TelemetryEvent;
 import com.kyloth.serleena.common.UserPoint;
 import com.kyloth.serleena.persistence.IPersistenceDataSource;
 import com.kyloth.serleena.persistence.NoSuchQuadrantException;
 
+import java.util.Map;
+
 /**
  * Descrive l’interfaccia di un Data Access Object per accesso a basso livello
  * al database SQLite dell’applicazione. Viene utilizzata dagli oggetti
@@ -67,6 +83,29 @@ interface ISerleenaSQLiteDataSource extends IPersistenceDataSource {
      */
     Iterable<SQLiteDAOTrack> getTracks(SQLiteDAOExperience experience);
 
+    /**
+     * Restituisce i Percorsi associati a una specifica esperienza.
+     *
+     * Se withCheckpoints è true, i Checkpoint di tutti i Percorsi vengono
+     * letti insieme; altrimenti vengono letti al primo accesso tramite
+     * getCheckpoints().
+     *
+     * @param experience Esperienza di cui si vogliono ottenere i Percorsi.
+     * @param withCheckpoints Indica se leggere subito i Checkpoint.
+     * @return Insieme enumerabile di Percorsi.
+     */
+    Iterable<SQLiteDAOTrack> getTracks(SQLiteDAOExperience experience,
+                                       boolean withCheckpoints);
+
+    /**
+     * Restituisce i Checkpoint di un Percorso, ordinati secondo il loro
+     * numero.
+     *
+     * @param track Percorso di cui si vogliono ottenere i Checkpoint.
+     * @return Elenco di Checkpoint del Percorso.
+     */
+    DirectAccessList<Checkpoint> getCheckpoints(SQLiteDAOTrack track);
+
     /**
      * Restituisce i Tracciamenti associati a uno specifico Percorso.
      *
@@ -75,6 +114,53 @@ interface ISerleenaSQLiteDataSource extends IPersistenceDataSource {
      */
     Iterable<SQLiteDAOTelemetry> getTelemetries(SQLiteDAOTrack track);
 
+    /**
+     * Restituisce il Tracciamento di durata minima di uno specifico
+     * Percorso.
+     *
+     * @param track Percorso di cui si vuole ottenere il Tracciamento
+     *              migliore.
+     * @return Tracciamento migliore, o null se il Percorso non ne ha.
+     */
+    SQLiteDAOTelemetry getBestTelemetry(SQLiteDAOTrack track);
+
+    /**
+     * Restituisce la durata di ciascun Tracciamento di uno specifico
+     * Percorso, intesa come il tempo trascorso tra il primo e l'ultimo
+     * evento registrato.
+     *
+     * Sono esclusi i Tracciamenti che non contengono l'attraversamento del
+     * primo checkpoint. Sono compresi i Tracciamenti archiviati da
+     * RetentionEngine, come in getTrackStatistics() e getBestSplits().
+     *
+     * @param track Percorso di cui si vogliono ottenere le durate dei
+     *              Tracciamenti.
+     * @return Durate dei Tracciamenti, indicizzate per ID.
+     */
+    Map<Integer, Integer> getTelemetryDurations(SQLiteDAOTrack track);
+
+    /**
+     * Restituisce numero, durata minima e durata media dei Tracciamenti di
+     * uno specifico Percorso, secondo la definizione di durata di
+     * getTelemetryDurations().
+     *
+     * @param track Percorso di cui si vogliono ottenere le statistiche.
+     * @return Statistiche sui Tracciamenti del Percorso.
+     */
+    TrackStatistics getTrackStatistics(SQLiteDAOTrack track);
+
+    /**
+     * Restituisce, per ciascun checkpoint di uno specifico Percorso, il
+     * tempo minimo impiegato per raggiungerlo dal primo checkpoint tra
+     * tutti i Tracciamenti.
+     *
+     * @param track Percorso di cui si vogliono ottenere i tempi parziali.
+     * @return Array in cui l'elemento i contiene il tempo parziale minimo
+     * del checkpoint i + 1, o ITelemetryStorage.NO_TIMESTAMP se nessun
+     * Tracciamento lo ha raggiunto.
+     */
+    long[] getBestSplits(SQLiteDAOTrack track);
+
     /**
      * Restituisce i Punti Utente associati a una specifica Esperienza.
      *
@@ -83,6 +169,16 @@ interface ISerleenaSQLiteDataSource extends IPersistenceDataSource {
      */
     Iterable<UserPoint> getUserPoints(SQLiteDAOExperience experience);
 
+    /**
+     * Restituisce i Punti Utente di una specifica Esperienza contenuti
+     * nell'area geografica specificata.
+     *
+     * @param experience Esperienza di cui si vogliono ottenere i Punti Utente.
+     * @param region Area geografica entro cui devono trovarsi i Punti Utente.
+     * @return Insieme enumerabile di Punti Utente.
+     */
+    Iterable<UserPoint> getUserPoints(SQLiteDAOExperience experience,
+                                      IRegion region);
 
     /**
      * Aggiunge un nuovo punto utente al database, associato all'Esperienza
@@ -102,6 +198,16 @@ interface ISerleenaSQLiteDataSource extends IPersistenceDataSource {
      */
     void createTelemetry(Iterable<TelemetryEvent> events, SQLiteDAOTrack track);
 
+    /**
+     * Aggiunge al database più Tracciamenti associati al Percorso
+     * specificato, in un'unica transazione.
+     *
+     * @param telemetries Elenchi di eventi, uno per Tracciamento.
+     * @param track Percorso a cui associare i Tracciamenti.
+     */
+    void createTelemetries(Iterable<Iterable<TelemetryEvent>> telemetries,
+                           SQLiteDAOTrack track);
+
     /**
      * Restituisce uno dei quadranti presenti nel database per una specifica
      * posizione geografica e un'Esperienza.
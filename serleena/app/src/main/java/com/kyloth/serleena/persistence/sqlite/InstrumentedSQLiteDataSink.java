@@ -0,0 +1,106 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: InstrumentedSQLiteDataSink.java
+ * Package: com.kyloth.serleena.persistence.sqlite
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ * 1.0.1    Filippo Sestini  Dump passato inalterato al datasink.
+ */
+
+package com.kyloth.serleena.persistence.sqlite;
+
+import com.kyloth.serleena.persistence.IPersistenceDataSink;
+import com.kyloth.serleena.synchronization.InboundDump;
+
+/**
+ * Implementazione di ISerleenaSQLiteDataSink che misura il caricamento dei
+ * dump tramite un oggetto PersistenceMetrics.
+ *
+ * Per il metodo "load" vengono registrate come righe le istruzioni del
+ * dump eseguite, e come testo la loro lunghezza complessiva. Le istruzioni
+ * sono contate con una lettura separata del dump, che viene passato
+ * inalterato al datasink sottostante: questo può quindi riconoscerne il
+ * tipo concreto.
+ *
+ * @use Viene creato da SerleenaApplication attorno al datasink dell'applicazione, e utilizzato al suo posto da Synchronizer.
+ * @field delegate : IPersistenceDataSink Datasink di cui misurare le chiamate
+ * @field metrics : PersistenceMetrics Misure delle chiamate
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+public class InstrumentedSQLiteDataSink implements ISerleenaSQLiteDataSink {
+
+    private final IPersistenceDataSink delegate;
+    private final PersistenceMetrics metrics;
+
+    /**
+     * Crea un nuovo oggetto InstrumentedSQLiteDataSink.
+     *
+     * @param delegate Datasink di cui misurare le chiamate.
+     * @param metrics Misure delle chiamate.
+     */
+    public InstrumentedSQLiteDataSink(IPersistenceDataSink delegate,
+                                      PersistenceMetrics metrics) {
+        if (delegate == null)
+            throw new IllegalArgumentException("Illegal null data sink");
+        if (metrics == null)
+            throw new IllegalArgumentException("Illegal null metrics");
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Implementa IPersistenceDataSink.load().
+     *
+     * @param dump Dump da caricare.
+     */
+    @Override
+    public void load(InboundDump dump) {
+        PersistenceMetrics.Call call = metrics.begin();
+        if (call == null) {
+            delegate.load(dump);
+            return;
+        }
+
+        try {
+            for (String instr : dump)
+                metrics.count(1, instr.length());
+            delegate.load(dump);
+        } finally {
+            metrics.end(call, "load");
+        }
+    }
+}
@@ -0,0 +1,407 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: InstrumentedSQLiteDataSource.java
+ * Package: com.kyloth.serleena.persistence.sqlite
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ * 1.0.1    Filippo Sestini  Misura di search().
+ * 1.0.2    Filippo Sestini  Misura di getUserPoints(SQLiteDAOExperience,
+ *                                          IRegion).
+ * 1.0.3    Filippo Sestini  Misura di flush().
+ * 1.0.4    Filippo Sestini  Esperienze e Percorsi ricreati solo durante la
+ *                                          raccolta, e al momento
+ *                                          dell'enumerazione.
+ */
+
+package com.kyloth.serleena.persistence.sqlite;
+
+import com.kyloth.serleena.common.Checkpoint;
+import com.kyloth.serleena.common.DirectAccessList;
+import com.kyloth.serleena.common.EmergencyContact;
+import com.kyloth.serleena.common.GeoPoint;
+import com.kyloth.serleena.common.IQuadrant;
+import com.kyloth.serleena.common.IRegion;
+import com.kyloth.serleena.common.NoSuchWeatherForecastException;
+import com.kyloth.serleena.common.SearchResult;
+import com.kyloth.serleena.common.TelemetryEvent;
+import com.kyloth.serleena.common.UserPoint;
+import com.kyloth.serleena.persistence.IExperienceStorage;
+import com.kyloth.serleena.persistence.IWeatherStorage;
+import com.kyloth.serleena.persistence.NoSuchQuadrantException;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Implementazione di ISerleenaSQLiteDataSource che misura le chiamate a un
+ * SerleenaSQLiteDataSource tramite un oggetto PersistenceMetrics.
+ *
+ * Se la raccolta è attiva, Esperienze e Percorsi restituiti vengono
+ * ricreati, al momento dell'enumerazione, in modo da fare riferimento a
+ * questo oggetto, per cui vengono misurate anche le chiamate che essi
+ * eseguono. Se la raccolta non è attiva vengono restituiti gli oggetti del
+ * DAO misurato, senza costi aggiuntivi. Le pagine delle liste di contatti di emergenza sono
+ * lette dopo la fine della chiamata a getContacts(), e non le vengono
+ * attribuite; lo stesso vale per i risultati di search().
+ *
+ * @use Viene creato da SerleenaApplication attorno al SerleenaSQLiteDataSource dell'applicazione, e utilizzato al suo posto da SerleenaDataSource e Synchronizer. Con la memorizzazione suddivisa viene creato da ShardedSQLiteDataSource attorno al DAO di ogni database.
+ * @field delegate : SerleenaSQLiteDataSource DAO di cui misurare le chiamate
+ * @field metrics : PersistenceMetrics Misure delle chiamate
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+public class InstrumentedSQLiteDataSource implements ISerleenaSQLiteDataSource {
+
+    private final SerleenaSQLiteDataSource delegate;
+    private final PersistenceMetrics metrics;
+
+    /**
+     * Crea un nuovo oggetto InstrumentedSQLiteDataSource.
+     *
+     * @param delegate DAO di cui misurare le chiamate.
+     * @param metrics Misure delle chiamate.
+     */
+    public InstrumentedSQLiteDataSource(SerleenaSQLiteDataSource delegate,
+                                        PersistenceMetrics metrics) {
+        if (delegate == null)
+            throw new IllegalArgumentException("Illegal null data source");
+        if (metrics == null)
+            throw new IllegalArgumentException("Illegal null metrics");
+        this.delegate = delegate;
+        this.metrics = metrics;
+        delegate.getStatements().setMetrics(metrics);
+    }
+
+    /**
+     * Ricrea i Percorsi restituiti dal DAO misurato, al momento
+     * dell'enumerazione, in modo che facciano riferimento a questo oggetto.
+     */
+    private Iterable<SQLiteDAOTrack> wrap(Iterable<SQLiteDAOTrack> tracks,
+                                          final boolean withCheckpoints) {
+        final ISerleenaSQLiteDataSource source = this;
+        return new Rewrapped<SQLiteDAOTrack>(tracks) {
+            @Override
+            protected SQLiteDAOTrack wrap(SQLiteDAOTrack t) {
+                return withCheckpoints ?
+                        new SQLiteDAOTrack(t.getCheckpoints(), t.getUUID(),
+                                t.name(), source) :
+                        new SQLiteDAOTrack(t.getUUID(), t.name(), source);
+            }
+        };
+    }
+
+    @Override
+    public Iterable<IExperienceStorage> getExperiences() {
+        PersistenceMetrics.Call call = metrics.begin();
+        if (call == null)
+            return delegate.getExperiences();
+        try {
+            final ISerleenaSQLiteDataSource source = this;
+            return new Rewrapped<IExperienceStorage>(
+                    delegate.getExperiences()) {
+                @Override
+                protected IExperienceStorage wrap(IExperienceStorage e) {
+                    return new SQLiteDAOExperience(e.getName(), e.getUUID(),
+                            source);
+                }
+            };
+        } finally {
+            metrics.end(call, "getExperiences");
+        }
+    }
+
+    @Override
+    public IWeatherStorage getWeatherInfo(GeoPoint location, Date date)
+            throws NoSuchWeatherForecastException {
+        PersistenceMetrics.Call call = metrics.begin();
+        try {
+            return delegate.getWeatherInfo(location, date);
+        } finally {
+            metrics.end(call, "getWeatherInfo");
+        }
+    }
+
+    @Override
+    public DirectAccessList<EmergencyContact> getContacts(GeoPoint location) {
+        PersistenceMetrics.Call call = metrics.begin();
+        try {
+            return delegate.getContacts(location);
+        } finally {
+            metrics.end(call, "getContacts");
+        }
+    }
+
+    @Override
+    public DirectAccessList<SearchResult> search(String text) {
+        PersistenceMetrics.Call call = metrics.begin();
+        try {
+            return delegate.search(text);
+        } finally {
+            metrics.end(call, "search");
+        }
+    }
+
+    @Override
+    public Iterable<SQLiteDAOTrack> getTracks(SQLiteDAOExperience experience) {
+        PersistenceMetrics.Call call = metrics.begin();
+        if (call == null)
+            return delegate.getTracks(experience);
+        try {
+            return wrap(delegate.getTracks(experience), false);
+        } finally {
+            metrics.end(call, "getTracks");
+        }
+    }
+
+    @Override
+    public Iterable<SQLiteDAOTrack> getTracks(SQLiteDAOExperience experience,
+                                              boolean withCheckpoints) {
+        PersistenceMetrics.Call call = metrics.begin();
+        if (call == null)
+            return delegate.getTracks(experience, withCheckpoints);
+        try {
+            return wrap(delegate.getTracks(experience, withCheckpoints),
+                    withCheckpoints);
+        } finally {
+            metrics.end(call, withCheckpoints ?
+                    "getTracksWithCheckpoints" : "getTracks");
+        }
+    }
+
+    @Override
+    public DirectAccessList<Checkpoint> getCheckpoints(SQLiteDAOTrack track) {
+        PersistenceMetrics.Call call = metrics.begin();
+        try {
+            return delegate.getCheckpoints(track);
+        } finally {
+            metrics.end(call, "getCheckpoints");
+        }
+    }
+
+    @Override
+    public Iterable<SQLiteDAOTelemetry> getTelemetries(SQLiteDAOTrack track) {
+        PersistenceMetrics.Call call = metrics.begin();
+        try {
+            return delegate.getTelemetries(track);
+        } finally {
+            metrics.end(call, "getTelemetries");
+        }
+    }
+
+    @Override
+    public Iterable<SQLiteDAOTelemetry> getTelemetries(SQLiteDAOTrack track,
+                                                       boolean includeGhost) {
+        PersistenceMetrics.Call call = metrics.begin();
+        try {
+            return delegate.getTelemetries(track, includeGhost);
+        } finally {
+            metrics.end(call, "getTelemetries");
+        }
+    }
+
+    @Override
+    public SQLiteDAOTelemetry getBestTelemetry(SQLiteDAOTrack track) {
+        PersistenceMetrics.Call call = metrics.begin();
+        try {
+            return delegate.getBestTelemetry(track);
+        } finally {
+            metrics.end(call, "getBestTelemetry");
+        }
+    }
+
+    @Override
+    public Map<Integer, Integer> getTelemetryDurations(SQLiteDAOTrack track) {
+        PersistenceMetrics.Call call = metrics.begin();
+        try {
+            return delegate.getTelemetryDurations(track);
+        } finally {
+            metrics.end(call, "getTelemetryDurations");
+        }
+    }
+
+    @Override
+    public TrackStatistics getTrackStatistics(SQLiteDAOTrack track) {
+        PersistenceMetrics.Call call = metrics.begin();
+        try {
+            return delegate.getTrackStatistics(track);
+        } finally {
+            metrics.end(call, "getTrackStatistics");
+        }
+    }
+
+    @Override
+    public long[] getBestSplits(SQLiteDAOTrack track) {
+        PersistenceMetrics.Call call = metrics.begin();
+        try {
+            return delegate.getBestSplits(track);
+        } finally {
+            metrics.end(call, "getBestSplits");
+        }
+    }
+
+    @Override
+    public Iterable<UserPoint> getUserPoints(SQLiteDAOExperience experience) {
+        PersistenceMetrics.Call call = metrics.begin();
+        try {
+            return delegate.getUserPoints(experience);
+        } finally {
+            metrics.end(call, "getUserPoints");
+        }
+    }
+
+    @Override
+    public Iterable<UserPoint> getUserPoints(SQLiteDAOExperience experience,
+                                             boolean localOnly) {
+        PersistenceMetrics.Call call = metrics.begin();
+        try {
+            return delegate.getUserPoints(experience, localOnly);
+        } finally {
+            metrics.end(call, "getUserPoints");
+        }
+    }
+
+    @Override
+    public Iterable<UserPoint> getUserPoints(SQLiteDAOExperience experience,
+                                             IRegion region) {
+        PersistenceMetrics.Call call = metrics.begin();
+        try {
+            return delegate.getUserPoints(experience, region);
+        } finally {
+            metrics.end(call, "getUserPointsInRegion");
+        }
+    }
+
+    @Override
+    public void addUserPoint(SQLiteDAOExperience experience,
+                             UserPoint point) {
+        PersistenceMetrics.Call call = metrics.begin();
+        try {
+            delegate.addUserPoint(experience, point);
+        } finally {
+            metrics.end(call, "addUserPoint");
+        }
+    }
+
+    @Override
+    public void createTelemetry(Iterable<TelemetryEvent> events,
+                                SQLiteDAOTrack track) {
+        PersistenceMetrics.Call call = metrics.begin();
+        try {
+            delegate.createTelemetry(events, track);
+        } finally {
+            metrics.end(call, "createTelemetry");
+        }
+    }
+
+    @Override
+    public void createTelemetries(
+            Iterable<Iterable<TelemetryEvent>> telemetries,
+            SQLiteDAOTrack track) {
+        PersistenceMetrics.Call call = metrics.begin();
+        try {
+            delegate.createTelemetries(telemetries, track);
+        } finally {
+            metrics.end(call, "createTelemetries");
+        }
+    }
+
+    @Override
+    public IQuadrant getQuadrant(GeoPoint location,
+                                 SQLiteDAOExperience experience)
+            throws NoSuchQuadrantException {
+        PersistenceMetrics.Call call = metrics.begin();
+        try {
+            return delegate.getQuadrant(location, experience);
+        } finally {
+            metrics.end(call, "getQuadrant");
+        }
+    }
+
+    @Override
+    public void flush() {
+        PersistenceMetrics.Call call = metrics.begin();
+        try {
+            delegate.flush();
+        } finally {
+            metrics.end(call, "flush");
+        }
+    }
+
+    /**
+     * Insieme enumerabile che ricrea gli elementi di un altro al momento
+     * della loro enumerazione.
+     *
+     * @field items : Iterable<T> Elementi originali
+     */
+    private abstract static class Rewrapped<T> implements Iterable<T> {
+
+        private final Iterable<T> items;
+
+        Rewrapped(Iterable<T> items) {
+            this.items = items;
+        }
+
+        /**
+         * Ricrea un elemento.
+         *
+         * @param item Elemento originale.
+         * @return Elemento ricreato.
+         */
+        protected abstract T wrap(T item);
+
+        @Override
+        public Iterator<T> iterator() {
+            final Iterator<T> it = items.iterator();
+            return new Iterator<T>() {
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public T next() {
+                    return wrap(it.next());
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+}
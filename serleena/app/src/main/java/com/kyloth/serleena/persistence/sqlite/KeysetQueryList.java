@@ -0,0 +1,349 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: KeysetQueryList.java
+ * Package: com.kyloth.serleena.persistence.sqlite
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ * 1.0.1    Filippo Sestini  Dimensione, chiavi e pagina rilette al cambio
+ *                                          della versione dei dati.
+ */
+
+package com.kyloth.serleena.persistence.sqlite;
+
+import android.database.Cursor;
+
+import com.kyloth.serleena.common.DirectAccessList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Lista ad accesso casuale i cui elementi sono letti dal database solo
+ * quando richiesti, una pagina di righe alla volta, con paginazione per
+ * chiave.
+ *
+ * A differenza di PagedQueryList, ogni pagina successiva alla prima è letta
+ * a partire dalla chiave di ordinamento dell'ultima riga della pagina
+ * precedente, invece che saltando con OFFSET le righe già lette: se la
+ * query è servita da un indice nello stesso ordine, la lettura di una
+ * pagina non dipende dalla sua posizione nel risultato. Le chiavi delle
+ * pagine già lette sono conservate, per cui tornare a una pagina
+ * precedente costa una sola query; raggiungere una pagina mai letta
+ * richiede invece la lettura di tutte quelle che la precedono.
+ *
+ * Come in PagedQueryList, se i dati del database vengono sostituiti o una
+ * pagina non contiene l'elemento richiesto, il numero di elementi, le
+ * chiavi e la pagina in memoria vengono scartati e riletti.
+ *
+ * La query della prima pagina e quella delle pagine successive devono
+ * avere lo stesso ORDER BY, che renda stabile e univoco l'ordine delle
+ * righe, e terminare con il segnaposto "LIMIT ?". La seconda riceve, dopo
+ * i parametri comuni, i parametri restituiti da key() per l'ultima riga
+ * della pagina precedente.
+ *
+ * Due liste sono uguali se eseguono le stesse query con gli stessi
+ * parametri sulla stessa versione dei dati: il confronto non accede al
+ * database.
+ *
+ * @use Viene estesa da SerleenaSQLiteDataSource per restituire i risultati di una ricerca. Le sottoclassi definiscono come costruire un elemento e la sua chiave dalla riga corrente di un cursore.
+ * @field statements : SerleenaSQLiteStatements Oggetto attraverso cui eseguire le query
+ * @field countSql : String Query che restituisce il numero di elementi
+ * @field firstPageSql : String Query che restituisce la prima pagina
+ * @field nextPageSql : String Query che restituisce la pagina successiva a una chiave
+ * @field args : String[] Parametri comuni alle query
+ * @field pageSize : int Numero di righe lette per pagina
+ * @field dataVersion : int Versione dei dati alla creazione della lista
+ * @field readVersion : int Versione dei dati a cui si riferiscono size, keys e page
+ * @field size : int Numero di elementi, -1 se non ancora letto
+ * @field keys : List<String[]> Chiave dell'ultima riga di ogni pagina già letta
+ * @field pageStart : int Indice del primo elemento della pagina in memoria
+ * @field page : List<T> Pagina in memoria
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+abstract class KeysetQueryList<T> implements DirectAccessList<T> {
+
+    private final SerleenaSQLiteStatements statements;
+    private final String countSql;
+    private final String firstPageSql;
+    private final String nextPageSql;
+    private final String[] args;
+    private final int pageSize;
+    private final int dataVersion;
+    private int readVersion;
+    private final List<String[]> keys;
+    private int size;
+    private int pageStart;
+    private List<T> page;
+
+    /**
+     * Crea una lista paginata per chiave.
+     *
+     * @param statements Oggetto attraverso cui eseguire le query.
+     * @param countSql Query che restituisce il numero di elementi in
+     *                 un'unica riga e colonna.
+     * @param firstPageSql Query della prima pagina, terminante con
+     *                     "LIMIT ?".
+     * @param nextPageSql Query delle pagine successive, terminante con
+     *                    "LIMIT ?", i cui parametri seguono quelli comuni
+     *                    con la chiave dell'ultima riga letta.
+     * @param pageSize Numero di righe lette per pagina.
+     * @param args Parametri comuni alle query.
+     */
+    public KeysetQueryList(SerleenaSQLiteStatements statements,
+                           String countSql, String firstPageSql,
+                           String nextPageSql, int pageSize,
+                           String... args) {
+        if (statements == null || countSql == null || firstPageSql == null ||
+                nextPageSql == null || args == null)
+            throw new IllegalArgumentException("Illegal null argument");
+        if (pageSize <= 0)
+            throw new IllegalArgumentException("Illegal page size");
+
+        this.statements = statements;
+        this.countSql = countSql;
+        this.firstPageSql = firstPageSql;
+        this.nextPageSql = nextPageSql;
+        this.pageSize = pageSize;
+        this.args = Arrays.copyOf(args, args.length);
+        this.dataVersion = statements.dataVersion();
+        this.readVersion = dataVersion;
+        this.keys = new ArrayList<String[]>();
+        this.size = -1;
+    }
+
+    /**
+     * Costruisce un elemento della lista a partire dalla riga corrente del
+     * cursore restituito da una delle query delle pagine.
+     *
+     * @param cursor Cursore posizionato sulla riga da leggere.
+     * @return Elemento della lista.
+     */
+    protected abstract T read(Cursor cursor);
+
+    /**
+     * Restituisce la chiave di ordinamento della riga corrente del cursore,
+     * come parametri della query delle pagine successive nell'ordine in cui
+     * vi compaiono.
+     *
+     * @param cursor Cursore posizionato sulla riga da leggere.
+     * @return Parametri che selezionano le righe successive a quella
+     * corrente.
+     */
+    protected abstract String[] key(Cursor cursor);
+
+    /**
+     * Implementa DirectAccessList.size().
+     */
+    @Override
+    public synchronized int size() {
+        int version = statements.dataVersion();
+        if (version != readVersion) {
+            readVersion = version;
+            discard();
+        }
+
+        if (size < 0) {
+            Cursor result = statements.query(countSql, args);
+            try {
+                size = result.moveToNext() ? result.getInt(0) : 0;
+            } finally {
+                result.close();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Implementa DirectAccessList.get().
+     *
+     * Se l'elemento non appartiene alla pagina in memoria, questa viene
+     * sostituita dalla pagina che lo contiene.
+     *
+     * @throws IndexOutOfBoundsException Se l'indice non è compreso tra 0 e
+     * size() - 1, o se l'elemento non è più presente nel database.
+     */
+    @Override
+    public synchronized T get(int index) {
+        if (index < 0 || index >= size())
+            throw new IndexOutOfBoundsException("Index: " + index);
+
+        if (page == null || index < pageStart ||
+                index >= pageStart + page.size())
+            loadPage(index / pageSize);
+
+        if (!inPage(index)) {
+            discard();
+            if (index >= size())
+                throw new IndexOutOfBoundsException("Index: " + index);
+            loadPage(index / pageSize);
+            if (!inPage(index))
+                throw new IndexOutOfBoundsException("Index: " + index);
+        }
+        return page.get(index - pageStart);
+    }
+
+    private boolean inPage(int index) {
+        return index >= pageStart && index < pageStart + page.size();
+    }
+
+    /**
+     * Scarta il numero di elementi, le chiavi e la pagina in memoria, che
+     * verranno riletti al successivo accesso.
+     */
+    private void discard() {
+        size = -1;
+        keys.clear();
+        page = null;
+    }
+
+    /**
+     * Legge dal database la pagina specificata, leggendo prima le pagine
+     * che la precedono di cui non è ancora nota la chiave.
+     */
+    private void loadPage(int number) {
+        for (int n = Math.min(number, keys.size()); n <= number; n++) {
+            if (!readPage(n) && n < number)
+                return;
+        }
+    }
+
+    /**
+     * Legge dal database una pagina la cui precedente ha chiave nota,
+     * rendendola la pagina in memoria e registrandone la chiave.
+     *
+     * @return True se la pagina è completa, false se il risultato termina
+     * prima della sua fine.
+     */
+    private boolean readPage(int number) {
+        String[] pageArgs;
+        String sql;
+        if (number == 0) {
+            pageArgs = Arrays.copyOf(args, args.length + 1);
+            sql = firstPageSql;
+        } else {
+            String[] after = keys.get(number - 1);
+            pageArgs = Arrays.copyOf(args, args.length + after.length + 1);
+            System.arraycopy(after, 0, pageArgs, args.length, after.length);
+            sql = nextPageSql;
+        }
+        pageArgs[pageArgs.length - 1] = String.valueOf(pageSize);
+
+        List<T> rows = new ArrayList<T>(pageSize);
+        String[] last = null;
+        Cursor result = statements.query(sql, pageArgs);
+        try {
+            while (result.moveToNext()) {
+                rows.add(read(result));
+                last = key(result);
+            }
+        } finally {
+            result.close();
+        }
+
+        if (number == keys.size() && rows.size() == pageSize)
+            keys.add(last);
+        pageStart = number * pageSize;
+        page = rows;
+        return rows.size() == pageSize;
+    }
+
+    /**
+     * Implementa Iterable.iterator().
+     *
+     * Gli elementi vengono letti pagina per pagina durante l'iterazione.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < size();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return get(next++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Ridefinisce Object.equals().
+     *
+     * @param other Oggetto da confrontare.
+     * @return True se l'altro oggetto è una lista della stessa classe, che
+     * esegue le stesse query con gli stessi parametri sullo stesso database
+     * e sulla stessa versione dei dati. False altrimenti.
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (other == this)
+            return true;
+        if (other == null || other.getClass() != getClass())
+            return false;
+
+        KeysetQueryList<?> otherList = (KeysetQueryList<?>) other;
+        return statements == otherList.statements &&
+                dataVersion == otherList.dataVersion &&
+                countSql.equals(otherList.countSql) &&
+                firstPageSql.equals(otherList.firstPageSql) &&
+                nextPageSql.equals(otherList.nextPageSql) &&
+                Arrays.equals(args, otherList.args);
+    }
+
+    /**
+     * Ridefinisce Object.hashCode().
+     */
+    @Override
+    public int hashCode() {
+        int hash = firstPageSql.hashCode();
+        hash = 31 * hash + Arrays.hashCode(args);
+        return 31 * hash + dataVersion;
+    }
+}
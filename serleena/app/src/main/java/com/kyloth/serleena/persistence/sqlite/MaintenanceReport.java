@@ -0,0 +1,148 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: MaintenanceReport.java
+ * Package: com.kyloth.serleena.persistence.sqlite
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ */
+
+package com.kyloth.serleena.persistence.sqlite;
+
+/**
+ * Esito di un intervento di manutenzione del database, con dimensione e
+ * frammentazione del file prima e dopo l'intervento.
+ *
+ * La dimensione è calcolata come numero di pagine per dimensione della
+ * pagina; la frammentazione è la frazione di pagine del file che si
+ * trovano nella lista delle pagine libere.
+ *
+ * @use Viene restituito da DatabaseMaintenance.runOnce() e conservato come ultimo esito in DatabaseMaintenance.getLastReport().
+ * @field sizeBefore : long Dimensione del database prima dell'intervento, in byte
+ * @field sizeAfter : long Dimensione del database dopo l'intervento, in byte
+ * @field fragmentationBefore : double Frammentazione prima dell'intervento
+ * @field fragmentationAfter : double Frammentazione dopo l'intervento
+ * @field analyzed : boolean Indica se sono state aggiornate le statistiche
+ * @field vacuumed : boolean Indica se sono state liberate pagine
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+public final class MaintenanceReport {
+
+    private final long sizeBefore;
+    private final long sizeAfter;
+    private final double fragmentationBefore;
+    private final double fragmentationAfter;
+    private final boolean analyzed;
+    private final boolean vacuumed;
+
+    /**
+     * Crea un nuovo oggetto MaintenanceReport.
+     *
+     * @param sizeBefore Dimensione prima dell'intervento, in byte.
+     * @param fragmentationBefore Frammentazione prima dell'intervento.
+     * @param sizeAfter Dimensione dopo l'intervento, in byte.
+     * @param fragmentationAfter Frammentazione dopo l'intervento.
+     * @param analyzed Indica se sono state aggiornate le statistiche.
+     * @param vacuumed Indica se sono state liberate pagine.
+     */
+    MaintenanceReport(long sizeBefore, double fragmentationBefore,
+                      long sizeAfter, double fragmentationAfter,
+                      boolean analyzed, boolean vacuumed) {
+        if (sizeBefore < 0 || sizeAfter < 0)
+            throw new IllegalArgumentException("Illegal negative size");
+        this.sizeBefore = sizeBefore;
+        this.fragmentationBefore = fragmentationBefore;
+        this.sizeAfter = sizeAfter;
+        this.fragmentationAfter = fragmentationAfter;
+        this.analyzed = analyzed;
+        this.vacuumed = vacuumed;
+    }
+
+    /**
+     * @return Dimensione del database prima dell'intervento, in byte.
+     */
+    public long sizeBefore() {
+        return sizeBefore;
+    }
+
+    /**
+     * @return Dimensione del database dopo l'intervento, in byte.
+     */
+    public long sizeAfter() {
+        return sizeAfter;
+    }
+
+    /**
+     * @return Frazione di pagine libere prima dell'intervento.
+     */
+    public double fragmentationBefore() {
+        return fragmentationBefore;
+    }
+
+    /**
+     * @return Frazione di pagine libere dopo l'intervento.
+     */
+    public double fragmentationAfter() {
+        return fragmentationAfter;
+    }
+
+    /**
+     * @return True se sono state aggiornate le statistiche del database.
+     */
+    public boolean analyzed() {
+        return analyzed;
+    }
+
+    /**
+     * @return True se sono state liberate pagine del database.
+     */
+    public boolean vacuumed() {
+        return vacuumed;
+    }
+
+    /**
+     * Ridefinisce Object.toString().
+     *
+     * @return Descrizione testuale dell'esito.
+     */
+    @Override
+    public String toString() {
+        return String.format("size %d -> %d bytes, free pages %.1f%% -> " +
+                "%.1f%%, analyzed %b, vacuumed %b", sizeBefore, sizeAfter,
+                fragmentationBefore * 100, fragmentationAfter * 100,
+                analyzed, vacuumed);
+    }
+}
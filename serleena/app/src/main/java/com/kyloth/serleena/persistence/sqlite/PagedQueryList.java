@@ -0,0 +1,288 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: PagedQueryList.java
+ * Package: com.kyloth.serleena.persistence.sqlite
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ * 1.0.1    Filippo Sestini  Uguaglianza basata sulla query e sulla
+ *                                          versione dei dati.
+ * 1.0.2    Filippo Sestini  Dimensione e pagina rilette al cambio della
+ *                                          versione dei dati.
+ */
+
+package com.kyloth.serleena.persistence.sqlite;
+
+import android.database.Cursor;
+
+import com.kyloth.serleena.common.DirectAccessList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Lista ad accesso casuale i cui elementi sono letti dal database solo
+ * quando richiesti, una pagina di righe alla volta.
+ *
+ * Il numero di elementi è ottenuto con una query di conteggio al primo
+ * accesso. Ogni pagina è letta con una query paginata tramite LIMIT e OFFSET,
+ * il cui cursore viene chiuso subito dopo la lettura: la lista non mantiene
+ * risorse del database aperte tra una chiamata e l'altra, e in memoria è
+ * presente una sola pagina alla volta.
+ *
+ * Se i dati del database vengono sostituiti, ad esempio da una
+ * sincronizzazione, il numero di elementi e la pagina in memoria vengono
+ * scartati e riletti al successivo accesso. Lo stesso avviene se una
+ * pagina non contiene l'elemento richiesto perché le righe sono cambiate
+ * prima che la sostituzione fosse segnalata.
+ *
+ * La query paginata deve avere un ORDER BY che renda stabile l'ordine delle
+ * righe, e terminare con i segnaposto "LIMIT ? OFFSET ?".
+ *
+ * Due liste sono uguali se eseguono la stessa query con gli stessi
+ * parametri sulla stessa versione dei dati: il confronto non accede al
+ * database.
+ *
+ * @use Viene estesa da SerleenaSQLiteDataSource per restituire risultati potenzialmente numerosi, come i contatti di emergenza, senza costruirne preventivamente tutti gli oggetti. Le sottoclassi definiscono come costruire un elemento dalla riga corrente di un cursore.
+ * @field statements : SerleenaSQLiteStatements Oggetto attraverso cui eseguire le query
+ * @field countSql : String Query che restituisce il numero di elementi
+ * @field pageSql : String Query paginata che restituisce gli elementi
+ * @field args : String[] Parametri comuni alle due query
+ * @field pageSize : int Numero di righe lette per pagina
+ * @field dataVersion : int Versione dei dati alla creazione della lista
+ * @field readVersion : int Versione dei dati a cui si riferiscono size e page
+ * @field size : int Numero di elementi, -1 se non ancora letto
+ * @field pageStart : int Indice del primo elemento della pagina in memoria
+ * @field page : List<T> Pagina in memoria
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+abstract class PagedQueryList<T> implements DirectAccessList<T> {
+
+    private final SerleenaSQLiteStatements statements;
+    private final String countSql;
+    private final String pageSql;
+    private final String[] args;
+    private final int pageSize;
+    private final int dataVersion;
+    private int readVersion;
+    private int size;
+    private int pageStart;
+    private List<T> page;
+
+    /**
+     * Crea una lista paginata.
+     *
+     * @param statements Oggetto attraverso cui eseguire le query.
+     * @param countSql Query che restituisce il numero di elementi in
+     *                 un'unica riga e colonna.
+     * @param pageSql Query paginata, terminante con "LIMIT ? OFFSET ?".
+     * @param pageSize Numero di righe lette per pagina.
+     * @param args Parametri comuni alle due query.
+     */
+    public PagedQueryList(SerleenaSQLiteStatements statements,
+                          String countSql, String pageSql, int pageSize,
+                          String... args) {
+        if (statements == null || countSql == null || pageSql == null ||
+                args == null)
+            throw new IllegalArgumentException("Illegal null argument");
+        if (pageSize <= 0)
+            throw new IllegalArgumentException("Illegal page size");
+
+        this.statements = statements;
+        this.countSql = countSql;
+        this.pageSql = pageSql;
+        this.pageSize = pageSize;
+        this.args = Arrays.copyOf(args, args.length);
+        this.dataVersion = statements.dataVersion();
+        this.readVersion = dataVersion;
+        this.size = -1;
+    }
+
+    /**
+     * Costruisce un elemento della lista a partire dalla riga corrente del
+     * cursore restituito dalla query paginata.
+     *
+     * @param cursor Cursore posizionato sulla riga da leggere.
+     * @return Elemento della lista.
+     */
+    protected abstract T read(Cursor cursor);
+
+    /**
+     * Implementa DirectAccessList.size().
+     */
+    @Override
+    public synchronized int size() {
+        int version = statements.dataVersion();
+        if (version != readVersion) {
+            readVersion = version;
+            discard();
+        }
+
+        if (size < 0) {
+            Cursor result = statements.query(countSql, args);
+            try {
+                size = result.moveToNext() ? result.getInt(0) : 0;
+            } finally {
+                result.close();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Implementa DirectAccessList.get().
+     *
+     * Se l'elemento non appartiene alla pagina in memoria, questa viene
+     * sostituita dalla pagina che lo contiene.
+     *
+     * @throws IndexOutOfBoundsException Se l'indice non è compreso tra 0 e
+     * size() - 1, o se l'elemento non è più presente nel database.
+     */
+    @Override
+    public synchronized T get(int index) {
+        if (index < 0 || index >= size())
+            throw new IndexOutOfBoundsException("Index: " + index);
+
+        if (page == null || index < pageStart ||
+                index >= pageStart + page.size())
+            loadPage(index - index % pageSize);
+
+        if (index >= pageStart + page.size()) {
+            discard();
+            if (index >= size())
+                throw new IndexOutOfBoundsException("Index: " + index);
+            loadPage(index - index % pageSize);
+            if (index >= pageStart + page.size())
+                throw new IndexOutOfBoundsException("Index: " + index);
+        }
+        return page.get(index - pageStart);
+    }
+
+    /**
+     * Scarta il numero di elementi e la pagina in memoria, che verranno
+     * riletti al successivo accesso.
+     */
+    private void discard() {
+        size = -1;
+        page = null;
+    }
+
+    /**
+     * Legge dal database la pagina che inizia all'indice specificato.
+     */
+    private void loadPage(int start) {
+        String[] pageArgs = Arrays.copyOf(args, args.length + 2);
+        pageArgs[args.length] = String.valueOf(pageSize);
+        pageArgs[args.length + 1] = String.valueOf(start);
+
+        List<T> rows = new ArrayList<T>(pageSize);
+        Cursor result = statements.query(pageSql, pageArgs);
+        try {
+            while (result.moveToNext())
+                rows.add(read(result));
+        } finally {
+            result.close();
+        }
+
+        pageStart = start;
+        page = rows;
+    }
+
+    /**
+     * Implementa Iterable.iterator().
+     *
+     * Gli elementi vengono letti pagina per pagina durante l'iterazione.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < size();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return get(next++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Ridefinisce Object.equals().
+     *
+     * @param other Oggetto da confrontare.
+     * @return True se l'altro oggetto è una lista della stessa classe, che
+     * esegue le stesse query con gli stessi parametri sullo stesso database
+     * e sulla stessa versione dei dati. False altrimenti.
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (other == this)
+            return true;
+        if (other == null || other.getClass() != getClass())
+            return false;
+
+        PagedQueryList<?> otherList = (PagedQueryList<?>) other;
+        return statements == otherList.statements &&
+                dataVersion == otherList.dataVersion &&
+                countSql.equals(otherList.countSql) &&
+                pageSql.equals(otherList.pageSql) &&
+                Arrays.equals(args, otherList.args);
+    }
+
+    /**
+     * Ridefinisce Object.hashCode().
+     */
+    @Override
+    public int hashCode() {
+        int hash = pageSql.hashCode();
+        hash = 31 * hash + Arrays.hashCode(args);
+        return 31 * hash + dataVersion;
+    }
+}
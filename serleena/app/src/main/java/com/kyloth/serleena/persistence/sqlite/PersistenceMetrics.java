@@ -0,0 +1,493 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: PersistenceMetrics.java
+ * Package: com.kyloth.serleena.persistence.sqlite
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ */
+
+package com.kyloth.serleena.persistence.sqlite;
+
+import android.database.Cursor;
+import android.database.CursorWrapper;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Raccoglie misure sulle chiamate alla persistenza: per ogni metodo,
+ * istogramma delle latenze, righe lette, byte di BLOB e caratteri di testo
+ * letti dai cursori, oltre a un campione delle chiamate più lente.
+ *
+ * La raccolta può essere attivata e disattivata durante l'esecuzione. Da
+ * disattivata, ogni chiamata misurata costa la sola lettura di un campo
+ * volatile: non vengono presi tempi né creati oggetti, e i cursori non
+ * vengono avvolti.
+ *
+ * Righe e byte vengono attribuiti alla chiamata in corso nel thread che li
+ * legge, per cui le chiamate annidate vengono conteggiate sia
+ * singolarmente sia all'interno di quella che le contiene.
+ *
+ * @use Viene creato da SerleenaApplication e passato a InstrumentedSQLiteDataSource e InstrumentedSQLiteDataSink, che delimitano le chiamate, e a SerleenaSQLiteStatements, che misura i cursori. Il resoconto testuale può essere allegato alle segnalazioni di errore.
+ * @field enabled : boolean Indica se la raccolta è attiva
+ * @field slowThresholdNanos : long Durata oltre la quale una chiamata viene campionata come lenta
+ * @field methods : Map<String, MethodStats> Misure per metodo
+ * @field slowCalls : SlowCall[] Ultime chiamate lente, in un buffer circolare
+ * @field slowCount : int Numero complessivo di chiamate lente
+ * @field counters : ThreadLocal<Counters> Contatori di righe e byte letti da ciascun thread
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+public class PersistenceMetrics {
+
+    /**
+     * Numero di intervalli dell'istogramma delle latenze. L'intervallo i
+     * contiene le durate tra 2^(i-1) e 2^i microsecondi; l'ultimo anche
+     * quelle maggiori.
+     */
+    public static final int HISTOGRAM_BUCKETS = 24;
+
+    /**
+     * Numero di chiamate lente conservate.
+     */
+    public static final int SLOW_SAMPLES = 32;
+
+    /**
+     * Soglia predefinita oltre la quale una chiamata è considerata lenta,
+     * pari alla durata di un fotogramma.
+     */
+    public static final long DEFAULT_SLOW_THRESHOLD_MILLIS = 16;
+
+    private volatile boolean enabled;
+    private volatile long slowThresholdNanos;
+    private final Map<String, MethodStats> methods;
+    private final SlowCall[] slowCalls;
+    private int slowCount;
+    private final ThreadLocal<Counters> counters;
+
+    /**
+     * Crea un nuovo oggetto PersistenceMetrics, con la raccolta disattivata.
+     */
+    public PersistenceMetrics() {
+        this.slowThresholdNanos = DEFAULT_SLOW_THRESHOLD_MILLIS * 1000000;
+        this.methods = new LinkedHashMap<String, MethodStats>();
+        this.slowCalls = new SlowCall[SLOW_SAMPLES];
+        this.counters = new ThreadLocal<Counters>() {
+            @Override
+            protected Counters initialValue() {
+                return new Counters();
+            }
+        };
+    }
+
+    /**
+     * Attiva o disattiva la raccolta delle misure. Le misure già raccolte
+     * vengono mantenute.
+     *
+     * @param enabled True per attivare la raccolta.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Indica se la raccolta delle misure è attiva.
+     *
+     * @return True se la raccolta è attiva.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Imposta la durata oltre la quale una chiamata viene campionata come
+     * lenta.
+     *
+     * @param millis Soglia in millisecondi. Se negativa, viene sollevata
+     *               un'eccezione IllegalArgumentException.
+     */
+    public void setSlowThresholdMillis(long millis) {
+        if (millis < 0)
+            throw new IllegalArgumentException("Illegal negative threshold");
+        this.slowThresholdNanos = millis * 1000000;
+    }
+
+    /**
+     * Scarta tutte le misure raccolte.
+     */
+    public synchronized void reset() {
+        methods.clear();
+        for (int i = 0; i < slowCalls.length; i++)
+            slowCalls[i] = null;
+        slowCount = 0;
+    }
+
+    /**
+     * Restituisce le misure raccolte per un metodo.
+     *
+     * @param method Nome del metodo.
+     * @return Copia delle misure del metodo, o null se il metodo non è mai
+     * stato misurato.
+     */
+    public synchronized MethodStats getStats(String method) {
+        MethodStats s = methods.get(method);
+        return (s != null) ? new MethodStats(s) : null;
+    }
+
+    /**
+     * Restituisce un resoconto testuale delle misure raccolte, adatto a
+     * essere allegato a una segnalazione di errore. Le durate sono espresse
+     * in microsecondi; i percentili sono limiti superiori dell'intervallo
+     * dell'istogramma in cui ricadono.
+     *
+     * @return Resoconto delle misure.
+     */
+    public synchronized String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("persistence metrics (")
+                .append(enabled ? "enabled" : "disabled").append(")\n");
+        for (Map.Entry<String, MethodStats> entry : methods.entrySet()) {
+            MethodStats s = entry.getValue();
+            sb.append(entry.getKey())
+                    .append(": count=").append(s.count())
+                    .append(" mean=").append(s.meanMicros())
+                    .append("us p50<").append(s.percentileMicros(50))
+                    .append("us p90<").append(s.percentileMicros(90))
+                    .append("us p99<").append(s.percentileMicros(99))
+                    .append("us max=").append(s.maxMicros())
+                    .append("us rows=").append(s.rows())
+                    .append(" blob=").append(s.blobBytes())
+                    .append(" text=").append(s.textChars())
+                    .append('\n');
+        }
+
+        sb.append("slow calls (>= ").append(slowThresholdNanos / 1000000)
+                .append(" ms, ").append(slowCount).append(" total):\n");
+        int kept = Math.min(slowCount, slowCalls.length);
+        for (int i = slowCount - kept; i < slowCount; i++) {
+            SlowCall c = slowCalls[i % slowCalls.length];
+            sb.append(c.time).append(' ').append(c.thread).append(' ')
+                    .append(c.method).append(' ')
+                    .append(c.nanos / 1000).append("us rows=")
+                    .append(c.rows).append(" blob=").append(c.blobBytes)
+                    .append(" text=").append(c.textChars).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Segna l'inizio di una chiamata da misurare.
+     *
+     * @return Chiamata iniziata, da passare a end(), o null se la raccolta
+     * è disattivata.
+     */
+    Call begin() {
+        if (!enabled)
+            return null;
+        return new Call(counters.get());
+    }
+
+    /**
+     * Segna la fine di una chiamata, registrandone durata, righe e byte
+     * letti.
+     *
+     * @param call Chiamata restituita da begin(). Se null, non viene
+     *             registrato nulla.
+     * @param method Nome del metodo chiamato.
+     */
+    void end(Call call, String method) {
+        if (call == null)
+            return;
+        long nanos = System.nanoTime() - call.start;
+        long rows = call.counters.rows - call.rows;
+        long blobBytes = call.counters.blobBytes - call.blobBytes;
+        long textChars = call.counters.textChars - call.textChars;
+        record(method, nanos, rows, blobBytes, textChars);
+    }
+
+    /**
+     * Registra righe e caratteri che non provengono da un cursore, come le
+     * istruzioni eseguite durante il caricamento di un dump, attribuendoli
+     * alla chiamata in corso nel thread corrente.
+     *
+     * @param rows Righe da aggiungere.
+     * @param textChars Caratteri da aggiungere.
+     */
+    void count(long rows, long textChars) {
+        if (!enabled)
+            return;
+        Counters c = counters.get();
+        c.rows += rows;
+        c.textChars += textChars;
+    }
+
+    /**
+     * Restituisce un cursore che conteggia le righe e i byte letti dal
+     * cursore specificato, attribuendoli alla chiamata in corso nel thread
+     * corrente. Se la raccolta è disattivata, il cursore viene restituito
+     * senza modifiche.
+     *
+     * @param cursor Cursore da misurare.
+     * @return Cursore misurato.
+     */
+    Cursor meter(Cursor cursor) {
+        if (!enabled)
+            return cursor;
+        Counters c = counters.get();
+        c.rows += cursor.getCount();
+        return new MeteredCursor(cursor, c);
+    }
+
+    private synchronized void record(String method, long nanos, long rows,
+                                     long blobBytes, long textChars) {
+        MethodStats s = methods.get(method);
+        if (s == null) {
+            s = new MethodStats();
+            methods.put(method, s);
+        }
+        s.add(nanos, rows, blobBytes, textChars);
+
+        if (nanos >= slowThresholdNanos) {
+            slowCalls[slowCount % slowCalls.length] = new SlowCall(method,
+                    nanos, rows, blobBytes, textChars,
+                    System.currentTimeMillis(),
+                    Thread.currentThread().getName());
+            slowCount++;
+        }
+    }
+
+    /**
+     * Contatori di righe e byte letti da un thread.
+     */
+    private static final class Counters {
+        long rows;
+        long blobBytes;
+        long textChars;
+    }
+
+    /**
+     * Chiamata in corso, con l'istante di inizio e i valori dei contatori
+     * del thread in quel momento.
+     */
+    static final class Call {
+        private final Counters counters;
+        private final long rows;
+        private final long blobBytes;
+        private final long textChars;
+        private final long start;
+
+        private Call(Counters counters) {
+            this.counters = counters;
+            this.rows = counters.rows;
+            this.blobBytes = counters.blobBytes;
+            this.textChars = counters.textChars;
+            this.start = System.nanoTime();
+        }
+    }
+
+    /**
+     * Cursore che conteggia i byte dei BLOB e i caratteri del testo letti.
+     */
+    private static final class MeteredCursor extends CursorWrapper {
+        private final Counters counters;
+
+        MeteredCursor(Cursor cursor, Counters counters) {
+            super(cursor);
+            this.counters = counters;
+        }
+
+        @Override
+        public byte[] getBlob(int columnIndex) {
+            byte[] blob = super.getBlob(columnIndex);
+            if (blob != null)
+                counters.blobBytes += blob.length;
+            return blob;
+        }
+
+        @Override
+        public String getString(int columnIndex) {
+            String string = super.getString(columnIndex);
+            if (string != null)
+                counters.textChars += string.length();
+            return string;
+        }
+    }
+
+    /**
+     * Chiamata la cui durata ha superato la soglia.
+     */
+    private static final class SlowCall {
+        final String method;
+        final long nanos;
+        final long rows;
+        final long blobBytes;
+        final long textChars;
+        final long time;
+        final String thread;
+
+        SlowCall(String method, long nanos, long rows, long blobBytes,
+                 long textChars, long time, String thread) {
+            this.method = method;
+            this.nanos = nanos;
+            this.rows = rows;
+            this.blobBytes = blobBytes;
+            this.textChars = textChars;
+            this.time = time;
+            this.thread = thread;
+        }
+    }
+
+    /**
+     * Misure cumulative delle chiamate a un metodo.
+     *
+     * @field count : int Numero di chiamate
+     * @field totalNanos : long Durata complessiva, in nanosecondi
+     * @field maxNanos : long Durata massima, in nanosecondi
+     * @field histogram : long[] Numero di chiamate per intervallo di durata
+     * @field rows : long Righe lette
+     * @field blobBytes : long Byte di BLOB letti
+     * @field textChars : long Caratteri di testo letti
+     */
+    public static final class MethodStats {
+
+        private int count;
+        private long totalNanos;
+        private long maxNanos;
+        private final long[] histogram;
+        private long rows;
+        private long blobBytes;
+        private long textChars;
+
+        private MethodStats() {
+            histogram = new long[HISTOGRAM_BUCKETS];
+        }
+
+        private MethodStats(MethodStats other) {
+            this.count = other.count;
+            this.totalNanos = other.totalNanos;
+            this.maxNanos = other.maxNanos;
+            this.histogram = other.histogram.clone();
+            this.rows = other.rows;
+            this.blobBytes = other.blobBytes;
+            this.textChars = other.textChars;
+        }
+
+        private void add(long nanos, long rows, long blobBytes,
+                         long textChars) {
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+            histogram[bucket(nanos / 1000)]++;
+            this.rows += rows;
+            this.blobBytes += blobBytes;
+            this.textChars += textChars;
+        }
+
+        private static int bucket(long micros) {
+            int bucket = 64 - Long.numberOfLeadingZeros(Math.max(micros, 0));
+            return Math.min(bucket, HISTOGRAM_BUCKETS - 1);
+        }
+
+        /**
+         * @return Numero di chiamate.
+         */
+        public int count() {
+            return count;
+        }
+
+        /**
+         * @return Durata media, in microsecondi.
+         */
+        public long meanMicros() {
+            return count == 0 ? 0 : totalNanos / count / 1000;
+        }
+
+        /**
+         * @return Durata massima, in microsecondi.
+         */
+        public long maxMicros() {
+            return maxNanos / 1000;
+        }
+
+        /**
+         * Restituisce il limite superiore dell'intervallo dell'istogramma
+         * in cui ricade il percentile specificato.
+         *
+         * @param percentile Percentile, tra 0 e 100.
+         * @return Limite superiore, in microsecondi.
+         */
+        public long percentileMicros(int percentile) {
+            if (percentile < 0 || percentile > 100)
+                throw new IllegalArgumentException("Illegal percentile");
+            long threshold = ((long) count * percentile + 99) / 100;
+            long seen = 0;
+            for (int i = 0; i < histogram.length; i++) {
+                seen += histogram[i];
+                if (seen >= threshold && seen > 0)
+                    return 1L << i;
+            }
+            return 0;
+        }
+
+        /**
+         * @return Numero di chiamate per intervallo di durata.
+         */
+        public long[] histogram() {
+            return histogram.clone();
+        }
+
+        /**
+         * @return Righe lette.
+         */
+        public long rows() {
+            return rows;
+        }
+
+        /**
+         * @return Byte di BLOB letti.
+         */
+        public long blobBytes() {
+            return blobBytes;
+        }
+
+        /**
+         * @return Caratteri di testo letti.
+         */
+        public long textChars() {
+            return textChars;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: QuadrantCache.java
+ * Package: com.kyloth.serleena.persistence.sqlite
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ */
+
+package com.kyloth.serleena.persistence.sqlite;
+
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+import com.kyloth.serleena.common.GeoPoint;
+import com.kyloth.serleena.common.IQuadrant;
+
+import java.util.UUID;
+
+/**
+ * Cache LRU dei quadranti già decodificati, limitata dalla dimensione in byte
+ * delle loro immagini.
+ *
+ * I quadranti sono identificati dall'Esperienza a cui appartengono e dal
+ * proprio riquadro. Quando la somma delle dimensioni delle immagini supera
+ * il limite stabilito, vengono scartati i quadranti usati meno di recente.
+ *
+ * @use Viene utilizzata da SerleenaSQLiteDataSource per evitare di rileggere e decodificare dal database un quadrante richiesto di recente. Viene svuotata quando i dati del database vengono sostituiti da una sincronizzazione.
+ * @field cache : LruCache<Key, IQuadrant> Quadranti memorizzati
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+class QuadrantCache {
+
+    private final LruCache<Key, IQuadrant> cache;
+
+    /**
+     * Crea una cache vuota.
+     *
+     * @param maxBytes Dimensione massima complessiva, in byte, delle
+     *                 immagini memorizzate.
+     */
+    public QuadrantCache(int maxBytes) {
+        if (maxBytes <= 0)
+            throw new IllegalArgumentException("Illegal cache size");
+
+        cache = new LruCache<Key, IQuadrant>(maxBytes) {
+            @Override
+            protected int sizeOf(Key key, IQuadrant quadrant) {
+                Bitmap raster = quadrant.getRaster();
+                return Math.max(1, raster.getByteCount());
+            }
+        };
+    }
+
+    /**
+     * Restituisce il quadrante memorizzato con la chiave specificata.
+     *
+     * @param key Chiave del quadrante.
+     * @return Quadrante memorizzato, o null se non presente.
+     */
+    public IQuadrant get(Key key) {
+        if (key == null)
+            throw new IllegalArgumentException("Illegal null key");
+        return cache.get(key);
+    }
+
+    /**
+     * Memorizza un quadrante, scartando se necessario quelli usati meno di
+     * recente.
+     *
+     * @param key Chiave del quadrante.
+     * @param quadrant Quadrante da memorizzare.
+     */
+    public void put(Key key, IQuadrant quadrant) {
+        if (key == null)
+            throw new IllegalArgumentException("Illegal null key");
+        if (quadrant == null)
+            throw new IllegalArgumentException("Illegal null quadrant");
+        cache.put(key, quadrant);
+    }
+
+    /**
+     * Rimuove tutti i quadranti memorizzati.
+     */
+    public void clear() {
+        cache.evictAll();
+    }
+
+    /**
+     * Restituisce la dimensione complessiva, in byte, delle immagini
+     * memorizzate.
+     *
+     * @return Dimensione occupata.
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * Restituisce la dimensione massima, in byte, della cache.
+     *
+     * @return Dimensione massima.
+     */
+    public int maxSize() {
+        return cache.maxSize();
+    }
+
+    /**
+     * Restituisce il numero di richieste soddisfatte dalla cache.
+     *
+     * @return Numero di successi.
+     */
+    public int hitCount() {
+        return cache.hitCount();
+    }
+
+    /**
+     * Restituisce il numero di richieste di quadranti non presenti.
+     *
+     * @return Numero di fallimenti.
+     */
+    public int missCount() {
+        return cache.missCount();
+    }
+
+    /**
+     * Restituisce il numero di quadranti scartati, per mancanza di spazio o
+     * per lo svuotamento della cache.
+     *
+     * @return Numero di quadranti scartati.
+     */
+    public int evictionCount() {
+        return cache.evictionCount();
+    }
+
+    /**
+     * Chiave di un quadrante nella cache, composta dall'UUID
+     * dell'Esperienza e dal riquadro del quadrante.
+     *
+     * @field experience : UUID Esperienza a cui il quadrante appartiene
+     * @field northWest : GeoPoint Angolo nord-ovest del quadrante
+     * @field southEast : GeoPoint Angolo sud-est del quadrante
+     */
+    static final class Key {
+
+        private final UUID experience;
+        private final GeoPoint northWest;
+        private final GeoPoint southEast;
+
+        /**
+         * Crea una chiave.
+         *
+         * @param experience UUID dell'Esperienza.
+         * @param northWest Angolo nord-ovest del quadrante.
+         * @param southEast Angolo sud-est del quadrante.
+         */
+        public Key(UUID experience, GeoPoint northWest, GeoPoint southEast) {
+            if (experience == null || northWest == null || southEast == null)
+                throw new IllegalArgumentException("Illegal null key field");
+
+            this.experience = experience;
+            this.northWest = northWest;
+            this.southEast = southEast;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (other instanceof Key) {
+                Key otherKey = (Key) other;
+                return experience.equals(otherKey.experience) &&
+                        northWest.equals(otherKey.northWest) &&
+                        southEast.equals(otherKey.southEast);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = experience.hashCode();
+            result = 31 * result + northWest.hashCode();
+            result = 31 * result + southEast.hashCode();
+            return result;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: RasterPageInputStream.java
+ * Package: com.kyloth.serleena.persistence.sqlite
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ * 1.0.1    Filippo Sestini  Lettura tramite SerleenaSQLiteStatements.
+ * 1.0.2    Filippo Sestini  Query visibile nel package.
+ */
+
+package com.kyloth.serleena.persistence.sqlite;
+
+import android.database.Cursor;
+
+import java.io.InputStream;
+
+/**
+ * Flusso di lettura dei dati di un raster memorizzato in pagine nella tabella
+ * TABLE_RASTER_PAGES.
+ *
+ * Le pagine vengono lette una alla volta, in ordine, solo quando i byte della
+ * pagina precedente sono stati consumati. In memoria è quindi presente al
+ * più una pagina, e nessuna riga letta dal database supera la dimensione
+ * RASTER_PAGE_SIZE.
+ *
+ * @use Viene creato da SerleenaSQLiteDataSource in getQuadrant() e passato a BitmapFactory per decodificare l'immagine del quadrante.
+ * @field statements : SerleenaSQLiteStatements Istruzioni SQL con cui leggere le pagine
+ * @field rasterId : long Identificativo del raster
+ * @field page : byte[] Pagina corrente
+ * @field position : int Posizione del prossimo byte da leggere nella pagina corrente
+ * @field nextPage : int Numero della prossima pagina da leggere
+ * @field finished : boolean Indica se tutte le pagine sono state lette
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+class RasterPageInputStream extends InputStream {
+
+    static final String QUERY_PAGE =
+            "SELECT page_data FROM " + SerleenaDatabase.TABLE_RASTER_PAGES +
+            " WHERE page_raster = ? AND page_num = ?";
+
+    private final SerleenaSQLiteStatements statements;
+    private final long rasterId;
+    private byte[] page;
+    private int position;
+    private int nextPage;
+    private boolean finished;
+
+    /**
+     * Crea un oggetto RasterPageInputStream.
+     *
+     * @param statements Istruzioni SQL con cui leggere le pagine.
+     * @param rasterId Identificativo del raster.
+     */
+    public RasterPageInputStream(SerleenaSQLiteStatements statements,
+                                 long rasterId) {
+        if (statements == null)
+            throw new IllegalArgumentException("Illegal null statements");
+
+        this.statements = statements;
+        this.rasterId = rasterId;
+        this.page = new byte[0];
+        this.position = 0;
+        this.nextPage = 0;
+        this.finished = false;
+    }
+
+    /**
+     * Implementa InputStream.read().
+     *
+     * @return Byte letto, o -1 se i dati del raster sono terminati.
+     */
+    @Override
+    public int read() {
+        if (!fill())
+            return -1;
+        return page[position++] & 0xFF;
+    }
+
+    /**
+     * Implementa InputStream.read(byte[], int, int).
+     *
+     * @param buffer Array in cui scrivere i byte letti.
+     * @param offset Posizione dell'array da cui iniziare a scrivere.
+     * @param length Numero massimo di byte da leggere.
+     * @return Numero di byte letti, o -1 se i dati del raster sono terminati.
+     */
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+        if (buffer == null)
+            throw new IllegalArgumentException("Illegal null buffer");
+        if (offset < 0 || length < 0 || length > buffer.length - offset)
+            throw new IndexOutOfBoundsException();
+        if (length == 0)
+            return 0;
+        if (!fill())
+            return -1;
+
+        int count = Math.min(length, page.length - position);
+        System.arraycopy(page, position, buffer, offset, count);
+        position += count;
+        return count;
+    }
+
+    /**
+     * Implementa InputStream.available().
+     *
+     * @return Numero di byte della pagina corrente non ancora letti.
+     */
+    @Override
+    public int available() {
+        return page.length - position;
+    }
+
+    /**
+     * Garantisce che la pagina corrente contenga byte da leggere, caricando
+     * le pagine successive se necessario.
+     *
+     * @return True se vi sono byte da leggere, false se i dati del raster
+     *         sono terminati.
+     */
+    private boolean fill() {
+        while (position >= page.length) {
+            if (finished)
+                return false;
+
+            Cursor result = statements.query(QUERY_PAGE,
+                    String.valueOf(rasterId), String.valueOf(nextPage));
+            if (result.moveToNext()) {
+                page = result.getBlob(0);
+                position = 0;
+                nextPage++;
+            } else
+                finished = true;
+            result.close();
+        }
+        return true;
+    }
+}
@@ -0,0 +1,334 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: RetentionEngine.java
+ * Package: com.kyloth.serleena.persistence.sqlite
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ * 1.0.1    Filippo Sestini  Thread in background interrotto, con
+ *                                          segnalazione nel log, in caso di
+ *                                          errore del database.
+ */
+
+package com.kyloth.serleena.persistence.sqlite;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TimeZone;
+
+/**
+ * Applica una RetentionPolicy al database, cancellando le previsioni meteo
+ * dei giorni passati e archiviando i Tracciamenti locali in eccesso.
+ *
+ * Il lavoro è suddiviso in passi, ciascuno eseguito in una propria
+ * transazione e limitato a RetentionPolicy.maxRowsPerPass() righe, in modo
+ * da non trattenere a lungo il database. Un Tracciamento archiviato viene
+ * spostato nella tabella TABLE_TELEMETRIES_ARCHIVE come un'unica riga con i
+ * tempi compressi, e rimosso con i suoi eventi da TABLE_TELEMETRIES e
+ * TABLE_TELEM_EVENTS_CHECKP; SerleenaSQLiteDataSource continua a
+ * considerarlo in getTelemetries() e nelle statistiche sui Percorsi. I
+ * Tracciamenti "fantasma" ricevuti dalla sincronizzazione, con ID negativo,
+ * non vengono considerati.
+ *
+ * Un errore del database durante l'esecuzione in background viene
+ * segnalato nel log e interrompe l'esecuzione, che riprende alla
+ * successiva chiamata a start().
+ *
+ * @use Viene creato da SerleenaApplication, che con start() ne esegue i passi in un thread in background fino all'esaurimento del lavoro.
+ * @field dbHelper : SerleenaDatabase Database a cui applicare la politica
+ * @field policy : RetentionPolicy Politica di conservazione
+ * @field worker : Thread Thread che esegue i passi, o null
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+public class RetentionEngine {
+
+    /**
+     * Pausa tra due passi consecutivi, in millisecondi.
+     */
+    public static final long PASS_INTERVAL_MILLIS = 200;
+
+    private static final String TAG = "RetentionEngine";
+
+    static final String DELETE_PAST_FORECASTS =
+            "DELETE FROM " + SerleenaDatabase.TABLE_WEATHER_FORECASTS +
+            " WHERE rowid IN (SELECT rowid FROM " +
+            SerleenaDatabase.TABLE_WEATHER_FORECASTS +
+            " WHERE weather_date < ? LIMIT ?)";
+    static final String QUERY_CROWDED_TRACKS =
+            "SELECT telem_track FROM " + SerleenaDatabase.TABLE_TELEMETRIES +
+            " WHERE telem_id > 0 GROUP BY telem_track HAVING COUNT(*) > ?";
+    static final String QUERY_LATEST_TELEMETRIES =
+            "SELECT telem_id FROM " + SerleenaDatabase.TABLE_TELEMETRIES +
+            " WHERE telem_track = ? AND telem_id > 0" +
+            " ORDER BY telem_id DESC LIMIT ?";
+    static final String QUERY_BEST_TELEMETRIES =
+            "SELECT telem_id, " +
+            "MAX(eventc_timestamp) - MIN(eventc_timestamp) AS duration FROM " +
+            SerleenaDatabase.TABLE_TELEMETRIES + " JOIN " +
+            SerleenaDatabase.TABLE_TELEM_EVENTS_CHECKP +
+            " ON eventc_telem = telem_id WHERE telem_track = ?" +
+            " AND telem_id > 0 GROUP BY telem_id" +
+            " HAVING MIN(eventc_value) = 1 ORDER BY duration, telem_id" +
+            " LIMIT ?";
+    static final String QUERY_BEST_OF_TRACK =
+            "SELECT best_telem FROM " +
+            SerleenaDatabase.TABLE_BEST_TELEMETRIES + " WHERE best_track = ?";
+    static final String QUERY_LOCAL_TELEMETRIES =
+            "SELECT telem_id FROM " + SerleenaDatabase.TABLE_TELEMETRIES +
+            " WHERE telem_track = ? AND telem_id > 0 ORDER BY telem_id";
+    static final String QUERY_EVENTS =
+            "SELECT eventc_value, eventc_timestamp FROM " +
+            SerleenaDatabase.TABLE_TELEM_EVENTS_CHECKP +
+            " WHERE eventc_telem = ?";
+    static final String INSERT_ARCHIVE =
+            "INSERT OR REPLACE INTO " +
+            SerleenaDatabase.TABLE_TELEMETRIES_ARCHIVE +
+            " (archive_id, archive_track, archive_timestamps)" +
+            " VALUES (?, ?, ?)";
+    static final String DELETE_TELEMETRY =
+            "DELETE FROM " + SerleenaDatabase.TABLE_TELEMETRIES +
+            " WHERE telem_id = ?";
+
+    private final SerleenaDatabase dbHelper;
+    private final RetentionPolicy policy;
+    private Thread worker;
+
+    /**
+     * Crea un nuovo oggetto RetentionEngine.
+     *
+     * @param dbHelper Database a cui applicare la politica.
+     * @param policy Politica di conservazione.
+     */
+    public RetentionEngine(SerleenaDatabase dbHelper, RetentionPolicy policy) {
+        if (dbHelper == null)
+            throw new IllegalArgumentException("Illegal null database");
+        if (policy == null)
+            throw new IllegalArgumentException("Illegal null policy");
+        this.dbHelper = dbHelper;
+        this.policy = policy;
+    }
+
+    /**
+     * Avvia in un thread in background l'esecuzione dei passi, che prosegue
+     * finché un passo non elabora meno righe del massimo consentito. Se
+     * l'esecuzione è già in corso, il metodo non ha effetto.
+     */
+    public synchronized void start() {
+        if (worker != null && worker.isAlive())
+            return;
+
+        worker = new Thread("serleena-retention") {
+            @Override
+            public void run() {
+                try {
+                    while (!isInterrupted() &&
+                            runPass() == policy.maxRowsPerPass())
+                        Thread.sleep(PASS_INTERVAL_MILLIS);
+                } catch (InterruptedException e) {
+                    // Interrotto da stop()
+                } catch (SQLiteException e) {
+                    Log.e(TAG, "Retention pass failed", e);
+                }
+            }
+        };
+        worker.setPriority(Thread.MIN_PRIORITY);
+        worker.start();
+    }
+
+    /**
+     * Interrompe l'esecuzione in background al termine del passo in corso.
+     */
+    public synchronized void stop() {
+        if (worker != null)
+            worker.interrupt();
+        worker = null;
+    }
+
+    /**
+     * Esegue un passo, rispetto alla data corrente.
+     *
+     * @return Numero di righe elaborate. Se inferiore a
+     * RetentionPolicy.maxRowsPerPass(), non resta altro lavoro.
+     */
+    public int runPass() {
+        return runPass(System.currentTimeMillis());
+    }
+
+    /**
+     * Esegue un passo, rispetto alla data specificata.
+     *
+     * Vengono prima cancellate le previsioni dei giorni precedenti, poi
+     * archiviati i Tracciamenti in eccesso, fino al massimo di righe
+     * consentito.
+     *
+     * @param now Istante corrente, in millisecondi.
+     * @return Numero di righe elaborate.
+     */
+    int runPass(long now) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        int budget = policy.maxRowsPerPass();
+        int done = 0;
+
+        db.beginTransactionNonExclusive();
+        try {
+            if (policy.dropPastForecasts())
+                done += dropPastForecasts(db, startOfDay(now), budget);
+            if (done < budget)
+                done += archiveTelemetries(db, budget - done);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return done;
+    }
+
+    /**
+     * Restituisce l'inizio del giorno GMT contenente l'istante specificato,
+     * in secondi, nel formato della colonna weather_date.
+     *
+     * @param now Istante, in millisecondi.
+     * @return Mezzanotte GMT del giorno, in secondi.
+     */
+    static long startOfDay(long now) {
+        GregorianCalendar c = new GregorianCalendar(TimeZone.getTimeZone("GMT"));
+        c.setTimeInMillis(now);
+        c.set(Calendar.HOUR_OF_DAY, 0);
+        c.set(Calendar.MINUTE, 0);
+        c.set(Calendar.SECOND, 0);
+        c.set(Calendar.MILLISECOND, 0);
+        return c.getTimeInMillis() / 1000;
+    }
+
+    private static int dropPastForecasts(SQLiteDatabase db, long today,
+                                         int budget) {
+        SQLiteStatement delete = db.compileStatement(DELETE_PAST_FORECASTS);
+        try {
+            delete.bindLong(1, today);
+            delete.bindLong(2, budget);
+            return delete.executeUpdateDelete();
+        } finally {
+            delete.close();
+        }
+    }
+
+    private int archiveTelemetries(SQLiteDatabase db, int budget) {
+        int kept = policy.keepBest() + policy.keepLatest();
+        List<String> tracks = new ArrayList<String>();
+        Cursor crowded = db.rawQuery(QUERY_CROWDED_TRACKS,
+                new String[] { String.valueOf(kept) });
+        while (crowded.moveToNext())
+            tracks.add(crowded.getString(0));
+        crowded.close();
+
+        SQLiteStatement insert = db.compileStatement(INSERT_ARCHIVE);
+        SQLiteStatement delete = db.compileStatement(DELETE_TELEMETRY);
+        CheckpointTimestamps timestamps = new CheckpointTimestamps();
+        int done = 0;
+        try {
+            for (int i = 0; i < tracks.size() && done < budget; i++) {
+                String track = tracks.get(i);
+                Set<Long> keep = telemetriesToKeep(db, track);
+
+                Cursor local = db.rawQuery(QUERY_LOCAL_TELEMETRIES,
+                        new String[] { track });
+                while (done < budget && local.moveToNext()) {
+                    long telemId = local.getLong(0);
+                    if (keep.contains(telemId))
+                        continue;
+
+                    timestamps.clear();
+                    Cursor events = db.rawQuery(QUERY_EVENTS,
+                            new String[] { String.valueOf(telemId) });
+                    while (events.moveToNext())
+                        if (events.getInt(0) > 0)
+                            timestamps.put(events.getInt(0),
+                                    events.getLong(1));
+                    events.close();
+
+                    insert.bindLong(1, telemId);
+                    insert.bindString(2, track);
+                    insert.bindBlob(3,
+                            CheckpointTimestamps.pack(timestamps.toArray()));
+                    insert.executeInsert();
+                    delete.bindLong(1, telemId);
+                    delete.executeUpdateDelete();
+                    done++;
+                }
+                local.close();
+            }
+        } finally {
+            insert.close();
+            delete.close();
+        }
+        return done;
+    }
+
+    /**
+     * Restituisce gli ID dei Tracciamenti del Percorso da non archiviare: i
+     * più recenti, i migliori e quello registrato in TABLE_BEST_TELEMETRIES.
+     */
+    private Set<Long> telemetriesToKeep(SQLiteDatabase db, String track) {
+        Set<Long> keep = new HashSet<Long>();
+        String[][] queries = {
+                { QUERY_LATEST_TELEMETRIES,
+                        String.valueOf(policy.keepLatest()) },
+                { QUERY_BEST_TELEMETRIES, String.valueOf(policy.keepBest()) }
+        };
+        for (String[] query : queries) {
+            Cursor ids = db.rawQuery(query[0],
+                    new String[] { track, query[1] });
+            while (ids.moveToNext())
+                keep.add(ids.getLong(0));
+            ids.close();
+        }
+
+        Cursor best = db.rawQuery(QUERY_BEST_OF_TRACK, new String[] { track });
+        while (best.moveToNext())
+            keep.add(best.getLong(0));
+        best.close();
+        return keep;
+    }
+}
@@ -0,0 +1,129 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: RetentionPolicy.java
+ * Package: com.kyloth.serleena.persistence.sqlite
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ */
+
+package com.kyloth.serleena.persistence.sqlite;
+
+/**
+ * Politica di conservazione dei dati applicata da RetentionEngine.
+ *
+ * Per ogni Percorso vengono mantenuti i keepBest Tracciamenti locali di
+ * durata minore e i keepLatest più recenti; gli altri vengono archiviati.
+ * Il Tracciamento migliore del Percorso non viene mai archiviato. Le
+ * previsioni meteo dei giorni passati, che non possono più essere
+ * richieste, possono essere cancellate.
+ *
+ * @use Viene creata da SerleenaApplication e passata a RetentionEngine.
+ * @field keepBest : int Numero di Tracciamenti migliori mantenuti per Percorso
+ * @field keepLatest : int Numero di Tracciamenti più recenti mantenuti per Percorso
+ * @field dropPastForecasts : boolean Indica se cancellare le previsioni dei giorni passati
+ * @field maxRowsPerPass : int Numero massimo di righe elaborate in un passo
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+public final class RetentionPolicy {
+
+    /**
+     * Politica predefinita: tre Tracciamenti migliori e cinque più recenti
+     * per Percorso, previsioni passate cancellate, al più 50 righe per
+     * passo.
+     */
+    public static final RetentionPolicy DEFAULT =
+            new RetentionPolicy(3, 5, true, 50);
+
+    private final int keepBest;
+    private final int keepLatest;
+    private final boolean dropPastForecasts;
+    private final int maxRowsPerPass;
+
+    /**
+     * Crea un nuovo oggetto RetentionPolicy.
+     *
+     * @param keepBest Numero di Tracciamenti migliori mantenuti per
+     *                 Percorso, almeno 1.
+     * @param keepLatest Numero di Tracciamenti più recenti mantenuti per
+     *                   Percorso, non negativo.
+     * @param dropPastForecasts Indica se cancellare le previsioni dei giorni
+     *                          passati.
+     * @param maxRowsPerPass Numero massimo di righe elaborate in un passo,
+     *                       almeno 1.
+     */
+    public RetentionPolicy(int keepBest, int keepLatest,
+                           boolean dropPastForecasts, int maxRowsPerPass) {
+        if (keepBest < 1)
+            throw new IllegalArgumentException("Illegal keepBest");
+        if (keepLatest < 0)
+            throw new IllegalArgumentException("Illegal keepLatest");
+        if (maxRowsPerPass < 1)
+            throw new IllegalArgumentException("Illegal maxRowsPerPass");
+        this.keepBest = keepBest;
+        this.keepLatest = keepLatest;
+        this.dropPastForecasts = dropPastForecasts;
+        this.maxRowsPerPass = maxRowsPerPass;
+    }
+
+    /**
+     * @return Numero di Tracciamenti migliori mantenuti per Percorso.
+     */
+    public int keepBest() {
+        return keepBest;
+    }
+
+    /**
+     * @return Numero di Tracciamenti più recenti mantenuti per Percorso.
+     */
+    public int keepLatest() {
+        return keepLatest;
+    }
+
+    /**
+     * @return True se le previsioni dei giorni passati vengono cancellate.
+     */
+    public boolean dropPastForecasts() {
+        return dropPastForecasts;
+    }
+
+    /**
+     * @return Numero massimo di righe elaborate in un passo.
+     */
+    public int maxRowsPerPass() {
+        return maxRowsPerPass;
+    }
+}
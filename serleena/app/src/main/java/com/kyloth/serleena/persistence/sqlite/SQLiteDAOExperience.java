@@ -37,12 +37,15 @@
  * Version  Programmer       Changes
  * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
  *                                          e documentazione in Javadoc.
+ * 1.0.1    Filippo Sestini  Aggiunto getTracks(boolean).
+ * 1.0.2    Filippo Sestini  Aggiunto getUserPoints(IRegion).
  */
 
 package com.kyloth.serleena.persistence.sqlite;
 
 import com.kyloth.serleena.common.GeoPoint;
 import com.kyloth.serleena.common.IQuadrant;
+import com.kyloth.serleena.common.IRegion;
 import com.kyloth.serleena.common.UserPoint;
 import com.kyloth.serleena.persistence.*;
 
@@ -88,8 +91,19 @@ class SQLiteDAOExperience implements IExperienceStorage
      */
     @Override
     public Iterable<ITrackStorage> getTracks() {
+        return getTracks(false);
+    }
+
+    /**
+     * Implementazione di IExperienceStorage.getTracks(boolean).
+     *
+     * @param withCheckpoints Indica se leggere subito i Checkpoint.
+     * @return Insieme enumerabile di Percorsi.
+     */
+    @Override
+    public Iterable<ITrackStorage> getTracks(boolean withCheckpoints) {
         ArrayList<ITrackStorage> list = new ArrayList<ITrackStorage>();
-        for (SQLiteDAOTrack t : dataSource.getTracks(this))
+        for (SQLiteDAOTrack t : dataSource.getTracks(this, withCheckpoints))
             list.add(t);
         return list;
     }
@@ -107,6 +121,14 @@ class SQLiteDAOExperience implements IExperienceStorage
         return dataSource.getUserPoints(this);
     }
 
+    /**
+     * Implementa IExperienceStorage.getUserPoints(IRegion).
+     */
+    @Override
+    public Iterable<UserPoint> getUserPoints(IRegion region) {
+        return dataSource.getUserPoints(this, region);
+    }
+
     /**
      * Implementazione di IExperienceStorage.addUserPoint().
      */
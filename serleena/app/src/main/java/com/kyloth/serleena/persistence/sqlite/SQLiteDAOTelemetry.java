@@ -37,20 +37,27 @@
  * Version  Programmer       Changes
  * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
  *                                          e documentazione in Javadoc.
+ * 1.0.1    Filippo Sestini  Eventi memorizzati come array di tempi per
+ *                                          checkpoint.
  */
 
 package com.kyloth.serleena.persistence.sqlite;
 
+import com.kyloth.serleena.common.CheckpointReachedTelemetryEvent;
 import com.kyloth.serleena.common.TelemetryEvent;
 import com.kyloth.serleena.persistence.ITelemetryStorage;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+
 /**
  * Rappresenta l'implementazione della persistenza di un Tracciamento su
  * database SQLite.
  *
  * @use Istanze di SQLiteDAOTelemetry vengono create e utilizzate dal DAO SerleenaSQLiteDataSource, che le restituisce all'esterno dietro interfaccia ITelemetryStorage. Mantiene un riferimento al database di appartenenza attraverso ISerleenaSQLiteDataSource.
  * @field getUUID : int ID della riga di database associata all'oggetto
- * @field events : Iterable<TelemetryEvent> Eventi del Tracciamento rappresentato dall'istanza
+ * @field events : Iterable<TelemetryEvent> Eventi del Tracciamento rappresentato dall'istanza, se forniti come oggetti
+ * @field timestamps : long[] Tempi dei checkpoint del Tracciamento, indicizzati per numero di checkpoint, se forniti in forma compatta
  * @author Filippo Sestini <sestini.filippo@gmail.com>
  * @version 1.0.0
  * @see com.kyloth.serleena.persistence.ITelemetryStorage
@@ -59,6 +66,7 @@ class SQLiteDAOTelemetry implements ITelemetryStorage {
 
     private final int id;
     private final Iterable<TelemetryEvent> events;
+    private final long[] timestamps;
 
     /**
      * Crea un nuovo oggetto SQLiteDAOTelemetry.
@@ -69,17 +77,59 @@ class SQLiteDAOTelemetry implements ITelemetryStorage {
      */
     public SQLiteDAOTelemetry(int id, Iterable<TelemetryEvent> events) {
         this.events = events;
+        this.timestamps = null;
+        this.id = id;
+    }
+
+    /**
+     * Crea un nuovo oggetto SQLiteDAOTelemetry a partire dai tempi dei suoi
+     * checkpoint, senza creare oggetti per i singoli eventi.
+     *
+     * @param id ID della riga della tabella del database a cui corrisponde
+     *           l'oggetto.
+     * @param timestamps Tempi dei checkpoint, nel formato descritto da
+     *                   ITelemetryStorage.getCheckpointTimestamps(). L'array
+     *                   non viene copiato.
+     */
+    public SQLiteDAOTelemetry(int id, long[] timestamps) {
+        if (timestamps == null)
+            throw new IllegalArgumentException("Illegal null timestamps");
+        this.events = null;
+        this.timestamps = timestamps;
         this.id = id;
     }
 
     /**
      * Restituisce gli eventi che costituiscono il Tracciamento.
      *
+     * Se l'oggetto è stato creato a partire dai tempi dei checkpoint, gli
+     * eventi vengono creati a ogni chiamata.
+     *
      * @return Insieme enumerabile di eventi di tracciamento.
      */
     @Override
     public Iterable<TelemetryEvent> getEvents() {
-        return events;
+        if (events != null)
+            return events;
+
+        ArrayList<TelemetryEvent> list =
+                new ArrayList<TelemetryEvent>(timestamps.length);
+        for (int i = 0; i < timestamps.length; i++)
+            if (timestamps[i] != NO_TIMESTAMP)
+                list.add(new CheckpointReachedTelemetryEvent(timestamps[i],
+                        i + 1));
+        return list;
+    }
+
+    /**
+     * Implementa ITelemetryStorage.getCheckpointTimestamps().
+     *
+     * @return Tempi dei checkpoint, o null se l'oggetto è stato creato a
+     * partire da un insieme di eventi.
+     */
+    @Override
+    public long[] getCheckpointTimestamps() {
+        return timestamps;
     }
 
     /**
@@ -104,8 +154,11 @@ class SQLiteDAOTelemetry implements ITelemetryStorage {
     public boolean equals(Object other) {
         if (other != null && other instanceof SQLiteDAOTelemetry) {
             SQLiteDAOTelemetry otherTelemetry = (SQLiteDAOTelemetry) other;
-            return id == otherTelemetry.id &&
-                    events.equals(otherTelemetry.events);
+            if (id != otherTelemetry.id)
+                return false;
+            if (timestamps != null && otherTelemetry.timestamps != null)
+                return Arrays.equals(timestamps, otherTelemetry.timestamps);
+            return getEvents().equals(otherTelemetry.getEvents());
         }
         return false;
     }
@@ -37,6 +37,9 @@
  * Version  Programmer       Changes
  * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
  *                                          e documentazione in Javadoc.
+ * 1.0.1    Filippo Sestini  Caricamento dei Checkpoint al primo accesso.
+ * 1.0.2    Filippo Sestini  Aggiunto createTelemetries().
+ * 1.0.3    Filippo Sestini  Aggiunto getBestTelemetry().
  */
 
 package com.kyloth.serleena.persistence.sqlite;
@@ -57,7 +60,7 @@ import java.util.UUID;
  * @use Istanze di SQLiteDAOTrack vengono create e utilizzate dal DAO SerleenaSQLiteDataSource, che le restituisce all'esterno dietro interfaccia ITrackStorage. Mantiene un riferimento al database di appartenenza attraverso ISerleenaSQLiteDataSource.
  * @field getUUID : int ID della riga di database associata all'oggetto
  * @field dataSource : ISerleenaSQLiteDataSource Database a cui fa riferimento l'oggetto
- * @field checkpoints : DirectAccessList<Checkpoint> Lista dei checkpoints associati al Percorso rappresentato dall'oggetto
+ * @field checkpoints : DirectAccessList<Checkpoint> Lista dei checkpoints associati al Percorso rappresentato dall'oggetto, null se non ancora letta
  * @author Filippo Sestini <sestini.filippo@gmail.com>
  * @version 1.0.0
  * @see com.kyloth.serleena.persistence.ITrackStorage
@@ -95,6 +98,29 @@ class SQLiteDAOTrack implements ITrackStorage {
         this.name = name;
     }
 
+    /**
+     * Crea un nuovo oggetto SQLiteDAOTrack i cui Checkpoint vengono letti
+     * dalla sorgente di dati solo al primo accesso.
+     *
+     * @param uuid UUID che identifica l'entità di persistenza associata al
+     *             Percorso.
+     * @param name Nome del Percorso.
+     * @param dataSource Sorgente di dati da cui proviene l'entità.
+     */
+    public SQLiteDAOTrack(UUID uuid,
+                          String name,
+                          ISerleenaSQLiteDataSource dataSource) {
+        if (name == null)
+            throw new IllegalArgumentException("Illegal null name");
+        if (dataSource == null)
+            throw new IllegalArgumentException("Illegal null data source");
+
+        this.uuid = uuid;
+        this.dataSource = dataSource;
+        this.checkpoints = null;
+        this.name = name;
+    }
+
     /**
      * Implementazione di ITrackStorage.createTelemetry().
      *
@@ -108,6 +134,20 @@ class SQLiteDAOTrack implements ITrackStorage {
         dataSource.createTelemetry(events, this);
     }
 
+    /**
+     * Implementazione di ITrackStorage.createTelemetries().
+     *
+     * @param telemetries Elenchi di eventi, uno per Tracciamento.
+     */
+    @Override
+    public void createTelemetries(
+            Iterable<Iterable<TelemetryEvent>> telemetries) {
+        if (telemetries == null)
+            throw new IllegalArgumentException();
+
+        dataSource.createTelemetries(telemetries, this);
+    }
+
     /**
      * Implementazione di ITrackStorage.getTelemetries().
      *
@@ -118,6 +158,16 @@ class SQLiteDAOTrack implements ITrackStorage {
         return getTelemetries(true);
     }
 
+    /**
+     * Implementa ITrackStorage.getBestTelemetry().
+     *
+     * @return Tracciamento migliore del Percorso, o null se assente.
+     */
+    @Override
+    public ITelemetryStorage getBestTelemetry() {
+        return dataSource.getBestTelemetry(this);
+    }
+
     @Override
     public Iterable<ITelemetryStorage> getTelemetries(boolean includeGhost) {
         ArrayList<ITelemetryStorage> list = new ArrayList<ITelemetryStorage>();
@@ -133,9 +183,14 @@ class SQLiteDAOTrack implements ITrackStorage {
 
     /**
      * Implementa ITrackStorage.getCheckpoints().
+     *
+     * Se i Checkpoint non sono stati forniti alla costruzione, vengono letti
+     * dalla sorgente di dati alla prima chiamata.
      */
     @Override
     public DirectAccessList<Checkpoint> getCheckpoints() {
+        if (checkpoints == null)
+            checkpoints = dataSource.getCheckpoints(this);
         return checkpoints;
     }
 
@@ -172,7 +227,7 @@ class SQLiteDAOTrack implements ITrackStorage {
         if (other != null && other instanceof SQLiteDAOTrack) {
             SQLiteDAOTrack otherTrack = (SQLiteDAOTrack) other;
             return uuid.equals(otherTrack.uuid) && name.equals(otherTrack.name) &&
-                    checkpoints.equals(otherTrack.checkpoints) &&
+                    getCheckpoints().equals(otherTrack.getCheckpoints()) &&
                     getTelemetries().equals(otherTrack.getTelemetries());
         }
         return false;
@@ -0,0 +1,127 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: SchemaMigration.java
+ * Package: com.kyloth.serleena.persistence.sqlite
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ */
+
+package com.kyloth.serleena.persistence.sqlite;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * Rappresenta un passo di aggiornamento dello schema del database, che
+ * converte i dati presenti dalla versione precedente alla versione indicata.
+ *
+ * @use Le istanze sono definite da SerleenaDatabase, che in onUpgrade applica in ordine tutti i passi compresi tra la versione presente su disco e quella richiesta, senza cancellare i dati già memorizzati.
+ * @field version : int Versione dello schema prodotta dal passo
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+abstract class SchemaMigration {
+
+    private final int version;
+
+    /**
+     * Crea un passo di aggiornamento.
+     *
+     * @param version Versione dello schema prodotta dal passo. Deve essere
+     *                maggiore di 1.
+     */
+    public SchemaMigration(int version) {
+        if (version < 2)
+            throw new IllegalArgumentException("Illegal schema version");
+        this.version = version;
+    }
+
+    /**
+     * Restituisce la versione dello schema prodotta dal passo.
+     *
+     * @return Versione dello schema.
+     */
+    public int version() {
+        return version;
+    }
+
+    /**
+     * Converte il database dalla versione version() - 1 alla versione
+     * version().
+     *
+     * @param db Il database.
+     */
+    public abstract void apply(SQLiteDatabase db);
+
+    /**
+     * Applica in ordine i passi necessari a portare il database da una
+     * versione a un'altra.
+     *
+     * I passi devono essere ordinati per versione crescente e coprire senza
+     * interruzioni l'intervallo richiesto.
+     *
+     * @param db Il database.
+     * @param migrations Passi di aggiornamento disponibili.
+     * @param oldVersion Versione presente su disco.
+     * @param newVersion Versione da raggiungere.
+     * @throws IllegalStateException Se manca il passo per una delle versioni
+     * intermedie.
+     */
+    public static void migrate(SQLiteDatabase db,
+                               SchemaMigration[] migrations,
+                               int oldVersion, int newVersion) {
+        if (db == null || migrations == null)
+            throw new IllegalArgumentException("Illegal null argument");
+        if (oldVersion > newVersion)
+            throw new IllegalArgumentException("Illegal version range");
+
+        int current = oldVersion;
+        for (SchemaMigration migration : migrations) {
+            if (migration.version() <= current)
+                continue;
+            if (migration.version() > newVersion)
+                break;
+            if (migration.version() != current + 1)
+                throw new IllegalStateException(
+                        "No migration to version " + (current + 1));
+            migration.apply(db);
+            current = migration.version();
+        }
+
+        if (current != newVersion)
+            throw new IllegalStateException(
+                    "No migration to version " + (current + 1));
+    }
+}
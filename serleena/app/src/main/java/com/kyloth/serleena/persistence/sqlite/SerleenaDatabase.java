@@ -42,20 +42,50 @@
  * 1.0.3    Filippo Sestini  Aggiunta tabella 'checkpoints' al
  *                                          database.
  * 1.0.4    Tobia Tesan      Rimossa TABLE_RASTER_MAPS
+ * 1.0.5    Filippo Sestini  Aggiunto contatore di versione dei dati.
+ * 1.0.6    Filippo Sestini  Raster memorizzati come BLOB, versione 2.
+ * 1.0.7    Filippo Sestini  Raster suddivisi in pagine nella tabella
+ *                                          'raster_pages', versione 3.
+ * 1.0.8    Filippo Sestini  Aggiunti indici sulle chiavi esterne e sulle
+ *                                          colonne di ricerca, versione 4.
+ * 1.0.9    Filippo Sestini  Aggiornamenti dello schema espressi come passi
+ *                                          ordinati per versione.
+ * 1.0.10   Filippo Sestini  Abilitato il write-ahead logging.
+ * 1.0.11   Filippo Sestini  Aggiunta tabella 'best_telemetries',
+ *                                          versione 5.
+ * 1.0.12   Filippo Sestini  Aggiunta tabella 'telemetries_archive',
+ *                                          versione 6.
+ * 1.0.13   Filippo Sestini  Abilitato auto_vacuum incrementale.
+ * 1.0.14   Filippo Sestini  Aggiunto indice di ricerca full-text,
+ *                                          versione 7.
+ * 1.0.15   Filippo Sestini  Memoria tampone dei Punti Utente.
+ * 1.0.16   Filippo Sestini  Aggiunto enableIncrementalVacuum().
+ * 1.0.17   Filippo Sestini  Lunghezza dei nomi cercabili memorizzata e
+ *                                          indicizzata nella versione 7.
  */
 
 package com.kyloth.serleena.persistence.sqlite;
 
 import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteDatabase.CursorFactory;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Base64;
+
+import com.kyloth.serleena.common.SearchResultType;
+
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Supporta la creazione e l'apertura del database SQLite utilizzato
  * dall'applicazione serleena, secondo quando prescritto dal framework Android.
  *
  * @use Viene utilizzato dall'activity e da SerleenaSQLiteDataSource. Istanziato dall'activity, che lo utilizza per creare il DAO di tipo SerleenaSQLiteDataSource. Quest'ultimo accede al database dell'applicazione attraverso l'oggetto SerleenaDatabase con il quale è stato creato.
+ * @field dataVersion : AtomicInteger Contatore incrementato a ogni sostituzione dei dati sincronizzati
+ * @field userPointBuffer : UserPointBuffer Punti Utente in attesa di essere scritti nel database
  * @author Filippo Sestini <sestini.filippo@gmail.com>
  * @version 1.0.0
  */
@@ -72,7 +102,26 @@ public class SerleenaDatabase extends SQLiteOpenHelper {
     public static final String TABLE_USER_POINTS = "user_points";
     public static final String TABLE_CHECKPOINTS = "checkpoints";
     public static final String TABLE_RASTERS = "rasters";
-    private static final int DATABASE_VERSION = 1;
+    public static final String TABLE_RASTER_PAGES = "raster_pages";
+    public static final String TABLE_BEST_TELEMETRIES = "best_telemetries";
+    public static final String TABLE_TELEMETRIES_ARCHIVE =
+        "telemetries_archive";
+    public static final String TABLE_SEARCH_ENTRIES = "search_entries";
+    public static final String TABLE_SEARCH_INDEX = "search_index";
+    public static final int DATABASE_VERSION = 7;
+
+    /**
+     * Dimensione massima in byte di una pagina di raster.
+     *
+     * Ogni riga letta da un cursore deve essere contenuta nella CursorWindow
+     * (circa 2 MB), e ogni istruzione SQL del dump non deve superare il
+     * limite di lunghezza di SQLite (1 MB, che per un letterale esadecimale
+     * corrisponde a circa 500 KB di dati).
+     */
+    public static final int RASTER_PAGE_SIZE = 256 * 1024;
+
+    private final AtomicInteger dataVersion = new AtomicInteger();
+    private final UserPointBuffer userPointBuffer;
 
     public static final String EVENT_TYPE_CHECKPOINT = "event_checkpoint";
 
@@ -147,15 +196,238 @@ public class SerleenaDatabase extends SQLiteOpenHelper {
 
     private static final String CREATE_TABLE_RASTERS =
             "CREATE TABLE " + TABLE_RASTERS + " (" +
+                    "raster_id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
                     "raster_experience TEXT NOT NULL, " +
                     "raster_nw_corner_latitude REAL NOT NULL, " +
                     "raster_nw_corner_longitude REAL NOT NULL, " +
                     "raster_se_corner_latitude REAL NOT NULL, " +
                     "raster_se_corner_longitude REAL NOT NULL, " +
-                    "raster_base64 TEXT NOT NULL, " +
                     "FOREIGN KEY(raster_experience) REFERENCES " + TABLE_EXPERIENCES +
                     "(experience_uuid) ON DELETE CASCADE)";
 
+    private static final String CREATE_TABLE_RASTER_PAGES =
+            "CREATE TABLE " + TABLE_RASTER_PAGES + " (" +
+                    "page_raster INTEGER NOT NULL, " +
+                    "page_num INTEGER NOT NULL, " +
+                    "page_data BLOB NOT NULL, " +
+                    "PRIMARY KEY(page_raster, page_num), " +
+                    "FOREIGN KEY(page_raster) REFERENCES " + TABLE_RASTERS +
+                    "(raster_id) ON DELETE CASCADE)";
+
+    /**
+     * Tracciamento migliore di ciascun Percorso, con la sua durata e i tempi
+     * dei checkpoint nel formato di CheckpointTimestamps.pack().
+     */
+    private static final String CREATE_TABLE_BEST_TELEMETRIES =
+            "CREATE TABLE " + TABLE_BEST_TELEMETRIES + " (" +
+                    "best_track TEXT PRIMARY KEY NOT NULL, " +
+                    "best_telem INTEGER NOT NULL, " +
+                    "best_duration INTEGER NOT NULL, " +
+                    "best_timestamps BLOB NOT NULL, " +
+                    "FOREIGN KEY(best_track) REFERENCES " + TABLE_TRACKS +
+                    "(track_uuid) ON DELETE CASCADE, " +
+                    "FOREIGN KEY(best_telem) REFERENCES " + TABLE_TELEMETRIES +
+                    "(telem_id) ON DELETE CASCADE)";
+
+    private static final String CREATE_INDEX_BEST_TELEM =
+            "CREATE INDEX IF NOT EXISTS idx_best_telem ON " +
+                    TABLE_BEST_TELEMETRIES + " (best_telem)";
+
+    /**
+     * Tracciamenti locali archiviati da RetentionEngine, ciascuno in
+     * un'unica riga con i tempi dei checkpoint nel formato di
+     * CheckpointTimestamps.pack(). L'ID è quello che il Tracciamento aveva
+     * nella tabella TABLE_TELEMETRIES.
+     */
+    private static final String CREATE_TABLE_TELEMETRIES_ARCHIVE =
+            "CREATE TABLE " + TABLE_TELEMETRIES_ARCHIVE + " (" +
+                    "archive_id INTEGER PRIMARY KEY NOT NULL, " +
+                    "archive_track TEXT NOT NULL, " +
+                    "archive_timestamps BLOB NOT NULL, " +
+                    "FOREIGN KEY(archive_track) REFERENCES " + TABLE_TRACKS +
+                    "(track_uuid) ON DELETE CASCADE)";
+
+    private static final String CREATE_INDEX_ARCHIVE_TRACK =
+            "CREATE INDEX IF NOT EXISTS idx_archive_track ON " +
+                    TABLE_TELEMETRIES_ARCHIVE + " (archive_track)";
+
+    /**
+     * Elementi cercabili per nome: Esperienze, Percorsi e contatti di
+     * emergenza, con il tipo codificato dall'ordinale di SearchResultType.
+     * La lunghezza del nome è memorizzata per ordinare i risultati senza
+     * ricalcolarla a ogni ricerca.
+     */
+    private static final String CREATE_TABLE_SEARCH_ENTRIES =
+            "CREATE TABLE " + TABLE_SEARCH_ENTRIES + " (" +
+                    "entry_id INTEGER PRIMARY KEY NOT NULL, " +
+                    "entry_type INTEGER NOT NULL, " +
+                    "entry_name TEXT NOT NULL, " +
+                    "entry_length INTEGER NOT NULL, " +
+                    "entry_uuid TEXT, " +
+                    "entry_experience TEXT, " +
+                    "entry_value TEXT)";
+
+    /**
+     * Indice nell'ordine dei risultati di ricerca, che permette di leggerli
+     * una pagina alla volta a partire dall'ultimo elemento letto.
+     */
+    private static final String CREATE_INDEX_SEARCH_RANK =
+            "CREATE INDEX IF NOT EXISTS idx_search_rank ON " +
+                    TABLE_SEARCH_ENTRIES +
+                    " (entry_length, entry_name, entry_id)";
+
+    /**
+     * Indice full-text dei nomi di TABLE_SEARCH_ENTRIES, il cui docid è
+     * l'entry_id dell'elemento. Gli indici sui prefissi di due e tre
+     * caratteri velocizzano le ricerche per prefisso eseguite durante la
+     * digitazione.
+     */
+    private static final String CREATE_TABLE_SEARCH_INDEX =
+            "CREATE VIRTUAL TABLE " + TABLE_SEARCH_INDEX +
+                    " USING fts4(search_name, prefix=\"2,3\")";
+
+    private static final String[] REBUILD_SEARCH_INDEX = {
+        "DELETE FROM " + TABLE_SEARCH_INDEX,
+        "DELETE FROM " + TABLE_SEARCH_ENTRIES,
+        "INSERT INTO " + TABLE_SEARCH_ENTRIES +
+                " (entry_type, entry_name, entry_length, entry_uuid," +
+                " entry_experience)" +
+                " SELECT " + SearchResultType.Experience.ordinal() +
+                ", experience_name, length(experience_name)," +
+                " experience_uuid, experience_uuid FROM " +
+                TABLE_EXPERIENCES,
+        "INSERT INTO " + TABLE_SEARCH_ENTRIES +
+                " (entry_type, entry_name, entry_length, entry_uuid," +
+                " entry_experience)" +
+                " SELECT " + SearchResultType.Track.ordinal() +
+                ", track_name, length(track_name), track_uuid," +
+                " track_experience FROM " +
+                TABLE_TRACKS,
+        "INSERT INTO " + TABLE_SEARCH_ENTRIES +
+                " (entry_type, entry_name, entry_length, entry_value)" +
+                " SELECT " + SearchResultType.Contact.ordinal() +
+                ", contact_name, length(contact_name), contact_value FROM " +
+                TABLE_CONTACTS,
+        "INSERT INTO " + TABLE_SEARCH_INDEX + " (docid, search_name)" +
+                " SELECT entry_id, entry_name FROM " + TABLE_SEARCH_ENTRIES
+    };
+
+    private static final String QUERY_ALL_TELEMETRIES =
+            "SELECT telem_track, telem_id, eventc_timestamp, eventc_value " +
+            "FROM " + TABLE_TELEMETRIES + " JOIN " + TABLE_TELEM_EVENTS_CHECKP +
+            " ON eventc_telem = telem_id ORDER BY telem_track, telem_id, eventc_id";
+
+    static final String INSERT_BEST_TELEMETRY =
+            "INSERT OR REPLACE INTO " + TABLE_BEST_TELEMETRIES +
+            " (best_track, best_telem, best_duration, best_timestamps)" +
+            " VALUES (?, ?, ?, ?)";
+
+    /**
+     * Indici secondari sulle chiavi esterne e sulle colonne usate nelle
+     * ricerche di SerleenaSQLiteDataSource.
+     *
+     * Oltre a evitare la scansione completa delle tabelle nelle query per
+     * Esperienza o Percorso, gli indici sulle chiavi esterne permettono a
+     * SQLite di applicare gli ON DELETE CASCADE senza scandire le tabelle
+     * figlie. Gli indici su checkpoint e punti utente includono le colonne
+     * lette, in modo che le relative query non accedano alla tabella.
+     */
+    private static final String[] CREATE_INDEXES = {
+        "CREATE INDEX IF NOT EXISTS idx_track_experience ON " +
+                TABLE_TRACKS + " (track_experience)",
+        "CREATE INDEX IF NOT EXISTS idx_telem_track ON " +
+                TABLE_TELEMETRIES + " (telem_track)",
+        "CREATE INDEX IF NOT EXISTS idx_eventc_telem ON " +
+                TABLE_TELEM_EVENTS_CHECKP + " (eventc_telem)",
+        "CREATE INDEX IF NOT EXISTS idx_checkpoint_track ON " +
+                TABLE_CHECKPOINTS + " (checkpoint_track, checkpoint_num, " +
+                "checkpoint_latitude, checkpoint_longitude)",
+        "CREATE INDEX IF NOT EXISTS idx_userpoint_experience ON " +
+                TABLE_USER_POINTS + " (userpoint_experience, " +
+                "userpoint_x, userpoint_y)",
+        "CREATE INDEX IF NOT EXISTS idx_raster_experience ON " +
+                TABLE_RASTERS + " (raster_experience)",
+        "CREATE INDEX IF NOT EXISTS idx_weather_date ON " +
+                TABLE_WEATHER_FORECASTS + " (weather_date, " +
+                "weather_nw_corner_latitude, weather_nw_corner_longitude, " +
+                "weather_se_corner_latitude, weather_se_corner_longitude)"
+    };
+
+    /**
+     * Tabella dei raster come definita nella versione 2 del database,
+     * destinazione della conversione dalla versione 1.
+     */
+    private static final String CREATE_TABLE_RASTERS_V2 =
+            "CREATE TABLE " + TABLE_RASTERS + " (" +
+                    "raster_experience TEXT NOT NULL, " +
+                    "raster_nw_corner_latitude REAL NOT NULL, " +
+                    "raster_nw_corner_longitude REAL NOT NULL, " +
+                    "raster_se_corner_latitude REAL NOT NULL, " +
+                    "raster_se_corner_longitude REAL NOT NULL, " +
+                    "raster_data BLOB NOT NULL, " +
+                    "FOREIGN KEY(raster_experience) REFERENCES " + TABLE_EXPERIENCES +
+                    "(experience_uuid) ON DELETE CASCADE)";
+
+    /**
+     * Passi di aggiornamento dello schema, ordinati per versione. Ogni
+     * modifica allo schema deve incrementare DATABASE_VERSION e aggiungere
+     * in coda il passo che converte i dati dalla versione precedente.
+     */
+    private static final SchemaMigration[] MIGRATIONS = {
+        new SchemaMigration(2) {
+            @Override
+            public void apply(SQLiteDatabase db) {
+                upgradeRastersToBlob(db);
+            }
+        },
+        new SchemaMigration(3) {
+            @Override
+            public void apply(SQLiteDatabase db) {
+                upgradeRastersToPages(db);
+            }
+        },
+        new SchemaMigration(4) {
+            @Override
+            public void apply(SQLiteDatabase db) {
+                createIndexes(db);
+            }
+        },
+        new SchemaMigration(5) {
+            @Override
+            public void apply(SQLiteDatabase db) {
+                db.execSQL(CREATE_TABLE_BEST_TELEMETRIES);
+                db.execSQL(CREATE_INDEX_BEST_TELEM);
+                rebuildBestTelemetries(db);
+            }
+        },
+        new SchemaMigration(6) {
+            @Override
+            public void apply(SQLiteDatabase db) {
+                db.execSQL(CREATE_TABLE_TELEMETRIES_ARCHIVE);
+                db.execSQL(CREATE_INDEX_ARCHIVE_TRACK);
+            }
+        },
+        new SchemaMigration(7) {
+            @Override
+            public void apply(SQLiteDatabase db) {
+                db.execSQL(CREATE_TABLE_SEARCH_ENTRIES);
+                db.execSQL(CREATE_TABLE_SEARCH_INDEX);
+                db.execSQL(CREATE_INDEX_SEARCH_RANK);
+                rebuildSearchIndex(db);
+            }
+        }
+    };
+
+    /**
+     * Crea un oggetto SerleenaDatabase associato al database predefinito dalla
+     * costante DATABASE_NAME, alla versione corrente DATABASE_VERSION.
+     *
+     * @param context Contesto usato per creare o aprire il database.
+     */
+    public SerleenaDatabase(Context context) {
+        this(context, DATABASE_VERSION);
+    }
+
     /**
      * Crea un oggetto SerleenaDatabase associato al database predefinito dalla
      * costante DATABASE_NAME.
@@ -179,6 +451,39 @@ public class SerleenaDatabase extends SQLiteOpenHelper {
     public SerleenaDatabase(Context context, String name, CursorFactory factory,
                          int version) {
         super(context, name, factory, version);
+        this.userPointBuffer = new UserPointBuffer(this,
+                UserPointBuffer.DEFAULT_FLUSH_THRESHOLD,
+                UserPointBuffer.DEFAULT_FLUSH_DELAY_MILLIS);
+    }
+
+    /**
+     * Restituisce la memoria tampone attraverso cui vengono inseriti i Punti
+     * Utente nel database.
+     *
+     * @return Memoria tampone dei Punti Utente.
+     */
+    UserPointBuffer getUserPointBuffer() {
+        return userPointBuffer;
+    }
+
+    /**
+     * Restituisce la versione corrente dei dati sincronizzati.
+     *
+     * Il valore cambia ogni volta che il contenuto del database viene
+     * sostituito da un caricamento di SerleenaSQLiteDataSink, permettendo a
+     * chi mantiene strutture derivate dai dati di riconoscerle come obsolete.
+     *
+     * @return Versione dei dati.
+     */
+    public int dataVersion() {
+        return dataVersion.get();
+    }
+
+    /**
+     * Segnala che il contenuto del database è stato sostituito.
+     */
+    void notifyDataChanged() {
+        dataVersion.incrementAndGet();
     }
 
     /**
@@ -200,6 +505,15 @@ public class SerleenaDatabase extends SQLiteOpenHelper {
         db.execSQL(CREATE_TABLE_USER_POINTS);
         db.execSQL(CREATE_TABLE_CHECKPOINTS);
         db.execSQL(CREATE_TABLE_RASTERS);
+        db.execSQL(CREATE_TABLE_RASTER_PAGES);
+        db.execSQL(CREATE_TABLE_BEST_TELEMETRIES);
+        db.execSQL(CREATE_TABLE_TELEMETRIES_ARCHIVE);
+        db.execSQL(CREATE_TABLE_SEARCH_ENTRIES);
+        db.execSQL(CREATE_TABLE_SEARCH_INDEX);
+        createIndexes(db);
+        db.execSQL(CREATE_INDEX_BEST_TELEM);
+        db.execSQL(CREATE_INDEX_ARCHIVE_TRACK);
+        db.execSQL(CREATE_INDEX_SEARCH_RANK);
     }
 
     /**
@@ -207,6 +521,18 @@ public class SerleenaDatabase extends SQLiteOpenHelper {
      *
      * E' chiamato prima di onCreate, onUpgrade, etc.
      *
+     * Il database è aperto in modalità write-ahead logging: mentre una
+     * sincronizzazione scrive i nuovi dati in una transazione, le letture
+     * eseguite da altri thread attraverso lo stesso oggetto SerleenaDatabase
+     * proseguono senza attendere, vedendo lo stato dell'ultima transazione
+     * completata.
+     *
+     * I nuovi database sono creati con auto_vacuum incrementale, in modo che
+     * DatabaseMaintenance possa restituire al file system le pagine lasciate
+     * libere dai caricamenti. Su un database esistente l'impostazione ha
+     * effetto solo dopo un VACUUM completo, eseguito da
+     * enableIncrementalVacuum() al termine del primo caricamento.
+     *
      * @author Tobia Tesan <tobia.tesan@gmail.com>
      * @param db Il database.
      * @since 1.0.2
@@ -214,13 +540,19 @@ public class SerleenaDatabase extends SQLiteOpenHelper {
     @Override
     public void onConfigure(SQLiteDatabase db) {
         db.setForeignKeyConstraintsEnabled(true);
+        db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+        db.enableWriteAheadLogging();
     }
 
     /**
      * Aggiorna la versione del database su disco.
      *
      * Metodo chiamato quando la versione del database corrente non corrisponde
-     * alla versione presente su disco, ed è necessario aggiornarla.
+     * alla versione presente su disco, ed è necessario aggiornarla. Vengono
+     * applicati in ordine i passi di MIGRATIONS successivi alla versione su
+     * disco, che convertono i dati presenti al nuovo formato senza
+     * cancellarli. SQLiteOpenHelper esegue l'intero aggiornamento in
+     * un'unica transazione.
      *
      * @param db Il database.
      * @param oldVersion Vecchia versione.
@@ -228,16 +560,227 @@ public class SerleenaDatabase extends SQLiteOpenHelper {
      */
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_EXPERIENCES);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_TRACKS);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_TELEMETRIES);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_TELEM_EVENTS_CHECKP);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_CONTACTS);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_WEATHER_FORECASTS);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_USER_POINTS);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_CHECKPOINTS);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_RASTERS);
-
-        onCreate(db);
+        SchemaMigration.migrate(db, MIGRATIONS, oldVersion, newVersion);
+    }
+
+    /**
+     * Converte all'auto_vacuum incrementale un database creato prima della
+     * sua introduzione, eseguendo un VACUUM completo. Se il database usa già
+     * l'auto_vacuum incrementale, il metodo non ha effetto.
+     *
+     * Il VACUUM riscrive l'intero file e non può essere eseguito all'interno
+     * di una transazione.
+     *
+     * @param db Il database.
+     */
+    static void enableIncrementalVacuum(SQLiteDatabase db) {
+        if (DatabaseUtils.longForQuery(db, "PRAGMA auto_vacuum", null) ==
+                DatabaseMaintenance.AUTO_VACUUM_INCREMENTAL)
+            return;
+        db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+        db.execSQL("VACUUM");
+    }
+
+    /**
+     * Ricostruisce l'indice di ricerca a partire dai nomi di Esperienze,
+     * Percorsi e contatti di emergenza presenti, sostituendo il contenuto
+     * delle tabelle TABLE_SEARCH_ENTRIES e TABLE_SEARCH_INDEX.
+     *
+     * @param db Il database.
+     */
+    static void rebuildSearchIndex(SQLiteDatabase db) {
+        for (String sql : REBUILD_SEARCH_INDEX)
+            db.execSQL(sql);
+    }
+
+    /**
+     * Ricalcola il Tracciamento migliore di ogni Percorso a partire da tutti
+     * i Tracciamenti presenti, sostituendo il contenuto della tabella
+     * TABLE_BEST_TELEMETRIES.
+     *
+     * Il migliore è il Tracciamento di durata minima; a parità di durata
+     * prevale quello con ID minore. I Tracciamenti di cui non è possibile
+     * stabilire la durata vengono ignorati. Tutti i Tracciamenti vengono
+     * letti con un'unica query ordinata per Percorso.
+     *
+     * @param db Il database.
+     */
+    static void rebuildBestTelemetries(SQLiteDatabase db) {
+        db.execSQL("DELETE FROM " + TABLE_BEST_TELEMETRIES);
+
+        Cursor rows = db.rawQuery(QUERY_ALL_TELEMETRIES, null);
+        SQLiteStatement insert = db.compileStatement(INSERT_BEST_TELEMETRY);
+        CheckpointTimestamps timestamps = new CheckpointTimestamps();
+
+        boolean hasRow = rows.moveToNext();
+        while (hasRow) {
+            String track = rows.getString(0);
+            long bestId = 0;
+            int bestDuration = CheckpointTimestamps.NO_DURATION;
+            long[] bestTimestamps = null;
+
+            do {
+                long telemId = rows.getLong(1);
+                timestamps.clear();
+                do {
+                    if (rows.getInt(3) > 0)
+                        timestamps.put(rows.getInt(3), rows.getLong(2));
+                    hasRow = rows.moveToNext();
+                } while (hasRow && rows.getLong(1) == telemId);
+
+                long[] current = timestamps.toArray();
+                int duration = CheckpointTimestamps.duration(current);
+                if (duration != CheckpointTimestamps.NO_DURATION &&
+                        (bestTimestamps == null || duration < bestDuration)) {
+                    bestId = telemId;
+                    bestDuration = duration;
+                    bestTimestamps = current;
+                }
+            } while (hasRow && rows.getString(0).equals(track));
+
+            if (bestTimestamps != null) {
+                insert.bindString(1, track);
+                insert.bindLong(2, bestId);
+                insert.bindLong(3, bestDuration);
+                insert.bindBlob(4, CheckpointTimestamps.pack(bestTimestamps));
+                insert.executeInsert();
+            }
+        }
+
+        rows.close();
+        insert.close();
+    }
+
+    /**
+     * Crea gli indici secondari definiti in CREATE_INDEXES, se non presenti.
+     *
+     * @param db Il database.
+     */
+    private static void createIndexes(SQLiteDatabase db) {
+        for (String ddl : CREATE_INDEXES)
+            db.execSQL(ddl);
+    }
+
+    /**
+     * Converte la tabella dei raster dalla versione 1, in cui le immagini
+     * sono memorizzate come testo base64, alla versione 2, in cui sono
+     * memorizzate come BLOB.
+     *
+     * Le righe vengono convertite una alla volta, in modo da non richiedere
+     * la lettura dell'intera tabella in un unico cursore.
+     *
+     * @param db Il database.
+     */
+    private static void upgradeRastersToBlob(SQLiteDatabase db) {
+        String oldTable = TABLE_RASTERS + "_v1";
+        db.execSQL("ALTER TABLE " + TABLE_RASTERS + " RENAME TO " + oldTable);
+        db.execSQL(CREATE_TABLE_RASTERS_V2);
+
+        Cursor ids = db.query(oldTable, new String[] { "rowid" }, null, null,
+                null, null, null);
+        SQLiteStatement insert = db.compileStatement(
+                "INSERT INTO " + TABLE_RASTERS + " (" +
+                "raster_experience, " +
+                "raster_nw_corner_latitude, " +
+                "raster_nw_corner_longitude, " +
+                "raster_se_corner_latitude, " +
+                "raster_se_corner_longitude, " +
+                "raster_data) VALUES (?, ?, ?, ?, ?, ?)");
+
+        while (ids.moveToNext()) {
+            Cursor row = db.query(oldTable, new String[] {
+                    "raster_experience",
+                    "raster_nw_corner_latitude",
+                    "raster_nw_corner_longitude",
+                    "raster_se_corner_latitude",
+                    "raster_se_corner_longitude",
+                    "raster_base64"
+            }, "rowid = " + ids.getLong(0), null, null, null, null);
+
+            if (row.moveToNext()) {
+                insert.bindString(1, row.getString(0));
+                insert.bindDouble(2, row.getDouble(1));
+                insert.bindDouble(3, row.getDouble(2));
+                insert.bindDouble(4, row.getDouble(3));
+                insert.bindDouble(5, row.getDouble(4));
+                insert.bindBlob(6,
+                        Base64.decode(row.getString(5), Base64.DEFAULT));
+                insert.executeInsert();
+            }
+            row.close();
+        }
+
+        ids.close();
+        insert.close();
+        db.execSQL("DROP TABLE " + oldTable);
+    }
+
+    /**
+     * Converte la tabella dei raster dalla versione 2, in cui ogni immagine
+     * è memorizzata in un unico BLOB, alla versione 3, in cui è suddivisa in
+     * pagine di al più RASTER_PAGE_SIZE byte nella tabella TABLE_RASTER_PAGES.
+     *
+     * Ogni pagina è letta dalla vecchia tabella con substr(), in modo che
+     * nessuna riga del cursore superi la dimensione di una pagina.
+     *
+     * @param db Il database.
+     */
+    private static void upgradeRastersToPages(SQLiteDatabase db) {
+        String oldTable = TABLE_RASTERS + "_v2";
+        db.execSQL("ALTER TABLE " + TABLE_RASTERS + " RENAME TO " + oldTable);
+        db.execSQL(CREATE_TABLE_RASTERS);
+        db.execSQL(CREATE_TABLE_RASTER_PAGES);
+
+        Cursor rows = db.query(oldTable, new String[] {
+                "rowid",
+                "raster_experience",
+                "raster_nw_corner_latitude",
+                "raster_nw_corner_longitude",
+                "raster_se_corner_latitude",
+                "raster_se_corner_longitude",
+                "length(raster_data)"
+        }, null, null, null, null, null);
+        SQLiteStatement insertRaster = db.compileStatement(
+                "INSERT INTO " + TABLE_RASTERS + " (" +
+                "raster_experience, " +
+                "raster_nw_corner_latitude, " +
+                "raster_nw_corner_longitude, " +
+                "raster_se_corner_latitude, " +
+                "raster_se_corner_longitude) VALUES (?, ?, ?, ?, ?)");
+        SQLiteStatement insertPage = db.compileStatement(
+                "INSERT INTO " + TABLE_RASTER_PAGES + " (" +
+                "page_raster, page_num, page_data) VALUES (?, ?, ?)");
+
+        while (rows.moveToNext()) {
+            long oldId = rows.getLong(0);
+            insertRaster.bindString(1, rows.getString(1));
+            insertRaster.bindDouble(2, rows.getDouble(2));
+            insertRaster.bindDouble(3, rows.getDouble(3));
+            insertRaster.bindDouble(4, rows.getDouble(4));
+            insertRaster.bindDouble(5, rows.getDouble(5));
+            long rasterId = insertRaster.executeInsert();
+
+            long length = rows.getLong(6);
+            int pageNum = 0;
+            for (long offset = 0; offset < length;
+                 offset += RASTER_PAGE_SIZE) {
+                Cursor page = db.query(oldTable, new String[] {
+                        "substr(raster_data, " + (offset + 1) + ", " +
+                                RASTER_PAGE_SIZE + ")"
+                }, "rowid = " + oldId, null, null, null, null);
+                if (page.moveToNext()) {
+                    insertPage.bindLong(1, rasterId);
+                    insertPage.bindLong(2, pageNum++);
+                    insertPage.bindBlob(3, page.getBlob(0));
+                    insertPage.executeInsert();
+                }
+                page.close();
+            }
+        }
+
+        rows.close();
+        insertRaster.close();
+        insertPage.close();
+        db.execSQL("DROP TABLE " + oldTable);
     }
 }
@@ -0,0 +1,407 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: SerleenaDatabaseShards.java
+ * Package: com.kyloth.serleena.persistence.sqlite
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ * 1.0.1    Filippo Sestini  Scrittura dei Punti Utente in attesa prima
+ *                                          della sostituzione di un database.
+ * 1.0.2    Filippo Sestini  Generazioni di database pubblicate con
+ *                                          un'unica rinomina, e letture
+ *                                          escluse durante il passaggio.
+ */
+
+package com.kyloth.serleena.persistence.sqlite;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteException;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Insieme dei file di database usati nella modalità di memorizzazione
+ * suddivisa per Esperienza.
+ *
+ * Ogni Esperienza è memorizzata in un proprio file, detto shard, che
+ * contiene l'Esperienza stessa con i relativi Percorsi, Tracciamenti,
+ * Checkpoint, punti utente e raster. Un database catalogo, di dimensioni
+ * ridotte, contiene l'elenco delle Esperienze, le previsioni meteo e i
+ * contatti di emergenza. Tutti i file condividono lo schema di
+ * SerleenaDatabase.
+ *
+ * Catalogo e shard formano una generazione, identificata da un numero che
+ * compare nel nome dei file. Ogni sincronizzazione costruisce una nuova
+ * generazione accanto a quella in uso, e la pubblica scrivendone il numero
+ * nel file GENERATION_NAME con un'unica rinomina, atomica all'interno della
+ * stessa directory: un'interruzione in qualsiasi momento lascia in uso
+ * l'intera generazione precedente o l'intera generazione nuova. I file
+ * delle generazioni non in uso vengono eliminati dopo la pubblicazione, o
+ * alla creazione dell'oggetto se il processo è stato interrotto prima.
+ *
+ * Le letture mantengono il lock restituito da readLock() per tutta la
+ * durata di una chiamata, e la pubblicazione attende che siano terminate:
+ * nessuna lettura in corso vede quindi chiudere o eliminare i database che
+ * sta utilizzando.
+ *
+ * Gli oggetti SerleenaDatabase degli shard sono creati al primo utilizzo e
+ * aprono il file solo alla prima query, per cui attivare un'Esperienza
+ * comporta l'apertura del solo shard corrispondente.
+ *
+ * @use Viene creato da SerleenaApplication e condiviso tra ShardedSQLiteDataSource, che legge dal catalogo e dagli shard della generazione corrente, e ShardedSQLiteDataSink, che costruisce e pubblica le nuove generazioni durante la sincronizzazione.
+ * @field context : Context Contesto dell'applicazione
+ * @field current : Generation Generazione in uso
+ * @field swapLock : ReadWriteLock Esclude le letture durante la pubblicazione di una generazione
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+public class SerleenaDatabaseShards {
+
+    /**
+     * Nome del file del database catalogo della generazione iniziale.
+     */
+    public static final String CATALOG_NAME = "serleena.catalog.db";
+
+    /**
+     * Nome del file, nella directory dei database, che contiene il numero
+     * della generazione in uso.
+     */
+    static final String GENERATION_NAME = "serleena.generation";
+
+    private static final Pattern GENERATION_FILE = Pattern.compile(
+            "serleena\\.(?:g(\\d+)\\.)?(catalog|[0-9a-f]{8}-[0-9a-f]{4}-" +
+            "[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12})\\.db");
+
+    private final Context context;
+    private final ReadWriteLock swapLock;
+    private volatile Generation current;
+
+    /**
+     * Crea un oggetto SerleenaDatabaseShards, che utilizza la generazione
+     * pubblicata per ultima ed elimina i file delle altre.
+     *
+     * @param context Contesto usato per creare o aprire i database.
+     */
+    public SerleenaDatabaseShards(Context context) {
+        if (context == null)
+            throw new IllegalArgumentException("Illegal null context");
+
+        this.context = context;
+        this.swapLock = new ReentrantReadWriteLock();
+        this.current = new Generation(context, readGeneration());
+        deleteGenerationsExcept(current.number);
+    }
+
+    /**
+     * Restituisce il nome del file del catalogo di una generazione.
+     *
+     * @param generation Numero della generazione.
+     * @return Nome del file.
+     */
+    static String catalogName(int generation) {
+        return (generation == 0) ? CATALOG_NAME :
+                "serleena.g" + generation + ".catalog.db";
+    }
+
+    /**
+     * Restituisce il nome del file dello shard di un'Esperienza in una
+     * generazione.
+     *
+     * @param generation Numero della generazione.
+     * @param experience UUID dell'Esperienza.
+     * @return Nome del file.
+     */
+    static String shardName(int generation, UUID experience) {
+        return (generation == 0) ? "serleena." + experience + ".db" :
+                "serleena.g" + generation + "." + experience + ".db";
+    }
+
+    /**
+     * Restituisce il lock da mantenere durante una lettura dai database
+     * della generazione corrente.
+     *
+     * @return Lock delle letture.
+     */
+    Lock readLock() {
+        return swapLock.readLock();
+    }
+
+    /**
+     * Restituisce il numero della generazione in uso.
+     *
+     * @return Numero della generazione.
+     */
+    public int generation() {
+        return current.number;
+    }
+
+    /**
+     * Restituisce il database catalogo della generazione in uso.
+     *
+     * @return Database catalogo.
+     */
+    public SerleenaDatabase catalog() {
+        return current.catalog;
+    }
+
+    /**
+     * Restituisce lo shard di un'Esperienza nella generazione in uso,
+     * creando l'oggetto SerleenaDatabase corrispondente se necessario. Il
+     * file non viene aperto fino alla prima query.
+     *
+     * @param experience UUID dell'Esperienza.
+     * @return Shard dell'Esperienza.
+     */
+    public SerleenaDatabase shard(UUID experience) {
+        if (experience == null)
+            throw new IllegalArgumentException("Illegal null experience");
+        return current.shard(experience);
+    }
+
+    /**
+     * Prepara la costruzione della generazione successiva a quella in uso,
+     * eliminando i file lasciati da una costruzione precedente non
+     * completata.
+     *
+     * @return Numero della generazione da costruire.
+     */
+    synchronized int prepareGeneration() {
+        int next = current.number + 1;
+        deleteGeneration(next);
+        return next;
+    }
+
+    /**
+     * Elimina i file di una generazione costruita e non pubblicata. Se la
+     * generazione è quella in uso, il metodo non ha effetto.
+     *
+     * @param generation Numero della generazione.
+     */
+    synchronized void discardGeneration(int generation) {
+        if (generation != current.number)
+            deleteGeneration(generation);
+    }
+
+    /**
+     * Pubblica una generazione costruita per intero, che prende il posto di
+     * quella in uso.
+     *
+     * La pubblicazione attende il termine delle letture in corso, e ne
+     * blocca di nuove fino al passaggio alla nuova generazione. I Punti
+     * Utente in attesa nella generazione precedente vengono scritti prima
+     * del passaggio; il numero della nuova generazione viene scritto in un
+     * file temporaneo e rinominato in GENERATION_NAME. Terminato il
+     * passaggio, i database della generazione precedente vengono chiusi e i
+     * loro file eliminati.
+     *
+     * @param generation Numero della generazione, restituito da
+     *                   prepareGeneration().
+     */
+    synchronized void publish(int generation) {
+        if (generation <= current.number)
+            throw new IllegalArgumentException("Illegal generation");
+
+        Generation previous;
+        Lock lock = swapLock.writeLock();
+        lock.lock();
+        try {
+            previous = current;
+            previous.flush();
+            writeGeneration(generation);
+            current = new Generation(context, generation);
+        } finally {
+            lock.unlock();
+        }
+
+        previous.close();
+        deleteGeneration(previous.number);
+    }
+
+    /**
+     * Legge il numero della generazione pubblicata per ultima, o 0 se non è
+     * mai stata pubblicata una generazione.
+     */
+    private int readGeneration() {
+        File file = context.getDatabasePath(GENERATION_NAME);
+        if (!file.exists())
+            return 0;
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(file), "UTF-8"));
+            try {
+                return Integer.parseInt(reader.readLine().trim());
+            } finally {
+                reader.close();
+            }
+        } catch (IOException | RuntimeException e) {
+            throw new SQLiteException("Unable to read " + GENERATION_NAME);
+        }
+    }
+
+    /**
+     * Scrive il numero della generazione in uso in un file temporaneo,
+     * sincronizzato su disco, e lo rinomina in GENERATION_NAME.
+     */
+    private void writeGeneration(int generation) {
+        File target = context.getDatabasePath(GENERATION_NAME);
+        File temp = new File(target.getPath() + ".tmp");
+        target.getParentFile().mkdirs();
+        try {
+            FileOutputStream out = new FileOutputStream(temp);
+            try {
+                Writer writer = new OutputStreamWriter(out, "UTF-8");
+                writer.write(String.valueOf(generation));
+                writer.flush();
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            temp.delete();
+            throw new SQLiteException("Unable to write " + GENERATION_NAME);
+        }
+        if (!temp.renameTo(target)) {
+            temp.delete();
+            throw new SQLiteException("Unable to publish generation " +
+                    generation);
+        }
+    }
+
+    /**
+     * Elimina i file di database di una generazione.
+     */
+    private void deleteGeneration(int generation) {
+        for (String name : generationFiles())
+            if (generationOf(name) == generation)
+                context.deleteDatabase(name);
+    }
+
+    /**
+     * Elimina i file di database di tutte le generazioni tranne una.
+     */
+    private void deleteGenerationsExcept(int generation) {
+        for (String name : generationFiles())
+            if (generationOf(name) != generation)
+                context.deleteDatabase(name);
+    }
+
+    /**
+     * Restituisce i nomi dei file di catalogo e shard presenti nella
+     * directory dei database, di qualsiasi generazione.
+     */
+    private List<String> generationFiles() {
+        List<String> names = new ArrayList<String>();
+        String[] files = context.getDatabasePath(GENERATION_NAME)
+                .getParentFile().list();
+        if (files != null)
+            for (String name : files)
+                if (GENERATION_FILE.matcher(name).matches())
+                    names.add(name);
+        return names;
+    }
+
+    /**
+     * Restituisce il numero di generazione di un file di catalogo o shard.
+     */
+    private static int generationOf(String name) {
+        Matcher matcher = GENERATION_FILE.matcher(name);
+        if (!matcher.matches())
+            return -1;
+        return (matcher.group(1) != null) ?
+                Integer.parseInt(matcher.group(1)) : 0;
+    }
+
+    /**
+     * Catalogo e shard di una generazione.
+     *
+     * @field number : int Numero della generazione
+     * @field catalog : SerleenaDatabase Database catalogo
+     * @field shards : Map<UUID, SerleenaDatabase> Shard creati, per UUID dell'Esperienza
+     */
+    private static final class Generation {
+        final Context context;
+        final int number;
+        final SerleenaDatabase catalog;
+        final Map<UUID, SerleenaDatabase> shards;
+
+        Generation(Context context, int number) {
+            this.context = context;
+            this.number = number;
+            this.catalog = new SerleenaDatabase(context, catalogName(number),
+                    null, SerleenaDatabase.DATABASE_VERSION);
+            this.shards = new HashMap<UUID, SerleenaDatabase>();
+        }
+
+        synchronized SerleenaDatabase shard(UUID experience) {
+            SerleenaDatabase shard = shards.get(experience);
+            if (shard == null) {
+                shard = new SerleenaDatabase(context,
+                        shardName(number, experience), null,
+                        SerleenaDatabase.DATABASE_VERSION);
+                shards.put(experience, shard);
+            }
+            return shard;
+        }
+
+        synchronized void flush() {
+            catalog.getUserPointBuffer().flush();
+            for (SerleenaDatabase shard : shards.values())
+                shard.getUserPointBuffer().flush();
+        }
+
+        synchronized void close() {
+            catalog.close();
+            for (SerleenaDatabase shard : shards.values())
+                shard.close();
+        }
+    }
+}
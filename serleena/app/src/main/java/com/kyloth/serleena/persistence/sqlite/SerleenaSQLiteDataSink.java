@@ -37,6 +37,14 @@
  * Version  Programmer       Changes
  * 1.0.0    Tobia Tesan      Creazione file e scrittura di codice
  *                                          e documentazione in Javadoc.
+ * 1.0.1    Filippo Sestini  Notifica della sostituzione dei dati.
+ * 1.0.2    Filippo Sestini  Caricamento del dump in un'unica transazione.
+ * 1.0.3    Filippo Sestini  Ricalcolo dei Tracciamenti migliori.
+ * 1.0.4    Filippo Sestini  Ricostruzione dell'indice di ricerca.
+ * 1.0.5    Filippo Sestini  Scrittura dei Punti Utente in attesa prima
+ *                                          del caricamento.
+ * 1.0.6    Filippo Sestini  Conversione all'auto_vacuum incrementale dopo
+ *                                          il caricamento.
  */
 
 package com.kyloth.serleena.persistence.sqlite;
@@ -75,14 +83,41 @@ public class SerleenaSQLiteDataSink implements ISerleenaSQLiteDataSink {
     /**
      * Carica un dump di dati proveniente dall'esterno.
      *
+     * Le istruzioni del dump vengono eseguite in un'unica transazione non
+     * esclusiva: fino al suo completamento le letture concorrenti vedono i
+     * dati precedenti, e in caso di errore il database non viene alterato.
+     * Al termine del caricamento, nella stessa transazione, viene
+     * ricalcolato il Tracciamento migliore di ogni Percorso e ricostruito
+     * l'indice di ricerca per nome.
+     *
+     * Prima del caricamento vengono scritti i Punti Utente in attesa nella
+     * memoria tampone del database, che sono già stati inviati al cloud e
+     * sono quindi compresi nel dump.
+     *
+     * Un database creato prima dell'introduzione di auto_vacuum viene
+     * convertito al termine del caricamento, che ne ha già sostituito tutti
+     * i dati, in modo che DatabaseMaintenance non debba eseguire un VACUUM
+     * completo in background.
+     *
      * @param dump Dump da caricare.
      */
     @Override
     public void load(InboundDump dump) {
         if (dump instanceof SerleenaSQLiteInboundDump) {
+            dbHelper.getUserPointBuffer().flush();
             SQLiteDatabase a = dbHelper.getWritableDatabase();
-            for (String instr : dump)
-                a.execSQL(instr);
+            a.beginTransactionNonExclusive();
+            try {
+                for (String instr : dump)
+                    a.execSQL(instr);
+                SerleenaDatabase.rebuildBestTelemetries(a);
+                SerleenaDatabase.rebuildSearchIndex(a);
+                a.setTransactionSuccessful();
+            } finally {
+                a.endTransaction();
+            }
+            dbHelper.notifyDataChanged();
+            SerleenaDatabase.enableIncrementalVacuum(a);
         } else
             throw new IllegalArgumentException();
     }
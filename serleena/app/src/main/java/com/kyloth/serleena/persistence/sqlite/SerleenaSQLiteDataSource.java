@@ -40,38 +40,82 @@
  * 1.0.1    Tobia Tesan      Aggiunta di getIJ
  * 1.0.2    Tobia Tesan      Aggiunta di getPath
  * 1.0.3    Tobia Tesan      Riscrittura di getForecast con GregorianCalendar
+ * 1.0.4    Filippo Sestini  Ricerca dei quadranti tramite indice spaziale
+ * 1.0.5    Filippo Sestini  Lettura dei raster come BLOB
+ * 1.0.6    Filippo Sestini  Lettura dei raster suddivisi in pagine
+ * 1.0.7    Filippo Sestini  Cache dei quadranti decodificati
+ * 1.0.8    Filippo Sestini  Tracciamenti caricati con un'unica query
+ * 1.0.9    Filippo Sestini  Checkpoint letti al primo accesso o per
+ *                                          Esperienza con un'unica query
+ * 1.0.10   Filippo Sestini  Query con parametri associati tramite
+ *                                          SerleenaSQLiteStatements
+ * 1.0.11   Filippo Sestini  Inserimento dei Tracciamenti in transazione
+ * 1.0.12   Filippo Sestini  Query visibili nel package per la verifica
+ *                                          dei piani di esecuzione.
+ * 1.0.13   Filippo Sestini  Contatti letti su richiesta con PagedQueryList.
+ * 1.0.14   Filippo Sestini  Checkpoint memorizzati in CheckpointList.
+ * 1.0.15   Filippo Sestini  Tracciamenti letti come array di tempi.
+ * 1.0.16   Filippo Sestini  Tracciamento migliore di ogni Percorso
+ *                                          mantenuto in 'best_telemetries'.
+ * 1.0.17   Filippo Sestini  Statistiche sui Tracciamenti calcolate con
+ *                                          query di aggregazione.
+ * 1.0.18   Filippo Sestini  Tracciamenti archiviati inclusi tra quelli
+ *                                          locali.
+ * 1.0.19   Filippo Sestini  Ricerca per nome sull'indice full-text.
+ * 1.0.20   Filippo Sestini  Punti Utente filtrati per area geografica
+ *                                          nella query.
+ * 1.0.21   Filippo Sestini  Punti Utente inseriti attraverso
+ *                                          UserPointBuffer.
+ * 1.0.22   Filippo Sestini  Tempi dei Tracciamenti raccolti tramite
+ *                                          CheckpointTimestamps.
+ * 1.0.23   Filippo Sestini  Raster indicizzati con SpatialIndex.
+ * 1.0.24   Filippo Sestini  Tracciamenti archiviati inclusi nelle
+ *                                          statistiche sui Percorsi.
+ * 1.0.25   Filippo Sestini  Punti Utente in attesa filtrati per ID.
+ * 1.0.26   Filippo Sestini  Ricerca paginata per chiave sulla lunghezza
+ *                                          memorizzata dei nomi.
+ * 1.0.27   Filippo Sestini  Corretta la documentazione di getStatements().
  */
 
 package com.kyloth.serleena.persistence.sqlite;
 
-import android.content.ContentValues;
 import android.database.Cursor;
-import android.database.sqlite.SQLiteDatabase;
 import android.graphics.BitmapFactory;
-import android.util.Base64;
 
 import com.kyloth.serleena.common.Checkpoint;
+import com.kyloth.serleena.common.CheckpointList;
 import com.kyloth.serleena.common.CheckpointReachedTelemetryEvent;
 import com.kyloth.serleena.common.DirectAccessList;
 import com.kyloth.serleena.common.EmergencyContact;
 import com.kyloth.serleena.common.GeoPoint;
 import com.kyloth.serleena.common.IQuadrant;
-import com.kyloth.serleena.common.ListAdapter;
+import com.kyloth.serleena.common.IRegion;
 import com.kyloth.serleena.common.NoSuchWeatherForecastException;
+import com.kyloth.serleena.common.ListAdapter;
 import com.kyloth.serleena.common.Quadrant;
+import com.kyloth.serleena.common.SearchResult;
+import com.kyloth.serleena.common.SearchResultType;
 import com.kyloth.serleena.common.TelemetryEvent;
 import com.kyloth.serleena.common.UserPoint;
 import com.kyloth.serleena.persistence.IExperienceStorage;
+import com.kyloth.serleena.persistence.ITelemetryStorage;
 import com.kyloth.serleena.persistence.IWeatherStorage;
 import com.kyloth.serleena.persistence.NoSuchQuadrantException;
+import com.kyloth.serleena.persistence.SearchQuery;
+import com.kyloth.serleena.persistence.SpatialIndex;
 import com.kyloth.serleena.persistence.WeatherForecastEnum;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.TimeZone;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.locks.Lock;
 
 /**
  * Classe concreta contenente l’implementazione del data source per l’accesso al
@@ -80,16 +124,186 @@ import java.util.UUID;
  * @use Viene istanziato dall'activity, che lo utilizza nella creazione di un DAO SerleenaDataSource. Viene inoltre utilizzato come datasource interno agli elementi del package persistence.sqlite, dietro interfaccia ISerleenaSQLiteDataSource.
  * @field dbHelper : SerleenaDatabase Oggetto rappresentante il punto di accesso al database SQLite utilizzato dall'applicazione
  * @field context : Context Contesto dell'applicazione
+ * @field rasterIndexes : Map<UUID, SpatialIndex> Indici spaziali dei raster, per Esperienza
+ * @field statements : SerleenaSQLiteStatements Istruzioni SQL eseguite sul database
+ * @field quadrantCache : QuadrantCache Cache dei quadranti decodificati
+ * @field cachedDataVersion : int Versione dei dati a cui si riferiscono indici spaziali e cache dei quadranti
  * @author Filippo Sestini <sestini.filippo@gmail.com>
  * @version 1.0.0
  */
 public class SerleenaSQLiteDataSource implements ISerleenaSQLiteDataSource {
+
+    /**
+     * Dimensione massima, in byte, delle immagini dei quadranti mantenute
+     * in cache.
+     */
+    public static final int QUADRANT_CACHE_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * Numero di righe lette dal database per ogni pagina delle liste
+     * restituite su richiesta.
+     */
+    public static final int LIST_PAGE_SIZE = 32;
+
+    static final String QUERY_EXPERIENCES =
+            "SELECT experience_uuid, experience_name FROM " +
+            SerleenaDatabase.TABLE_EXPERIENCES;
+    static final String QUERY_TRACKS =
+            "SELECT track_uuid, track_name FROM " +
+            SerleenaDatabase.TABLE_TRACKS + " WHERE track_experience = ?";
+    static final String QUERY_CHECKPOINTS =
+            "SELECT checkpoint_latitude, checkpoint_longitude FROM " +
+            SerleenaDatabase.TABLE_CHECKPOINTS +
+            " WHERE checkpoint_track = ? ORDER BY checkpoint_num ASC";
+    static final String QUERY_EXPERIENCE_CHECKPOINTS =
+            "SELECT checkpoint_track, checkpoint_latitude, " +
+            "checkpoint_longitude FROM " + SerleenaDatabase.TABLE_CHECKPOINTS +
+            " JOIN " + SerleenaDatabase.TABLE_TRACKS +
+            " ON checkpoint_track = track_uuid WHERE track_experience = ?" +
+            " ORDER BY checkpoint_track, checkpoint_num ASC";
+    static final String QUERY_TELEMETRIES =
+            "SELECT telem_id, eventc_timestamp, eventc_value FROM " +
+            SerleenaDatabase.TABLE_TELEMETRIES + " LEFT JOIN " +
+            SerleenaDatabase.TABLE_TELEM_EVENTS_CHECKP +
+            " ON eventc_telem = telem_id WHERE telem_track = ?" +
+            " ORDER BY telem_id, eventc_id";
+    static final String QUERY_TELEMETRIES_NO_GHOST =
+            "SELECT telem_id, eventc_timestamp, eventc_value FROM " +
+            SerleenaDatabase.TABLE_TELEMETRIES + " LEFT JOIN " +
+            SerleenaDatabase.TABLE_TELEM_EVENTS_CHECKP +
+            " ON eventc_telem = telem_id WHERE telem_track = ?" +
+            " AND telem_id != -1 ORDER BY telem_id, eventc_id";
+    static final String QUERY_ARCHIVED_TELEMETRIES =
+            "SELECT archive_id, archive_timestamps FROM " +
+            SerleenaDatabase.TABLE_TELEMETRIES_ARCHIVE +
+            " WHERE archive_track = ? ORDER BY archive_id";
+    static final String QUERY_USER_POINTS =
+            "SELECT userpoint_id, userpoint_x, userpoint_y FROM " +
+            SerleenaDatabase.TABLE_USER_POINTS +
+            " WHERE userpoint_experience = ?";
+    static final String QUERY_LOCAL_USER_POINTS =
+            "SELECT userpoint_id, userpoint_x, userpoint_y FROM " +
+            SerleenaDatabase.TABLE_USER_POINTS +
+            " WHERE userpoint_experience = ? AND userpoint_id > 0";
+    static final String QUERY_REGION_USER_POINTS =
+            "SELECT userpoint_id, userpoint_x, userpoint_y FROM " +
+            SerleenaDatabase.TABLE_USER_POINTS +
+            " WHERE userpoint_experience = ? AND " +
+            "userpoint_x BETWEEN ? AND ? AND userpoint_y BETWEEN ? AND ?";
+    static final String QUERY_RASTER_BOUNDS =
+            "SELECT raster_id, raster_nw_corner_latitude, " +
+            "raster_nw_corner_longitude, raster_se_corner_latitude, " +
+            "raster_se_corner_longitude FROM " +
+            SerleenaDatabase.TABLE_RASTERS + " WHERE raster_experience = ?";
+    private static final String CONTACTS_FILTER =
+            " WHERE contact_nw_corner_latitude >= ?" +
+            " AND contact_nw_corner_longitude <= ?" +
+            " AND contact_se_corner_latitude <= ?" +
+            " AND contact_se_corner_longitude >= ?";
+    static final String QUERY_CONTACTS =
+            "SELECT contact_name, contact_value FROM " +
+            SerleenaDatabase.TABLE_CONTACTS + CONTACTS_FILTER +
+            " ORDER BY contact_id LIMIT ? OFFSET ?";
+    static final String QUERY_CONTACTS_COUNT =
+            "SELECT COUNT(*) FROM " + SerleenaDatabase.TABLE_CONTACTS +
+            CONTACTS_FILTER;
+    private static final String SEARCH_SELECT =
+            "SELECT entry_type, entry_name, entry_uuid, entry_experience, " +
+            "entry_value, entry_length, entry_id FROM " +
+            SerleenaDatabase.TABLE_SEARCH_ENTRIES +
+            " WHERE +entry_id IN (SELECT docid FROM " +
+            SerleenaDatabase.TABLE_SEARCH_INDEX + " WHERE " +
+            SerleenaDatabase.TABLE_SEARCH_INDEX + " MATCH ?)";
+    private static final String SEARCH_ORDER =
+            " ORDER BY entry_length, entry_name, entry_id LIMIT ?";
+    static final String QUERY_SEARCH = SEARCH_SELECT + SEARCH_ORDER;
+    static final String QUERY_SEARCH_AFTER = SEARCH_SELECT +
+            " AND entry_length >= ? AND (entry_length > ? OR" +
+            " (entry_length = ? AND (entry_name > ? OR" +
+            " (entry_name = ? AND entry_id > ?))))" + SEARCH_ORDER;
+    static final String QUERY_SEARCH_COUNT =
+            "SELECT COUNT(*) FROM " + SerleenaDatabase.TABLE_SEARCH_INDEX +
+            " WHERE " + SerleenaDatabase.TABLE_SEARCH_INDEX + " MATCH ?";
+    static final String QUERY_WEATHER =
+            "SELECT weather_condition_morning, weather_temperature_morning, " +
+            "weather_condition_afternoon, weather_temperature_afternoon, " +
+            "weather_condition_night, weather_temperature_night FROM " +
+            SerleenaDatabase.TABLE_WEATHER_FORECASTS +
+            " WHERE weather_date = ?" +
+            " AND weather_nw_corner_latitude >= ?" +
+            " AND weather_nw_corner_longitude <= ?" +
+            " AND weather_se_corner_latitude <= ?" +
+            " AND weather_se_corner_longitude >= ?";
+    static final String QUERY_BEST_TELEMETRY =
+            "SELECT best_telem, best_timestamps FROM " +
+            SerleenaDatabase.TABLE_BEST_TELEMETRIES + " WHERE best_track = ?";
+    static final String QUERY_BEST_DURATION =
+            "SELECT best_duration FROM " +
+            SerleenaDatabase.TABLE_BEST_TELEMETRIES + " WHERE best_track = ?";
+    private static final String TELEMETRY_DURATIONS =
+            "SELECT telem_id, " +
+            "MAX(eventc_timestamp) - MIN(eventc_timestamp) AS duration FROM " +
+            SerleenaDatabase.TABLE_TELEMETRIES + " JOIN " +
+            SerleenaDatabase.TABLE_TELEM_EVENTS_CHECKP +
+            " ON eventc_telem = telem_id WHERE telem_track = ?" +
+            " GROUP BY telem_id HAVING MIN(eventc_value) = 1";
+    static final String QUERY_TELEMETRY_DURATIONS =
+            TELEMETRY_DURATIONS + " ORDER BY telem_id";
+    static final String QUERY_TRACK_STATISTICS =
+            "SELECT COUNT(*), MIN(duration), AVG(duration) FROM (" +
+            TELEMETRY_DURATIONS + ")";
+    static final String QUERY_BEST_SPLITS =
+            "SELECT e.eventc_value, " +
+            "MIN(e.eventc_timestamp - s.eventc_timestamp) FROM " +
+            SerleenaDatabase.TABLE_TELEMETRIES + " JOIN " +
+            SerleenaDatabase.TABLE_TELEM_EVENTS_CHECKP +
+            " s ON s.eventc_telem = telem_id AND s.eventc_value = 1 JOIN " +
+            SerleenaDatabase.TABLE_TELEM_EVENTS_CHECKP +
+            " e ON e.eventc_telem = telem_id WHERE telem_track = ?" +
+            " GROUP BY e.eventc_value";
+    private static final String INSERT_TELEMETRY =
+            "INSERT INTO " + SerleenaDatabase.TABLE_TELEMETRIES +
+            " (telem_track) VALUES (?)";
+    private static final String INSERT_TELEMETRY_EVENT =
+            "INSERT INTO " + SerleenaDatabase.TABLE_TELEM_EVENTS_CHECKP +
+            " (eventc_timestamp, eventc_value, eventc_telem)" +
+            " VALUES (?, ?, ?)";
+
     private SerleenaDatabase dbHelper;
+    private final SerleenaSQLiteStatements statements;
+    private final Map<UUID, SpatialIndex> rasterIndexes;
+    private final QuadrantCache quadrantCache;
+    private int cachedDataVersion;
 
     public SerleenaSQLiteDataSource(SerleenaDatabase dbHelper) {
         if (dbHelper == null)
             throw new IllegalArgumentException("Illegal null database");
         this.dbHelper = dbHelper;
+        this.statements = new SerleenaSQLiteStatements(dbHelper);
+        this.rasterIndexes = new HashMap<UUID, SpatialIndex>();
+        this.quadrantCache = new QuadrantCache(QUADRANT_CACHE_SIZE);
+        this.cachedDataVersion = dbHelper.dataVersion();
+    }
+
+    /**
+     * Restituisce la cache dei quadranti decodificati, da cui è possibile
+     * ottenere le statistiche di utilizzo.
+     *
+     * @return Cache dei quadranti.
+     */
+    QuadrantCache getQuadrantCache() {
+        return quadrantCache;
+    }
+
+    /**
+     * Restituisce lo strato di esecuzione delle istruzioni SQL, da cui è
+     * possibile ottenere i tempi di preparazione ed esecuzione registrati
+     * mentre la raccolta delle misure è attiva.
+     *
+     * @return Istruzioni SQL del DAO.
+     */
+    SerleenaSQLiteStatements getStatements() {
+        return statements;
     }
 
     /**
@@ -97,18 +311,38 @@ public class SerleenaSQLiteDataSource implements ISerleenaSQLiteDataSource {
      *
      * Viene eseguita una query sul database per ottenere gli ID di tutti i
      * Percorsi associati all'Esperienza specificata, da cui vengono creati
-     * rispettivi oggetti SQLiteDAOTrack.
+     * rispettivi oggetti SQLiteDAOTrack. I Checkpoint di ciascun Percorso
+     * vengono letti al primo accesso.
      *
      * @param experience Esperienza di cui si vogliono ottenere i Percorsi.
      * @return Insieme enumerabile di Percorsi.
      */
     @Override
     public Iterable<SQLiteDAOTrack> getTracks(SQLiteDAOExperience experience) {
-        SQLiteDatabase db = dbHelper.getReadableDatabase();
-        String where = "track_experience = \"" + experience.getUUID() + "\"";
-        Cursor result = db.query(SerleenaDatabase.TABLE_TRACKS,
-                new String[] { "track_uuid, track_name" }, where, null, null,
-                null, null);
+        return getTracks(experience, false);
+    }
+
+    /**
+     * Implementazione di ISerleenaSQLiteDataSource.getTracks(
+     * SQLiteDAOExperience, boolean).
+     *
+     * Se withCheckpoints è true, i Checkpoint di tutti i Percorsi
+     * dell'Esperienza vengono letti con un'unica query, ordinata per Percorso
+     * e numero di Checkpoint.
+     *
+     * @param experience Esperienza di cui si vogliono ottenere i Percorsi.
+     * @param withCheckpoints Indica se leggere subito i Checkpoint.
+     * @return Insieme enumerabile di Percorsi.
+     */
+    @Override
+    public Iterable<SQLiteDAOTrack> getTracks(SQLiteDAOExperience experience,
+                                              boolean withCheckpoints) {
+        Map<UUID, CheckpointList> checkpoints = null;
+        if (withCheckpoints)
+            checkpoints = getExperienceCheckpoints(experience.getUUID());
+
+        Cursor result = statements.query(QUERY_TRACKS,
+                experience.getUUID().toString());
 
         ArrayList<SQLiteDAOTrack> list = new ArrayList<SQLiteDAOTrack>();
         int uuidIndex = result.getColumnIndexOrThrow("track_uuid");
@@ -117,8 +351,14 @@ public class SerleenaSQLiteDataSource implements ISerleenaSQLiteDataSource {
         while (result.moveToNext()) {
             UUID trackUuid = UUID.fromString(result.getString(uuidIndex));
             String name = result.getString(nameIndex);
-            list.add(new SQLiteDAOTrack(
-                    getCheckpoints(trackUuid), trackUuid, name, this));
+            if (withCheckpoints) {
+                CheckpointList trackCheckpoints = checkpoints.get(trackUuid);
+                if (trackCheckpoints == null)
+                    trackCheckpoints = new CheckpointList.Builder(0).build();
+                list.add(new SQLiteDAOTrack(trackCheckpoints, trackUuid, name,
+                        this));
+            } else
+                list.add(new SQLiteDAOTrack(trackUuid, name, this));
         }
 
         result.close();
@@ -126,40 +366,74 @@ public class SerleenaSQLiteDataSource implements ISerleenaSQLiteDataSource {
     }
 
     /**
-     * Restituisce i checkpoint di un Percorso.
+     * Implementazione di ISerleenaSQLiteDataSource.getCheckpoints().
      *
-     * @param trackUuid ID del percorso di cui si vogliono ottenere i Checkpoint.
+     * @param track Percorso di cui si vogliono ottenere i Checkpoint.
      * @return Elenco di checkpoint del Percorso specificato.
      */
-    private DirectAccessList<Checkpoint> getCheckpoints(UUID trackUuid) {
-        SQLiteDatabase db = dbHelper.getReadableDatabase();
-        String where = "checkpoint_track = \"" + trackUuid + '\"';
-        String orderBy = "checkpoint_num ASC";
+    @Override
+    public DirectAccessList<Checkpoint> getCheckpoints(SQLiteDAOTrack track) {
+        if (track == null)
+            throw new IllegalArgumentException("Illegal null track");
 
-        Cursor result = db.query(SerleenaDatabase.TABLE_CHECKPOINTS,
-                new String[] { "checkpoint_latitude", "checkpoint_longitude"},
-                where, null, null, null, orderBy);
+        Cursor result = statements.query(QUERY_CHECKPOINTS,
+                track.getUUID().toString());
 
-        ArrayList<Checkpoint> list = new ArrayList<Checkpoint>();
+        CheckpointList.Builder builder =
+                new CheckpointList.Builder(result.getCount());
         int latIndex = result.getColumnIndexOrThrow("checkpoint_latitude");
         int lonIndex = result.getColumnIndexOrThrow("checkpoint_longitude");
 
+        while (result.moveToNext())
+            builder.add(result.getDouble(latIndex), result.getDouble(lonIndex));
+
+        result.close();
+        return builder.build();
+    }
+
+    /**
+     * Restituisce i Checkpoint di tutti i Percorsi di un'Esperienza, letti
+     * con un'unica query.
+     *
+     * @param experience UUID dell'Esperienza.
+     * @return Checkpoint di ciascun Percorso, ordinati per numero e
+     *         indicizzati per UUID del Percorso.
+     */
+    private Map<UUID, CheckpointList> getExperienceCheckpoints(
+            UUID experience) {
+        Cursor result = statements.query(QUERY_EXPERIENCE_CHECKPOINTS,
+                experience.toString());
+
+        HashMap<UUID, CheckpointList> map =
+                new HashMap<UUID, CheckpointList>();
+        int trackIndex = result.getColumnIndexOrThrow("checkpoint_track");
+        int latIndex = result.getColumnIndexOrThrow("checkpoint_latitude");
+        int lonIndex = result.getColumnIndexOrThrow("checkpoint_longitude");
+
+        String currentTrack = null;
+        CheckpointList.Builder builder = new CheckpointList.Builder();
         while (result.moveToNext()) {
-            double lat = result.getDouble(latIndex);
-            double lon = result.getDouble(lonIndex);
-            list.add(new Checkpoint(lat, lon));
+            String track = result.getString(trackIndex);
+            if (!track.equals(currentTrack)) {
+                if (currentTrack != null)
+                    map.put(UUID.fromString(currentTrack), builder.build());
+                currentTrack = track;
+            }
+            builder.add(result.getDouble(latIndex), result.getDouble(lonIndex));
         }
+        if (currentTrack != null)
+            map.put(UUID.fromString(currentTrack), builder.build());
 
         result.close();
-        return new ListAdapter<Checkpoint>(list);
+        return map;
     }
 
     /**
      * Implementazione di ISerleenaSQLiteDataSource.getTelemetries().
      *
-     * Viene eseguita una query sul database per ottenere gli ID di tutti i
-     * Tracciamenti associati al Percorso specificato, da cui vengono creati
-     * rispettivi oggetti SQLiteDAOTelemetry.
+     * Viene eseguita un'unica query sul database per ottenere tutti i
+     * Tracciamenti associati al Percorso specificato insieme ai rispettivi
+     * eventi, da cui vengono creati gli oggetti SQLiteDAOTelemetry.
      *
      * @param track Percorso di cui si vogliono ottenere i Tracciamenti.
      * @return Insieme enumerabile di Tracciamenti.
@@ -169,29 +443,72 @@ public class SerleenaSQLiteDataSource implements ISerleenaSQLiteDataSource {
         return getTelemetries(track, true);
     }
 
+    /**
+     * Implementazione di ISerleenaSQLiteDataSource.getTelemetries().
+     *
+     * I Tracciamenti sono letti con una sola query, unendo la tabella dei
+     * Tracciamenti a quella dei loro eventi e ordinando le righe per
+     * Tracciamento: gli eventi vengono così raggruppati nei rispettivi
+     * oggetti SQLiteDAOTelemetry in un'unica scansione del cursore. I
+     * Tracciamenti privi di eventi compaiono con una sola riga, con colonne
+     * degli eventi nulle.
+     *
+     * Gli eventi di ciascun Tracciamento sono raccolti in un unico oggetto
+     * CheckpointTimestamps, riutilizzato tra un Tracciamento e il successivo,
+     * senza creare un oggetto per evento.
+     *
+     * Se non viene richiesto il Tracciamento "fantasma", vengono restituiti
+     * in coda anche i Tracciamenti archiviati da RetentionEngine: sono
+     * locali e non ancora inviati al servizio cloud, per cui non devono
+     * andare persi alla sincronizzazione successiva.
+     *
+     * @param track Percorso di cui si vogliono ottenere i Tracciamenti.
+     * @param includeGhost Indica se includere il Tracciamento "fantasma".
+     * @return Insieme enumerabile di Tracciamenti.
+     */
     @Override
     public Iterable<SQLiteDAOTelemetry> getTelemetries(SQLiteDAOTrack track, boolean includeGhost) {
-        SQLiteDatabase db = dbHelper.getReadableDatabase();
-        String where = "telem_track = \"" + track.getUUID() + "\"";
-
+        String query = QUERY_TELEMETRIES;
         if (includeGhost == false) {
-            where = "telem_track = \"" + track.getUUID() + "\" AND telem_id != -1";
+            query = QUERY_TELEMETRIES_NO_GHOST;
         }
 
-        Cursor result = db.query(SerleenaDatabase.TABLE_TELEMETRIES,
-                new String[]{"telem_id"}, where, null, null, null, null);
+        Cursor result = statements.query(query, track.getUUID().toString());
 
         ArrayList<SQLiteDAOTelemetry> list = new
                 ArrayList<SQLiteDAOTelemetry>();
-        int columnIndex = result.getColumnIndexOrThrow("telem_id");
+        int idIndex = result.getColumnIndexOrThrow("telem_id");
+        int timestampIndex = result.getColumnIndexOrThrow("eventc_timestamp");
+        int valueIndex = result.getColumnIndexOrThrow("eventc_value");
 
-        while (result.moveToNext()) {
-            int telemId = result.getInt(columnIndex);
-            Iterable<TelemetryEvent> events = getTelemetryEvents(telemId);
-            list.add(new SQLiteDAOTelemetry(telemId, events));
+        CheckpointTimestamps timestamps = new CheckpointTimestamps();
+        boolean hasRow = result.moveToNext();
+        while (hasRow) {
+            int telemId = result.getInt(idIndex);
+            timestamps.clear();
+
+            do {
+                int checkpoint = result.isNull(valueIndex) ? 0 :
+                        result.getInt(valueIndex);
+                if (checkpoint > 0)
+                    timestamps.put(checkpoint,
+                            result.getLong(timestampIndex));
+                hasRow = result.moveToNext();
+            } while (hasRow && result.getInt(idIndex) == telemId);
+
+            list.add(new SQLiteDAOTelemetry(telemId, timestamps.toArray()));
         }
 
         result.close();
+
+        if (!includeGhost) {
+            Cursor archived = statements.query(QUERY_ARCHIVED_TELEMETRIES,
+                    track.getUUID().toString());
+            while (archived.moveToNext())
+                list.add(new SQLiteDAOTelemetry(archived.getInt(0),
+                        CheckpointTimestamps.unpack(archived.getBlob(1))));
+            archived.close();
+        }
         return list;
     }
 
@@ -211,50 +528,109 @@ public class SerleenaSQLiteDataSource implements ISerleenaSQLiteDataSource {
 
     @Override
     public Iterable<UserPoint> getUserPoints(SQLiteDAOExperience experience, boolean localOnly) {
-        SQLiteDatabase db = dbHelper.getReadableDatabase();
-        String where = "userpoint_experience = \"" + experience.getUUID() + "\"";
+        String query = QUERY_USER_POINTS;
         if (localOnly) {
-            where = "userpoint_experience = \"" + experience.getUUID() + "\" AND userpoint_id > 0";
+            query = QUERY_LOCAL_USER_POINTS;
         }
 
-        Cursor result = db.query(SerleenaDatabase.TABLE_USER_POINTS,
-                new String[] { "userpoint_x", "userpoint_y" }, where, null,
-                null, null, null);
-        int latIndex = result.getColumnIndexOrThrow("userpoint_x");
-        int lonIndex = result.getColumnIndexOrThrow("userpoint_y");
+        return readUserPoints(experience, null, query,
+                experience.getUUID().toString());
+    }
 
+    /**
+     * Implementazione di ISerleenaSQLiteDataSource.getUserPoints(
+     * SQLiteDAOExperience, IRegion).
+     *
+     * Il filtro sulle coordinate è eseguito dalla query, che percorre
+     * l'indice idx_userpoint_experience sull'intervallo di latitudini
+     * dell'area, senza leggere i Punti Utente esterni a essa.
+     *
+     * @param experience Esperienza di cui si vogliono ottenere i Punti Utente.
+     * @param region Area geografica entro cui devono trovarsi i Punti Utente.
+     *               Se null, viene sollevata un'eccezione
+     *               IllegalArgumentException.
+     * @return Insieme enumerabile di Punti Utente.
+     */
+    @Override
+    public Iterable<UserPoint> getUserPoints(SQLiteDAOExperience experience,
+                                             IRegion region) {
+        if (region == null)
+            throw new IllegalArgumentException("Illegal null region");
+
+        GeoPoint nw = region.getNorthWestPoint();
+        GeoPoint se = region.getSouthEastPoint();
+        return readUserPoints(experience, region, QUERY_REGION_USER_POINTS,
+                experience.getUUID().toString(),
+                String.valueOf(se.latitude()), String.valueOf(nw.latitude()),
+                String.valueOf(nw.longitude()),
+                String.valueOf(se.longitude()));
+    }
+
+    /**
+     * Legge i Punti Utente restituiti da una query, seguiti da quelli
+     * dell'Esperienza ancora in attesa nella memoria tampone del database
+     * che la query non ha trovato.
+     */
+    private ArrayList<UserPoint> readUserPoints(SQLiteDAOExperience experience,
+                                                IRegion region, String sql,
+                                                String... args) {
+        UserPointBuffer buffer = dbHelper.getUserPointBuffer();
         ArrayList<UserPoint> list = new ArrayList<UserPoint>();
-        while (result.moveToNext()) {
-            double latitude = result.getDouble(latIndex);
-            double longitude = result.getDouble(lonIndex);
-            list.add(new UserPoint(latitude, longitude));
-        }
+        Lock lock = buffer.readLock();
+        lock.lock();
+        try {
+            Cursor result = statements.query(sql, args);
+            int idIndex = result.getColumnIndexOrThrow("userpoint_id");
+            int latIndex = result.getColumnIndexOrThrow("userpoint_x");
+            int lonIndex = result.getColumnIndexOrThrow("userpoint_y");
+            long maxId = 0;
+            while (result.moveToNext()) {
+                maxId = Math.max(maxId, result.getLong(idIndex));
+                double latitude = result.getDouble(latIndex);
+                double longitude = result.getDouble(lonIndex);
+                list.add(new UserPoint(latitude, longitude));
+            }
+            result.close();
 
-        result.close();
+            buffer.appendPending(experience.getUUID(), region, maxId, list);
+        } finally {
+            lock.unlock();
+        }
         return list;
     }
 
     /**
      * Implementazione di ISerleenaSQLiteDataSource.addUserPoint().
      *
+     * Il punto viene aggiunto alla memoria tampone del database, ed è
+     * restituito da getUserPoints() fin da subito; la scrittura su disco
+     * avviene in seguito, insieme a quella degli altri punti in attesa.
+     *
      * @param experience Esperienza a cui aggiungere il punto utente.
      * @param point Punto utente da aggiungere.
      */
     @Override
     public void addUserPoint(SQLiteDAOExperience experience, UserPoint point) {
-        ContentValues values = new ContentValues();
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
-
-        values.put("userpoint_x", point.latitude());
-        values.put("userpoint_y", point.longitude());
-        values.put("userpoint_experience", experience.getUUID().toString());
+        dbHelper.getUserPointBuffer().add(experience.getUUID(), point);
+    }
 
-        db.insert(SerleenaDatabase.TABLE_USER_POINTS, null, values);
+    /**
+     * Implementazione di IPersistenceDataSource.flush().
+     *
+     * Scrive nel database, in un'unica transazione, i Punti Utente in attesa
+     * nella memoria tampone.
+     */
+    @Override
+    public void flush() {
+        dbHelper.getUserPointBuffer().flush();
     }
 
     /**
      * Implementazione di ISerleenaSQLiteDataSource.createTelemetry().
      *
+     * Il Tracciamento e i suoi eventi vengono inseriti in un'unica
+     * transazione.
+     *
      * @param events Eventi di tracciamento da cui costruire il Tracciamento.
      * @param track Percorso a cui associare il Tracciamento.
      */
@@ -264,28 +640,253 @@ public class SerleenaSQLiteDataSource implements ISerleenaSQLiteDataSource {
         if (events == null || track == null)
             throw new IllegalArgumentException();
 
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        ArrayList<Iterable<TelemetryEvent>> telemetries =
+                new ArrayList<Iterable<TelemetryEvent>>();
+        telemetries.add(events);
+        createTelemetries(telemetries, track);
+    }
+
+    /**
+     * Implementazione di ISerleenaSQLiteDataSource.createTelemetries().
+     *
+     * Tutti gli inserimenti avvengono in un'unica transazione, riutilizzando
+     * le stesse istruzioni compilate: se un inserimento fallisce, nessun
+     * Tracciamento viene aggiunto.
+     *
+     * Nella stessa transazione viene aggiornato il Tracciamento migliore del
+     * Percorso, se uno dei nuovi Tracciamenti ha durata inferiore.
+     *
+     * @param telemetries Elenchi di eventi, uno per Tracciamento.
+     * @param track Percorso a cui associare i Tracciamenti.
+     */
+    @Override
+    public void createTelemetries(Iterable<Iterable<TelemetryEvent>> telemetries,
+                                  SQLiteDAOTrack track) {
+        if (telemetries == null || track == null)
+            throw new IllegalArgumentException();
+        for (Iterable<TelemetryEvent> events : telemetries)
+            if (events == null)
+                throw new IllegalArgumentException();
+
+        String trackUuid = track.getUUID().toString();
+        CheckpointTimestamps timestamps = new CheckpointTimestamps();
+        statements.beginTransaction();
+        try {
+            int bestDuration = getBestDuration(trackUuid);
+            long bestId = 0;
+            long[] bestTimestamps = null;
+
+            for (Iterable<TelemetryEvent> events : telemetries) {
+                long newId = statements.executeInsert(INSERT_TELEMETRY,
+                        trackUuid);
+                timestamps.clear();
+
+                for (TelemetryEvent event : events) {
+                    if (event instanceof CheckpointReachedTelemetryEvent) {
+                        CheckpointReachedTelemetryEvent eventc =
+                                (CheckpointReachedTelemetryEvent) event;
+                        statements.executeInsert(INSERT_TELEMETRY_EVENT,
+                                eventc.timestamp(), eventc.checkpointNumber(),
+                                newId);
+                        timestamps.put(eventc.checkpointNumber(),
+                                eventc.timestamp());
+                    }
+                }
+
+                long[] current = timestamps.toArray();
+                int duration = CheckpointTimestamps.duration(current);
+                if (duration != CheckpointTimestamps.NO_DURATION &&
+                        (bestDuration == CheckpointTimestamps.NO_DURATION ||
+                                duration < bestDuration)) {
+                    bestDuration = duration;
+                    bestId = newId;
+                    bestTimestamps = current;
+                }
+            }
+
+            if (bestTimestamps != null)
+                statements.executeInsert(
+                        SerleenaDatabase.INSERT_BEST_TELEMETRY, trackUuid,
+                        bestId, bestDuration,
+                        CheckpointTimestamps.pack(bestTimestamps));
+            statements.setTransactionSuccessful();
+        } finally {
+            statements.endTransaction();
+        }
+    }
+
+    /**
+     * Restituisce la durata del Tracciamento migliore registrato per un
+     * Percorso.
+     *
+     * @param trackUuid UUID del Percorso.
+     * @return Durata, o CheckpointTimestamps.NO_DURATION se il Percorso non
+     * ha un Tracciamento migliore.
+     */
+    private int getBestDuration(String trackUuid) {
+        Cursor result = statements.query(QUERY_BEST_DURATION, trackUuid);
+        int duration = result.moveToNext() ? result.getInt(0) :
+                CheckpointTimestamps.NO_DURATION;
+        result.close();
+        return duration;
+    }
 
-        ContentValues values = new ContentValues();
+    /**
+     * Implementazione di ISerleenaSQLiteDataSource.getBestTelemetry().
+     *
+     * Il Tracciamento migliore è letto dalla tabella TABLE_BEST_TELEMETRIES
+     * con un'unica riga, senza leggere gli altri Tracciamenti del Percorso
+     * né i loro eventi.
+     *
+     * @param track Percorso di cui si vuole ottenere il Tracciamento
+     *              migliore.
+     * @return Tracciamento di durata minima, o null se il Percorso non ha
+     * Tracciamenti di cui sia possibile stabilire la durata.
+     */
+    @Override
+    public SQLiteDAOTelemetry getBestTelemetry(SQLiteDAOTrack track) {
+        if (track == null)
+            throw new IllegalArgumentException("Illegal null track");
+
+        Cursor result = statements.query(QUERY_BEST_TELEMETRY,
+                track.getUUID().toString());
+        SQLiteDAOTelemetry best = null;
+        if (result.moveToNext())
+            best = new SQLiteDAOTelemetry(result.getInt(0),
+                    CheckpointTimestamps.unpack(result.getBlob(1)));
+        result.close();
+        return best;
+    }
+
+    /**
+     * Implementazione di ISerleenaSQLiteDataSource.getTelemetryDurations().
+     *
+     * Le durate sono calcolate dal database raggruppando gli eventi per
+     * Tracciamento, senza trasferirli. Quelle dei Tracciamenti archiviati
+     * vengono calcolate dai tempi memorizzati in TABLE_TELEMETRIES_ARCHIVE.
+     *
+     * @param track Percorso di cui si vogliono ottenere le durate dei
+     *              Tracciamenti.
+     * @return Durate dei Tracciamenti, indicizzate per ID e ordinate per ID
+     * crescente.
+     */
+    @Override
+    public Map<Integer, Integer> getTelemetryDurations(SQLiteDAOTrack track) {
+        if (track == null)
+            throw new IllegalArgumentException("Illegal null track");
+
+        Cursor result = statements.query(QUERY_TELEMETRY_DURATIONS,
+                track.getUUID().toString());
+        Map<Integer, Integer> durations = new TreeMap<Integer, Integer>();
+        while (result.moveToNext())
+            durations.put(result.getInt(0), result.getInt(1));
+        result.close();
 
-        values.put("telem_track", track.getUUID().toString());
-        long newId = db.insert(SerleenaDatabase.TABLE_TELEMETRIES, null, values);
+        Cursor archived = statements.query(QUERY_ARCHIVED_TELEMETRIES,
+                track.getUUID().toString());
+        while (archived.moveToNext()) {
+            int duration = CheckpointTimestamps.duration(
+                    CheckpointTimestamps.unpack(archived.getBlob(1)));
+            if (duration != CheckpointTimestamps.NO_DURATION)
+                durations.put(archived.getInt(0), duration);
+        }
+        archived.close();
+        return durations;
+    }
 
-        for (TelemetryEvent event : events) {
-            values = new ContentValues();
+    /**
+     * Implementazione di ISerleenaSQLiteDataSource.getTrackStatistics().
+     *
+     * Le statistiche dei Tracciamenti non archiviati sono calcolate dal
+     * database, e combinate con le durate dei Tracciamenti archiviati.
+     *
+     * @param track Percorso di cui si vogliono ottenere le statistiche.
+     * @return Numero, durata minima e durata media dei Tracciamenti.
+     */
+    @Override
+    public TrackStatistics getTrackStatistics(SQLiteDAOTrack track) {
+        if (track == null)
+            throw new IllegalArgumentException("Illegal null track");
+
+        Cursor result = statements.query(QUERY_TRACK_STATISTICS,
+                track.getUUID().toString());
+        int count = 0;
+        int best = CheckpointTimestamps.NO_DURATION;
+        double total = 0;
+        if (result.moveToNext() && result.getInt(0) > 0) {
+            count = result.getInt(0);
+            best = result.getInt(1);
+            total = result.getDouble(2) * count;
+        }
+        result.close();
 
-            if (event instanceof CheckpointReachedTelemetryEvent) {
+        Cursor archived = statements.query(QUERY_ARCHIVED_TELEMETRIES,
+                track.getUUID().toString());
+        while (archived.moveToNext()) {
+            int duration = CheckpointTimestamps.duration(
+                    CheckpointTimestamps.unpack(archived.getBlob(1)));
+            if (duration == CheckpointTimestamps.NO_DURATION)
+                continue;
+            if (count == 0 || duration < best)
+                best = duration;
+            total += duration;
+            count++;
+        }
+        archived.close();
 
-                CheckpointReachedTelemetryEvent eventc =
-                        (CheckpointReachedTelemetryEvent) event;
-                values.put("eventc_timestamp", eventc.timestamp());
-                values.put("eventc_value", eventc.checkpointNumber());
-                values.put("eventc_telem", newId);
-                db.insertOrThrow(SerleenaDatabase.TABLE_TELEM_EVENTS_CHECKP, null,values);
+        if (count == 0)
+            return new TrackStatistics(0, CheckpointTimestamps.NO_DURATION, 0);
+        return new TrackStatistics(count, best, total / count);
+    }
 
+    /**
+     * Implementazione di ISerleenaSQLiteDataSource.getBestSplits().
+     *
+     * I tempi parziali dei Tracciamenti non archiviati sono calcolati dal
+     * database, e confrontati con quelli dei Tracciamenti archiviati.
+     *
+     * @param track Percorso di cui si vogliono ottenere i tempi parziali.
+     * @return Tempi parziali minimi, nel formato di
+     * ITelemetryStorage.getCheckpointTimestamps().
+     */
+    @Override
+    public long[] getBestSplits(SQLiteDAOTrack track) {
+        if (track == null)
+            throw new IllegalArgumentException("Illegal null track");
+
+        Cursor result = statements.query(QUERY_BEST_SPLITS,
+                track.getUUID().toString());
+        CheckpointTimestamps collected = new CheckpointTimestamps();
+        while (result.moveToNext())
+            collected.put(result.getInt(0), result.getLong(1));
+        result.close();
+        long[] splits = collected.toArray();
+
+        Cursor archived = statements.query(QUERY_ARCHIVED_TELEMETRIES,
+                track.getUUID().toString());
+        while (archived.moveToNext()) {
+            long[] timestamps =
+                    CheckpointTimestamps.unpack(archived.getBlob(1));
+            if (timestamps.length == 0 ||
+                    timestamps[0] == ITelemetryStorage.NO_TIMESTAMP)
+                continue;
+            if (timestamps.length > splits.length) {
+                int length = splits.length;
+                splits = Arrays.copyOf(splits, timestamps.length);
+                Arrays.fill(splits, length, splits.length,
+                        ITelemetryStorage.NO_TIMESTAMP);
+            }
+            for (int i = 0; i < timestamps.length; i++) {
+                if (timestamps[i] == ITelemetryStorage.NO_TIMESTAMP)
+                    continue;
+                long split = timestamps[i] - timestamps[0];
+                if (splits[i] == ITelemetryStorage.NO_TIMESTAMP ||
+                        split < splits[i])
+                    splits[i] = split;
             }
-
         }
+        archived.close();
+        return splits;
     }
 
     /**
@@ -299,10 +900,7 @@ public class SerleenaSQLiteDataSource implements ISerleenaSQLiteDataSource {
      */
     @Override
     public Iterable<IExperienceStorage> getExperiences() {
-        SQLiteDatabase db = dbHelper.getReadableDatabase();
-        Cursor result = db.query(SerleenaDatabase.TABLE_EXPERIENCES,
-                new String[]{"experience_uuid", "experience_name"}, null,
-                null, null, null, null);
+        Cursor result = statements.query(QUERY_EXPERIENCES);
 
         int uuidIndex = result.getColumnIndexOrThrow("experience_uuid");
         int nameIndex = result.getColumnIndexOrThrow("experience_name");
@@ -325,7 +923,9 @@ public class SerleenaSQLiteDataSource implements ISerleenaSQLiteDataSource {
      * specificata, tra quelli associati all'Esperienza indicata.
      *
      * Se non vi sono quadranti contenenti la posizione specificata, viene
-     * sollevata un'eccezione NosuchQuadrantException.
+     * sollevata un'eccezione NosuchQuadrantException. I quadranti restituiti
+     * di recente vengono mantenuti in cache, senza essere riletti e
+     * decodificati dal database.
      *
      * @param location Posizione geografica contenuta dal quadrante richiesto.
      * @param exp Esperienza a cui il quadrante è associato.
@@ -340,125 +940,174 @@ public class SerleenaSQLiteDataSource implements ISerleenaSQLiteDataSource {
         if (exp == null)
             throw new IllegalArgumentException("Illegal null experience");
 
-        SQLiteDatabase db = dbHelper.getReadableDatabase();
-
-        String where =
-                "`raster_nw_corner_latitude` >= " +
-                location.latitude() + " AND " +
-                "`raster_nw_corner_longitude` <= " +
-                location.longitude() + " AND " +
-                "`raster_se_corner_latitude` <= " +
-                location.latitude() + " AND " +
-                "`raster_se_corner_longitude` >= " +
-                location.longitude() + " AND " +
-                "`raster_experience` = \"" +
-                        exp.getUUID() + "\"";
-
-        Cursor result = db.query(SerleenaDatabase.TABLE_RASTERS,
-                new String[]{
-                    "raster_nw_corner_latitude",
-                    "raster_nw_corner_longitude",
-                    "raster_se_corner_latitude",
-                    "raster_se_corner_longitude",
-                    "raster_base64"
-                },
-                where, null, null, null, null);
-
-        int nwLatIndex =
-                result.getColumnIndexOrThrow("raster_nw_corner_latitude");
-        int nwLonIndex =
-                result.getColumnIndexOrThrow("raster_nw_corner_longitude");
-        int seLatIndex =
-                result.getColumnIndexOrThrow("raster_se_corner_latitude");
-        int seLonIndex =
-                result.getColumnIndexOrThrow("raster_se_corner_longitude");
-        int base64Index =
-                result.getColumnIndexOrThrow("raster_base64");
-
-        if (result.moveToNext()) {
-            double nwLat = result.getDouble(nwLatIndex);
-            double nwLon = result.getDouble(nwLonIndex);
-            double seLat = result.getDouble(seLatIndex);
-            double seLon = result.getDouble(seLonIndex);
-            byte[] data = Base64.decode(
-                    result.getString(base64Index), Base64.DEFAULT);
-            result.close();
-            return new Quadrant(
-                    new GeoPoint(nwLat, nwLon),
-                    new GeoPoint(seLat, seLon),
-                    BitmapFactory.decodeByteArray(data, 0, data.length));
-        } else {
-            result.close();
+        int version = dbHelper.dataVersion();
+        SpatialIndex index = getRasterIndex(exp.getUUID());
+        int entry = index.findEntry(location.latitude(), location.longitude());
+        if (entry == SpatialIndex.NO_ENTRY)
             throw new NoSuchQuadrantException();
+
+        QuadrantCache.Key key = new QuadrantCache.Key(exp.getUUID(),
+                index.northWest(entry), index.southEast(entry));
+        IQuadrant quadrant = quadrantCache.get(key);
+        if (quadrant == null) {
+            quadrant = new Quadrant(
+                    index.northWest(entry),
+                    index.southEast(entry),
+                    BitmapFactory.decodeStream(new RasterPageInputStream(
+                            statements, index.id(entry))));
+            cacheQuadrant(key, quadrant, version);
         }
+        return quadrant;
     }
 
     /**
-     * Implementazione di IPersistenceDataSource.getContacts().
+     * Inserisce un quadrante in cache, se i dati da cui è stato letto non
+     * sono stati nel frattempo sostituiti.
      *
-     * @param location Punto geografico del cui intorno si vogliono ottenere
-     *                 i contatti di autorità locali.
-     * @return Insieme enumerabile di contatti di emergenza.
+     * @param key Chiave del quadrante.
+     * @param quadrant Quadrante da memorizzare.
+     * @param version Versione dei dati da cui il quadrante è stato letto.
      */
-    @Override
-    public DirectAccessList<EmergencyContact> getContacts(GeoPoint location) {
-        SQLiteDatabase db = dbHelper.getReadableDatabase();
-        ArrayList<EmergencyContact> list = new ArrayList<EmergencyContact>();
-
-        String where = "`contact_nw_corner_latitude` >= " +
-                location.latitude() + " AND " +
-                "`contact_nw_corner_longitude` <= " +
-                location.longitude() + " AND " +
-                "`contact_se_corner_latitude` <= " +
-                location.latitude() + " AND " +
-                "`contact_se_corner_longitude` >= " +
-                location.longitude();
-        Cursor result = db.query(SerleenaDatabase.TABLE_CONTACTS,
-                new String[]{"contact_name", "contact_value"}, where,
-                null, null, null, null);
-
-        int nameIndex = result.getColumnIndexOrThrow("contact_name");
-        int valueIndex = result.getColumnIndexOrThrow("contact_value");
+    private synchronized void cacheQuadrant(QuadrantCache.Key key,
+                                            IQuadrant quadrant, int version) {
+        if (version == cachedDataVersion && version == dbHelper.dataVersion())
+            quadrantCache.put(key, quadrant);
+    }
 
+    /**
+     * Restituisce l'indice spaziale dei raster dell'Esperienza specificata.
+     *
+     * Gli indici vengono costruiti alla prima richiesta e mantenuti finché
+     * il contenuto del database non viene sostituito da una sincronizzazione,
+     * nel qual caso viene svuotata anche la cache dei quadranti.
+     *
+     * @param experience UUID dell'Esperienza.
+     * @return Indice spaziale dei raster dell'Esperienza.
+     */
+    private synchronized SpatialIndex getRasterIndex(UUID experience) {
+        int version = dbHelper.dataVersion();
+        if (version != cachedDataVersion) {
+            rasterIndexes.clear();
+            quadrantCache.clear();
+            cachedDataVersion = version;
+        }
+
+        SpatialIndex index = rasterIndexes.get(experience);
+        if (index == null) {
+            index = buildRasterIndex(experience);
+            rasterIndexes.put(experience, index);
+        }
+        return index;
+    }
+
+    /**
+     * Costruisce l'indice spaziale dei raster di un'Esperienza.
+     *
+     * Vengono letti solamente identificativi e riquadri dei raster, senza
+     * accedere alle immagini.
+     *
+     * @param experience UUID dell'Esperienza.
+     * @return Indice spaziale dei raster dell'Esperienza.
+     */
+    private SpatialIndex buildRasterIndex(UUID experience) {
+        Cursor result = statements.query(QUERY_RASTER_BOUNDS,
+                experience.toString());
+
+        int count = result.getCount();
+        long[] ids = new long[count];
+        double[] nwLat = new double[count];
+        double[] nwLon = new double[count];
+        double[] seLat = new double[count];
+        double[] seLon = new double[count];
+
+        int i = 0;
         while (result.moveToNext()) {
-            String name = result.getString(nameIndex);
-            String value = result.getString(valueIndex);
-            list.add(new EmergencyContact(name, value));
+            ids[i] = result.getLong(0);
+            nwLat[i] = result.getDouble(1);
+            nwLon[i] = result.getDouble(2);
+            seLat[i] = result.getDouble(3);
+            seLon[i] = result.getDouble(4);
+            i++;
         }
 
         result.close();
-        return new ListAdapter<EmergencyContact>(list);
+        return new SpatialIndex(ids, nwLat, nwLon, seLat, seLon);
     }
 
     /**
-     * Restituisce gli eventi di Tracciamento associati al Tracciamento con ID
-     * specificato, memorizzati nel database SQLite.
+     * Implementazione di IPersistenceDataSource.getContacts().
      *
-     * @param id ID del Tracciamento di cui si vogliono ottenere gli eventi.
-     * @return Insieme enumerabile di eventi di Tracciamento.
+     * @param location Punto geografico del cui intorno si vogliono ottenere
+     *                 i contatti di autorità locali.
+     * @return Insieme enumerabile di contatti di emergenza, letti dal
+     * database solo quando richiesti, a pagine di LIST_PAGE_SIZE righe.
      */
-    private Iterable<TelemetryEvent> getTelemetryEvents(int id) {
-        SQLiteDatabase db = dbHelper.getReadableDatabase();
-        ArrayList<TelemetryEvent> list = new ArrayList<TelemetryEvent>();
-
-        String where = "eventc_telem = " + id;
-        Cursor result = db.query(SerleenaDatabase.TABLE_TELEM_EVENTS_CHECKP,
-                new String[]{"eventc_timestamp", "eventc_value"},
-                where, null, null, null, null);
+    @Override
+    public DirectAccessList<EmergencyContact> getContacts(GeoPoint location) {
+        String latitude = String.valueOf(location.latitude());
+        String longitude = String.valueOf(location.longitude());
+
+        return new PagedQueryList<EmergencyContact>(statements,
+                QUERY_CONTACTS_COUNT, QUERY_CONTACTS, LIST_PAGE_SIZE,
+                latitude, longitude, latitude, longitude) {
+            @Override
+            protected EmergencyContact read(Cursor cursor) {
+                return new EmergencyContact(cursor.getString(0),
+                        cursor.getString(1));
+            }
+        };
+    }
 
-        int timestampIndex = result.getColumnIndexOrThrow("eventc_timestamp");
-        int valueIndex = result.getColumnIndexOrThrow("eventc_value");
+    /**
+     * Implementazione di IPersistenceDataSource.search().
+     *
+     * La ricerca è eseguita sull'indice full-text TABLE_SEARCH_INDEX,
+     * ricostruito da SerleenaSQLiteDataSink a ogni caricamento. Tutte le
+     * parole del testo sono cercate come prefissi, e i risultati ordinati
+     * per lunghezza del nome: poiché i nomi indicizzati sono brevi, un nome
+     * più corto che contiene le parole cercate è più pertinente, come nella
+     * normalizzazione per lunghezza delle funzioni di rank full-text.
+     *
+     * Le righe sono lette scorrendo l'indice di TABLE_SEARCH_ENTRIES sulla
+     * lunghezza memorizzata del nome, e ogni pagina riprende dalla chiave
+     * dell'ultima riga letta: il risultato non viene ordinato per intero a
+     * ogni pagina.
+     *
+     * @param text Testo della ricerca.
+     * @return Lista ordinata dei risultati, letti dal database solo quando
+     * richiesti, a pagine di LIST_PAGE_SIZE righe.
+     */
+    @Override
+    public DirectAccessList<SearchResult> search(String text) {
+        SearchQuery query = SearchQuery.parse(text);
+        if (query.isEmpty())
+            return new ListAdapter<SearchResult>(
+                    new ArrayList<SearchResult>());
+
+        return new KeysetQueryList<SearchResult>(statements,
+                QUERY_SEARCH_COUNT, QUERY_SEARCH, QUERY_SEARCH_AFTER,
+                LIST_PAGE_SIZE, query.toMatchExpression()) {
+            @Override
+            protected SearchResult read(Cursor cursor) {
+                return new SearchResult(
+                        SearchResultType.values()[cursor.getInt(0)],
+                        cursor.getString(1), uuidOrNull(cursor, 2),
+                        uuidOrNull(cursor, 3), cursor.getString(4));
+            }
 
-        while (result.moveToNext()) {
-            long time = result.getLong(timestampIndex);
-            int value = Integer.parseInt(result.getString(valueIndex));
-            TelemetryEvent event =
-                    new CheckpointReachedTelemetryEvent(time, value);
-            list.add(event);
-        }
+            @Override
+            protected String[] key(Cursor cursor) {
+                String length = cursor.getString(5);
+                String name = cursor.getString(1);
+                return new String[] { length, length, length, name, name,
+                        cursor.getString(6) };
+            }
+        };
+    }
 
-        result.close();
-        return list;
+    private static UUID uuidOrNull(Cursor cursor, int column) {
+        return cursor.isNull(column) ? null :
+                UUID.fromString(cursor.getString(column));
     }
 
     /**
@@ -494,29 +1143,11 @@ public class SerleenaSQLiteDataSource implements ISerleenaSQLiteDataSource {
             throw new IllegalArgumentException("Illegal date, 00:00:00.000 required");
         }
 
-        SQLiteDatabase db = dbHelper.getReadableDatabase();
-
-        String where =
-                "weather_date = " + (date.getTime()/1000) + " AND " +
-                "`weather_nw_corner_latitude` >= " +
-                location.latitude() + " AND " +
-                "`weather_nw_corner_longitude` <= " +
-                location.longitude() + " AND " +
-                "`weather_se_corner_latitude` <= " +
-                location.latitude() + " AND " +
-                "`weather_se_corner_longitude` >= " +
-                location.longitude();
-
-        Cursor result = db.query(SerleenaDatabase.TABLE_WEATHER_FORECASTS,
-                new String[]{
-                        "weather_condition_morning",
-                        "weather_temperature_morning",
-                        "weather_condition_afternoon",
-                        "weather_temperature_afternoon",
-                        "weather_condition_night",
-                        "weather_temperature_night"
-                },
-                where, null, null, null, null);
+        String latitude = String.valueOf(location.latitude());
+        String longitude = String.valueOf(location.longitude());
+        Cursor result = statements.query(QUERY_WEATHER,
+                String.valueOf(date.getTime() / 1000),
+                latitude, longitude, latitude, longitude);
 
         int conditionMorningIndex = result.getColumnIndex("weather_condition_morning");
         int temperatureMorningIndex = result.getColumnIndex("weather_temperature_morning");
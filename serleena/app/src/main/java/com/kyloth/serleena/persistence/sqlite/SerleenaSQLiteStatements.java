@@ -0,0 +1,415 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: SerleenaSQLiteStatements.java
+ * Package: com.kyloth.serleena.persistence.sqlite
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ * 1.0.1    Filippo Sestini  Aggiunta gestione delle transazioni.
+ * 1.0.2    Filippo Sestini  Transazioni non esclusive.
+ * 1.0.3    Filippo Sestini  Misura dei cursori tramite PersistenceMetrics.
+ * 1.0.4    Filippo Sestini  Rimosse le statistiche sempre attive; le
+ *                                          istruzioni scartate non vengono
+ *                                          chiuse durante l'esecuzione.
+ * 1.0.5    Filippo Sestini  Aggiunto dataVersion().
+ * 1.0.6    Filippo Sestini  Tempi di preparazione ed esecuzione registrati
+ *                                          solo con la raccolta delle
+ *                                          misure attiva.
+ */
+
+package com.kyloth.serleena.persistence.sqlite;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Punto di accesso unico alle istruzioni SQL eseguite dal DAO sul database
+ * dell'applicazione.
+ *
+ * Le query vengono eseguite con testo SQL costante e parametri associati,
+ * in modo che SQLite possa riutilizzare le istruzioni già preparate nella
+ * cache della connessione invece di analizzarle e pianificarle a ogni
+ * chiamata. Le istruzioni di scrittura più frequenti vengono compilate una
+ * sola volta in oggetti SQLiteStatement e riutilizzate.
+ *
+ * Se è stato associato un oggetto PersistenceMetrics con raccolta attiva,
+ * i cursori restituiti conteggiano le righe e i byte letti, e per ogni
+ * istruzione vengono registrati separatamente il tempo di preparazione e
+ * il tempo di esecuzione. Per una query, la preparazione comprende la
+ * creazione del cursore, l'esecuzione il riempimento della prima finestra
+ * di risultati. Con la raccolta disattivata le istruzioni non comportano
+ * alcun costo aggiuntivo.
+ *
+ * @use Viene creato da SerleenaSQLiteDataSource, che lo utilizza per tutte le query sul database, e passato a RasterPageInputStream per la lettura delle pagine dei raster.
+ * @field dbHelper : SerleenaDatabase Database su cui eseguire le istruzioni
+ * @field compiled : Map<String, SQLiteStatement> Istruzioni compilate, per testo SQL
+ * @field compiledFor : SQLiteDatabase Connessione per cui sono state compilate le istruzioni
+ * @field stats : Map<String, Stats> Statistiche sui tempi, per testo SQL
+ * @field metrics : PersistenceMetrics Misure delle chiamate alla persistenza, o null
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+class SerleenaSQLiteStatements {
+
+    private final SerleenaDatabase dbHelper;
+    private final Map<String, SQLiteStatement> compiled;
+    private SQLiteDatabase compiledFor;
+    private final Map<String, Stats> stats;
+    private volatile PersistenceMetrics metrics;
+
+    /**
+     * Crea un oggetto SerleenaSQLiteStatements.
+     *
+     * @param dbHelper Database su cui eseguire le istruzioni.
+     */
+    public SerleenaSQLiteStatements(SerleenaDatabase dbHelper) {
+        if (dbHelper == null)
+            throw new IllegalArgumentException("Illegal null database");
+
+        this.dbHelper = dbHelper;
+        this.compiled = new HashMap<String, SQLiteStatement>();
+        this.stats = new LinkedHashMap<String, Stats>();
+    }
+
+    /**
+     * Esegue una query con i parametri specificati.
+     *
+     * I parametri vengono associati ai segnaposto "?" del testo SQL
+     * nell'ordine in cui sono forniti. Il cursore restituito è già
+     * posizionato prima della prima riga, e deve essere chiuso dal
+     * chiamante.
+     *
+     * @param sql Testo SQL della query, costante tra le chiamate.
+     * @param args Valori dei parametri.
+     * @return Cursore sui risultati.
+     */
+    public Cursor query(String sql, String... args) {
+        if (sql == null)
+            throw new IllegalArgumentException("Illegal null query");
+
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        PersistenceMetrics m = metrics;
+        if (m == null || !m.isEnabled())
+            return db.rawQuery(sql, args);
+
+        long start = System.nanoTime();
+        Cursor result = db.rawQuery(sql, args);
+        long prepared = System.nanoTime();
+        result.getCount();
+        long executed = System.nanoTime();
+
+        record(sql, prepared - start, executed - prepared);
+        return m.meter(result);
+    }
+
+    /**
+     * Esegue un'istruzione di inserimento compilata, con i parametri
+     * specificati.
+     *
+     * L'istruzione viene compilata alla prima esecuzione e riutilizzata
+     * nelle successive. Se nel frattempo l'istruzione è stata scartata a
+     * causa di un cambio di connessione, viene compilata nuovamente. Sono
+     * ammessi parametri di tipo Long, Integer, Double, Float, String,
+     * byte[] e null.
+     *
+     * @param sql Testo SQL dell'istruzione, costante tra le chiamate.
+     * @param args Valori dei parametri.
+     * @return ID della riga inserita, o -1 in caso di errore.
+     */
+    public long executeInsert(String sql, Object... args) {
+        if (sql == null)
+            throw new IllegalArgumentException("Illegal null statement");
+
+        PersistenceMetrics m = metrics;
+        boolean timed = m != null && m.isEnabled();
+        while (true) {
+            long start = timed ? System.nanoTime() : 0;
+            SQLiteStatement statement = compile(sql);
+            synchronized (statement) {
+                if (!isCompiled(sql, statement))
+                    continue;
+                long prepared = timed ? System.nanoTime() : 0;
+                try {
+                    bind(statement, args);
+                    long id = statement.executeInsert();
+                    if (timed)
+                        record(sql, prepared - start,
+                                System.nanoTime() - prepared);
+                    return id;
+                } finally {
+                    statement.clearBindings();
+                }
+            }
+        }
+    }
+
+    /**
+     * Restituisce la versione dei dati del database su cui vengono eseguite
+     * le istruzioni.
+     *
+     * @return Valore di SerleenaDatabase.dataVersion().
+     */
+    public int dataVersion() {
+        return dbHelper.dataVersion();
+    }
+
+    /**
+     * Associa un oggetto PersistenceMetrics, a cui vengono attribuite le
+     * righe e i byte letti dai cursori, e che determina se registrare i
+     * tempi delle istruzioni.
+     *
+     * @param metrics Misure delle chiamate alla persistenza, o null per non
+     *                misurare le istruzioni.
+     */
+    public void setMetrics(PersistenceMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Restituisce le statistiche registrate per un'istruzione.
+     *
+     * @param sql Testo SQL dell'istruzione.
+     * @return Statistiche dell'istruzione, o null se questa non è mai stata
+     *         eseguita con la raccolta delle misure attiva.
+     */
+    public Stats getStats(String sql) {
+        synchronized (stats) {
+            Stats s = stats.get(sql);
+            return (s != null) ? new Stats(s) : null;
+        }
+    }
+
+    /**
+     * Restituisce un resoconto testuale dei tempi di preparazione ed
+     * esecuzione di ciascuna istruzione, in microsecondi.
+     *
+     * @return Resoconto delle statistiche.
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        synchronized (stats) {
+            for (Map.Entry<String, Stats> entry : stats.entrySet()) {
+                Stats s = entry.getValue();
+                sb.append(s.executeCount()).append("x prepare ")
+                        .append(s.prepareNanos() / 1000).append("us execute ")
+                        .append(s.executeNanos() / 1000).append("us: ")
+                        .append(entry.getKey()).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Inizia una transazione sul database, a cui partecipano tutte le
+     * istruzioni eseguite dal thread corrente fino alla chiamata di
+     * endTransaction().
+     *
+     * La transazione non è esclusiva, in modo da non bloccare le letture
+     * eseguite da altri thread durante l'inserimento.
+     */
+    public void beginTransaction() {
+        dbHelper.getWritableDatabase().beginTransactionNonExclusive();
+    }
+
+    /**
+     * Segna la transazione corrente come completata con successo.
+     */
+    public void setTransactionSuccessful() {
+        dbHelper.getWritableDatabase().setTransactionSuccessful();
+    }
+
+    /**
+     * Termina la transazione corrente, confermandone le modifiche se è stata
+     * segnata come completata con successo, annullandole altrimenti.
+     */
+    public void endTransaction() {
+        dbHelper.getWritableDatabase().endTransaction();
+    }
+
+    /**
+     * Chiude le istruzioni compilate.
+     *
+     * Le istruzioni vengono prima scartate, in modo che non siano più
+     * restituite da compile(), e poi chiuse ciascuna al termine
+     * dell'eventuale esecuzione in corso in un altro thread.
+     */
+    public void close() {
+        closeAll(discard(null));
+    }
+
+    /**
+     * Restituisce l'istruzione compilata per il testo SQL specificato,
+     * compilandola se necessario. Se la connessione al database è cambiata,
+     * le istruzioni compilate in precedenza vengono scartate e chiuse.
+     */
+    private SQLiteStatement compile(String sql) {
+        List<SQLiteStatement> stale = null;
+        SQLiteStatement statement;
+        synchronized (this) {
+            SQLiteDatabase db = dbHelper.getWritableDatabase();
+            if (db != compiledFor)
+                stale = discard(db);
+
+            statement = compiled.get(sql);
+            if (statement == null) {
+                statement = db.compileStatement(sql);
+                compiled.put(sql, statement);
+            }
+        }
+        if (stale != null)
+            closeAll(stale);
+        return statement;
+    }
+
+    /**
+     * Indica se un'istruzione è ancora quella compilata per il testo SQL
+     * specificato, cioè se non è stata scartata.
+     */
+    private synchronized boolean isCompiled(String sql,
+                                            SQLiteStatement statement) {
+        return compiled.get(sql) == statement;
+    }
+
+    /**
+     * Scarta le istruzioni compilate, associando la cache a una nuova
+     * connessione.
+     *
+     * @return Istruzioni scartate, da chiudere senza mantenere il lock
+     * dell'oggetto.
+     */
+    private synchronized List<SQLiteStatement> discard(SQLiteDatabase db) {
+        List<SQLiteStatement> stale =
+                new ArrayList<SQLiteStatement>(compiled.values());
+        compiled.clear();
+        compiledFor = db;
+        return stale;
+    }
+
+    /**
+     * Chiude le istruzioni scartate. Il lock di ciascuna istruzione attende
+     * il termine di un'eventuale esecuzione in corso; chi lo ottiene in
+     * seguito trova l'istruzione scartata e ne compila una nuova.
+     */
+    private static void closeAll(List<SQLiteStatement> statements) {
+        for (SQLiteStatement statement : statements) {
+            synchronized (statement) {
+                statement.close();
+            }
+        }
+    }
+
+    private static void bind(SQLiteStatement statement, Object[] args) {
+        for (int i = 0; i < args.length; i++) {
+            Object arg = args[i];
+            int index = i + 1;
+            if (arg == null)
+                statement.bindNull(index);
+            else if (arg instanceof Long || arg instanceof Integer)
+                statement.bindLong(index, ((Number) arg).longValue());
+            else if (arg instanceof Double || arg instanceof Float)
+                statement.bindDouble(index, ((Number) arg).doubleValue());
+            else if (arg instanceof String)
+                statement.bindString(index, (String) arg);
+            else if (arg instanceof byte[])
+                statement.bindBlob(index, (byte[]) arg);
+            else
+                throw new IllegalArgumentException(
+                        "Unsupported parameter type " + arg.getClass());
+        }
+    }
+
+    private void record(String sql, long prepareNanos, long executeNanos) {
+        synchronized (stats) {
+            Stats s = stats.get(sql);
+            if (s == null) {
+                s = new Stats();
+                stats.put(sql, s);
+            }
+            s.prepareNanos += prepareNanos;
+            s.executeNanos += executeNanos;
+            s.executeCount++;
+        }
+    }
+
+    /**
+     * Tempi cumulativi di preparazione ed esecuzione di un'istruzione.
+     *
+     * @field executeCount : int Numero di esecuzioni
+     * @field prepareNanos : long Tempo complessivo di preparazione, in nanosecondi
+     * @field executeNanos : long Tempo complessivo di esecuzione, in nanosecondi
+     */
+    static final class Stats {
+
+        private int executeCount;
+        private long prepareNanos;
+        private long executeNanos;
+
+        private Stats() { }
+
+        private Stats(Stats other) {
+            this.executeCount = other.executeCount;
+            this.prepareNanos = other.prepareNanos;
+            this.executeNanos = other.executeNanos;
+        }
+
+        /**
+         * @return Numero di esecuzioni dell'istruzione.
+         */
+        public int executeCount() {
+            return executeCount;
+        }
+
+        /**
+         * @return Tempo complessivo di preparazione, in nanosecondi.
+         */
+        public long prepareNanos() {
+            return prepareNanos;
+        }
+
+        /**
+         * @return Tempo complessivo di esecuzione, in nanosecondi.
+         */
+        public long executeNanos() {
+            return executeNanos;
+        }
+    }
+}
@@ -0,0 +1,379 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: ShardSQLiteDataSource.java
+ * Package: com.kyloth.serleena.persistence.sqlite
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ */
+
+package com.kyloth.serleena.persistence.sqlite;
+
+import com.kyloth.serleena.common.Checkpoint;
+import com.kyloth.serleena.common.DirectAccessList;
+import com.kyloth.serleena.common.EmergencyContact;
+import com.kyloth.serleena.common.GeoPoint;
+import com.kyloth.serleena.common.IQuadrant;
+import com.kyloth.serleena.common.IRegion;
+import com.kyloth.serleena.common.NoSuchWeatherForecastException;
+import com.kyloth.serleena.common.SearchResult;
+import com.kyloth.serleena.common.TelemetryEvent;
+import com.kyloth.serleena.common.UserPoint;
+import com.kyloth.serleena.persistence.IExperienceStorage;
+import com.kyloth.serleena.persistence.IWeatherStorage;
+import com.kyloth.serleena.persistence.NoSuchQuadrantException;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Implementazione di ISerleenaSQLiteDataSource che accede allo shard di
+ * un'Esperienza nella generazione di database in uso.
+ *
+ * Ogni chiamata mantiene il lock delle letture di SerleenaDatabaseShards, e
+ * viene inoltrata al DAO dello shard nella generazione corrente al momento
+ * della chiamata: gli oggetti restituiti prima di una sincronizzazione
+ * leggono quindi i dati della nuova generazione, senza mai accedere ai
+ * database chiusi della precedente. Esperienze e Percorsi restituiti
+ * vengono ricreati in modo da fare riferimento a questo oggetto.
+ *
+ * @use Viene creato da ShardedSQLiteDataSource, uno per Esperienza, e associato alle Esperienze che questo restituisce.
+ * @field owner : ShardedSQLiteDataSource DAO che risolve lo shard nella generazione corrente
+ * @field experience : UUID Esperienza a cui appartiene lo shard
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+class ShardSQLiteDataSource implements ISerleenaSQLiteDataSource {
+
+    private final ShardedSQLiteDataSource owner;
+    private final UUID experience;
+
+    /**
+     * Crea un nuovo oggetto ShardSQLiteDataSource.
+     *
+     * @param owner DAO che risolve lo shard nella generazione corrente.
+     * @param experience UUID dell'Esperienza.
+     */
+    ShardSQLiteDataSource(ShardedSQLiteDataSource owner, UUID experience) {
+        if (owner == null)
+            throw new IllegalArgumentException("Illegal null data source");
+        if (experience == null)
+            throw new IllegalArgumentException("Illegal null experience");
+        this.owner = owner;
+        this.experience = experience;
+    }
+
+    /**
+     * Restituisce il DAO dello shard nella generazione corrente. Deve essere
+     * chiamato mantenendo il lock delle letture.
+     */
+    private ISerleenaSQLiteDataSource source() {
+        return owner.generationSource(experience);
+    }
+
+    /**
+     * Ricrea le Esperienze restituite dal DAO dello shard in modo che
+     * facciano riferimento a questo oggetto.
+     */
+    private Iterable<IExperienceStorage> wrapExperiences(
+            Iterable<IExperienceStorage> experiences) {
+        ArrayList<IExperienceStorage> list =
+                new ArrayList<IExperienceStorage>();
+        for (IExperienceStorage e : experiences)
+            list.add(new SQLiteDAOExperience(e.getName(), e.getUUID(), this));
+        return list;
+    }
+
+    /**
+     * Ricrea i Percorsi restituiti dal DAO dello shard in modo che facciano
+     * riferimento a questo oggetto.
+     */
+    private Iterable<SQLiteDAOTrack> wrapTracks(Iterable<SQLiteDAOTrack> tracks,
+                                                boolean withCheckpoints) {
+        ArrayList<SQLiteDAOTrack> list = new ArrayList<SQLiteDAOTrack>();
+        for (SQLiteDAOTrack t : tracks)
+            list.add(withCheckpoints ?
+                    new SQLiteDAOTrack(t.getCheckpoints(), t.getUUID(),
+                            t.name(), this) :
+                    new SQLiteDAOTrack(t.getUUID(), t.name(), this));
+        return list;
+    }
+
+    @Override
+    public Iterable<IExperienceStorage> getExperiences() {
+        Lock lock = owner.readLock();
+        lock.lock();
+        try {
+            return wrapExperiences(source().getExperiences());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public IWeatherStorage getWeatherInfo(GeoPoint location, Date date)
+            throws NoSuchWeatherForecastException {
+        Lock lock = owner.readLock();
+        lock.lock();
+        try {
+            return source().getWeatherInfo(location, date);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public DirectAccessList<EmergencyContact> getContacts(GeoPoint location) {
+        Lock lock = owner.readLock();
+        lock.lock();
+        try {
+            return source().getContacts(location);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public DirectAccessList<SearchResult> search(String text) {
+        Lock lock = owner.readLock();
+        lock.lock();
+        try {
+            return source().search(text);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Iterable<SQLiteDAOTrack> getTracks(SQLiteDAOExperience experience) {
+        Lock lock = owner.readLock();
+        lock.lock();
+        try {
+            return wrapTracks(source().getTracks(experience), false);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Iterable<SQLiteDAOTrack> getTracks(SQLiteDAOExperience experience,
+                                              boolean withCheckpoints) {
+        Lock lock = owner.readLock();
+        lock.lock();
+        try {
+            return wrapTracks(source().getTracks(experience, withCheckpoints),
+                    withCheckpoints);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public DirectAccessList<Checkpoint> getCheckpoints(SQLiteDAOTrack track) {
+        Lock lock = owner.readLock();
+        lock.lock();
+        try {
+            return source().getCheckpoints(track);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Iterable<SQLiteDAOTelemetry> getTelemetries(SQLiteDAOTrack track) {
+        Lock lock = owner.readLock();
+        lock.lock();
+        try {
+            return source().getTelemetries(track);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Iterable<SQLiteDAOTelemetry> getTelemetries(SQLiteDAOTrack track,
+                                                       boolean includeGhost) {
+        Lock lock = owner.readLock();
+        lock.lock();
+        try {
+            return source().getTelemetries(track, includeGhost);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public SQLiteDAOTelemetry getBestTelemetry(SQLiteDAOTrack track) {
+        Lock lock = owner.readLock();
+        lock.lock();
+        try {
+            return source().getBestTelemetry(track);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Map<Integer, Integer> getTelemetryDurations(SQLiteDAOTrack track) {
+        Lock lock = owner.readLock();
+        lock.lock();
+        try {
+            return source().getTelemetryDurations(track);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public TrackStatistics getTrackStatistics(SQLiteDAOTrack track) {
+        Lock lock = owner.readLock();
+        lock.lock();
+        try {
+            return source().getTrackStatistics(track);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long[] getBestSplits(SQLiteDAOTrack track) {
+        Lock lock = owner.readLock();
+        lock.lock();
+        try {
+            return source().getBestSplits(track);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Iterable<UserPoint> getUserPoints(SQLiteDAOExperience experience) {
+        Lock lock = owner.readLock();
+        lock.lock();
+        try {
+            return source().getUserPoints(experience);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Iterable<UserPoint> getUserPoints(SQLiteDAOExperience experience,
+                                             boolean localOnly) {
+        Lock lock = owner.readLock();
+        lock.lock();
+        try {
+            return source().getUserPoints(experience, localOnly);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Iterable<UserPoint> getUserPoints(SQLiteDAOExperience experience,
+                                             IRegion region) {
+        Lock lock = owner.readLock();
+        lock.lock();
+        try {
+            return source().getUserPoints(experience, region);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void addUserPoint(SQLiteDAOExperience experience,
+                             UserPoint point) {
+        Lock lock = owner.readLock();
+        lock.lock();
+        try {
+            source().addUserPoint(experience, point);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void createTelemetry(Iterable<TelemetryEvent> events,
+                                SQLiteDAOTrack track) {
+        Lock lock = owner.readLock();
+        lock.lock();
+        try {
+            source().createTelemetry(events, track);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void createTelemetries(
+            Iterable<Iterable<TelemetryEvent>> telemetries,
+            SQLiteDAOTrack track) {
+        Lock lock = owner.readLock();
+        lock.lock();
+        try {
+            source().createTelemetries(telemetries, track);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public IQuadrant getQuadrant(GeoPoint location,
+                                 SQLiteDAOExperience experience)
+            throws NoSuchQuadrantException {
+        Lock lock = owner.readLock();
+        lock.lock();
+        try {
+            return source().getQuadrant(location, experience);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void flush() {
+        Lock lock = owner.readLock();
+        lock.lock();
+        try {
+            source().flush();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,252 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: ShardedSQLiteDataSink.java
+ * Package: com.kyloth.serleena.persistence.sqlite
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ * 1.0.1    Filippo Sestini  Costruzione e pubblicazione di una nuova
+ *                                          generazione di database.
+ */
+
+package com.kyloth.serleena.persistence.sqlite;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+
+import com.kyloth.serleena.synchronization.InboundDump;
+import com.kyloth.serleena.synchronization.kylothcloud.inbound.SerleenaSQLiteInboundDump;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Implementazione di ISerleenaSQLiteDataSink per la memorizzazione suddivisa
+ * per Esperienza descritta da SerleenaDatabaseShards.
+ *
+ * Il dump viene caricato in un database temporaneo, da cui vengono
+ * costruiti a parte il nuovo shard di ciascuna Esperienza e il nuovo
+ * catalogo, che formano la generazione successiva a quella in uso. Solo al
+ * termine della costruzione la nuova generazione viene pubblicata per
+ * intero da SerleenaDatabaseShards; in caso di errore i database in uso non
+ * vengono alterati e i file costruiti vengono eliminati.
+ *
+ * @use Viene creato da SerleenaApplication quando è attiva la memorizzazione suddivisa per Esperienza, e utilizzato da Synchronizer al posto di SerleenaSQLiteDataSink.
+ * @field context : Context Contesto dell'applicazione
+ * @field shards : SerleenaDatabaseShards Database catalogo e shard da sostituire
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+public class ShardedSQLiteDataSink implements ISerleenaSQLiteDataSink {
+
+    /**
+     * Nome del database temporaneo in cui viene caricato il dump.
+     */
+    static final String STAGING_NAME = "serleena.staging.db";
+
+    private static final String TRACKS_OF_EXPERIENCE =
+            "SELECT track_uuid FROM main." + SerleenaDatabase.TABLE_TRACKS +
+            " WHERE track_experience = ?";
+
+    /**
+     * Tabelle il cui contenuto appartiene a una singola Esperienza, in
+     * ordine compatibile con le chiavi esterne, ciascuna con la condizione
+     * che ne seleziona le righe di un'Esperienza.
+     */
+    private static final String[][] SHARD_TABLES = {
+        { SerleenaDatabase.TABLE_EXPERIENCES, "experience_uuid = ?" },
+        { SerleenaDatabase.TABLE_TRACKS, "track_experience = ?" },
+        { SerleenaDatabase.TABLE_CHECKPOINTS,
+                "checkpoint_track IN (" + TRACKS_OF_EXPERIENCE + ")" },
+        { SerleenaDatabase.TABLE_TELEMETRIES,
+                "telem_track IN (" + TRACKS_OF_EXPERIENCE + ")" },
+        { SerleenaDatabase.TABLE_TELEM_EVENTS_CHECKP,
+                "eventc_telem IN (SELECT telem_id FROM main." +
+                SerleenaDatabase.TABLE_TELEMETRIES + " JOIN main." +
+                SerleenaDatabase.TABLE_TRACKS + " ON telem_track = " +
+                "track_uuid WHERE track_experience = ?)" },
+        { SerleenaDatabase.TABLE_BEST_TELEMETRIES,
+                "best_track IN (" + TRACKS_OF_EXPERIENCE + ")" },
+        { SerleenaDatabase.TABLE_USER_POINTS, "userpoint_experience = ?" },
+        { SerleenaDatabase.TABLE_RASTERS, "raster_experience = ?" },
+        { SerleenaDatabase.TABLE_RASTER_PAGES,
+                "page_raster IN (SELECT raster_id FROM main." +
+                SerleenaDatabase.TABLE_RASTERS +
+                " WHERE raster_experience = ?)" }
+    };
+
+    private final Context context;
+    private final SerleenaDatabaseShards shards;
+
+    /**
+     * Crea un oggetto ShardedSQLiteDataSink.
+     *
+     * @param context Contesto dell'applicazione.
+     * @param shards Database catalogo e shard da sostituire.
+     */
+    public ShardedSQLiteDataSink(Context context,
+                                 SerleenaDatabaseShards shards) {
+        if (context == null)
+            throw new IllegalArgumentException("Illegal null context");
+        if (shards == null)
+            throw new IllegalArgumentException("Illegal null shards");
+
+        this.context = context;
+        this.shards = shards;
+    }
+
+    /**
+     * Carica un dump di dati proveniente dall'esterno.
+     *
+     * Il dump viene caricato per intero in un database temporaneo con
+     * SerleenaSQLiteDataSink. Le righe di ciascuna Esperienza vengono poi
+     * copiate nel rispettivo nuovo shard, e rimosse dal database temporaneo,
+     * che diventa il nuovo catalogo. Catalogo e shard vengono creati con i
+     * nomi della nuova generazione, che viene pubblicata solo al termine
+     * della costruzione.
+     *
+     * @param dump Dump da caricare.
+     */
+    @Override
+    public void load(InboundDump dump) {
+        if (!(dump instanceof SerleenaSQLiteInboundDump))
+            throw new IllegalArgumentException();
+
+        int generation = shards.prepareGeneration();
+        boolean completed = false;
+
+        context.deleteDatabase(STAGING_NAME);
+        SerleenaDatabase staging = new SerleenaDatabase(context,
+                STAGING_NAME, null, SerleenaDatabase.DATABASE_VERSION);
+        try {
+            new SerleenaSQLiteDataSink(context, staging).load(dump);
+            SQLiteDatabase db = staging.getWritableDatabase();
+            for (UUID experience : readExperiences(db))
+                buildShard(db, SerleenaDatabaseShards.shardName(generation,
+                        experience), experience);
+            stripShardTables(db);
+            staging.close();
+
+            String catalog = SerleenaDatabaseShards.catalogName(generation);
+            if (!context.getDatabasePath(STAGING_NAME).renameTo(
+                    context.getDatabasePath(catalog)))
+                throw new SQLiteException("Unable to build " + catalog);
+            shards.publish(generation);
+            completed = true;
+        } finally {
+            if (!completed) {
+                staging.close();
+                context.deleteDatabase(STAGING_NAME);
+                shards.discardGeneration(generation);
+            }
+        }
+    }
+
+    /**
+     * Costruisce il nuovo shard di un'Esperienza, copiandovi le righe
+     * dell'Esperienza presenti nel database temporaneo.
+     *
+     * Lo shard viene creato con lo schema corrente di SerleenaDatabase e
+     * collegato al database temporaneo con ATTACH, in modo che la copia
+     * avvenga interamente in SQLite, in un'unica transazione.
+     *
+     * @param db Database temporaneo.
+     * @param name Nome del file dello shard.
+     * @param experience UUID dell'Esperienza.
+     */
+    private void buildShard(SQLiteDatabase db, String name,
+                            UUID experience) {
+        context.deleteDatabase(name);
+        SerleenaDatabase shard = new SerleenaDatabase(context, name, null,
+                SerleenaDatabase.DATABASE_VERSION);
+        shard.getWritableDatabase();
+        shard.close();
+
+        File file = context.getDatabasePath(name);
+        db.execSQL("ATTACH DATABASE ? AS shard",
+                new Object[] { file.getPath() });
+        try {
+            db.beginTransaction();
+            try {
+                String[] args = new String[] { experience.toString() };
+                for (String[] table : SHARD_TABLES)
+                    db.execSQL("INSERT INTO shard." + table[0] +
+                            " SELECT * FROM main." + table[0] +
+                            " WHERE " + table[1], args);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } finally {
+            db.execSQL("DETACH DATABASE shard");
+        }
+    }
+
+    /**
+     * Rimuove dal database temporaneo le righe copiate negli shard,
+     * lasciando l'elenco delle Esperienze, le previsioni meteo e i contatti
+     * di emergenza che costituiscono il catalogo.
+     *
+     * @param db Database temporaneo.
+     */
+    private static void stripShardTables(SQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            for (int i = SHARD_TABLES.length - 1; i > 0; i--)
+                db.execSQL("DELETE FROM " + SHARD_TABLES[i][0]);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        db.execSQL("VACUUM");
+    }
+
+    /**
+     * Restituisce gli UUID delle Esperienze presenti in un database.
+     */
+    private static List<UUID> readExperiences(SQLiteDatabase db) {
+        Cursor result = db.rawQuery("SELECT experience_uuid FROM " +
+                SerleenaDatabase.TABLE_EXPERIENCES, null);
+        List<UUID> experiences = new ArrayList<UUID>();
+        while (result.moveToNext())
+            experiences.add(UUID.fromString(result.getString(0)));
+        result.close();
+        return experiences;
+    }
+}
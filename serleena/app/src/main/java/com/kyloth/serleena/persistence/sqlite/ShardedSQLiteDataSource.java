@@ -0,0 +1,451 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: ShardedSQLiteDataSource.java
+ * Package: com.kyloth.serleena.persistence.sqlite
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ * 1.0.1    Filippo Sestini  Aggiunto search().
+ * 1.0.2    Filippo Sestini  Aggiunto flush().
+ * 1.0.3    Filippo Sestini  Letture dalla generazione di database in uso,
+ *                                          sotto il lock di
+ *                                          SerleenaDatabaseShards.
+ * 1.0.4    Filippo Sestini  Misura delle chiamate ai DAO di catalogo e
+ *                                          shard.
+ */
+
+package com.kyloth.serleena.persistence.sqlite;
+
+import com.kyloth.serleena.common.DirectAccessList;
+import com.kyloth.serleena.common.EmergencyContact;
+import com.kyloth.serleena.common.GeoPoint;
+import com.kyloth.serleena.common.NoSuchWeatherForecastException;
+import com.kyloth.serleena.common.SearchResult;
+import com.kyloth.serleena.persistence.IExperienceStorage;
+import com.kyloth.serleena.persistence.IPersistenceDataSource;
+import com.kyloth.serleena.persistence.IWeatherStorage;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Implementazione di IPersistenceDataSource per la memorizzazione suddivisa
+ * per Esperienza descritta da SerleenaDatabaseShards.
+ *
+ * L'elenco delle Esperienze, le previsioni meteo e i contatti di emergenza
+ * vengono letti dal database catalogo. Ogni Esperienza restituita fa
+ * riferimento a un ShardSQLiteDataSource associato al proprio shard, per
+ * cui le query sui suoi Percorsi, punti utente e quadranti consultano
+ * tabelle che contengono i soli dati di quell'Esperienza.
+ *
+ * Ogni lettura mantiene il lock delle letture di SerleenaDatabaseShards e
+ * consulta i database della generazione in uso. I DAO di catalogo e shard
+ * vengono ricreati alla prima lettura successiva alla pubblicazione di una
+ * nuova generazione; le liste restituite da getContacts() e search()
+ * rieseguono allo stesso modo la query sulla nuova generazione.
+ *
+ * Se viene fornito un oggetto PersistenceMetrics, i DAO di catalogo e shard
+ * sono racchiusi in un InstrumentedSQLiteDataSource che ne misura le
+ * chiamate.
+ *
+ * @use Viene creato da SerleenaApplication quando è attiva la memorizzazione suddivisa per Esperienza, e utilizzato al posto di SerleenaSQLiteDataSource da SerleenaDataSource e Synchronizer.
+ * @field shards : SerleenaDatabaseShards Database catalogo e shard
+ * @field metrics : PersistenceMetrics Misure delle chiamate, o null
+ * @field shardSources : Map<UUID, ShardSQLiteDataSource> DAO associati alle Esperienze restituite, per UUID dell'Esperienza
+ * @field generation : int Generazione a cui appartengono catalog e generationSources
+ * @field catalog : ISerleenaSQLiteDataSource DAO del database catalogo della generazione
+ * @field generationSources : Map<UUID, ISerleenaSQLiteDataSource> DAO degli shard della generazione, per UUID dell'Esperienza
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+public class ShardedSQLiteDataSource implements IPersistenceDataSource {
+
+    private final SerleenaDatabaseShards shards;
+    private final PersistenceMetrics metrics;
+    private final Map<UUID, ShardSQLiteDataSource> shardSources;
+    private final Map<UUID, ISerleenaSQLiteDataSource> generationSources;
+    private int generation;
+    private ISerleenaSQLiteDataSource catalog;
+
+    /**
+     * Crea un oggetto ShardedSQLiteDataSource che non misura le chiamate.
+     *
+     * @param shards Database catalogo e shard da cui leggere i dati.
+     */
+    public ShardedSQLiteDataSource(SerleenaDatabaseShards shards) {
+        this(shards, null);
+    }
+
+    /**
+     * Crea un oggetto ShardedSQLiteDataSource.
+     *
+     * @param shards Database catalogo e shard da cui leggere i dati.
+     * @param metrics Misure delle chiamate ai DAO di catalogo e shard, o
+     *                null per non misurarle.
+     */
+    public ShardedSQLiteDataSource(SerleenaDatabaseShards shards,
+                                   PersistenceMetrics metrics) {
+        if (shards == null)
+            throw new IllegalArgumentException("Illegal null shards");
+
+        this.shards = shards;
+        this.metrics = metrics;
+        this.shardSources = new HashMap<UUID, ShardSQLiteDataSource>();
+        this.generationSources =
+                new HashMap<UUID, ISerleenaSQLiteDataSource>();
+        this.generation = shards.generation();
+        this.catalog = createSource(shards.catalog());
+    }
+
+    /**
+     * Crea il DAO di un database, misurato se è stato fornito un oggetto
+     * PersistenceMetrics.
+     */
+    private ISerleenaSQLiteDataSource createSource(SerleenaDatabase db) {
+        SerleenaSQLiteDataSource source = new SerleenaSQLiteDataSource(db);
+        return (metrics != null) ?
+                new InstrumentedSQLiteDataSource(source, metrics) : source;
+    }
+
+    /**
+     * Restituisce il lock da mantenere durante una lettura.
+     *
+     * @return Lock delle letture di SerleenaDatabaseShards.
+     */
+    Lock readLock() {
+        return shards.readLock();
+    }
+
+    /**
+     * Restituisce il DAO associato allo shard di un'Esperienza, creandolo se
+     * necessario. Il DAO resta valido per tutte le generazioni, e la
+     * creazione non apre il file dello shard.
+     *
+     * @param experience UUID dell'Esperienza.
+     * @return DAO dello shard.
+     */
+    synchronized ShardSQLiteDataSource shardSource(UUID experience) {
+        ShardSQLiteDataSource source = shardSources.get(experience);
+        if (source == null) {
+            source = new ShardSQLiteDataSource(this, experience);
+            shardSources.put(experience, source);
+        }
+        return source;
+    }
+
+    /**
+     * Restituisce il DAO dello shard di un'Esperienza nella generazione in
+     * uso. Deve essere chiamato mantenendo il lock restituito da
+     * readLock().
+     *
+     * @param experience UUID dell'Esperienza.
+     * @return DAO dello shard nella generazione in uso.
+     */
+    synchronized ISerleenaSQLiteDataSource generationSource(UUID experience) {
+        refresh();
+        ISerleenaSQLiteDataSource source = generationSources.get(experience);
+        if (source == null) {
+            source = createSource(shards.shard(experience));
+            generationSources.put(experience, source);
+        }
+        return source;
+    }
+
+    /**
+     * Restituisce il DAO del catalogo nella generazione in uso. Deve essere
+     * chiamato mantenendo il lock restituito da readLock().
+     */
+    private synchronized ISerleenaSQLiteDataSource catalogSource() {
+        refresh();
+        return catalog;
+    }
+
+    /**
+     * Se è stata pubblicata una nuova generazione, sostituisce i DAO di
+     * catalogo e shard con quelli dei nuovi database.
+     */
+    private void refresh() {
+        int current = shards.generation();
+        if (current != generation) {
+            generation = current;
+            catalog = createSource(shards.catalog());
+            generationSources.clear();
+        }
+    }
+
+    /**
+     * Implementazione di IPersistenceDataSource.getExperiences().
+     *
+     * Le Esperienze sono lette dal catalogo, e ciascuna è associata al DAO
+     * del proprio shard.
+     *
+     * @return Insieme enumerabile di Esperienze.
+     */
+    @Override
+    public Iterable<IExperienceStorage> getExperiences() {
+        Lock lock = readLock();
+        lock.lock();
+        try {
+            ArrayList<IExperienceStorage> list =
+                    new ArrayList<IExperienceStorage>();
+            for (IExperienceStorage e : catalogSource().getExperiences())
+                list.add(new SQLiteDAOExperience(e.getName(), e.getUUID(),
+                        shardSource(e.getUUID())));
+            return list;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Implementazione di IPersistenceDataSource.getWeatherInfo().
+     *
+     * @param location Posizione geografica di cui si vogliono ottenere le
+     *                 previsioni.
+     * @param date Data di cui si vogliono ottenere le previsioni.
+     * @return Previsioni meteo lette dal catalogo.
+     */
+    @Override
+    public IWeatherStorage getWeatherInfo(GeoPoint location, Date date)
+            throws NoSuchWeatherForecastException {
+        Lock lock = readLock();
+        lock.lock();
+        try {
+            return catalogSource().getWeatherInfo(location, date);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Implementazione di IPersistenceDataSource.getContacts().
+     *
+     * @param location Punto geografico del cui intorno si vogliono ottenere
+     *                 i contatti.
+     * @return Contatti di emergenza letti dal catalogo.
+     */
+    @Override
+    public DirectAccessList<EmergencyContact> getContacts(
+            final GeoPoint location) {
+        return follow(new GenerationList<EmergencyContact>() {
+            @Override
+            protected DirectAccessList<EmergencyContact> create(
+                    ISerleenaSQLiteDataSource catalog) {
+                return catalog.getContacts(location);
+            }
+        });
+    }
+
+    /**
+     * Implementazione di IPersistenceDataSource.search().
+     *
+     * Il catalogo viene costruito caricando l'intero dump prima di
+     * suddividerlo, per cui il suo indice di ricerca comprende anche i
+     * Percorsi memorizzati negli shard.
+     *
+     * @param text Testo della ricerca.
+     * @return Risultati letti dall'indice del catalogo.
+     */
+    @Override
+    public DirectAccessList<SearchResult> search(final String text) {
+        return follow(new GenerationList<SearchResult>() {
+            @Override
+            protected DirectAccessList<SearchResult> create(
+                    ISerleenaSQLiteDataSource catalog) {
+                return catalog.search(text);
+            }
+        });
+    }
+
+    /**
+     * Implementazione di IPersistenceDataSource.flush().
+     *
+     * Vengono scritte le modifiche in attesa del catalogo e di tutti gli shard
+     * aperti finora nella generazione in uso.
+     */
+    @Override
+    public void flush() {
+        Lock lock = readLock();
+        lock.lock();
+        try {
+            ISerleenaSQLiteDataSource catalog;
+            ArrayList<ISerleenaSQLiteDataSource> sources;
+            synchronized (this) {
+                refresh();
+                catalog = this.catalog;
+                sources = new ArrayList<ISerleenaSQLiteDataSource>(
+                        generationSources.values());
+            }
+            catalog.flush();
+            for (ISerleenaSQLiteDataSource source : sources)
+                source.flush();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Crea la lista della generazione in uso, in modo che eventuali
+     * parametri non validi vengano segnalati subito.
+     */
+    private <T> GenerationList<T> follow(GenerationList<T> list) {
+        Lock lock = readLock();
+        lock.lock();
+        try {
+            list.current();
+            return list;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Lista letta dal catalogo, che viene ricreata dalla generazione in uso
+     * se al momento dell'accesso ne è stata pubblicata una nuova.
+     *
+     * @field listGeneration : int Generazione da cui è stata creata list
+     * @field list : DirectAccessList<T> Lista della generazione listGeneration
+     */
+    private abstract class GenerationList<T> implements DirectAccessList<T> {
+
+        private int listGeneration;
+        private DirectAccessList<T> list;
+
+        /**
+         * Crea la lista a partire dal DAO del catalogo di una generazione.
+         *
+         * @param catalog DAO del catalogo.
+         * @return Lista letta dal catalogo.
+         */
+        protected abstract DirectAccessList<T> create(
+                ISerleenaSQLiteDataSource catalog);
+
+        /**
+         * Restituisce la lista della generazione in uso. Deve essere
+         * chiamato mantenendo il lock restituito da readLock().
+         */
+        synchronized DirectAccessList<T> current() {
+            int generation = shards.generation();
+            if (list == null || listGeneration != generation) {
+                list = create(catalogSource());
+                listGeneration = generation;
+            }
+            return list;
+        }
+
+        @Override
+        public int size() {
+            Lock lock = readLock();
+            lock.lock();
+            try {
+                return current().size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public T get(int index) {
+            Lock lock = readLock();
+            lock.lock();
+            try {
+                return current().get(index);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return new Iterator<T>() {
+                private int next = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return next < size();
+                }
+
+                @Override
+                public T next() {
+                    if (!hasNext())
+                        throw new NoSuchElementException();
+                    return get(next++);
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        /**
+         * Due liste sono uguali se, nella generazione in uso, lo sono le
+         * liste lette dal catalogo.
+         */
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof GenerationList))
+                return false;
+            GenerationList<?> other = (GenerationList<?>) o;
+            Lock lock = readLock();
+            lock.lock();
+            try {
+                return current().equals(other.current());
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            Lock lock = readLock();
+            lock.lock();
+            try {
+                return current().hashCode();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: TrackStatistics.java
+ * Package: com.kyloth.serleena.persistence.sqlite
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ */
+
+package com.kyloth.serleena.persistence.sqlite;
+
+/**
+ * Statistiche aggregate sui Tracciamenti di un Percorso, calcolate dal
+ * database senza leggerne gli eventi.
+ *
+ * Sono considerati solo i Tracciamenti di cui è possibile stabilire la
+ * durata, ovvero quelli che contengono l'attraversamento del primo
+ * checkpoint.
+ *
+ * @use Viene restituita da SerleenaSQLiteDataSource.getTrackStatistics().
+ * @field count : int Numero di Tracciamenti considerati
+ * @field bestDuration : int Durata minima
+ * @field averageDuration : double Durata media
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+final class TrackStatistics {
+
+    private final int count;
+    private final int bestDuration;
+    private final double averageDuration;
+
+    /**
+     * Crea un nuovo oggetto TrackStatistics.
+     *
+     * @param count Numero di Tracciamenti considerati.
+     * @param bestDuration Durata minima.
+     * @param averageDuration Durata media.
+     */
+    TrackStatistics(int count, int bestDuration, double averageDuration) {
+        if (count < 0)
+            throw new IllegalArgumentException("Illegal negative count");
+        this.count = count;
+        this.bestDuration = bestDuration;
+        this.averageDuration = averageDuration;
+    }
+
+    /**
+     * @return Numero di Tracciamenti considerati.
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * @return Durata minima, o CheckpointTimestamps.NO_DURATION se count()
+     * è 0.
+     */
+    public int bestDuration() {
+        return bestDuration;
+    }
+
+    /**
+     * @return Durata media, o 0 se count() è 0.
+     */
+    public double averageDuration() {
+        return averageDuration;
+    }
+}
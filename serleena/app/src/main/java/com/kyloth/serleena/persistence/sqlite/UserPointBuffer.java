@@ -0,0 +1,382 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: UserPointBuffer.java
+ * Package: com.kyloth.serleena.persistence.sqlite
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ * 1.0.1    Filippo Sestini  Inserimento fuori dal lock delle letture,
+ *                                          scarto dei punti non inseribili
+ *                                          e segnalazione degli errori nel
+ *                                          log.
+ */
+
+package com.kyloth.serleena.persistence.sqlite;
+
+import android.database.sqlite.SQLiteConstraintException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import com.kyloth.serleena.common.IRegion;
+import com.kyloth.serleena.common.UserPoint;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Memoria tampone per l'inserimento dei Punti Utente in un database.
+ *
+ * I Punti Utente aggiunti vengono mantenuti in memoria e scritti nel
+ * database in blocchi, ciascuno in un'unica transazione: quando ne sono in
+ * attesa almeno flushThreshold, oppure dopo flushDelayMillis millisecondi
+ * dal primo punto in attesa, o su richiesta esplicita con flush(). La
+ * scrittura a tempo avviene in un thread in background, avviato al primo
+ * inserimento e terminato quando non vi sono più punti in attesa.
+ *
+ * I punti in attesa sono visibili alle letture fin dal loro inserimento:
+ * chi legge i Punti Utente dal database vi aggiunge quelli restituiti da
+ * appendPending(), mantenendo il lock restituito da readLock() per tutta la
+ * lettura. L'inserimento nel database avviene senza escludere le letture:
+ * ogni punto inserito riceve il proprio userpoint_id, e appendPending()
+ * tralascia i punti con ID non superiore al massimo letto dal database, che
+ * la lettura ha quindi già trovato. Solo la rimozione dalla memoria avviene
+ * in mutua esclusione con le letture, che non vedono quindi mai un punto due
+ * volte, né lo perdono.
+ *
+ * Un punto che viola un vincolo del database, ad esempio perché la sua
+ * Esperienza non esiste più, non impedisce la scrittura degli altri: resta
+ * in memoria per i tentativi successivi, e viene scartato dopo
+ * MAX_INSERT_ATTEMPTS tentativi falliti.
+ *
+ * @use Ogni oggetto SerleenaDatabase ne mantiene un'istanza, attraverso cui SerleenaSQLiteDataSource inserisce e legge i Punti Utente. SerleenaSQLiteDataSink e SerleenaDatabaseShards svuotano la memoria tampone prima di sostituire i dati del database.
+ * @field dbHelper : SerleenaDatabase Database in cui scrivere i punti
+ * @field flushThreshold : int Numero di punti in attesa oltre il quale vengono scritti
+ * @field flushDelayMillis : long Tempo massimo di attesa di un punto, in millisecondi
+ * @field pending : List<PendingPoint> Punti in attesa, in ordine di inserimento
+ * @field flushLock : ReadWriteLock Esclude le letture durante la rimozione dei punti scritti
+ * @field flushMutex : Object Serializza le scritture
+ * @field worker : Thread Thread della scrittura a tempo, o null
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+class UserPointBuffer {
+
+    /**
+     * Numero predefinito di punti in attesa oltre il quale vengono scritti.
+     */
+    public static final int DEFAULT_FLUSH_THRESHOLD = 32;
+
+    /**
+     * Tempo massimo predefinito di attesa di un punto, in millisecondi.
+     */
+    public static final long DEFAULT_FLUSH_DELAY_MILLIS = 2000;
+
+    /**
+     * Numero di tentativi di inserimento falliti dopo i quali un punto
+     * viene scartato.
+     */
+    public static final int MAX_INSERT_ATTEMPTS = 3;
+
+    static final String INSERT_USER_POINT =
+            "INSERT INTO " + SerleenaDatabase.TABLE_USER_POINTS +
+            " (userpoint_x, userpoint_y, userpoint_experience)" +
+            " VALUES (?, ?, ?)";
+
+    private static final String TAG = "UserPointBuffer";
+
+    private final SerleenaDatabase dbHelper;
+    private final int flushThreshold;
+    private final long flushDelayMillis;
+    private final List<PendingPoint> pending;
+    private final ReadWriteLock flushLock;
+    private final Object flushMutex = new Object();
+    private Thread worker;
+
+    /**
+     * Crea un nuovo oggetto UserPointBuffer.
+     *
+     * @param dbHelper Database in cui scrivere i punti.
+     * @param flushThreshold Numero di punti in attesa oltre il quale vengono
+     *                       scritti, almeno 1.
+     * @param flushDelayMillis Tempo massimo di attesa di un punto, in
+     *                         millisecondi, non negativo.
+     */
+    UserPointBuffer(SerleenaDatabase dbHelper, int flushThreshold,
+                    long flushDelayMillis) {
+        if (dbHelper == null)
+            throw new IllegalArgumentException("Illegal null database");
+        if (flushThreshold < 1)
+            throw new IllegalArgumentException("Illegal threshold");
+        if (flushDelayMillis < 0)
+            throw new IllegalArgumentException("Illegal delay");
+        this.dbHelper = dbHelper;
+        this.flushThreshold = flushThreshold;
+        this.flushDelayMillis = flushDelayMillis;
+        this.pending = new ArrayList<PendingPoint>();
+        this.flushLock = new ReentrantReadWriteLock();
+    }
+
+    /**
+     * Aggiunge un Punto Utente alla memoria tampone.
+     *
+     * Il metodo non accede al database: il punto viene scritto in seguito
+     * dal thread in background o da flush().
+     *
+     * @param experience UUID dell'Esperienza a cui appartiene il punto.
+     * @param point Punto Utente.
+     */
+    void add(UUID experience, UserPoint point) {
+        if (experience == null)
+            throw new IllegalArgumentException("Illegal null experience");
+        if (point == null)
+            throw new IllegalArgumentException("Illegal null point");
+
+        synchronized (pending) {
+            pending.add(new PendingPoint(experience, point));
+            if (worker == null)
+                startWorker();
+            else if (pending.size() >= flushThreshold)
+                pending.notifyAll();
+        }
+    }
+
+    /**
+     * Restituisce il lock da mantenere durante la lettura dei Punti Utente
+     * dal database e da appendPending().
+     *
+     * @return Lock delle letture.
+     */
+    Lock readLock() {
+        return flushLock.readLock();
+    }
+
+    /**
+     * Aggiunge a una lista i punti in attesa di un'Esperienza che non sono
+     * stati trovati dalla lettura del database.
+     *
+     * @param experience UUID dell'Esperienza.
+     * @param region Area geografica entro cui devono trovarsi i punti, o null
+     *               per aggiungerli tutti.
+     * @param maxReadId Massimo userpoint_id letto dal database, o 0 se non è
+     *                  stato letto alcun punto.
+     * @param list Lista a cui aggiungere i punti.
+     */
+    void appendPending(UUID experience, IRegion region, long maxReadId,
+                       List<UserPoint> list) {
+        synchronized (pending) {
+            for (PendingPoint p : pending)
+                if ((p.id == PendingPoint.NOT_INSERTED || p.id > maxReadId) &&
+                        p.experience.equals(experience) &&
+                        (region == null || region.contains(p.point)))
+                    list.add(p.point);
+        }
+    }
+
+    /**
+     * Restituisce il numero di punti in attesa di essere scritti.
+     *
+     * @return Numero di punti in attesa.
+     */
+    int pendingCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * Scrive nel database, in un'unica transazione, tutti i punti in attesa.
+     *
+     * I punti che violano un vincolo del database non vengono inseriti, e
+     * restano in memoria fino al MAX_INSERT_ATTEMPTS-esimo tentativo fallito,
+     * dopo il quale vengono scartati. Se la transazione fallisce per altri
+     * motivi, tutti i punti restano in memoria, il database non viene
+     * alterato e l'eccezione viene propagata.
+     */
+    void flush() {
+        synchronized (flushMutex) {
+            List<PendingPoint> batch;
+            synchronized (pending) {
+                if (pending.isEmpty())
+                    return;
+                batch = new ArrayList<PendingPoint>(pending);
+            }
+
+            List<PendingPoint> kept = new ArrayList<PendingPoint>();
+            try {
+                insert(batch, kept);
+            } catch (RuntimeException e) {
+                synchronized (pending) {
+                    for (PendingPoint p : batch)
+                        p.id = PendingPoint.NOT_INSERTED;
+                }
+                Log.e(TAG, "Unable to write " + batch.size() +
+                        " user points", e);
+                throw e;
+            }
+
+            Lock lock = flushLock.writeLock();
+            lock.lock();
+            try {
+                synchronized (pending) {
+                    pending.subList(0, batch.size()).clear();
+                    pending.addAll(0, kept);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Inserisce i punti nel database in un'unica transazione, assegnando a
+     * ciascuno il proprio userpoint_id. I punti che violano un vincolo e non
+     * hanno esaurito i tentativi vengono aggiunti a kept.
+     */
+    private void insert(List<PendingPoint> batch, List<PendingPoint> kept) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransactionNonExclusive();
+        try {
+            SQLiteStatement insert = db.compileStatement(INSERT_USER_POINT);
+            try {
+                for (PendingPoint p : batch) {
+                    insert.bindDouble(1, p.point.latitude());
+                    insert.bindDouble(2, p.point.longitude());
+                    insert.bindString(3, p.experience.toString());
+                    try {
+                        long id = insert.executeInsert();
+                        synchronized (pending) {
+                            p.id = id;
+                        }
+                    } catch (SQLiteConstraintException e) {
+                        p.failures++;
+                        if (p.failures < MAX_INSERT_ATTEMPTS)
+                            kept.add(p);
+                        else
+                            Log.w(TAG, "Dropping user point of experience " +
+                                    p.experience + " after " + p.failures +
+                                    " failed attempts", e);
+                    }
+                    insert.clearBindings();
+                }
+            } finally {
+                insert.close();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private void startWorker() {
+        worker = new Thread("serleena-userpoints") {
+            @Override
+            public void run() {
+                try {
+                    boolean interrupted = false;
+                    while (true) {
+                        if (!interrupted)
+                            interrupted = !awaitFlush();
+                        flush();
+                        synchronized (pending) {
+                            if (pending.isEmpty() || interrupted) {
+                                worker = null;
+                                return;
+                            }
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    // I punti restano in memoria, e vengono scritti dal
+                    // prossimo flush() o dal thread avviato dal prossimo
+                    // inserimento
+                    Log.e(TAG, "Background flush failed", e);
+                    synchronized (pending) {
+                        worker = null;
+                    }
+                }
+            }
+        };
+        worker.setPriority(Thread.MIN_PRIORITY);
+        worker.start();
+    }
+
+    /**
+     * Attende che i punti in attesa raggiungano la soglia, o che trascorra
+     * il tempo massimo di attesa.
+     *
+     * @return False se il thread è stato interrotto durante l'attesa.
+     */
+    private boolean awaitFlush() {
+        long deadline = System.currentTimeMillis() + flushDelayMillis;
+        synchronized (pending) {
+            try {
+                long remaining = flushDelayMillis;
+                while (pending.size() < flushThreshold && remaining > 0) {
+                    pending.wait(remaining);
+                    remaining = deadline - System.currentTimeMillis();
+                }
+            } catch (InterruptedException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Punto Utente in attesa di essere scritto, con l'Esperienza a cui
+     * appartiene.
+     *
+     * @field id : long userpoint_id assegnato dall'inserimento in corso, o NOT_INSERTED
+     * @field failures : int Numero di tentativi di inserimento falliti
+     */
+    private static class PendingPoint {
+        static final long NOT_INSERTED = 0;
+
+        final UUID experience;
+        final UserPoint point;
+        long id = NOT_INSERTED;
+        int failures;
+
+        PendingPoint(UUID experience, UserPoint point) {
+            this.experience = experience;
+            this.point = point;
+        }
+    }
+
+}
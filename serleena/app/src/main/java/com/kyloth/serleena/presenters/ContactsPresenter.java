@@ -36,32 +36,52 @@
  * History:
  * Version    Programmer       Changes
  * 1.0        Filippo Sestini  Creazione del file
+ * 1.0.1      Filippo Sestini  Prima pagina di contatti letta in background
+ * 1.0.2      Filippo Sestini  Contatti letti tramite AsyncSerleenaDataSource
+ * 1.0.3      Filippo Sestini  Lettura e confronto dei contatti interamente
+ *                                          in background
+ * 1.0.4      Filippo Sestini  Lista ricaricata se i contatti sono cambiati
+ *                                          dopo la sua lettura
  */
 
 package com.kyloth.serleena.presenters;
 
-import android.os.AsyncTask;
-
 import com.kyloth.serleena.common.DirectAccessList;
 import com.kyloth.serleena.common.EmergencyContact;
 import com.kyloth.serleena.common.GeoPoint;
 import com.kyloth.serleena.common.ListAdapter;
+import com.kyloth.serleena.model.IDataSourceCallback;
+import com.kyloth.serleena.model.IDataSourceRequest;
 import com.kyloth.serleena.model.ISerleenaDataSource;
+import com.kyloth.serleena.model.RequestPriority;
 import com.kyloth.serleena.presentation.IContactsPresenter;
 import com.kyloth.serleena.presentation.IContactsView;
 import com.kyloth.serleena.sensors.ILocationManager;
 import com.kyloth.serleena.sensors.ILocationObserver;
 
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 /**
  * Concretizza IContactsPresenter
  *
+ * Le liste di contatti restituite dalla sorgente dati possono leggere i
+ * loro elementi dal database. Per questo motivo dimensione, elementi e
+ * confronto con la lista visualizzata vengono letti in richieste ad
+ * AsyncSerleenaDataSource, e sul thread principale il Presenter riceve solo
+ * valori già letti.
+ *
+ * Se i contatti vengono sostituiti da una sincronizzazione dopo la lettura
+ * della lista, il contatto richiesto può non esistere più: in tal caso la
+ * lista viene riletta e visualizzata dal primo contatto.
+ *
  * @use Viene utilizzata solamente dall'Activity, che ne mantiene un riferimento. Il Presenter, alla creazione, si registra alla sua Vista, passando se stesso come parametro dietro interfaccia.
  * @field view : IContactsView Vista associata al Presenter
  * @field activity : ISerleenaActivity Activity a cui il Presenter appartiene
  * @field locMan : ILocationManager Gestore del sensore di posizione
- * @field contacts : DirectAccessList<EmergencyContact> Contatti da visualizzare sulla vista
+ * @field contacts : DirectAccessList<EmergencyContact> Contatti da visualizzare sulla vista, letti solo in background
+ * @field size : int Numero di contatti della lista visualizzata
  * @field index : int Indice del contatto correntemente visualizzato
  * @author Filippo Sestini <sestini.filippo@gmail.com>
  * @version 1.0.0
@@ -75,6 +95,7 @@ public class ContactsPresenter implements IContactsPresenter,
     private ISerleenaActivity activity;
     private ILocationManager locMan;
     private DirectAccessList<EmergencyContact> contacts;
+    private int size;
     private int index;
 
     /**
@@ -103,15 +124,61 @@ public class ContactsPresenter implements IContactsPresenter,
     /**
      * Implementa IContactsPresenter.nextContact().
      *
-     * Se non vi sono contatti da visualizzare, il metodo non ha effetto.
+     * Il contatto successivo viene letto in background e visualizzato se
+     * nel frattempo la lista non è cambiata. Se il contatto non è più
+     * presente nel database, la lista viene riletta. Se non vi sono
+     * contatti da visualizzare, il metodo non ha effetto.
      */
     @Override
     public synchronized void nextContact() {
-        if (contacts != null && contacts.size() > 0) {
-            index = (index + 1) % contacts.size();
-            EmergencyContact c = contacts.get(index);
-            view.displayContact(c.name(), c.value());
-        }
+        if (size == 0)
+            return;
+
+        final DirectAccessList<EmergencyContact> list = contacts;
+        final int next = (index + 1) % size;
+        activity.getAsyncDataSource().read(
+                new IDataSourceRequest<EmergencyContact>() {
+            @Override
+            public EmergencyContact execute(ISerleenaDataSource dataSource) {
+                try {
+                    return list.get(next);
+                } catch (IndexOutOfBoundsException e) {
+                    return null;
+                }
+            }
+        }, RequestPriority.High, new IDataSourceCallback<EmergencyContact>() {
+            @Override
+            public void onResult(EmergencyContact result) {
+                if (result != null)
+                    showContact(list, next, result);
+                else
+                    reloadContacts(list);
+            }
+        });
+    }
+
+    /**
+     * Rilegge in background dimensione e primo elemento della lista
+     * visualizzata, i cui contatti sono cambiati dopo la sua lettura.
+     * Eseguito sul thread principale.
+     */
+    private synchronized void reloadContacts(
+            final DirectAccessList<EmergencyContact> list) {
+        if (list != contacts)
+            return;
+
+        activity.getAsyncDataSource().read(
+                new IDataSourceRequest<Selection>() {
+            @Override
+            public Selection execute(ISerleenaDataSource dataSource) {
+                return read(list);
+            }
+        }, RequestPriority.High, new IDataSourceCallback<Selection>() {
+            @Override
+            public void onResult(Selection result) {
+                showSelection(result);
+            }
+        });
     }
 
     /**
@@ -123,8 +190,9 @@ public class ContactsPresenter implements IContactsPresenter,
     public synchronized void resume() {
         locMan.attachObserver(this, UPDATE_INTERVAL_SECONDS);
         contacts = new ListAdapter<>(new ArrayList<EmergencyContact>());
+        size = 0;
+        index = 0;
         view.clearView();
-        displayContacts(contacts);
     }
 
     /**
@@ -152,45 +220,150 @@ public class ContactsPresenter implements IContactsPresenter,
         if (loc == null)
             throw new IllegalArgumentException("Illegal null location");
 
-        AsyncTask<Void, Void, DirectAccessList<EmergencyContact>> task =
-                new AsyncTask<Void, Void, DirectAccessList<EmergencyContact>>(){
+        activity.getAsyncDataSource().read(
+                new IDataSourceRequest<Selection>() {
             @Override
-            protected DirectAccessList<EmergencyContact> doInBackground(
-                    Void... voids) {
-                return activity.getDataSource().getContacts(loc);
+            public Selection execute(ISerleenaDataSource dataSource) {
+                return select(dataSource.getContacts(loc));
             }
+        }, RequestPriority.Normal, new IDataSourceCallback<Selection>() {
             @Override
-            protected void onPostExecute(
-                    DirectAccessList<EmergencyContact> result) {
-                displayContacts(result);
+            public void onResult(Selection result) {
+                showSelection(result);
             }
-        };
-
-        task.execute();
+        });
     }
 
     /**
      * Mostra i contatti sulla vista, a partire dal primo della lista.
      *
-     * @param contacts Lista ordinata di contatti da visualizzare.
+     * Il confronto con la lista visualizzata e la lettura del primo
+     * contatto avvengono in background. Se la lista contiene gli stessi
+     * contatti di quella visualizzata, la vista non viene modificata.
+     *
+     * @param contacts Lista ordinata di contatti da visualizzare. Se null,
+     *                 viene sollevata un'eccezione IllegalArgumentException.
      */
     public synchronized void displayContacts(
-            DirectAccessList<EmergencyContact> contacts) {
+            final DirectAccessList<EmergencyContact> contacts) {
         if (contacts == null)
             throw new IllegalArgumentException();
 
-        if (!contacts.equals(this.contacts)) {
-            this.contacts = contacts;
-            index = 0;
-
-            if (contacts.size() == 0)
-                view.clearView();
-            else {
-                EmergencyContact c = contacts.get(index);
-                view.displayContact(c.name(), c.value());
+        activity.getAsyncDataSource().read(
+                new IDataSourceRequest<Selection>() {
+            @Override
+            public Selection execute(ISerleenaDataSource dataSource) {
+                return select(contacts);
+            }
+        }, RequestPriority.Normal, new IDataSourceCallback<Selection>() {
+            @Override
+            public void onResult(Selection result) {
+                showSelection(result);
             }
+        });
+    }
+
+    /**
+     * Confronta una nuova lista di contatti con quella visualizzata, e ne
+     * legge dimensione e primo elemento. Eseguito in background.
+     *
+     * @return Lista da visualizzare, o null se non è cambiata.
+     */
+    private Selection select(DirectAccessList<EmergencyContact> list) {
+        DirectAccessList<EmergencyContact> shown;
+        synchronized (this) {
+            shown = this.contacts;
+        }
+        if (sameContacts(shown, list))
+            return null;
+        return read(list);
+    }
+
+    /**
+     * Legge dimensione e primo elemento di una lista. Se i contatti vengono
+     * rimossi durante la lettura, la lista è considerata vuota. Eseguito in
+     * background.
+     */
+    private static Selection read(DirectAccessList<EmergencyContact> list) {
+        try {
+            int listSize = list.size();
+            EmergencyContact first = (listSize > 0) ? list.get(0) : null;
+            return new Selection(list, listSize, first);
+        } catch (IndexOutOfBoundsException e) {
+            return new Selection(list, 0, null);
         }
+    }
+
+    /**
+     * Visualizza la lista letta in background. Eseguito sul thread
+     * principale.
+     */
+    private synchronized void showSelection(Selection selection) {
+        if (selection == null)
+            return;
+
+        contacts = selection.list;
+        size = selection.size;
+        index = 0;
+        if (size == 0)
+            view.clearView();
+        else
+            view.displayContact(selection.first.name(),
+                    selection.first.value());
+    }
 
+    /**
+     * Visualizza un contatto letto in background, se la lista a cui
+     * appartiene è ancora quella visualizzata. Eseguito sul thread
+     * principale.
+     */
+    private synchronized void showContact(
+            DirectAccessList<EmergencyContact> list, int position,
+            EmergencyContact contact) {
+        if (list != contacts)
+            return;
+        index = position;
+        view.displayContact(contact.name(), contact.value());
+    }
+
+    /**
+     * Indica se due liste contengono gli stessi contatti, nello stesso
+     * ordine. Eseguito in background, poiché può leggere dal database. Se
+     * i contatti vengono rimossi durante il confronto, le liste sono
+     * considerate diverse.
+     */
+    private static boolean sameContacts(DirectAccessList<EmergencyContact> a,
+                                        DirectAccessList<EmergencyContact> b) {
+        if (a.equals(b))
+            return true;
+        try {
+            if (a.size() != b.size())
+                return false;
+            Iterator<EmergencyContact> i = b.iterator();
+            for (EmergencyContact c : a)
+                if (!c.equals(i.next()))
+                    return false;
+            return true;
+        } catch (IndexOutOfBoundsException | NoSuchElementException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Lista di contatti letta in background, con i valori necessari alla
+     * sua visualizzazione.
+     */
+    private static class Selection {
+        final DirectAccessList<EmergencyContact> list;
+        final int size;
+        final EmergencyContact first;
+
+        Selection(DirectAccessList<EmergencyContact> list, int size,
+                  EmergencyContact first) {
+            this.list = list;
+            this.size = size;
+            this.first = first;
+        }
     }
 
 }
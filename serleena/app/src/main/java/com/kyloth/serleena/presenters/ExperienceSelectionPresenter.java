@@ -36,12 +36,17 @@
  * History:
  * Version    Programmer        Changes
  * 1.0        Filippo Sestini   Creazione del file
+ * 1.0.1      Filippo Sestini   Esperienze lette in modo asincrono
  */
 
 package com.kyloth.serleena.presenters;
 
 import com.kyloth.serleena.common.NoActiveExperienceException;
+import com.kyloth.serleena.model.IDataSourceCallback;
+import com.kyloth.serleena.model.IDataSourceRequest;
 import com.kyloth.serleena.model.IExperience;
+import com.kyloth.serleena.model.ISerleenaDataSource;
+import com.kyloth.serleena.model.RequestPriority;
 import com.kyloth.serleena.presentation.IExperienceActivationSource;
 import com.kyloth.serleena.presentation.IExperienceSelectionPresenter;
 import com.kyloth.serleena.presentation.IExperienceSelectionView;
@@ -97,11 +102,25 @@ public class ExperienceSelectionPresenter
     /**
      * Implementa IPresenter.resume().
      *
-     * Refresha la vista con l'elenco di Esperienze memorizzate nel datasource.
+     * Refresha la vista con l'elenco di Esperienze memorizzate nel datasource,
+     * lette al di fuori del thread principale.
      */
     @Override
     public void resume() {
-        view.setExperiences(activity.getDataSource().getExperiences());
+        activity.getAsyncDataSource().read(
+                new IDataSourceRequest<Iterable<IExperience>>() {
+                    @Override
+                    public Iterable<IExperience> execute(
+                            ISerleenaDataSource dataSource) {
+                        return dataSource.getExperiences();
+                    }
+                }, RequestPriority.High,
+                new IDataSourceCallback<Iterable<IExperience>>() {
+                    @Override
+                    public void onResult(Iterable<IExperience> experiences) {
+                        view.setExperiences(experiences);
+                    }
+                });
     }
 
     /**
@@ -37,10 +37,12 @@
  * Version  Programmer        Changes
  * 1.0.0    Filippo Sestini   Creazione file e scrittura
  *                                         codice e documentazione Javadoc
+ * 1.0.1    Filippo Sestini   Aggiunto getAsyncDataSource()
  */
 
 package com.kyloth.serleena.presenters;
 
+import com.kyloth.serleena.model.AsyncSerleenaDataSource;
 import com.kyloth.serleena.model.ISerleenaDataSource;
 import com.kyloth.serleena.persistence.IPersistenceDataSink;
 import com.kyloth.serleena.sensors.ISensorManager;
@@ -61,6 +63,14 @@ public interface ISerleenaActivity {
      */
     ISerleenaDataSource getDataSource();
 
+    /**
+     * Restituisce un oggetto attraverso cui accedere in modo asincrono al
+     * data source dell'applicazione, al di fuori del thread principale.
+     *
+     * @return Accesso asincrono al data source.
+     */
+    AsyncSerleenaDataSource getAsyncDataSource();
+
     /**
      * Restituisce il gestore dei sensori dell'applicazione,
      * dietro interfaccia ISensorManager.
@@ -36,18 +36,26 @@
  * History:
  * Version    Programmer       Changes
  * 1.0        Filippo Sestini  Creazione del file
+ * 1.0.1      Filippo Sestini  Punti Utente letti solo per il quadrante
+ *                                          visualizzato
+ * 1.0.2      Filippo Sestini  Accesso alla persistenza tramite
+ *                                          AsyncSerleenaDataSource
+ * 1.0.3      Filippo Sestini  Scrittura dei Punti Utente in attesa in
+ *                                          pause()
  */
 
 package com.kyloth.serleena.presenters;
 
-import android.os.AsyncTask;
-
 import com.kyloth.serleena.common.GeoPoint;
 import com.kyloth.serleena.common.IQuadrant;
 import com.kyloth.serleena.common.LocationNotAvailableException;
 import com.kyloth.serleena.common.NoActiveExperienceException;
 import com.kyloth.serleena.common.UserPoint;
+import com.kyloth.serleena.model.IDataSourceCallback;
+import com.kyloth.serleena.model.IDataSourceRequest;
 import com.kyloth.serleena.model.IExperience;
+import com.kyloth.serleena.model.ISerleenaDataSource;
+import com.kyloth.serleena.model.RequestPriority;
 import com.kyloth.serleena.persistence.NoSuchQuadrantException;
 import com.kyloth.serleena.presentation.IExperienceActivationSource;
 import com.kyloth.serleena.presentation.IMapPresenter;
@@ -134,15 +142,15 @@ public class MapPresenter implements IMapPresenter, ILocationObserver {
         if (currentQuadrant == null)
             throw new LocationNotAvailableException();
 
-        new AsyncTask<Void, Void, Void>() {
+        final UserPoint point = new UserPoint(currentPosition.latitude(),
+                currentPosition.longitude());
+        activity.getAsyncDataSource().write(new IDataSourceRequest<Void>() {
             @Override
-            protected Void doInBackground(Void... params) {
-                activeExperience.addUserPoints(new UserPoint(
-                        currentPosition.latitude(),
-                        currentPosition.longitude()));
+            public Void execute(ISerleenaDataSource dataSource) {
+                activeExperience.addUserPoints(point);
                 return null;
             }
-        }.execute();
+        }, RequestPriority.High, null);
     }
 
     /**
@@ -161,11 +169,21 @@ public class MapPresenter implements IMapPresenter, ILocationObserver {
      * Implementa IPresenter.pause().
      *
      * Cancella la registrazione ai servizi di sensoristica,
-     * evitando di utilizzare la risorsa quando la vista non è visibile.
+     * evitando di utilizzare la risorsa quando la vista non è visibile, e
+     * richiede la scrittura dei Punti Utente ancora in attesa. La richiesta
+     * ha priorità bassa, in modo da essere eseguita dopo gli inserimenti
+     * già inviati.
      */
     @Override
     public synchronized void pause() {
         locMan.detachObserver(this);
+        activity.getAsyncDataSource().write(new IDataSourceRequest<Void>() {
+            @Override
+            public Void execute(ISerleenaDataSource dataSource) {
+                dataSource.flush();
+                return null;
+            }
+        }, RequestPriority.Low, null);
     }
 
     /**
@@ -190,7 +208,6 @@ public class MapPresenter implements IMapPresenter, ILocationObserver {
         try {
             activeExperience = expActivationSource.activeExperience();
             updateQuadrant(activeExperience, loc);
-            updateUserPoints(activeExperience);
         } catch (NoActiveExperienceException e) { }
     }
 
@@ -213,39 +230,49 @@ public class MapPresenter implements IMapPresenter, ILocationObserver {
         }
     }
 
-    private void updateUserPoints(final IExperience activeExperience) {
-        new AsyncTask<Void, Void, Iterable<UserPoint>>() {
-            @Override
-            protected Iterable<UserPoint> doInBackground(Void... params) {
-                return activeExperience.getUserPoints();
-            }
-            @Override
-            protected void onPostExecute(Iterable<UserPoint> userPoints) {
-                displayUserPoints(userPoints);
-            }
-        }.execute();
+    private void updateUserPoints(final IExperience activeExperience,
+                                  final IQuadrant quadrant) {
+        activity.getAsyncDataSource().read(
+                new IDataSourceRequest<Iterable<UserPoint>>() {
+                    @Override
+                    public Iterable<UserPoint> execute(
+                            ISerleenaDataSource dataSource) {
+                        return activeExperience.getUserPoints(quadrant);
+                    }
+                }, RequestPriority.Normal,
+                new IDataSourceCallback<Iterable<UserPoint>>() {
+                    @Override
+                    public void onResult(Iterable<UserPoint> userPoints) {
+                        displayUserPoints(userPoints);
+                    }
+                });
     }
 
     private void updateQuadrant(final IExperience activeExperience,
                                 final GeoPoint loc) {
-        new AsyncTask<Void, Void, Void>() {
-            @Override
-            protected Void doInBackground(Void... params) {
-                try {
-                    currentQuadrant = activeExperience.getQuadrant(loc);
-                } catch (NoSuchQuadrantException e) {
-                    currentQuadrant = null;
-                }
-                return null;
-            }
-            @Override
-            protected void onPostExecute(Void v) {
-                if (currentQuadrant != null)
-                    view.displayQuadrant(currentQuadrant);
-                else
-                    view.clear();
-            }
-        }.execute();
+        activity.getAsyncDataSource().read(
+                new IDataSourceRequest<IQuadrant>() {
+                    @Override
+                    public IQuadrant execute(ISerleenaDataSource dataSource) {
+                        try {
+                            return activeExperience.getQuadrant(loc);
+                        } catch (NoSuchQuadrantException e) {
+                            return null;
+                        }
+                    }
+                }, RequestPriority.High,
+                new IDataSourceCallback<IQuadrant>() {
+                    @Override
+                    public void onResult(IQuadrant quadrant) {
+                        currentQuadrant = quadrant;
+                        if (currentQuadrant != null) {
+                            view.displayQuadrant(currentQuadrant);
+                            updateUserPoints(activeExperience,
+                                    currentQuadrant);
+                        } else
+                            view.clear();
+                    }
+                });
     }
 
 }
@@ -37,17 +37,21 @@
  * Version   Programmer         Changes
  * 1.0.0     Filippo Sestini    Creazione del file e scrittura del codice e di
  *                              Javadoc.
+ * 1.0.1     Filippo Sestini    Differenza dal Tracciamento migliore letta
+ *                              tramite AsyncSerleenaDataSource.
  */
 
 package com.kyloth.serleena.presenters;
 
-import android.os.AsyncTask;
-
 import com.kyloth.serleena.common.Checkpoint;
 import com.kyloth.serleena.common.GeoPoint;
 import com.kyloth.serleena.common.AzimuthMagneticNorth;
+import com.kyloth.serleena.model.IDataSourceCallback;
+import com.kyloth.serleena.model.IDataSourceRequest;
+import com.kyloth.serleena.model.ISerleenaDataSource;
 import com.kyloth.serleena.model.NoSuchTelemetryEventException;
 import com.kyloth.serleena.model.NoSuchTelemetryException;
+import com.kyloth.serleena.model.RequestPriority;
 import com.kyloth.serleena.sensors.NoActiveTrackException;
 import com.kyloth.serleena.sensors.NoSuchCheckpointException;
 import com.kyloth.serleena.presentation.ITrackPresenter;
@@ -70,6 +74,7 @@ import com.kyloth.serleena.sensors.SensorNotAvailableException;
  *
  * @use Viene utilizzata solamente dall'Activity, che ne mantiene un riferimento. Il Presenter, alla creazione, si registra alla sua Vista, passando se stesso come parametro dietro interfaccia.
  * @field view : IWeatherView Vista associata al presenter
+ * @field activity : ISerleenaActivity Activity a cui il presenter appartiene
  * @field activeTrack : ITrack Percorso attivo
  * @field lastKnownLocation : GeoPoint Ultima posizione geografica dell'utente conosciuta
  * @field lastKnownHeading : AzimuthMagneticNorth Ultimo valore di orientamento dell'utente conosciuto
@@ -85,6 +90,7 @@ public class TrackPresenter implements ITrackPresenter, ITrackCrossingObserver,
     public static int UPDATE_INTERVAL_SECONDS = 60;
 
     private ITrackView view;
+    private ISerleenaActivity activity;
 
     private GeoPoint lastKnownLocation;
     private AzimuthMagneticNorth lastKnownHeading;
@@ -111,6 +117,7 @@ public class TrackPresenter implements ITrackPresenter, ITrackCrossingObserver,
         view.attachPresenter(this);
 
         this.view = view;
+        this.activity = activity;
         this.tc = activity.getSensorManager().getTrackCrossingManager();
         this.locMan = activity.getSensorManager().getLocationSource();
         try {
@@ -232,24 +239,28 @@ public class TrackPresenter implements ITrackPresenter, ITrackCrossingObserver,
         view.clearStats();
         try {
             view.setLastPartial(tc.getLastCrossed().partialTime());
-            new AsyncTask<Void, Void, Integer>() {
-                @Override
-                protected Integer doInBackground(Void... params) {
-                    try {
-                        return tc.getLastCrossed().delta();
-                    } catch (NoSuchTelemetryException |
-                            NoSuchTelemetryEventException |
-                            NoSuchCheckpointException |
-                            NoActiveTrackException e) {
-                        return null;
-                    }
-                }
-                @Override
-                protected void onPostExecute(Integer delta) {
-                    if (delta != null && delta != 0)
-                        view.setDelta(delta);
-                }
-            }.execute();
+            activity.getAsyncDataSource().read(
+                    new IDataSourceRequest<Integer>() {
+                        @Override
+                        public Integer execute(
+                                ISerleenaDataSource dataSource) {
+                            try {
+                                return tc.getLastCrossed().delta();
+                            } catch (NoSuchTelemetryException |
+                                    NoSuchTelemetryEventException |
+                                    NoSuchCheckpointException |
+                                    NoActiveTrackException e) {
+                                return null;
+                            }
+                        }
+                    }, RequestPriority.Normal,
+                    new IDataSourceCallback<Integer>() {
+                        @Override
+                        public void onResult(Integer delta) {
+                            if (delta != null && delta != 0)
+                                view.setDelta(delta);
+                        }
+                    });
         } catch (NoSuchCheckpointException|NoActiveTrackException e) { }
     }
 
@@ -30,12 +30,13 @@
 
 package com.kyloth.serleena.presenters;
 
-import android.os.AsyncTask;
-
 import com.kyloth.serleena.common.GeoPoint;
+import com.kyloth.serleena.model.IDataSourceCallback;
+import com.kyloth.serleena.model.IDataSourceRequest;
 import com.kyloth.serleena.model.ISerleenaDataSource;
 import com.kyloth.serleena.model.IWeatherForecast;
 import com.kyloth.serleena.common.NoSuchWeatherForecastException;
+import com.kyloth.serleena.model.RequestPriority;
 import com.kyloth.serleena.presentation.IWeatherPresenter;
 import com.kyloth.serleena.presentation.IWeatherView;
 import com.kyloth.serleena.sensors.ILocationManager;
@@ -154,27 +155,29 @@ public class WeatherPresenter implements IWeatherPresenter, ILocationObserver {
 
     private void present() throws
             IllegalArgumentException {
-        AsyncTask<Void, Void, IWeatherForecast> task =
-                new AsyncTask<Void, Void, IWeatherForecast>() {
+        final GeoPoint location = lastKnownLocation;
+        final Date date = currentDate();
+        activity.getAsyncDataSource().read(
+                new IDataSourceRequest<IWeatherForecast>() {
                     @Override
-                    protected IWeatherForecast doInBackground(Void... params) {
+                    public IWeatherForecast execute(
+                            ISerleenaDataSource dataSource) {
                         try {
-                            return activity.getDataSource().getWeatherInfo(
-                                    lastKnownLocation, currentDate());
+                            return dataSource.getWeatherInfo(location, date);
                         } catch (NoSuchWeatherForecastException ex) {
                             return null;
                         }
                     }
+                }, RequestPriority.Normal,
+                new IDataSourceCallback<IWeatherForecast>() {
                     @Override
-                    protected void onPostExecute(IWeatherForecast result) {
+                    public void onResult(IWeatherForecast result) {
                         if (result != null)
                             view.setWeatherInfo(result);
                         else
                             view.clearWeatherInfo();
                     }
-                };
-
-        task.execute();
+                });
     }
 
 
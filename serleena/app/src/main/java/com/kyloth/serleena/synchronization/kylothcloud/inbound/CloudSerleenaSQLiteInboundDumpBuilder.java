@@ -36,9 +36,13 @@
  * History:
  * Version  Programmer        Changes
  * 1.0.0    Tobia Tesan       Creazione file
+ * 1.0.1    Filippo Sestini   Raster inseriti come BLOB
+ * 1.0.2    Filippo Sestini   Raster suddivisi in pagine
  */
 package com.kyloth.serleena.synchronization.kylothcloud.inbound;
 
+import android.util.Base64;
+
 import com.kyloth.serleena.persistence.sqlite.SerleenaDatabase;
 import com.kyloth.serleena.synchronization.InboundDumpBuilder;
 import com.kyloth.serleena.synchronization.kylothcloud.CheckpointEntity;
@@ -66,14 +70,18 @@ import static java.lang.Math.round;
  * @field root : InboundRootEntity Radice della gerarchia di dati in ingresso
  * @field telemCounter : int Contatore per le telemetrie in ingresso
  * @field upointCounter: int Contatore per i punti utente in ingresso
+ * @field rasterCounter : int Contatore per i raster in ingresso
  * @use Viene usato da Synchronizer per trasformare una collezione di IDataEntity provenienti da un InboundStreamParser in un dump idoneo a essere caricato nel database dell'orologio.
  * @author Tobia Tesan <tobia.tesan@gmail.com>
  * @version 1.0.0
  */
 public class CloudSerleenaSQLiteInboundDumpBuilder implements InboundDumpBuilder {
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
     InboundRootEntity root;
     private int telemCounter;
     private int upointCounter;
+    private int rasterCounter;
 
     /**
      * Costruisce un nuovo CloudSerleenaSQLiteInboundDumpBuilder
@@ -84,7 +92,27 @@ public class CloudSerleenaSQLiteInboundDumpBuilder implements InboundDumpBuilder
         this.root = root;
         telemCounter = -1;        //HACK per SHANDROID-372
         upointCounter = -1;  // HACK per SHANDROID-387
+        rasterCounter = 1;
+
+    }
 
+    /**
+     * Converte una porzione di un array di byte in un letterale BLOB SQLite.
+     *
+     * @param data Array contenente i dati.
+     * @param offset Posizione del primo byte da convertire.
+     * @param length Numero di byte da convertire.
+     * @return Letterale BLOB nella forma X'...'.
+     */
+    private static String blobLiteral(byte[] data, int offset, int length) {
+        StringBuilder sb = new StringBuilder(length * 2 + 3);
+        sb.append("X'");
+        for (int i = offset; i < offset + length; i++) {
+            sb.append(HEX_DIGITS[(data[i] >> 4) & 0x0F]);
+            sb.append(HEX_DIGITS[data[i] & 0x0F]);
+        }
+        sb.append('\'');
+        return sb.toString();
     }
 
     private SerleenaSQLiteInboundDump flush() {
@@ -93,6 +121,7 @@ public class CloudSerleenaSQLiteInboundDumpBuilder implements InboundDumpBuilder
         res.add("DELETE FROM " + SerleenaDatabase.TABLE_USER_POINTS);
         res.add("DELETE FROM " + SerleenaDatabase.TABLE_TRACKS);
         res.add("DELETE FROM " + SerleenaDatabase.TABLE_CHECKPOINTS);
+        res.add("DELETE FROM " + SerleenaDatabase.TABLE_RASTER_PAGES);
         res.add("DELETE FROM " + SerleenaDatabase.TABLE_RASTERS);
         res.add("DELETE FROM " + SerleenaDatabase.TABLE_TELEM_EVENTS_CHECKP);
         res.add("DELETE FROM " + SerleenaDatabase.TABLE_TELEMETRIES);
@@ -129,21 +158,42 @@ public class CloudSerleenaSQLiteInboundDumpBuilder implements InboundDumpBuilder
             }
 
             for (RasterDataEntity raster : exp.rasterData) {
+                int rasterId = rasterCounter++;
                 res.add("INSERT INTO " + SerleenaDatabase.TABLE_RASTERS +"" +
-                        "(`raster_experience`," +
+                        "(`raster_id`," +
+                        "`raster_experience`," +
                         "`raster_nw_corner_latitude`," +
                         "`raster_nw_corner_longitude`," +
                         "`raster_se_corner_latitude`," +
-                        "`raster_se_corner_longitude`,"+
-                        "`raster_base64`)" +
+                        "`raster_se_corner_longitude`)" +
                         "VALUES" +
-                        "("+ "\"" + exp.uuid.toString() +"\", " +
+                        "(" + rasterId + ", " +
+                        "\"" + exp.uuid.toString() +"\", " +
                         raster.boundingRect.getNorthWestPoint().latitude() +", " +
                          raster.boundingRect.getNorthWestPoint().longitude() +", " +
                          raster.boundingRect.getSouthEastPoint().latitude() +", " +
-                         raster.boundingRect.getSouthEastPoint().longitude() +", " +
-                         "\"" + raster.base64Raster + "\"" +
+                         raster.boundingRect.getSouthEastPoint().longitude() +
                         ") ");
+
+                // Ogni pagina occupa un'istruzione distinta, in modo da
+                // rispettare il limite di lunghezza delle istruzioni SQLite.
+                byte[] data = Base64.decode(raster.base64Raster, Base64.DEFAULT);
+                int pageNum = 0;
+                for (int offset = 0; offset < data.length;
+                     offset += SerleenaDatabase.RASTER_PAGE_SIZE) {
+                    int length = Math.min(SerleenaDatabase.RASTER_PAGE_SIZE,
+                            data.length - offset);
+                    res.add("INSERT INTO " + SerleenaDatabase.TABLE_RASTER_PAGES +
+                            "(`page_raster`," +
+                            "`page_num`," +
+                            "`page_data`)" +
+                            "VALUES" +
+                            "(" + rasterId + ", " +
+                            pageNum + ", " +
+                            blobLiteral(data, offset, length) +
+                            ")");
+                    pageNum++;
+                }
             }
             for (TrackEntity track : exp.tracks) {
                 res.add("INSERT INTO " + SerleenaDatabase.TABLE_TRACKS +"" +
@@ -211,9 +211,15 @@ public class TestDB {
         values.put("raster_nw_corner_longitude", nwLon);
         values.put("raster_se_corner_latitude", seLat);
         values.put("raster_se_corner_longitude", seLon);
-        values.put("raster_base64", base64);
         values.put("raster_experience", expId.toString());
-        db.insertOrThrow(SerleenaDatabase.TABLE_RASTERS, null, values);
+        long rasterId =
+                db.insertOrThrow(SerleenaDatabase.TABLE_RASTERS, null, values);
+
+        values = new ContentValues();
+        values.put("page_raster", rasterId);
+        values.put("page_num", 0);
+        values.put("page_data", Base64.decode(base64, Base64.DEFAULT));
+        db.insertOrThrow(SerleenaDatabase.TABLE_RASTER_PAGES, null, values);
     }
 
     public static boolean quadrantHasRegion(IQuadrant quadrant, Region region) {
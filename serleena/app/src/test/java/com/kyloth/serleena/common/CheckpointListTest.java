@@ -0,0 +1,130 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: CheckpointListTest.java
+ * Package: com.kyloth.serleena.common
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ */
+
+package com.kyloth.serleena.common;
+
+import org.junit.Test;
+
+import java.util.Iterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Contiene i test di unità per la classe CheckpointList.
+ *
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+public class CheckpointListTest {
+
+    private static CheckpointList makeList(int size) {
+        CheckpointList.Builder builder = new CheckpointList.Builder(1);
+        for (int i = 0; i < size; i++)
+            builder.add(i, i * 2);
+        return builder.build();
+    }
+
+    /**
+     * Verifica che i Checkpoint aggiunti siano restituiti nell'ordine di
+     * inserimento, sia come oggetti che come coordinate.
+     */
+    @Test
+    public void listShouldContainAddedCheckpointsInOrder() {
+        CheckpointList list = makeList(20);
+        assertEquals(20, list.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(new Checkpoint(i, i * 2), list.get(i));
+            assertEquals(i, list.latitude(i), 0);
+            assertEquals(i * 2, list.longitude(i), 0);
+        }
+    }
+
+    /**
+     * Verifica che l'iterazione restituisca tutti i Checkpoint in ordine.
+     */
+    @Test
+    public void iteratorShouldReturnAllCheckpoints() {
+        Iterator<Checkpoint> it = makeList(3).iterator();
+        for (int i = 0; i < 3; i++) {
+            assertTrue(it.hasNext());
+            assertEquals(new Checkpoint(i, i * 2), it.next());
+        }
+        assertFalse(it.hasNext());
+    }
+
+    /**
+     * Verifica che il Builder torni vuoto dopo build(), senza alterare la
+     * lista già costruita.
+     */
+    @Test
+    public void builderShouldBeReusableAfterBuild() {
+        CheckpointList.Builder builder = new CheckpointList.Builder();
+        CheckpointList first = builder.add(1, 1).add(2, 2).build();
+        CheckpointList second = builder.add(3, 3).build();
+        assertEquals(2, first.size());
+        assertEquals(new Checkpoint(2, 2), first.get(1));
+        assertEquals(1, second.size());
+        assertEquals(new Checkpoint(3, 3), second.get(0));
+        assertEquals(0, builder.build().size());
+    }
+
+    /**
+     * Verifica che liste con gli stessi Checkpoint siano uguali.
+     */
+    @Test
+    public void listsWithSameCheckpointsShouldBeEqual() {
+        assertEquals(makeList(5), makeList(5));
+        assertEquals(makeList(5).hashCode(), makeList(5).hashCode());
+        assertFalse(makeList(5).equals(makeList(4)));
+        assertFalse(makeList(1).equals(
+                new CheckpointList.Builder().add(0, 1).build()));
+    }
+
+    /**
+     * Verifica che get() sollevi un'eccezione per indici non validi.
+     */
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getShouldThrowIfIndexIsOutOfBounds() {
+        makeList(2).get(2);
+    }
+}
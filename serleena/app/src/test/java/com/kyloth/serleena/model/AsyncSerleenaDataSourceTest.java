@@ -0,0 +1,332 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: AsyncSerleenaDataSourceTest.java
+ * Package: com.kyloth.serleena.model
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ */
+
+package com.kyloth.serleena.model;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Contiene i test di unità per le classi AsyncSerleenaDataSource e
+ * PersistenceExecutor.
+ *
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+public class AsyncSerleenaDataSourceTest {
+
+    /**
+     * Esecutore che accoda le operazioni, eseguendole solo quando richiesto
+     * dal test. Con una coda a priorità, ordina le richieste come i thread
+     * della persistenza.
+     */
+    private static class QueueExecutor implements Executor {
+        private final BlockingQueue<Runnable> queue;
+        public QueueExecutor(BlockingQueue<Runnable> queue) {
+            this.queue = queue;
+        }
+        @Override
+        public void execute(Runnable r) {
+            queue.add(r);
+        }
+        public void drain() {
+            Runnable r;
+            while ((r = queue.poll()) != null)
+                r.run();
+        }
+    }
+
+    /**
+     * Esecutore che avvia un nuovo thread per ogni richiesta.
+     */
+    private static class ThreadExecutor implements Executor {
+        @Override
+        public void execute(Runnable r) {
+            new Thread(r).start();
+        }
+    }
+
+    /**
+     * Richiesta che registra il proprio nome all'esecuzione.
+     */
+    private static class RecordingRequest
+            implements IDataSourceRequest<String> {
+        private final String name;
+        private final List<String> log;
+        public RecordingRequest(String name, List<String> log) {
+            this.name = name;
+            this.log = log;
+        }
+        @Override
+        public String execute(ISerleenaDataSource dataSource) {
+            synchronized (log) {
+                log.add(name);
+            }
+            return name;
+        }
+    }
+
+    private ISerleenaDataSource dataSource;
+    private QueueExecutor writer;
+    private QueueExecutor readers;
+    private QueueExecutor delivery;
+    private AsyncSerleenaDataSource async;
+    private List<String> log;
+
+    @Before
+    public void initialize() {
+        dataSource = mock(ISerleenaDataSource.class);
+        writer = new QueueExecutor(new PriorityBlockingQueue<Runnable>());
+        readers = new QueueExecutor(new PriorityBlockingQueue<Runnable>());
+        delivery = new QueueExecutor(new LinkedBlockingQueue<Runnable>());
+        async = new AsyncSerleenaDataSource(dataSource,
+                new PersistenceExecutor(writer, readers, delivery));
+        log = new ArrayList<String>();
+    }
+
+    /**
+     * Verifica che il costruttore sollevi un'eccezione
+     * IllegalArgumentException se gli vengono passati parametri null.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorShouldThrowWhenNullDataSource() {
+        new AsyncSerleenaDataSource(null,
+                new PersistenceExecutor(writer, readers, delivery));
+    }
+
+    /**
+     * Verifica che il costruttore sollevi un'eccezione
+     * IllegalArgumentException se gli vengono passati parametri null.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorShouldThrowWhenNullExecutor() {
+        new AsyncSerleenaDataSource(dataSource, null);
+    }
+
+    /**
+     * Verifica che PersistenceExecutor sollevi un'eccezione
+     * IllegalArgumentException se gli vengono passati esecutori null.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void executorShouldThrowWhenNullDelivery() {
+        new PersistenceExecutor(writer, readers, null);
+    }
+
+    /**
+     * Verifica che PersistenceExecutor sollevi un'eccezione
+     * IllegalArgumentException se il numero di thread di lettura non è
+     * positivo.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void executorShouldThrowWhenNoReaderThreads() {
+        new PersistenceExecutor(0);
+    }
+
+    /**
+     * Verifica che read() sollevi un'eccezione IllegalArgumentException se
+     * la richiesta o la priorità sono null.
+     */
+    @Test
+    public void readShouldThrowWhenNullArguments() {
+        try {
+            async.read(null, RequestPriority.Normal, null);
+            fail();
+        } catch (IllegalArgumentException e) { }
+        try {
+            async.read(new RecordingRequest("a", log), null, null);
+            fail();
+        } catch (IllegalArgumentException e) { }
+    }
+
+    /**
+     * Verifica che le richieste vengano eseguite sulla sorgente dati
+     * incapsulata.
+     */
+    @Test
+    public void requestsShouldReceiveDataSource() throws Exception {
+        Future<ISerleenaDataSource> f = async.read(
+                new IDataSourceRequest<ISerleenaDataSource>() {
+                    @Override
+                    public ISerleenaDataSource execute(
+                            ISerleenaDataSource ds) {
+                        return ds;
+                    }
+                }, RequestPriority.Normal, null);
+        readers.drain();
+        assertSame(dataSource, f.get());
+    }
+
+    /**
+     * Verifica che le richieste in attesa vengano eseguite in ordine di
+     * priorità e, a parità di priorità, nell'ordine di invio.
+     */
+    @Test
+    public void requestsShouldRunByPriorityThenOrder() {
+        async.write(new RecordingRequest("low", log), RequestPriority.Low,
+                null);
+        async.write(new RecordingRequest("normal1", log),
+                RequestPriority.Normal, null);
+        async.write(new RecordingRequest("high", log), RequestPriority.High,
+                null);
+        async.write(new RecordingRequest("normal2", log),
+                RequestPriority.Normal, null);
+        writer.drain();
+
+        assertEquals(4, log.size());
+        assertEquals("high", log.get(0));
+        assertEquals("normal1", log.get(1));
+        assertEquals("normal2", log.get(2));
+        assertEquals("low", log.get(3));
+    }
+
+    /**
+     * Verifica che una lettura attenda il termine delle scritture inviate
+     * prima di essa.
+     */
+    @Test
+    public void readShouldWaitForPreviousWrites() throws Exception {
+        AsyncSerleenaDataSource threaded = new AsyncSerleenaDataSource(
+                dataSource, new PersistenceExecutor(writer,
+                        new ThreadExecutor(), delivery));
+        threaded.write(new RecordingRequest("write", log),
+                RequestPriority.Low, null);
+        Future<String> read = threaded.read(new RecordingRequest("read", log),
+                RequestPriority.High, null);
+
+        try {
+            read.get(200, TimeUnit.MILLISECONDS);
+            fail();
+        } catch (TimeoutException e) { }
+        assertTrue(log.isEmpty());
+
+        writer.drain();
+        assertEquals("read", read.get(10, TimeUnit.SECONDS));
+        assertEquals("write", log.get(0));
+        assertEquals("read", log.get(1));
+    }
+
+    /**
+     * Verifica che una lettura non attenda le scritture inviate dopo di
+     * essa.
+     */
+    @Test
+    public void readShouldNotWaitForLaterWrites() throws Exception {
+        Future<String> read = async.read(new RecordingRequest("read", log),
+                RequestPriority.Normal, null);
+        async.write(new RecordingRequest("write", log),
+                RequestPriority.Normal, null);
+        readers.drain();
+        assertEquals("read", read.get());
+        assertEquals(1, log.size());
+    }
+
+    /**
+     * Verifica che il risultato venga consegnato al callback attraverso
+     * l'esecutore dei callback.
+     */
+    @Test
+    public void resultShouldBeDeliveredThroughDelivery() {
+        final List<String> results = new ArrayList<String>();
+        async.read(new RecordingRequest("a", log), RequestPriority.Normal,
+                new IDataSourceCallback<String>() {
+                    @Override
+                    public void onResult(String result) {
+                        results.add(result);
+                    }
+                });
+        readers.drain();
+        assertTrue(results.isEmpty());
+        delivery.drain();
+        assertEquals(1, results.size());
+        assertEquals("a", results.get(0));
+    }
+
+    /**
+     * Verifica che le eccezioni sollevate da una richiesta vengano
+     * rilanciate sull'esecutore dei callback.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void errorsShouldBeRethrownOnDelivery() {
+        async.write(new IDataSourceRequest<Void>() {
+            @Override
+            public Void execute(ISerleenaDataSource ds) {
+                throw new IllegalStateException();
+            }
+        }, RequestPriority.Normal, null);
+        writer.drain();
+        delivery.drain();
+    }
+
+    /**
+     * Verifica che il callback di una richiesta annullata non venga
+     * invocato.
+     */
+    @Test
+    public void cancelledRequestsShouldNotBeDelivered() {
+        final List<String> results = new ArrayList<String>();
+        Future<String> f = async.read(new RecordingRequest("a", log),
+                RequestPriority.Normal, new IDataSourceCallback<String>() {
+                    @Override
+                    public void onResult(String result) {
+                        results.add(result);
+                    }
+                });
+        assertTrue(f.cancel(false));
+        readers.drain();
+        delivery.drain();
+        assertTrue(log.isEmpty());
+        assertTrue(results.isEmpty());
+    }
+
+}
@@ -37,12 +37,14 @@
  * Version    Programmer       Changes
  * 1.0        Filippo Sestini  Creazione del file e stesura
  *                             della documentazione Javadoc.
+ * 1.0.1      Filippo Sestini  Test di getUserPoints(IRegion)
  */
 
 package com.kyloth.serleena.model;
 
 import com.kyloth.serleena.common.GeoPoint;
 import com.kyloth.serleena.common.IQuadrant;
+import com.kyloth.serleena.common.IRegion;
 import com.kyloth.serleena.common.UserPoint;
 import com.kyloth.serleena.persistence.IExperienceStorage;
 import com.kyloth.serleena.persistence.ITrackStorage;
@@ -135,6 +137,26 @@ public class ExperienceTest {
         assertEquals(userPoints, experience.getUserPoints());
     }
 
+    /**
+     * Verifica che la richiesta dei Punti Utente contenuti in un'area sia
+     * inoltrata all'oggetto di persistenza.
+     */
+    @Test
+    public void testGetUserPointsInRegion() throws Exception {
+        when(experienceStorage.getUserPoints(testQuadrant))
+                .thenReturn(userPoints);
+        assertEquals(userPoints, experience.getUserPoints(testQuadrant));
+    }
+
+    /**
+     * Verifica che getUserPoints(IRegion) sollevi un'eccezione
+     * IllegalArgumentException se l'area è null.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetUserPointsInRegionShouldThrowIfNull() {
+        experience.getUserPoints((IRegion) null);
+    }
+
     /**
      * Verifica che l'aggiunta di un Punto Utente inoltri la richiesta
      * all'oggetto di persistenza.
@@ -112,6 +112,8 @@ public class PersistenceIntegrationTest {
         db.insertOrThrow(SerleenaDatabase.TABLE_EXPERIENCES, null, exp);
         ContentValues values = TestFixtures.pack(TestFixtures.RASTER_FIXTURE);
         db.insertOrThrow(SerleenaDatabase.TABLE_RASTERS, null, values);
+        values = TestFixtures.pack(TestFixtures.RASTER_PAGE_FIXTURE);
+        db.insertOrThrow(SerleenaDatabase.TABLE_RASTER_PAGES, null, values);
         serleenaSQLDS = new SerleenaSQLiteDataSource(serleenaDB);
         dataSource = new SerleenaDataSource(serleenaSQLDS);
     }
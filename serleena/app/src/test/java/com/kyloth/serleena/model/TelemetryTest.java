@@ -37,6 +37,7 @@
  * Version  Programmer       Changes
  * 1.0.0    Gabriele Pozzan  Creazione file scrittura
  *                                       codice e documentazione Javadoc
+ * 1.0.1    Filippo Sestini  Test del calcolo dai tempi dei checkpoint
  */
 
 package com.kyloth.serleena.model;
@@ -250,5 +251,30 @@ public class TelemetryTest {
         faultyTelemetry.startTimestamp();
     }
 
-}
+    /**
+     * Verifica che durata e inizio del Tracciamento siano calcolati dai
+     * tempi dei checkpoint forniti dall'oggetto di persistenza, senza
+     * richiederne gli eventi.
+     */
+    @Test
+    public void durationShouldUseStoredCheckpointTimestamps() {
+        ITelemetryStorage ts = mock(ITelemetryStorage.class);
+        when(ts.getCheckpointTimestamps()).thenReturn(
+                new long[] { 40L, 55L, 70L });
+        Telemetry telemetry = new Telemetry(ts);
+        assertEquals(40L, telemetry.startTimestamp());
+        assertEquals(30, telemetry.getDuration());
+        verify(ts, never()).getEvents();
+    }
 
+    /**
+     * Verifica che un Tracciamento senza eventi abbia durata nulla.
+     */
+    @Test
+    public void emptyTelemetryShouldHaveNoDuration() {
+        ITelemetryStorage ts = mock(ITelemetryStorage.class);
+        when(ts.getCheckpointTimestamps()).thenReturn(new long[0]);
+        assertEquals(0, new Telemetry(ts).getDuration());
+    }
+
+}
@@ -100,15 +100,19 @@ public class TrackTest {
         when(telStor2.getEvents()).thenReturn(lll);
 
         when(trackStorage.getTelemetries()).thenReturn(list);
+        when(trackStorage.getBestTelemetry()).thenReturn(telStor1);
         track = new Track(trackStorage);
 
         testHashCode = 100;
         trackStorage1 = new ITrackStorage() {
             public void createTelemetry(Iterable<TelemetryEvent> events) { }
+            public void createTelemetries(
+                    Iterable<Iterable<TelemetryEvent>> telemetries) { }
             public Iterable<ITelemetryStorage> getTelemetries() { return null; }
             public Iterable<ITelemetryStorage> getTelemetries(boolean ig) {
                 return null;
             }
+            public ITelemetryStorage getBestTelemetry() { return null; }
             public DirectAccessList<Checkpoint> getCheckpoints() {return null; }
             public String name() { return null; }
             public UUID getUUID() { return null; }
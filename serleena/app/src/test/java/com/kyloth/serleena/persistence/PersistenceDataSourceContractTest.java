@@ -0,0 +1,471 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: PersistenceDataSourceContractTest.java
+ * Package: com.kyloth.serleena.persistence
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ * 1.0.1    Filippo Sestini  Test della ricerca per nome.
+ * 1.0.2    Filippo Sestini  Test dei punti utente per area geografica.
+ */
+
+package com.kyloth.serleena.persistence;
+
+import com.kyloth.serleena.common.Checkpoint;
+import com.kyloth.serleena.common.CheckpointReachedTelemetryEvent;
+import com.kyloth.serleena.common.DirectAccessList;
+import com.kyloth.serleena.common.EmergencyContact;
+import com.kyloth.serleena.common.GeoPoint;
+import com.kyloth.serleena.common.IQuadrant;
+import com.kyloth.serleena.common.IRegion;
+import com.kyloth.serleena.common.NoSuchWeatherForecastException;
+import com.kyloth.serleena.common.Region;
+import com.kyloth.serleena.common.SearchResult;
+import com.kyloth.serleena.common.SearchResultType;
+import com.kyloth.serleena.common.TelemetryEvent;
+import com.kyloth.serleena.common.UserPoint;
+import com.kyloth.serleena.persistence.sqlite.TestFixtures;
+import com.kyloth.serleena.synchronization.kylothcloud.CheckpointEntity;
+import com.kyloth.serleena.synchronization.kylothcloud.EmergencyDataEntity;
+import com.kyloth.serleena.synchronization.kylothcloud.ExperienceEntity;
+import com.kyloth.serleena.synchronization.kylothcloud.InboundRootEntity;
+import com.kyloth.serleena.synchronization.kylothcloud.RasterDataEntity;
+import com.kyloth.serleena.synchronization.kylothcloud.TelemetryEntity;
+import com.kyloth.serleena.synchronization.kylothcloud.TrackEntity;
+import com.kyloth.serleena.synchronization.kylothcloud.UserPointEntity;
+import com.kyloth.serleena.synchronization.kylothcloud.WeatherDataEntity;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Test comuni a tutte le implementazioni di IPersistenceDataSource.
+ *
+ * Ogni sottoclasse carica gli stessi dati nella propria implementazione,
+ * e verifica che questa si comporti come le altre.
+ *
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+public abstract class PersistenceDataSourceContractTest {
+
+    protected static final long WEATHER_DATE = 1420070400000L;
+
+    private IPersistenceDataSource source;
+
+    /**
+     * Carica i dati specificati in una nuova istanza dell'implementazione
+     * sotto test.
+     *
+     * @param root Dati da caricare.
+     * @return Sorgente dati contenente i dati specificati.
+     */
+    protected abstract IPersistenceDataSource load(InboundRootEntity root);
+
+    private static CheckpointEntity makeCheckpoint(int id, double latitude,
+                                                   double longitude) {
+        CheckpointEntity checkpoint = new CheckpointEntity();
+        checkpoint.id = id;
+        checkpoint.point = new GeoPoint(latitude, longitude);
+        return checkpoint;
+    }
+
+    private static ExperienceEntity makeExperience(String name) {
+        ExperienceEntity experience = new ExperienceEntity();
+        experience.uuid = UUID.randomUUID();
+        experience.name = name;
+        experience.region = new Region(new GeoPoint(10, 0),
+                new GeoPoint(0, 10));
+
+        TrackEntity track = new TrackEntity();
+        track.uuid = UUID.randomUUID();
+        track.name = name + " track";
+        track.checkpoints = new ArrayList<CheckpointEntity>();
+        track.checkpoints.add(makeCheckpoint(2, 2, 2));
+        track.checkpoints.add(makeCheckpoint(1, 1, 1));
+        track.checkpoints.add(makeCheckpoint(3, 3, 3));
+        track.telemetries = new ArrayList<TelemetryEntity>();
+        TelemetryEntity telemetry = new TelemetryEntity();
+        telemetry.events.add(1000000L);
+        telemetry.events.add(1500000L);
+        telemetry.events.add(2000000L);
+        track.telemetries.add(telemetry);
+        experience.tracks.add(track);
+
+        UserPointEntity point = new UserPointEntity();
+        point.point = new GeoPoint(4, 4);
+        experience.userPoints.add(point);
+
+        RasterDataEntity raster = new RasterDataEntity();
+        raster.boundingRect = new Region(new GeoPoint(5, 0),
+                new GeoPoint(0, 5));
+        raster.base64Raster = TestFixtures.raster_base64;
+        experience.rasterData.add(raster);
+        return experience;
+    }
+
+    private static EmergencyDataEntity makeContact(String name,
+                                                   Region region) {
+        EmergencyDataEntity contact = new EmergencyDataEntity();
+        contact.name = name;
+        contact.number = "123456789";
+        contact.rect = region;
+        return contact;
+    }
+
+    private static InboundRootEntity makeRoot() {
+        InboundRootEntity root = new InboundRootEntity();
+        root.experiences.add(makeExperience("A"));
+        root.experiences.add(makeExperience("B"));
+        root.emergencyData.add(makeContact("FOO",
+                new Region(new GeoPoint(10, 0), new GeoPoint(0, 10))));
+        root.emergencyData.add(makeContact("BAR",
+                new Region(new GeoPoint(5, 0), new GeoPoint(0, 5))));
+
+        WeatherDataEntity weather = new WeatherDataEntity();
+        weather.date = WEATHER_DATE;
+        weather.boundingRect = new Region(new GeoPoint(10, 0),
+                new GeoPoint(0, 10));
+        weather.morning.forecast = WeatherForecastEnum.Sunny;
+        weather.morning.temperature = 10.6f;
+        weather.afternoon.forecast = WeatherForecastEnum.Cloudy;
+        weather.afternoon.temperature = 15f;
+        weather.night.forecast = WeatherForecastEnum.Rainy;
+        weather.night.temperature = 4.2f;
+        root.weatherData.add(weather);
+        return root;
+    }
+
+    private IExperienceStorage experience(String name) {
+        for (IExperienceStorage experience : source.getExperiences())
+            if (experience.getName().equals(name))
+                return experience;
+        throw new AssertionError("No experience " + name);
+    }
+
+    private ITrackStorage track(String experienceName) {
+        Iterator<ITrackStorage> it =
+                experience(experienceName).getTracks().iterator();
+        assertTrue(it.hasNext());
+        return it.next();
+    }
+
+    private static int count(Iterable<?> iterable) {
+        int count = 0;
+        for (Object ignored : iterable)
+            count++;
+        return count;
+    }
+
+    @Before
+    public void setUpSource() {
+        source = load(makeRoot());
+    }
+
+    /**
+     * Verifica che vengano restituite tutte le Esperienze caricate.
+     */
+    @Test
+    public void getExperiencesShouldReturnLoadedExperiences() {
+        List<String> names = new ArrayList<String>();
+        for (IExperienceStorage experience : source.getExperiences())
+            names.add(experience.getName());
+        assertEquals(2, names.size());
+        assertTrue(names.contains("A"));
+        assertTrue(names.contains("B"));
+        assertEquals("A track", track("A").name());
+    }
+
+    /**
+     * Verifica che i Checkpoint siano restituiti in ordine di numero.
+     */
+    @Test
+    public void checkpointsShouldBeOrderedByNumber() {
+        DirectAccessList<Checkpoint> checkpoints =
+                track("A").getCheckpoints();
+        assertEquals(3, checkpoints.size());
+        for (int i = 0; i < 3; i++)
+            assertEquals(i + 1.0, checkpoints.get(i).latitude(), 0.0001);
+    }
+
+    /**
+     * Verifica che il Tracciamento sincronizzato sia escluso quando non
+     * vengono richiesti i Tracciamenti "fantasma".
+     */
+    @Test
+    public void syncedTelemetryShouldBeGhost() {
+        ITrackStorage track = track("A");
+        assertEquals(1, count(track.getTelemetries(true)));
+        assertEquals(0, count(track.getTelemetries(false)));
+
+        long[] timestamps = track.getTelemetries().iterator().next()
+                .getCheckpointTimestamps();
+        assertEquals(3, timestamps.length);
+        assertEquals(1000, timestamps[0]);
+        assertEquals(2000, timestamps[2]);
+    }
+
+    /**
+     * Verifica che un Tracciamento creato localmente sia restituito, e
+     * diventi il migliore se più breve degli altri.
+     */
+    @Test
+    public void createTelemetryShouldUpdateBestTelemetry() {
+        ITrackStorage track = track("A");
+        List<TelemetryEvent> events = new ArrayList<TelemetryEvent>();
+        events.add(new CheckpointReachedTelemetryEvent(100, 1));
+        events.add(new CheckpointReachedTelemetryEvent(130, 2));
+        events.add(new CheckpointReachedTelemetryEvent(150, 3));
+        track.createTelemetry(events);
+
+        track = track("A");
+        assertEquals(2, count(track.getTelemetries(true)));
+        assertEquals(1, count(track.getTelemetries(false)));
+
+        ITelemetryStorage best = track.getBestTelemetry();
+        assertNotNull(best);
+        long[] timestamps = best.getCheckpointTimestamps();
+        assertEquals(100, timestamps[0]);
+        assertEquals(130, timestamps[1]);
+        assertEquals(150, timestamps[2]);
+    }
+
+    /**
+     * Verifica che i punti utente aggiunti siano restituiti, e siano gli
+     * unici considerati locali.
+     */
+    @Test
+    public void addedUserPointsShouldBeLocal() {
+        IExperienceStorage experience = experience("A");
+        experience.addUserPoint(new UserPoint(6, 7));
+
+        experience = experience("A");
+        assertEquals(2, count(experience.getUserPoints()));
+        Iterator<UserPoint> local =
+                experience.getUserPoints(true).iterator();
+        UserPoint point = local.next();
+        assertEquals(6.0, point.latitude(), 0.0001);
+        assertEquals(7.0, point.longitude(), 0.0001);
+        assertFalse(local.hasNext());
+        assertEquals(1, count(experience("B").getUserPoints()));
+    }
+
+    /**
+     * Verifica che getUserPoints(IRegion) restituisca solo i punti utente
+     * contenuti nell'area, compresi quelli sul suo bordo.
+     */
+    @Test
+    public void getUserPointsShouldFilterByRegion() {
+        IExperienceStorage experience = experience("A");
+        experience.addUserPoint(new UserPoint(6, 7));
+        experience.addUserPoint(new UserPoint(8, 10));
+        experience.addUserPoint(new UserPoint(6, 12));
+        experience.addUserPoint(new UserPoint(2, 7));
+
+        Region region = new Region(new GeoPoint(8, 5), new GeoPoint(3, 10));
+        Iterator<UserPoint> points =
+                experience("A").getUserPoints(region).iterator();
+        UserPoint first = points.next();
+        UserPoint second = points.next();
+        assertFalse(points.hasNext());
+        assertTrue(region.contains(first));
+        assertTrue(region.contains(second));
+        assertFalse(first.equals(second));
+        assertEquals(0, count(experience("B").getUserPoints(region)));
+    }
+
+    /**
+     * Verifica che getUserPoints(IRegion) sollevi un'eccezione
+     * IllegalArgumentException se l'area è null.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void getUserPointsShouldThrowIfNullRegion() {
+        experience("A").getUserPoints((IRegion) null);
+    }
+
+    /**
+     * Verifica che vengano restituiti solo i contatti la cui area contiene
+     * la posizione, nell'ordine in cui sono stati caricati.
+     */
+    @Test
+    public void getContactsShouldFilterByLocation() {
+        DirectAccessList<EmergencyContact> contacts =
+                source.getContacts(new GeoPoint(2, 2));
+        assertEquals(2, contacts.size());
+        assertEquals("FOO", contacts.get(0).name());
+        assertEquals("BAR", contacts.get(1).name());
+
+        contacts = source.getContacts(new GeoPoint(8, 8));
+        assertEquals(1, contacts.size());
+        assertEquals("FOO", contacts.get(0).name());
+
+        assertEquals(0, source.getContacts(new GeoPoint(20, 20)).size());
+    }
+
+    /**
+     * Verifica che le previsioni meteo vengano restituite con temperature
+     * arrotondate all'intero.
+     */
+    @Test
+    public void getWeatherInfoShouldReturnForecast()
+            throws NoSuchWeatherForecastException {
+        IWeatherStorage weather = source.getWeatherInfo(new GeoPoint(5, 5),
+                new Date(WEATHER_DATE));
+        assertEquals(WeatherForecastEnum.Sunny, weather.getMorningForecast());
+        assertEquals(WeatherForecastEnum.Cloudy,
+                weather.getAfternoonForecast());
+        assertEquals(WeatherForecastEnum.Rainy, weather.getNightForecast());
+        assertEquals(11, weather.getMorningTemperature());
+        assertEquals(15, weather.getAfternoonTemperature());
+        assertEquals(4, weather.getNightTemperature());
+    }
+
+    /**
+     * Verifica che venga sollevata un'eccezione in assenza di previsioni per
+     * la data richiesta.
+     */
+    @Test(expected = NoSuchWeatherForecastException.class)
+    public void getWeatherInfoShouldThrowWithoutForecast()
+            throws NoSuchWeatherForecastException {
+        source.getWeatherInfo(new GeoPoint(5, 5),
+                new Date(WEATHER_DATE + 24 * 60 * 60 * 1000));
+    }
+
+    /**
+     * Verifica che getWeatherInfo() sollevi un'eccezione se la data non
+     * corrisponde alla mezzanotte.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void getWeatherInfoShouldThrowOnDateNotAtMidnight()
+            throws NoSuchWeatherForecastException {
+        source.getWeatherInfo(new GeoPoint(5, 5),
+                new Date(WEATHER_DATE + 1000));
+    }
+
+    /**
+     * Verifica che venga restituito il quadrante contenente la posizione.
+     */
+    @Test
+    public void getQuadrantShouldReturnContainingRaster()
+            throws NoSuchQuadrantException {
+        IQuadrant quadrant = experience("A").getQuadrant(new GeoPoint(2, 3));
+        assertEquals(new GeoPoint(5, 0), quadrant.getNorthWestPoint());
+        assertEquals(new GeoPoint(0, 5), quadrant.getSouthEastPoint());
+        assertNotNull(quadrant.getRaster());
+    }
+
+    /**
+     * Verifica che venga sollevata un'eccezione se nessun quadrante
+     * contiene la posizione.
+     */
+    @Test(expected = NoSuchQuadrantException.class)
+    public void getQuadrantShouldThrowOutsideRasters()
+            throws NoSuchQuadrantException {
+        experience("A").getQuadrant(new GeoPoint(8, 8));
+    }
+
+    /**
+     * Verifica che la ricerca restituisca i Percorsi il cui nome contiene la
+     * parola cercata, ordinati per nome a parità di lunghezza.
+     */
+    @Test
+    public void searchShouldFindTracks() {
+        DirectAccessList<SearchResult> results = source.search("track");
+        assertEquals(2, results.size());
+        SearchResult first = results.get(0);
+        assertEquals(SearchResultType.Track, first.type());
+        assertEquals("A track", first.name());
+        assertEquals(track("A").getUUID(), first.uuid());
+        assertEquals(experience("A").getUUID(), first.experience());
+        assertEquals("B track", results.get(1).name());
+    }
+
+    /**
+     * Verifica che le parole vengano cercate come prefissi, senza
+     * distinguere maiuscole e minuscole, e che i nomi più corti precedano
+     * quelli più lunghi.
+     */
+    @Test
+    public void searchShouldMatchPrefixesAndRankShorterNamesFirst() {
+        DirectAccessList<SearchResult> results = source.search("a");
+        assertEquals(2, results.size());
+        assertEquals(SearchResultType.Experience, results.get(0).type());
+        assertEquals("A", results.get(0).name());
+        assertEquals(experience("A").getUUID(), results.get(0).uuid());
+        assertEquals("A track", results.get(1).name());
+
+        results = source.search("TR b");
+        assertEquals(1, results.size());
+        assertEquals("B track", results.get(0).name());
+    }
+
+    /**
+     * Verifica che la ricerca restituisca i contatti di emergenza con il
+     * loro recapito.
+     */
+    @Test
+    public void searchShouldFindContacts() {
+        DirectAccessList<SearchResult> results = source.search("fo");
+        assertEquals(1, results.size());
+        SearchResult contact = results.get(0);
+        assertEquals(SearchResultType.Contact, contact.type());
+        assertEquals("FOO", contact.name());
+        assertEquals("123456789", contact.value());
+        assertNull(contact.uuid());
+    }
+
+    /**
+     * Verifica che una ricerca priva di parole o senza corrispondenze
+     * restituisca una lista vuota.
+     */
+    @Test
+    public void searchShouldReturnEmptyListWithoutMatches() {
+        assertEquals(0, source.search(" ,; ").size());
+        assertEquals(0, source.search("zzz").size());
+        assertFalse(source.search("zzz").iterator().hasNext());
+    }
+}
@@ -0,0 +1,102 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: SearchQueryTest.java
+ * Package: com.kyloth.serleena.persistence
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ */
+
+package com.kyloth.serleena.persistence;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Contiene i test di unità per la classe SearchQuery.
+ *
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+public class SearchQueryTest {
+
+    /**
+     * Verifica che parse() sollevi un'eccezione IllegalArgumentException se
+     * il testo è null.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void parseShouldThrowIfTextIsNull() {
+        SearchQuery.parse(null);
+    }
+
+    /**
+     * Verifica che un testo privo di lettere e cifre dia una ricerca vuota,
+     * che non trova alcun nome.
+     */
+    @Test
+    public void punctuationOnlyQueryShouldBeEmpty() {
+        SearchQuery query = SearchQuery.parse(" -,;' ");
+        assertTrue(query.isEmpty());
+        assertFalse(query.matches("Monte"));
+    }
+
+    /**
+     * Verifica che l'espressione MATCH contenga le parole in minuscolo,
+     * cercate come prefissi e prive di sintassi FTS.
+     */
+    @Test
+    public void matchExpressionShouldContainLowercasePrefixes() {
+        assertEquals("monte* or* grappa*",
+                SearchQuery.parse("\"Monte\" OR -grappa").toMatchExpression());
+        assertEquals("città*",
+                SearchQuery.parse("Città").toMatchExpression());
+    }
+
+    /**
+     * Verifica che un nome corrisponda se ogni parola della ricerca è
+     * prefisso di una sua parola, in qualunque ordine.
+     */
+    @Test
+    public void matchesShouldRequireEveryWordAsPrefix() {
+        SearchQuery query = SearchQuery.parse("gra MON");
+        assertTrue(query.matches("Monte Grappa"));
+        assertTrue(query.matches("Sentiero (Grappa), monte"));
+        assertFalse(query.matches("Monte Baldo"));
+        assertFalse(query.matches("Montegrappa"));
+    }
+}
@@ -0,0 +1,198 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: SpatialIndexTest.java
+ * Package: com.kyloth.serleena.persistence
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file, codice e javadoc
+ * 1.0.1    Filippo Sestini  Aggiunti test su findEntry()
+ * 1.0.2    Filippo Sestini  Aggiunti test su findEntries()
+ * 1.0.3    Filippo Sestini  Rinominata da SpatialIndexTest
+ */
+
+package com.kyloth.serleena.persistence;
+
+import com.kyloth.serleena.common.GeoPoint;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test di unità per la classe SpatialIndex.
+ *
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+public class SpatialIndexTest {
+
+    /**
+     * Costruisce un indice su una griglia di size x size quadranti di lato
+     * unitario, con angolo nord-ovest della griglia in (size, 0). Il rowid
+     * del quadrante di riga r e colonna c è r * size + c.
+     */
+    private static SpatialIndex makeGrid(int size) {
+        int n = size * size;
+        long[] ids = new long[n];
+        double[] nwLat = new double[n];
+        double[] nwLon = new double[n];
+        double[] seLat = new double[n];
+        double[] seLon = new double[n];
+        for (int r = 0; r < size; r++)
+            for (int c = 0; c < size; c++) {
+                int i = r * size + c;
+                ids[i] = i;
+                nwLat[i] = size - r;
+                nwLon[i] = c;
+                seLat[i] = size - r - 1;
+                seLon[i] = c + 1;
+            }
+        return new SpatialIndex(ids, nwLat, nwLon, seLat, seLon);
+    }
+
+    /**
+     * Verifica che un indice vuoto non trovi alcun riquadro.
+     */
+    @Test
+    public void emptyIndexShouldFindNothing() {
+        SpatialIndex index = new SpatialIndex(new long[0], new double[0],
+                new double[0], new double[0], new double[0]);
+        assertEquals(SpatialIndex.NOT_FOUND, index.find(1, 1));
+    }
+
+    /**
+     * Verifica che per ogni punto interno a un quadrante della griglia
+     * venga restituito il rowid corretto.
+     */
+    @Test
+    public void findShouldReturnContainingBounds() {
+        int size = 50;
+        SpatialIndex index = makeGrid(size);
+        assertEquals(size * size, index.size());
+        for (int r = 0; r < size; r++)
+            for (int c = 0; c < size; c++)
+                assertEquals(r * size + c,
+                        index.find(size - r - 0.5, c + 0.5));
+    }
+
+    /**
+     * Verifica che i punti sul bordo di un quadrante siano considerati
+     * contenuti nel quadrante.
+     */
+    @Test
+    public void findShouldIncludeBorders() {
+        SpatialIndex index = makeGrid(1);
+        assertEquals(0, index.find(1, 0));
+        assertEquals(0, index.find(0, 1));
+    }
+
+    /**
+     * Verifica che un punto esterno a tutti i quadranti non venga trovato.
+     */
+    @Test
+    public void findShouldReturnNotFoundOutsideBounds() {
+        SpatialIndex index = makeGrid(20);
+        assertEquals(SpatialIndex.NOT_FOUND, index.find(-1, 5));
+        assertEquals(SpatialIndex.NOT_FOUND, index.find(5, 21));
+    }
+
+    /**
+     * Verifica che il costruttore sollevi un'eccezione se gli array hanno
+     * lunghezze diverse.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void ctorShouldThrowOnMismatchingArrays() {
+        new SpatialIndex(new long[2], new double[2], new double[2],
+                new double[2], new double[1]);
+    }
+
+
+    /**
+     * Verifica che findEntry() restituisca una posizione da cui ottenere
+     * identificativo ed estremi del riquadro contenente il punto.
+     */
+    @Test
+    public void findEntryShouldExposeIdAndBounds() {
+        SpatialIndex index = makeGrid(10);
+        int entry = index.findEntry(6.5, 3.5);
+        assertEquals(33, index.id(entry));
+        assertEquals(new GeoPoint(7, 3), index.northWest(entry));
+        assertEquals(new GeoPoint(6, 4), index.southEast(entry));
+        assertEquals(SpatialIndex.NO_ENTRY, index.findEntry(20, 20));
+    }
+
+    /**
+     * Verifica che findEntries() restituisca tutti i riquadri sovrapposti
+     * contenenti il punto, in ordine di identificativo.
+     */
+    @Test
+    public void findEntriesShouldReturnAllContainingBounds() {
+        int n = 40;
+        long[] ids = new long[n];
+        double[] nwLat = new double[n];
+        double[] nwLon = new double[n];
+        double[] seLat = new double[n];
+        double[] seLon = new double[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = n - i;
+            nwLat[i] = i + 1;
+            nwLon[i] = 0;
+            seLat[i] = i % 2 == 0 ? 0 : i;
+            seLon[i] = i + 1;
+        }
+        SpatialIndex index = new SpatialIndex(ids, nwLat, nwLon, seLat, seLon);
+
+        int[] entries = index.findEntries(0.5, 0.5);
+        long[] found = new long[entries.length];
+        for (int i = 0; i < entries.length; i++)
+            found[i] = index.id(entries[i]);
+        long[] expected = new long[n / 2];
+        for (int i = 0; i < n / 2; i++)
+            expected[i] = 2 * i + 2;
+        assertArrayEquals(expected, found);
+    }
+
+    /**
+     * Verifica che findEntries() restituisca un array vuoto se nessun
+     * riquadro contiene il punto.
+     */
+    @Test
+    public void findEntriesShouldReturnEmptyArrayOutsideBounds() {
+        assertEquals(0, makeGrid(10).findEntries(20, 20).length);
+        SpatialIndex empty = new SpatialIndex(new long[0], new double[0],
+                new double[0], new double[0], new double[0]);
+        assertEquals(0, empty.findEntries(1, 1).length);
+    }
+}
@@ -0,0 +1,97 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: HeapDataSourceTest.java
+ * Package: com.kyloth.serleena.persistence.memory
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ */
+
+package com.kyloth.serleena.persistence.memory;
+
+import com.kyloth.serleena.BuildConfig;
+import com.kyloth.serleena.persistence.IPersistenceDataSource;
+import com.kyloth.serleena.persistence.PersistenceDataSourceContractTest;
+import com.kyloth.serleena.synchronization.kylothcloud.InboundRootEntity;
+import com.kyloth.serleena.synchronization.kylothcloud.inbound.SerleenaSQLiteInboundDump;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static junit.framework.Assert.assertFalse;
+
+/**
+ * Test per le classi HeapDataSource e HeapDataSink.
+ *
+ * Oltre ai test comuni a tutte le implementazioni di
+ * IPersistenceDataSource, verifica il caricamento tramite HeapDataSink.
+ *
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, emulateSdk = 19)
+public class HeapDataSourceTest extends PersistenceDataSourceContractTest {
+
+    @Override
+    protected IPersistenceDataSource load(InboundRootEntity root) {
+        HeapDataSource source = new HeapDataSource();
+        new HeapDataSink(source).load(new HeapInboundDump(root));
+        return source;
+    }
+
+    /**
+     * Verifica che un nuovo caricamento sostituisca il contenuto
+     * precedente.
+     */
+    @Test
+    public void loadShouldReplaceContent() {
+        HeapDataSource source = new HeapDataSource();
+        source.load(new InboundRootEntity());
+        assertFalse(source.getExperiences().iterator().hasNext());
+    }
+
+    /**
+     * Verifica che HeapDataSink rifiuti dump destinati ad altre
+     * implementazioni.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void sinkShouldRejectOtherDumps() {
+        new HeapDataSink(new HeapDataSource()).load(
+                new SerleenaSQLiteInboundDump());
+    }
+}
@@ -0,0 +1,130 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: CheckpointTimestampsTest.java
+ * Package: com.kyloth.serleena.persistence.sqlite
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ */
+
+package com.kyloth.serleena.persistence.sqlite;
+
+import com.kyloth.serleena.persistence.ITelemetryStorage;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Contiene i test di unità per la classe CheckpointTimestamps.
+ *
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+public class CheckpointTimestampsTest {
+
+    /**
+     * Verifica che i checkpoint non attraversati siano marcati con
+     * ITelemetryStorage.NO_TIMESTAMP.
+     */
+    @Test
+    public void missingCheckpointsShouldHaveNoTimestamp() {
+        CheckpointTimestamps timestamps = new CheckpointTimestamps();
+        timestamps.put(1, 100);
+        timestamps.put(4, 400);
+        assertTrue(Arrays.equals(new long[] { 100,
+                ITelemetryStorage.NO_TIMESTAMP,
+                ITelemetryStorage.NO_TIMESTAMP, 400 }, timestamps.toArray()));
+    }
+
+    /**
+     * Verifica che clear() permetta di riutilizzare l'oggetto per un nuovo
+     * Tracciamento, anche oltre la capacità iniziale.
+     */
+    @Test
+    public void clearShouldAllowReuse() {
+        CheckpointTimestamps timestamps = new CheckpointTimestamps();
+        for (int i = 1; i <= 40; i++)
+            timestamps.put(i, i * 10);
+        assertEquals(40, timestamps.toArray().length);
+        timestamps.clear();
+        timestamps.put(2, 20);
+        assertTrue(Arrays.equals(
+                new long[] { ITelemetryStorage.NO_TIMESTAMP, 20 },
+                timestamps.toArray()));
+    }
+
+    /**
+     * Verifica che put() sollevi un'eccezione per numeri di checkpoint non
+     * validi.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void putShouldThrowOnIllegalCheckpoint() {
+        new CheckpointTimestamps().put(0, 100);
+    }
+
+    /**
+     * Verifica che la durata sia calcolata solo in presenza del primo e
+     * dell'ultimo checkpoint.
+     */
+    @Test
+    public void durationShouldRequireFirstAndLastCheckpoint() {
+        long none = ITelemetryStorage.NO_TIMESTAMP;
+        assertEquals(200, CheckpointTimestamps.duration(
+                new long[] { 100, none, 300 }));
+        assertEquals(CheckpointTimestamps.NO_DURATION,
+                CheckpointTimestamps.duration(new long[0]));
+        assertEquals(CheckpointTimestamps.NO_DURATION,
+                CheckpointTimestamps.duration(new long[] { none, 300 }));
+        assertEquals(CheckpointTimestamps.NO_DURATION,
+                CheckpointTimestamps.duration(new long[] { 100, none }));
+    }
+
+    /**
+     * Verifica che unpack() ricostruisca i tempi convertiti da pack().
+     */
+    @Test
+    public void unpackShouldInvertPack() {
+        long[] timestamps = new long[] { 100, ITelemetryStorage.NO_TIMESTAMP,
+                Long.MAX_VALUE };
+        byte[] blob = CheckpointTimestamps.pack(timestamps);
+        assertEquals(24, blob.length);
+        assertTrue(Arrays.equals(timestamps,
+                CheckpointTimestamps.unpack(blob)));
+    }
+}
@@ -0,0 +1,245 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: DatabaseMaintenanceIntegrationTest.java
+ * Package: com.kyloth.serleena.persistence.sqlite
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ * 1.0.1    Filippo Sestini  Test della conversione all'auto_vacuum
+ *                                          incrementale.
+ */
+
+package com.kyloth.serleena.persistence.sqlite;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.kyloth.serleena.BuildConfig;
+import com.kyloth.serleena.synchronization.kylothcloud.inbound.SerleenaSQLiteInboundDump;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static com.kyloth.serleena.persistence.sqlite.SerleenaDatabaseTestUtils.makeTrack;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Test di integrazione tra la classe DatabaseMaintenance e il database
+ * SQLite dell'applicazione.
+ *
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, emulateSdk = 19)
+public class DatabaseMaintenanceIntegrationTest {
+
+    private SerleenaDatabase sh;
+    private SQLiteDatabase db;
+    private boolean allowed;
+    private IMaintenanceGuard guard;
+
+    @Before
+    public void setup() {
+        sh = new SerleenaDatabase(RuntimeEnvironment.application, null, null,
+                1);
+        db = sh.getWritableDatabase();
+        allowed = true;
+        guard = new IMaintenanceGuard() {
+            @Override
+            public boolean canRunMaintenance() {
+                return allowed;
+            }
+        };
+    }
+
+    /**
+     * Verifica che il costruttore sollevi un'eccezione
+     * IllegalArgumentException se vengono passati parametri null.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void ctorShouldThrowIfArgumentIsNull() {
+        new DatabaseMaintenance(sh, null, 0.1);
+    }
+
+    /**
+     * Verifica che il costruttore sollevi un'eccezione
+     * IllegalArgumentException se la soglia non è compresa tra 0 e 1.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void ctorShouldThrowIfThresholdIsIllegal() {
+        new DatabaseMaintenance(sh, guard, 1.5);
+    }
+
+    /**
+     * Verifica che i nuovi database siano creati con auto_vacuum
+     * incrementale.
+     */
+    @Test
+    public void databaseShouldUseIncrementalAutoVacuum() {
+        assertEquals(DatabaseMaintenance.AUTO_VACUUM_INCREMENTAL,
+                pragma("auto_vacuum"));
+    }
+
+    /**
+     * Verifica che le statistiche vengano calcolate se assenti e
+     * aggiornate dopo ogni caricamento.
+     */
+    @Test
+    public void runOnceShouldAnalyzeAfterLoads() {
+        DatabaseMaintenance maintenance =
+                new DatabaseMaintenance(sh, guard, 0.1);
+        MaintenanceReport report = maintenance.runOnce();
+        assertTrue(report.analyzed());
+        assertFalse(report.vacuumed());
+        assertEquals(1, statisticsTables());
+        assertNull(maintenance.runOnce());
+
+        sh.notifyDataChanged();
+        report = maintenance.runOnce();
+        assertTrue(report.analyzed());
+        assertTrue(report == maintenance.getLastReport());
+    }
+
+    /**
+     * Verifica che le pagine libere oltre la soglia vengano restituite,
+     * riducendo dimensione e frammentazione del database.
+     */
+    @Test
+    public void runOnceShouldReclaimFreePages() {
+        DatabaseMaintenance maintenance =
+                new DatabaseMaintenance(sh, guard, 0.1);
+        maintenance.runOnce();
+        fragment();
+
+        MaintenanceReport report = maintenance.runOnce();
+        assertTrue(report.vacuumed());
+        assertFalse(report.analyzed());
+        assertTrue(report.fragmentationBefore() > 0.1);
+        assertEquals(0.0, report.fragmentationAfter(), 0.0);
+        assertTrue(report.sizeAfter() < report.sizeBefore());
+        assertEquals(0, pragma("freelist_count"));
+    }
+
+    /**
+     * Verifica che la manutenzione non venga eseguita quando non è
+     * consentita.
+     */
+    @Test
+    public void runOnceShouldNotRunIfNotAllowed() {
+        DatabaseMaintenance maintenance =
+                new DatabaseMaintenance(sh, guard, 0.1);
+        fragment();
+        long freePages = pragma("freelist_count");
+        allowed = false;
+
+        assertNull(maintenance.runOnce());
+        assertNull(maintenance.getLastReport());
+        assertEquals(0, statisticsTables());
+        assertEquals(freePages, pragma("freelist_count"));
+    }
+
+    /**
+     * Verifica che un database senza auto_vacuum incrementale non venga
+     * convertito dalla manutenzione, ma dal caricamento successivo.
+     */
+    @Test
+    public void legacyDatabaseShouldBeConvertedByLoad() {
+        db.execSQL("PRAGMA auto_vacuum = NONE");
+        db.execSQL("VACUUM");
+        assertEquals(0, pragma("auto_vacuum"));
+        DatabaseMaintenance maintenance =
+                new DatabaseMaintenance(sh, guard, 0.1);
+        maintenance.runOnce();
+        fragment();
+        long freePages = pragma("freelist_count");
+
+        assertNull(maintenance.runOnce());
+        assertEquals(0, pragma("auto_vacuum"));
+        assertEquals(freePages, pragma("freelist_count"));
+
+        new SerleenaSQLiteDataSink(RuntimeEnvironment.application, sh)
+                .load(new SerleenaSQLiteInboundDump());
+        assertEquals(DatabaseMaintenance.AUTO_VACUUM_INCREMENTAL,
+                pragma("auto_vacuum"));
+        assertEquals(0, pragma("freelist_count"));
+    }
+
+    /*
+     * Util
+     */
+
+    /**
+     * Inserisce e cancella righe di grandi dimensioni, lasciando pagine
+     * libere nel database.
+     */
+    private void fragment() {
+        String track = makeTrack(db).toString();
+        byte[] blob = new byte[4096];
+        for (int i = 1; i <= 100; i++) {
+            ContentValues values = new ContentValues();
+            values.put("archive_id", i);
+            values.put("archive_track", track);
+            values.put("archive_timestamps", blob);
+            db.insertOrThrow(SerleenaDatabase.TABLE_TELEMETRIES_ARCHIVE,
+                    null, values);
+        }
+        db.delete(SerleenaDatabase.TABLE_TELEMETRIES_ARCHIVE, null, null);
+    }
+
+    private long pragma(String name) {
+        Cursor c = db.rawQuery("PRAGMA " + name, null);
+        c.moveToFirst();
+        long value = c.getLong(0);
+        c.close();
+        return value;
+    }
+
+    private int statisticsTables() {
+        Cursor c = db.rawQuery("SELECT * FROM sqlite_master " +
+                "WHERE name = 'sqlite_stat1'", null);
+        int count = c.getCount();
+        c.close();
+        return count;
+    }
+}
@@ -0,0 +1,219 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: InstrumentedSQLiteDataSourceIntegrationTest.java
+ * Package: com.kyloth.serleena.persistence.sqlite
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ * 1.0.1    Filippo Sestini  Test degli oggetti restituiti a raccolta
+ *                                          disattivata.
+ */
+
+package com.kyloth.serleena.persistence.sqlite;
+
+import com.kyloth.serleena.BuildConfig;
+import com.kyloth.serleena.common.GeoPoint;
+import com.kyloth.serleena.common.Region;
+import com.kyloth.serleena.persistence.IExperienceStorage;
+import com.kyloth.serleena.persistence.NoSuchQuadrantException;
+import com.kyloth.serleena.synchronization.kylothcloud.CheckpointEntity;
+import com.kyloth.serleena.synchronization.kylothcloud.ExperienceEntity;
+import com.kyloth.serleena.synchronization.kylothcloud.InboundRootEntity;
+import com.kyloth.serleena.synchronization.kylothcloud.RasterDataEntity;
+import com.kyloth.serleena.synchronization.kylothcloud.TelemetryEntity;
+import com.kyloth.serleena.synchronization.kylothcloud.TrackEntity;
+import com.kyloth.serleena.synchronization.kylothcloud.inbound.CloudSerleenaSQLiteInboundDumpBuilder;
+import com.kyloth.serleena.synchronization.kylothcloud.inbound.SerleenaSQLiteInboundDump;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.UUID;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Test di integrazione per le classi InstrumentedSQLiteDataSource e
+ * InstrumentedSQLiteDataSink.
+ *
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, emulateSdk = 19)
+public class InstrumentedSQLiteDataSourceIntegrationTest {
+
+    private PersistenceMetrics metrics;
+    private InstrumentedSQLiteDataSource source;
+    private InstrumentedSQLiteDataSink sink;
+
+    private static SerleenaSQLiteInboundDump makeDump() {
+        ExperienceEntity experience = new ExperienceEntity();
+        experience.uuid = UUID.randomUUID();
+        experience.name = "experience";
+        experience.region = new Region(new GeoPoint(5, 0),
+                new GeoPoint(0, 5));
+
+        TrackEntity track = new TrackEntity();
+        track.uuid = UUID.randomUUID();
+        track.name = "track";
+        track.checkpoints = new ArrayList<CheckpointEntity>();
+        CheckpointEntity checkpoint = new CheckpointEntity();
+        checkpoint.id = 1;
+        checkpoint.point = new GeoPoint(2, 3);
+        track.checkpoints.add(checkpoint);
+        track.telemetries = new ArrayList<TelemetryEntity>();
+        experience.tracks.add(track);
+
+        RasterDataEntity raster = new RasterDataEntity();
+        raster.boundingRect = new Region(new GeoPoint(5, 0),
+                new GeoPoint(0, 5));
+        raster.base64Raster = TestFixtures.raster_base64;
+        experience.rasterData.add(raster);
+
+        InboundRootEntity root = new InboundRootEntity();
+        root.experiences.add(experience);
+        return new CloudSerleenaSQLiteInboundDumpBuilder(root).build();
+    }
+
+    private IExperienceStorage experience() {
+        return source.getExperiences().iterator().next();
+    }
+
+    @Before
+    public void setUp() {
+        SerleenaDatabase db = new SerleenaDatabase(
+                RuntimeEnvironment.application, null, null, 1);
+        metrics = new PersistenceMetrics();
+        source = new InstrumentedSQLiteDataSource(
+                new SerleenaSQLiteDataSource(db), metrics);
+        sink = new InstrumentedSQLiteDataSink(
+                new SerleenaSQLiteDataSink(RuntimeEnvironment.application,
+                        db), metrics);
+    }
+
+    /**
+     * Verifica che da disattivate le misure non vengano registrate.
+     */
+    @Test
+    public void disabledMetricsShouldRecordNothing() {
+        sink.load(makeDump());
+        experience().getTracks().iterator().next();
+        assertNull(metrics.getStats("load"));
+        assertNull(metrics.getStats("getExperiences"));
+        assertNull(metrics.getStats("getTracks"));
+    }
+
+    /**
+     * Verifica che da disattivate le misure vengano restituiti gli oggetti
+     * del DAO misurato, le cui chiamate non vengono misurate.
+     */
+    @Test
+    public void disabledMetricsShouldReturnUnwrappedObjects() {
+        sink.load(makeDump());
+        IExperienceStorage experience = experience();
+        metrics.setEnabled(true);
+        experience.getTracks().iterator().next();
+        assertNull(metrics.getStats("getTracks"));
+
+        experience().getTracks().iterator().next();
+        assertEquals(1, metrics.getStats("getTracks").count());
+    }
+
+    /**
+     * Verifica che il caricamento registri le istruzioni eseguite.
+     */
+    @Test
+    public void loadShouldRecordStatements() {
+        SerleenaSQLiteInboundDump dump = makeDump();
+        int statements = 0;
+        for (String ignored : dump)
+            statements++;
+
+        metrics.setEnabled(true);
+        sink.load(dump);
+        PersistenceMetrics.MethodStats stats = metrics.getStats("load");
+        assertEquals(1, stats.count());
+        assertEquals(statements, stats.rows());
+        assertTrue(stats.textChars() > 0);
+    }
+
+    /**
+     * Verifica che le chiamate eseguite dalle Esperienze restituite vengano
+     * misurate, con le righe e il testo letti.
+     */
+    @Test
+    public void callsFromExperiencesShouldBeRecorded() {
+        sink.load(makeDump());
+        metrics.setEnabled(true);
+
+        IExperienceStorage experience = experience();
+        assertEquals("track",
+                experience.getTracks().iterator().next().name());
+
+        PersistenceMetrics.MethodStats stats =
+                metrics.getStats("getExperiences");
+        assertEquals(1, stats.count());
+        assertEquals(1, stats.rows());
+        stats = metrics.getStats("getTracks");
+        assertEquals(1, stats.count());
+        assertTrue(stats.rows() >= 1);
+        assertTrue(stats.textChars() > 0);
+    }
+
+    /**
+     * Verifica che la lettura di un quadrante registri i byte dei BLOB
+     * letti.
+     */
+    @Test
+    public void getQuadrantShouldRecordBlobBytes()
+            throws NoSuchQuadrantException {
+        sink.load(makeDump());
+        metrics.setEnabled(true);
+
+        experience().getQuadrant(new GeoPoint(2, 3));
+        PersistenceMetrics.MethodStats stats = metrics.getStats("getQuadrant");
+        assertEquals(1, stats.count());
+        assertTrue(stats.blobBytes() > 0);
+        assertTrue(metrics.report().contains("getQuadrant: count=1"));
+    }
+}
@@ -0,0 +1,257 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: KeysetQueryListTest.java
+ * Package: com.kyloth.serleena.persistence.sqlite
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ * 1.0.1    Filippo Sestini  Test della rilettura dopo la sostituzione dei
+ *                                          dati.
+ */
+
+package com.kyloth.serleena.persistence.sqlite;
+
+import android.database.Cursor;
+
+import com.kyloth.serleena.BuildConfig;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Contiene i test di unità per la classe KeysetQueryList.
+ *
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, emulateSdk = 19)
+public class KeysetQueryListTest {
+
+    private static final String INSERT =
+            "INSERT INTO " + SerleenaDatabase.TABLE_CONTACTS +
+            " (contact_name, contact_value, contact_nw_corner_latitude," +
+            " contact_nw_corner_longitude, contact_se_corner_latitude," +
+            " contact_se_corner_longitude) VALUES (?, ?, 0, 0, 0, 0)";
+    private static final String COUNT =
+            "SELECT COUNT(*) FROM " + SerleenaDatabase.TABLE_CONTACTS +
+            " WHERE contact_value = ?";
+    private static final String FIRST =
+            "SELECT contact_name, contact_id FROM " +
+            SerleenaDatabase.TABLE_CONTACTS +
+            " WHERE contact_value = ? ORDER BY contact_id LIMIT ?";
+    private static final String NEXT =
+            "SELECT contact_name, contact_id FROM " +
+            SerleenaDatabase.TABLE_CONTACTS +
+            " WHERE contact_value = ? AND contact_id > ?" +
+            " ORDER BY contact_id LIMIT ?";
+    private static final int ROWS = 10;
+
+    private SerleenaDatabase sh;
+    private SerleenaSQLiteStatements statements;
+    private Map<String, Integer> queries;
+
+    /**
+     * Crea una lista dei nomi dei contatti con il valore specificato.
+     */
+    private KeysetQueryList<String> makeList(String value, int pageSize) {
+        return new KeysetQueryList<String>(statements, COUNT, FIRST, NEXT,
+                pageSize, value) {
+            @Override
+            protected String read(Cursor cursor) {
+                return cursor.getString(0);
+            }
+
+            @Override
+            protected String[] key(Cursor cursor) {
+                return new String[] { cursor.getString(1) };
+            }
+        };
+    }
+
+    /**
+     * Restituisce il numero di pagine lette dal database.
+     */
+    private int pagesRead() {
+        Integer first = queries.get(FIRST);
+        Integer next = queries.get(NEXT);
+        return ((first != null) ? first : 0) + ((next != null) ? next : 0);
+    }
+
+    /**
+     * Verifica che la lista non acceda al database prima che i suoi
+     * elementi vengano richiesti.
+     */
+    @Test
+    public void listShouldNotQueryUntilAccessed() {
+        makeList("v", 4);
+        assertNull(queries.get(COUNT));
+        assertEquals(0, pagesRead());
+    }
+
+    /**
+     * Verifica che una pagina mai letta sia raggiunta leggendo quelle che
+     * la precedono, e che le pagine già lette siano rilette con una sola
+     * query a partire dalla chiave conservata.
+     */
+    @Test
+    public void getShouldReadPagesAfterKnownKeys() {
+        KeysetQueryList<String> list = makeList("v", 4);
+        assertEquals(ROWS, list.size());
+
+        assertEquals("name9", list.get(9));
+        assertEquals(3, pagesRead());
+        assertEquals(1, (int) queries.get(FIRST));
+        assertEquals("name8", list.get(8));
+        assertEquals(3, pagesRead());
+
+        assertEquals("name5", list.get(5));
+        assertEquals(4, pagesRead());
+        assertEquals("name0", list.get(0));
+        assertEquals(5, pagesRead());
+        assertEquals(2, (int) queries.get(FIRST));
+    }
+
+    /**
+     * Verifica che l'iterazione restituisca tutti gli elementi in ordine,
+     * leggendo ogni pagina una sola volta.
+     */
+    @Test
+    public void iteratorShouldReturnAllElementsInOrder() {
+        Iterator<String> it = makeList("v", 3).iterator();
+        for (int i = 0; i < ROWS; i++) {
+            assertTrue(it.hasNext());
+            assertEquals("name" + i, it.next());
+        }
+        assertFalse(it.hasNext());
+        assertEquals((ROWS + 2) / 3, pagesRead());
+    }
+
+    /**
+     * Verifica che una query senza risultati produca una lista vuota.
+     */
+    @Test
+    public void emptyResultShouldGiveEmptyList() {
+        KeysetQueryList<String> list = makeList("none", 4);
+        assertEquals(0, list.size());
+        assertFalse(list.iterator().hasNext());
+    }
+
+    /**
+     * Verifica che get() sollevi un'eccezione se le righe sono state
+     * rimosse dopo il conteggio.
+     */
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getShouldThrowIfRowsAreMissing() {
+        KeysetQueryList<String> list = makeList("v", 4);
+        list.size();
+        sh.getWritableDatabase().execSQL("DELETE FROM " +
+                SerleenaDatabase.TABLE_CONTACTS + " WHERE contact_name = ?",
+                new Object[] { "name2" });
+        list.get(ROWS - 1);
+    }
+
+    /**
+     * Verifica che dopo una sostituzione dei dati la lista ne rilegga
+     * dimensione, chiavi ed elementi.
+     */
+    @Test
+    public void listShouldFollowDataChange() {
+        KeysetQueryList<String> list = makeList("v", 4);
+        assertEquals("name9", list.get(ROWS - 1));
+
+        for (String name : new String[] { "name0", "name1" })
+            sh.getWritableDatabase().execSQL("DELETE FROM " +
+                    SerleenaDatabase.TABLE_CONTACTS +
+                    " WHERE contact_name = ?", new Object[] { name });
+        sh.notifyDataChanged();
+        assertEquals(ROWS - 2, list.size());
+        assertEquals("name9", list.get(ROWS - 3));
+        assertEquals("name2", list.get(0));
+    }
+
+    /**
+     * Verifica che due liste con le stesse query e gli stessi parametri
+     * siano uguali, e che il confronto non acceda al database.
+     */
+    @Test
+    public void listsWithSameQueryShouldBeEqual() {
+        assertEquals(makeList("v", 4), makeList("v", 3));
+        assertEquals(makeList("v", 4).hashCode(),
+                makeList("v", 3).hashCode());
+        assertFalse(makeList("v", 4).equals(makeList("none", 4)));
+        assertNull(queries.get(COUNT));
+        assertEquals(0, pagesRead());
+    }
+
+    /**
+     * Verifica che il costruttore sollevi un'eccezione se la dimensione
+     * delle pagine non è positiva.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void ctorShouldThrowIfPageSizeIsIllegal() {
+        makeList("v", 0);
+    }
+
+    @Before
+    public void setup() {
+        sh = new SerleenaDatabase(
+                RuntimeEnvironment.application, null, null, 1);
+        queries = new HashMap<String, Integer>();
+        statements = new SerleenaSQLiteStatements(sh) {
+            @Override
+            public Cursor query(String sql, String... args) {
+                Integer count = queries.get(sql);
+                queries.put(sql, (count != null) ? count + 1 : 1);
+                return super.query(sql, args);
+            }
+        };
+        for (int i = 0; i < ROWS; i++)
+            statements.executeInsert(INSERT, "name" + i, "v");
+    }
+}
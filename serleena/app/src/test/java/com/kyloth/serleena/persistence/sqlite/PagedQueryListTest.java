@@ -0,0 +1,279 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: PagedQueryListTest.java
+ * Package: com.kyloth.serleena.persistence.sqlite
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ * 1.0.1    Filippo Sestini  Conteggio delle query senza le statistiche di
+ *                                          SerleenaSQLiteStatements.
+ * 1.0.2    Filippo Sestini  Test dell'uguaglianza basata sulla query.
+ * 1.0.3    Filippo Sestini  Test della rilettura dopo la sostituzione dei
+ *                                          dati.
+ */
+
+package com.kyloth.serleena.persistence.sqlite;
+
+import android.database.Cursor;
+
+import com.kyloth.serleena.BuildConfig;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+/**
+ * Contiene i test di unità per la classe PagedQueryList.
+ *
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, emulateSdk = 19)
+public class PagedQueryListTest {
+
+    private static final String INSERT =
+            "INSERT INTO " + SerleenaDatabase.TABLE_CONTACTS +
+            " (contact_name, contact_value, contact_nw_corner_latitude," +
+            " contact_nw_corner_longitude, contact_se_corner_latitude," +
+            " contact_se_corner_longitude) VALUES (?, ?, 0, 0, 0, 0)";
+    private static final String COUNT =
+            "SELECT COUNT(*) FROM " + SerleenaDatabase.TABLE_CONTACTS +
+            " WHERE contact_value = ?";
+    private static final String PAGE =
+            "SELECT contact_name FROM " + SerleenaDatabase.TABLE_CONTACTS +
+            " WHERE contact_value = ? ORDER BY contact_id LIMIT ? OFFSET ?";
+    private static final int ROWS = 10;
+
+    private SerleenaDatabase sh;
+    private SerleenaSQLiteStatements statements;
+    private Map<String, Integer> queries;
+
+    /**
+     * Crea una lista dei nomi dei contatti con il valore specificato.
+     */
+    private PagedQueryList<String> makeList(String value, int pageSize) {
+        return new PagedQueryList<String>(statements, COUNT, PAGE, pageSize,
+                value) {
+            @Override
+            protected String read(Cursor cursor) {
+                return cursor.getString(0);
+            }
+        };
+    }
+
+    /**
+     * Restituisce il numero di pagine lette dal database.
+     */
+    private int pagesRead() {
+        Integer count = queries.get(PAGE);
+        return (count != null) ? count : 0;
+    }
+
+    /**
+     * Verifica che la lista non acceda al database prima che i suoi
+     * elementi vengano richiesti.
+     */
+    @Test
+    public void listShouldNotQueryUntilAccessed() {
+        makeList("v", 4);
+        assertNull(queries.get(COUNT));
+        assertNull(queries.get(PAGE));
+    }
+
+    /**
+     * Verifica che gli elementi vengano restituiti nell'ordine della query,
+     * leggendo dal database solo le pagine che li contengono.
+     */
+    @Test
+    public void getShouldReadOnlyTheRequiredPage() {
+        PagedQueryList<String> list = makeList("v", 4);
+        assertEquals(ROWS, list.size());
+        assertEquals(0, pagesRead());
+
+        assertEquals("name5", list.get(5));
+        assertEquals(1, pagesRead());
+        assertEquals("name4", list.get(4));
+        assertEquals("name7", list.get(7));
+        assertEquals(1, pagesRead());
+
+        assertEquals("name9", list.get(9));
+        assertEquals(2, pagesRead());
+        assertEquals("name0", list.get(0));
+        assertEquals(3, pagesRead());
+    }
+
+    /**
+     * Verifica che l'iterazione restituisca tutti gli elementi in ordine.
+     */
+    @Test
+    public void iteratorShouldReturnAllElementsInOrder() {
+        Iterator<String> it = makeList("v", 3).iterator();
+        for (int i = 0; i < ROWS; i++) {
+            assertTrue(it.hasNext());
+            assertEquals("name" + i, it.next());
+        }
+        assertFalse(it.hasNext());
+        assertEquals((ROWS + 2) / 3, pagesRead());
+    }
+
+    /**
+     * Verifica che una query senza risultati produca una lista vuota.
+     */
+    @Test
+    public void emptyResultShouldGiveEmptyList() {
+        PagedQueryList<String> list = makeList("none", 4);
+        assertEquals(0, list.size());
+        assertFalse(list.iterator().hasNext());
+    }
+
+    /**
+     * Verifica che get() sollevi un'eccezione per indici non validi.
+     */
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getShouldThrowIfIndexIsOutOfBounds() {
+        makeList("v", 4).get(ROWS);
+    }
+
+    /**
+     * Verifica che due liste con la stessa query e gli stessi parametri
+     * siano uguali, indipendentemente dalla dimensione delle pagine, e che
+     * il confronto non acceda al database.
+     */
+    @Test
+    public void listsWithSameQueryShouldBeEqual() {
+        assertEquals(makeList("v", 4), makeList("v", 3));
+        assertEquals(makeList("v", 4).hashCode(),
+                makeList("v", 3).hashCode());
+        assertFalse(makeList("v", 4).equals(makeList("none", 4)));
+        assertNull(queries.get(COUNT));
+        assertNull(queries.get(PAGE));
+    }
+
+    /**
+     * Verifica che liste create prima e dopo una sostituzione dei dati non
+     * siano uguali.
+     */
+    @Test
+    public void listsShouldDifferAfterDataChange() {
+        PagedQueryList<String> before = makeList("v", 4);
+        sh.notifyDataChanged();
+        assertFalse(before.equals(makeList("v", 4)));
+    }
+
+    /**
+     * Verifica che dopo una sostituzione dei dati la lista ne rilegga
+     * dimensione ed elementi, invece di sollevare un'eccezione per le
+     * pagine non ancora lette.
+     */
+    @Test
+    public void listShouldFollowDataChange() {
+        PagedQueryList<String> list = makeList("v", 4);
+        assertEquals(ROWS, list.size());
+        assertEquals("name0", list.get(0));
+
+        deleteContact("name0");
+        deleteContact("name1");
+        sh.notifyDataChanged();
+        assertEquals(ROWS - 2, list.size());
+        assertEquals("name2", list.get(0));
+        assertEquals("name9", list.get(ROWS - 3));
+    }
+
+    /**
+     * Verifica che, se le righe vengono rimosse prima che la sostituzione
+     * sia segnalata, la dimensione venga riletta quando una pagina non
+     * contiene l'elemento richiesto.
+     */
+    @Test
+    public void missingRowsShouldRefreshSize() {
+        PagedQueryList<String> list = makeList("v", 4);
+        assertEquals(ROWS, list.size());
+
+        deleteContact("name0");
+        assertEquals("name9", list.get(ROWS - 2));
+        try {
+            list.get(ROWS - 1);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            assertEquals(ROWS - 1, list.size());
+        }
+    }
+
+    private void deleteContact(String name) {
+        sh.getWritableDatabase().execSQL("DELETE FROM " +
+                SerleenaDatabase.TABLE_CONTACTS + " WHERE contact_name = ?",
+                new Object[] { name });
+    }
+
+    /**
+     * Verifica che il costruttore sollevi un'eccezione se la dimensione
+     * delle pagine non è positiva.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void ctorShouldThrowIfPageSizeIsIllegal() {
+        makeList("v", 0);
+    }
+
+    @Before
+    public void setup() {
+        sh = new SerleenaDatabase(
+                RuntimeEnvironment.application, null, null, 1);
+        queries = new HashMap<String, Integer>();
+        statements = new SerleenaSQLiteStatements(sh) {
+            @Override
+            public Cursor query(String sql, String... args) {
+                Integer count = queries.get(sql);
+                queries.put(sql, (count != null) ? count + 1 : 1);
+                return super.query(sql, args);
+            }
+        };
+        for (int i = 0; i < ROWS; i++)
+            statements.executeInsert(INSERT, "name" + i, "v");
+    }
+}
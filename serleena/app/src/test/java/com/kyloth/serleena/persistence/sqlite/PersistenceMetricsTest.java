@@ -0,0 +1,145 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: PersistenceMetricsTest.java
+ * Package: com.kyloth.serleena.persistence.sqlite
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ */
+
+package com.kyloth.serleena.persistence.sqlite;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test di unità per la classe PersistenceMetrics.
+ *
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+public class PersistenceMetricsTest {
+
+    private PersistenceMetrics metrics;
+
+    @Before
+    public void setUp() {
+        metrics = new PersistenceMetrics();
+    }
+
+    /**
+     * Verifica che da disattivata la raccolta non registri alcuna chiamata.
+     */
+    @Test
+    public void disabledMetricsShouldRecordNothing() {
+        PersistenceMetrics.Call call = metrics.begin();
+        assertNull(call);
+        metrics.count(10, 100);
+        metrics.end(call, "foo");
+        assertNull(metrics.getStats("foo"));
+    }
+
+    /**
+     * Verifica che righe e caratteri conteggiati durante una chiamata le
+     * vengano attribuiti, anche quando la chiamata ne contiene un'altra.
+     */
+    @Test
+    public void countsShouldBeAttributedToEnclosingCalls() {
+        metrics.setEnabled(true);
+        PersistenceMetrics.Call outer = metrics.begin();
+        metrics.count(1, 10);
+        PersistenceMetrics.Call inner = metrics.begin();
+        metrics.count(2, 20);
+        metrics.end(inner, "inner");
+        metrics.end(outer, "outer");
+
+        assertEquals(2, metrics.getStats("inner").rows());
+        assertEquals(20, metrics.getStats("inner").textChars());
+        assertEquals(3, metrics.getStats("outer").rows());
+        assertEquals(30, metrics.getStats("outer").textChars());
+    }
+
+    /**
+     * Verifica che ogni chiamata venga contata in un intervallo
+     * dell'istogramma.
+     */
+    @Test
+    public void callsShouldFillHistogram() {
+        metrics.setEnabled(true);
+        for (int i = 0; i < 5; i++)
+            metrics.end(metrics.begin(), "foo");
+
+        PersistenceMetrics.MethodStats stats = metrics.getStats("foo");
+        assertEquals(5, stats.count());
+        long total = 0;
+        for (long bucket : stats.histogram())
+            total += bucket;
+        assertEquals(5, total);
+        assertTrue(stats.percentileMicros(50) <= stats.percentileMicros(99));
+        assertTrue(stats.maxMicros() < stats.percentileMicros(100));
+    }
+
+    /**
+     * Verifica che le chiamate oltre la soglia compaiano nel resoconto, e
+     * che reset() scarti le misure.
+     */
+    @Test
+    public void slowCallsShouldAppearInReport() {
+        metrics.setEnabled(true);
+        metrics.setSlowThresholdMillis(0);
+        for (int i = 0; i < PersistenceMetrics.SLOW_SAMPLES + 1; i++)
+            metrics.end(metrics.begin(), "slowMethod");
+
+        String report = metrics.report();
+        assertTrue(report.contains("slowMethod: count=33"));
+        assertTrue(report.contains("33 total"));
+
+        metrics.reset();
+        assertNull(metrics.getStats("slowMethod"));
+        assertTrue(metrics.report().contains("0 total"));
+    }
+
+    /**
+     * Verifica che una soglia negativa venga rifiutata.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeThresholdShouldThrow() {
+        metrics.setSlowThresholdMillis(-1);
+    }
+}
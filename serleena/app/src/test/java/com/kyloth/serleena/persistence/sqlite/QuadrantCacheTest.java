@@ -0,0 +1,162 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: QuadrantCacheTest.java
+ * Package: com.kyloth.serleena.persistence.sqlite
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ */
+
+package com.kyloth.serleena.persistence.sqlite;
+
+import android.graphics.Bitmap;
+
+import com.kyloth.serleena.BuildConfig;
+import com.kyloth.serleena.common.GeoPoint;
+import com.kyloth.serleena.common.IQuadrant;
+import com.kyloth.serleena.common.Quadrant;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.UUID;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Contiene i test di unità per la classe QuadrantCache.
+ *
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, emulateSdk = 19)
+public class QuadrantCacheTest {
+
+    private UUID experience;
+    private int quadrantBytes;
+
+    private QuadrantCache.Key key(double nwLat) {
+        return new QuadrantCache.Key(experience,
+                new GeoPoint(nwLat, 0), new GeoPoint(nwLat - 1, 1));
+    }
+
+    private static IQuadrant quadrant(double nwLat) {
+        return new Quadrant(new GeoPoint(nwLat, 0), new GeoPoint(nwLat - 1, 1),
+                Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888));
+    }
+
+    /**
+     * Verifica che le chiavi con stessa Esperienza e stesso riquadro siano
+     * uguali, e che differiscano altrimenti.
+     */
+    @Test
+    public void keysShouldBeEqualByExperienceAndBounds() {
+        assertEquals(key(5), key(5));
+        assertEquals(key(5).hashCode(), key(5).hashCode());
+        assertFalse(key(5).equals(key(6)));
+        assertFalse(key(5).equals(new QuadrantCache.Key(UUID.randomUUID(),
+                new GeoPoint(5, 0), new GeoPoint(4, 1))));
+    }
+
+    /**
+     * Verifica che la cache conteggi successi e fallimenti.
+     */
+    @Test
+    public void cacheShouldCountHitsAndMisses() {
+        QuadrantCache cache = new QuadrantCache(quadrantBytes * 4);
+        IQuadrant q = quadrant(5);
+        assertNull(cache.get(key(5)));
+        cache.put(key(5), q);
+        assertTrue(cache.get(key(5)) == q);
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+        assertEquals(quadrantBytes, cache.size());
+    }
+
+    /**
+     * Verifica che, superato il limite in byte, venga scartato il quadrante
+     * usato meno di recente.
+     */
+    @Test
+    public void cacheShouldEvictLeastRecentlyUsed() {
+        QuadrantCache cache = new QuadrantCache(quadrantBytes * 2);
+        cache.put(key(5), quadrant(5));
+        cache.put(key(6), quadrant(6));
+        cache.get(key(5));
+        cache.put(key(7), quadrant(7));
+
+        assertNull(cache.get(key(6)));
+        assertTrue(cache.get(key(5)) != null);
+        assertTrue(cache.get(key(7)) != null);
+        assertEquals(1, cache.evictionCount());
+        assertTrue(cache.size() <= cache.maxSize());
+    }
+
+    /**
+     * Verifica che clear() rimuova tutti i quadranti.
+     */
+    @Test
+    public void clearShouldRemoveAllQuadrants() {
+        QuadrantCache cache = new QuadrantCache(quadrantBytes * 4);
+        cache.put(key(5), quadrant(5));
+        cache.put(key(6), quadrant(6));
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNull(cache.get(key(5)));
+        assertNull(cache.get(key(6)));
+    }
+
+    /**
+     * Verifica che il costruttore sollevi un'eccezione se la dimensione
+     * massima non è positiva.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void ctorShouldThrowIfSizeIsNotPositive() {
+        new QuadrantCache(0);
+    }
+
+    @Before
+    public void setup() {
+        experience = UUID.randomUUID();
+        quadrantBytes = Math.max(1, quadrant(5).getRaster().getByteCount());
+    }
+}
@@ -0,0 +1,171 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: RasterPageInputStreamTest.java
+ * Package: com.kyloth.serleena.persistence.sqlite
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ */
+
+package com.kyloth.serleena.persistence.sqlite;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.kyloth.serleena.BuildConfig;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Contiene i test di unità per la classe RasterPageInputStream.
+ *
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, emulateSdk = 19)
+public class RasterPageInputStreamTest {
+
+    private SQLiteDatabase db;
+    private SerleenaSQLiteStatements statements;
+
+    /**
+     * Inserisce nel database un raster suddiviso nelle pagine specificate.
+     */
+    private long insertRaster(byte[]... pages) {
+        ContentValues values = new ContentValues();
+        values.put("raster_experience",
+                TestFixtures.EXPERIENCES_FIXTURE_EXPERIENCE_1_UUID.toString());
+        values.put("raster_nw_corner_latitude", 5);
+        values.put("raster_nw_corner_longitude", 0);
+        values.put("raster_se_corner_latitude", 0);
+        values.put("raster_se_corner_longitude", 5);
+        long rasterId =
+                db.insertOrThrow(SerleenaDatabase.TABLE_RASTERS, null, values);
+
+        for (int i = 0; i < pages.length; i++) {
+            values = new ContentValues();
+            values.put("page_raster", rasterId);
+            values.put("page_num", i);
+            values.put("page_data", pages[i]);
+            db.insertOrThrow(SerleenaDatabase.TABLE_RASTER_PAGES, null,
+                    values);
+        }
+        return rasterId;
+    }
+
+    private static byte[] bytes(int length, int seed) {
+        byte[] result = new byte[length];
+        for (int i = 0; i < length; i++)
+            result[i] = (byte) (seed + i);
+        return result;
+    }
+
+    /**
+     * Verifica che la lettura a blocchi restituisca il contenuto delle
+     * pagine concatenate nell'ordine del loro numero.
+     */
+    @Test
+    public void bulkReadShouldConcatenatePages() {
+        byte[] first = bytes(100, 0);
+        byte[] second = bytes(37, 100);
+        byte[] third = bytes(64, 137);
+        long id = insertRaster(first, second, third);
+
+        RasterPageInputStream stream = new RasterPageInputStream(statements, id);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[30];
+        int read;
+        while ((read = stream.read(buffer, 0, buffer.length)) != -1)
+            out.write(buffer, 0, read);
+
+        assertTrue(Arrays.equals(bytes(201, 0), out.toByteArray()));
+    }
+
+    /**
+     * Verifica che la lettura byte per byte restituisca valori senza segno
+     * e termini con -1.
+     */
+    @Test
+    public void singleByteReadShouldReturnUnsignedValues() {
+        long id = insertRaster(new byte[] { (byte) 0xFF }, new byte[] { 1 });
+
+        RasterPageInputStream stream = new RasterPageInputStream(statements, id);
+        assertEquals(0xFF, stream.read());
+        assertEquals(1, stream.read());
+        assertEquals(-1, stream.read());
+        assertEquals(-1, stream.read());
+    }
+
+    /**
+     * Verifica che un raster senza pagine produca un flusso vuoto.
+     */
+    @Test
+    public void rasterWithoutPagesShouldBeEmpty() {
+        long id = insertRaster();
+        RasterPageInputStream stream = new RasterPageInputStream(statements, id);
+        assertEquals(-1, stream.read(new byte[10], 0, 10));
+    }
+
+    /**
+     * Verifica che il costruttore sollevi un'eccezione se le istruzioni SQL
+     * sono null.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void ctorShouldThrowIfStatementsAreNull() {
+        new RasterPageInputStream(null, 1);
+    }
+
+    @Before
+    public void setup() {
+        SerleenaDatabase sh = new SerleenaDatabase(
+                RuntimeEnvironment.application, null, null, 1);
+        db = sh.getWritableDatabase();
+        statements = new SerleenaSQLiteStatements(sh);
+        db.insertOrThrow(SerleenaDatabase.TABLE_EXPERIENCES, null,
+                TestFixtures.pack(TestFixtures.EXPERIENCES_FIXTURE_EXPERIENCE_1));
+    }
+}
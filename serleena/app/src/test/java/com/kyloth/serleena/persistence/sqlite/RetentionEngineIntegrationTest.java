@@ -0,0 +1,303 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: RetentionEngineIntegrationTest.java
+ * Package: com.kyloth.serleena.persistence.sqlite
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ * 1.0.1    Filippo Sestini  Test delle statistiche sui Tracciamenti
+ *                                          archiviati.
+ */
+
+package com.kyloth.serleena.persistence.sqlite;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.kyloth.serleena.BuildConfig;
+import com.kyloth.serleena.common.CheckpointReachedTelemetryEvent;
+import com.kyloth.serleena.common.TelemetryEvent;
+import com.kyloth.serleena.persistence.ITelemetryStorage;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.GregorianCalendar;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.UUID;
+
+import static com.kyloth.serleena.persistence.sqlite.SerleenaDatabaseTestUtils.makeTrack;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Test di integrazione tra la classe RetentionEngine e il database SQLite
+ * dell'applicazione.
+ *
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, emulateSdk = 19)
+public class RetentionEngineIntegrationTest {
+
+    private static final long DAY = 24 * 60 * 60;
+
+    private SerleenaDatabase sh;
+    private SQLiteDatabase db;
+    private SerleenaSQLiteDataSource sds;
+    private SQLiteDAOTrack track;
+
+    @Before
+    public void setup() {
+        sh = new SerleenaDatabase(RuntimeEnvironment.application, null, null,
+                1);
+        db = sh.getWritableDatabase();
+        sds = new SerleenaSQLiteDataSource(sh);
+        UUID trackUuid = makeTrack(db);
+        track = new SQLiteDAOTrack(trackUuid, "track", sds);
+    }
+
+    /**
+     * Verifica che il costruttore di RetentionPolicy sollevi un'eccezione
+     * IllegalArgumentException se non viene conservato alcun Tracciamento
+     * migliore.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void policyShouldThrowIfNoBestIsKept() {
+        new RetentionPolicy(0, 5, true, 50);
+    }
+
+    /**
+     * Verifica che il costruttore sollevi un'eccezione
+     * IllegalArgumentException se vengono passati parametri null.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void ctorShouldThrowIfArgumentIsNull() {
+        new RetentionEngine(sh, null);
+    }
+
+    /**
+     * Verifica che vengano cancellate le sole previsioni dei giorni
+     * precedenti a quello corrente.
+     */
+    @Test
+    public void passShouldDropPastForecasts() {
+        long now = new GregorianCalendar(2015, 5, 10, 15, 30)
+                .getTimeInMillis();
+        long today = RetentionEngine.startOfDay(now);
+        makeForecast(today - 2 * DAY);
+        makeForecast(today - DAY);
+        makeForecast(today);
+        makeForecast(today + DAY);
+
+        RetentionEngine engine = new RetentionEngine(sh,
+                new RetentionPolicy(1, 0, true, 50));
+        assertEquals(2, engine.runPass(now));
+
+        Cursor c = db.rawQuery("SELECT weather_date FROM " +
+                SerleenaDatabase.TABLE_WEATHER_FORECASTS, null);
+        assertEquals(2, c.getCount());
+        while (c.moveToNext())
+            assertTrue(c.getLong(0) >= today);
+        c.close();
+    }
+
+    /**
+     * Verifica che startOfDay() restituisca la mezzanotte GMT del giorno.
+     */
+    @Test
+    public void startOfDayShouldReturnGMTMidnight() {
+        GregorianCalendar c =
+                new GregorianCalendar(TimeZone.getTimeZone("GMT"));
+        c.clear();
+        c.set(2015, 5, 10);
+        long midnight = c.getTimeInMillis() / 1000;
+        assertEquals(midnight, RetentionEngine.startOfDay(
+                c.getTimeInMillis() + 23 * 60 * 60 * 1000L));
+        assertEquals(midnight, RetentionEngine.startOfDay(
+                c.getTimeInMillis()));
+    }
+
+    /**
+     * Verifica che vengano archiviati i Tracciamenti che non sono né tra i
+     * più recenti né tra i migliori, e che questi restino disponibili per
+     * l'invio al servizio remoto.
+     */
+    @Test
+    public void passShouldArchiveExcessTelemetries() {
+        long[] durations = { 100, 600, 500, 400, 300, 200 };
+        for (long duration : durations)
+            makeTelemetry(duration);
+        long bestId = telemetryIds().get(0);
+
+        RetentionEngine engine = new RetentionEngine(sh,
+                new RetentionPolicy(1, 2, false, 50));
+        assertEquals(3, engine.runPass());
+        assertEquals(0, engine.runPass());
+
+        ArrayList<Long> left = telemetryIds();
+        assertEquals(3, left.size());
+        assertEquals(bestId, (long) left.get(0));
+        assertEquals(bestId,
+                ((SQLiteDAOTelemetry) track.getBestTelemetry()).id());
+
+        int count = 0;
+        for (ITelemetryStorage t : track.getTelemetries())
+            count++;
+        assertEquals(3, count);
+
+        ArrayList<Long> uploaded = new ArrayList<Long>();
+        for (ITelemetryStorage t : track.getTelemetries(false)) {
+            long[] timestamps = t.getCheckpointTimestamps();
+            uploaded.add(timestamps[1] - timestamps[0]);
+        }
+        assertEquals(durations.length, uploaded.size());
+        for (long duration : durations)
+            assertTrue(uploaded.contains(duration));
+    }
+
+    /**
+     * Verifica che durate, statistiche e tempi parziali dei Tracciamenti di
+     * un Percorso non cambino in seguito all'archiviazione.
+     */
+    @Test
+    public void statisticsShouldIncludeArchivedTelemetries() {
+        long[] durations = { 100, 600, 500, 400, 300, 200 };
+        for (long duration : durations)
+            makeTelemetry(duration);
+        Map<Integer, Integer> before = sds.getTelemetryDurations(track);
+        TrackStatistics statistics = sds.getTrackStatistics(track);
+        long[] splits = sds.getBestSplits(track);
+
+        RetentionEngine engine = new RetentionEngine(sh,
+                new RetentionPolicy(1, 2, false, 50));
+        assertEquals(3, engine.runPass());
+
+        assertEquals(before, sds.getTelemetryDurations(track));
+        TrackStatistics archived = sds.getTrackStatistics(track);
+        assertEquals(6, archived.count());
+        assertEquals(statistics.bestDuration(), archived.bestDuration());
+        assertEquals(350.0, archived.averageDuration(), 0.001);
+        assertArrayEquals(splits, sds.getBestSplits(track));
+    }
+
+    /**
+     * Verifica che ogni passo elabori al più il numero di righe previsto
+     * dalla politica.
+     */
+    @Test
+    public void passesShouldBeBounded() {
+        for (int i = 1; i <= 6; i++)
+            makeTelemetry(i * 100);
+
+        RetentionEngine engine = new RetentionEngine(sh,
+                new RetentionPolicy(1, 0, false, 2));
+        assertEquals(2, engine.runPass());
+        assertEquals(2, engine.runPass());
+        assertEquals(1, engine.runPass());
+        assertEquals(0, engine.runPass());
+        assertEquals(1, telemetryIds().size());
+    }
+
+    /**
+     * Verifica che i Tracciamenti "fantasma", con ID negativo, non vengano
+     * archiviati.
+     */
+    @Test
+    public void passShouldIgnoreGhostTelemetries() {
+        for (int i = 1; i <= 3; i++) {
+            ContentValues values = new ContentValues();
+            values.put("telem_id", -i);
+            values.put("telem_track", track.getUUID().toString());
+            db.insertOrThrow(SerleenaDatabase.TABLE_TELEMETRIES, null, values);
+        }
+
+        RetentionEngine engine = new RetentionEngine(sh,
+                new RetentionPolicy(1, 0, false, 50));
+        assertEquals(0, engine.runPass());
+        Cursor c = db.rawQuery("SELECT * FROM " +
+                SerleenaDatabase.TABLE_TELEMETRIES, null);
+        assertEquals(3, c.getCount());
+        c.close();
+    }
+
+    /*
+     * Util
+     */
+
+    private void makeTelemetry(long duration) {
+        ArrayList<TelemetryEvent> events = new ArrayList<TelemetryEvent>();
+        events.add(new CheckpointReachedTelemetryEvent(1000, 1));
+        events.add(new CheckpointReachedTelemetryEvent(1000 + duration, 2));
+        track.createTelemetry(events);
+    }
+
+    private ArrayList<Long> telemetryIds() {
+        ArrayList<Long> ids = new ArrayList<Long>();
+        Cursor c = db.rawQuery("SELECT telem_id FROM " +
+                SerleenaDatabase.TABLE_TELEMETRIES + " ORDER BY telem_id",
+                null);
+        while (c.moveToNext())
+            ids.add(c.getLong(0));
+        c.close();
+        return ids;
+    }
+
+    private void makeForecast(long date) {
+        ContentValues values = new ContentValues();
+        values.put("weather_condition_morning", 0);
+        values.put("weather_temperature_morning", 1);
+        values.put("weather_condition_afternoon", 0);
+        values.put("weather_temperature_afternoon", 1);
+        values.put("weather_condition_night", 0);
+        values.put("weather_temperature_night", 1);
+        values.put("weather_date", date);
+        values.put("weather_nw_corner_latitude", 1);
+        values.put("weather_nw_corner_longitude", 1);
+        values.put("weather_se_corner_latitude", 1);
+        values.put("weather_se_corner_longitude", 1);
+        db.insertOrThrow(SerleenaDatabase.TABLE_WEATHER_FORECASTS, null,
+                values);
+    }
+}
@@ -36,6 +36,7 @@
  * History:
  * Version  Programmer       Changes
  * 1.0      Gabriele Pozzan  Creazione file, codice e javadoc
+ * 1.0.1    Filippo Sestini  Test della rappresentazione compatta
  */
 
 package com.kyloth.serleena.persistence.sqlite;
@@ -52,7 +53,9 @@ import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
+import com.kyloth.serleena.common.CheckpointReachedTelemetryEvent;
 import com.kyloth.serleena.common.TelemetryEvent;
+import com.kyloth.serleena.persistence.ITelemetryStorage;
 
 import android.database.sqlite.SQLiteDatabase;
 
@@ -117,4 +120,27 @@ public class SQLiteDAOTelemetryTest {
         assertTrue(!t1.equals(new Object()));
     }
 
+    /**
+     * Verifica che un oggetto creato dai tempi dei checkpoint li restituisca
+     * e ne ricavi gli eventi, saltando i checkpoint senza evento.
+     */
+    @Test
+    public void timestampsCtorShouldExposeTimestampsAndEvents() {
+        long[] timestamps = { 10, ITelemetryStorage.NO_TIMESTAMP, 30 };
+        SQLiteDAOTelemetry daoTel = new SQLiteDAOTelemetry(5, timestamps);
+        assertTrue(daoTel.getCheckpointTimestamps() == timestamps);
+
+        List<TelemetryEvent> events = new ArrayList<>();
+        for (TelemetryEvent e : daoTel.getEvents())
+            events.add(e);
+        assertEquals(Arrays.asList(
+                new CheckpointReachedTelemetryEvent(10, 1),
+                new CheckpointReachedTelemetryEvent(30, 3)), events);
+
+        assertTrue(daoTel.equals(new SQLiteDAOTelemetry(5, new long[] {
+                10, ITelemetryStorage.NO_TIMESTAMP, 30 })));
+        assertTrue(!daoTel.equals(new SQLiteDAOTelemetry(5, new long[] {
+                10, 20, 30 })));
+    }
+
 }
@@ -144,6 +144,34 @@ public class SQLiteDAOTrackTest {
         assertTrue(cp3.equals(returnList.get(2)));
     }
 
+    /**
+     * Verifica che i Checkpoint di un Percorso creato senza di essi vengano
+     * richiesti alla sorgente di dati solo al primo accesso, e una sola
+     * volta.
+     */
+    @Test
+    public void checkpointsShouldBeLoadedLazilyOnce() {
+        DirectAccessList<Checkpoint> cpList = new ListAdapter<Checkpoint>(
+                Arrays.asList(new Checkpoint(1, 1), new Checkpoint(2, 2)));
+        SQLiteDAOTrack daoTrack = new SQLiteDAOTrack(
+                TestFixtures.EXPERIENCES_FIXTURE_EXPERIENCE_1_TRACK_1_UUID, "", serleenaSQLDS);
+        when(serleenaSQLDS.getCheckpoints(daoTrack)).thenReturn(cpList);
+
+        verify(serleenaSQLDS, never()).getCheckpoints(any(SQLiteDAOTrack.class));
+        assertTrue(daoTrack.getCheckpoints() == cpList);
+        assertTrue(daoTrack.getCheckpoints() == cpList);
+        verify(serleenaSQLDS, times(1)).getCheckpoints(daoTrack);
+    }
+
+    /**
+     * Verifica che il costruttore senza Checkpoint sollevi un'eccezione al
+     * passaggio di parametri null.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void lazyCtorShouldThrowWhenNullDataSource() {
+        new SQLiteDAOTrack(TestFixtures.EXPERIENCES_FIXTURE_EXPERIENCE_1_TRACK_1_UUID, "", null);
+    }
+
     /**
      * Verifica che il metodo createTelemetry chiami correttamente
      * il metodo createTelemetry di SerleenaSQLiteDataSource fornendo
@@ -161,6 +189,32 @@ public class SQLiteDAOTrackTest {
         verify(serleenaSQLDS).createTelemetry(mock_list, daoTrack);
     }
 
+    /**
+     * Verifica che il metodo createTelemetries inoltri gli elenchi di eventi
+     * a SerleenaSQLiteDataSource insieme al DAOTrack stesso.
+     */
+    @Test
+    public void createTelemetriesShouldForwardCorrectParams() {
+        SQLiteDAOTrack daoTrack = new SQLiteDAOTrack(
+                emptyCheckpointList, TestFixtures.EXPERIENCES_FIXTURE_EXPERIENCE_1_TRACK_1_UUID, "", serleenaSQLDS);
+        List<Iterable<TelemetryEvent>> telemetries =
+                new ArrayList<Iterable<TelemetryEvent>>();
+        telemetries.add(new ArrayList<TelemetryEvent>());
+        daoTrack.createTelemetries(telemetries);
+        verify(serleenaSQLDS).createTelemetries(telemetries, daoTrack);
+    }
+
+    /**
+     * Verifica che il metodo createTelemetries sollevi un'eccezione se gli
+     * viene passato null.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void createTelemetriesShouldThrowWhenNullArgument() {
+        SQLiteDAOTrack daoTrack = new SQLiteDAOTrack(
+                emptyCheckpointList, TestFixtures.EXPERIENCES_FIXTURE_EXPERIENCE_1_TRACK_1_UUID, "", serleenaSQLDS);
+        daoTrack.createTelemetries(null);
+    }
+
     /**
      * Verifica che il metodo getTelemetries richieda correttamente a
      * SerleenaSQLiteDataSource la lista dei tracciamenti e la restituisca.
@@ -0,0 +1,162 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: SchemaMigrationTest.java
+ * Package: com.kyloth.serleena.persistence.sqlite
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ */
+
+package com.kyloth.serleena.persistence.sqlite;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import com.kyloth.serleena.BuildConfig;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+
+/**
+ * Contiene i test di unità per la classe SchemaMigration.
+ *
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, emulateSdk = 19)
+public class SchemaMigrationTest {
+
+    private SQLiteDatabase db;
+    private List<Integer> applied;
+
+    /**
+     * Crea un passo che registra la propria applicazione.
+     */
+    private SchemaMigration step(int version) {
+        return new SchemaMigration(version) {
+            @Override
+            public void apply(SQLiteDatabase db) {
+                applied.add(version());
+            }
+        };
+    }
+
+    @Before
+    public void setup() {
+        db = SQLiteDatabase.create(null);
+        applied = new ArrayList<Integer>();
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    /**
+     * Verifica che vengano applicati in ordine solo i passi compresi tra la
+     * versione su disco, esclusa, e quella richiesta.
+     */
+    @Test
+    public void migrateShouldApplyStepsInRangeInOrder() {
+        SchemaMigration[] steps = { step(2), step(3), step(4), step(5) };
+        SchemaMigration.migrate(db, steps, 2, 4);
+        assertEquals(Arrays.asList(3, 4), applied);
+    }
+
+    /**
+     * Verifica che non venga applicato alcun passo se il database è già
+     * alla versione richiesta.
+     */
+    @Test
+    public void migrateShouldDoNothingIfUpToDate() {
+        SchemaMigration[] steps = { step(2), step(3) };
+        SchemaMigration.migrate(db, steps, 3, 3);
+        assertEquals(0, applied.size());
+    }
+
+    /**
+     * Verifica che venga sollevata un'eccezione se manca il passo per una
+     * versione intermedia, senza applicare i passi successivi.
+     */
+    @Test
+    public void migrateShouldThrowIfStepIsMissing() {
+        SchemaMigration[] steps = { step(2), step(4) };
+        try {
+            SchemaMigration.migrate(db, steps, 1, 4);
+            throw new AssertionError("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertEquals(Arrays.asList(2), applied);
+        }
+    }
+
+    /**
+     * Verifica che venga sollevata un'eccezione se i passi non arrivano
+     * alla versione richiesta.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void migrateShouldThrowIfTargetIsUnreachable() {
+        SchemaMigration[] steps = { step(2), step(3) };
+        SchemaMigration.migrate(db, steps, 1, 4);
+    }
+
+    /**
+     * Verifica che venga sollevata un'eccezione se i passi non sono
+     * ordinati per versione.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void migrateShouldThrowIfStepsAreUnordered() {
+        SchemaMigration[] steps = { step(3), step(2) };
+        SchemaMigration.migrate(db, steps, 1, 3);
+    }
+
+    /**
+     * Verifica che il costruttore sollevi un'eccezione se la versione non
+     * è successiva alla prima.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void ctorShouldThrowIfVersionIsIllegal() {
+        step(1);
+    }
+}
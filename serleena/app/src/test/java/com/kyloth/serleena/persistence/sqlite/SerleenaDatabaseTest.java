@@ -44,9 +44,11 @@ import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
+import android.util.Base64;
 
 import com.kyloth.serleena.BuildConfig;
 import com.kyloth.serleena.common.GeoPoint;
+import com.kyloth.serleena.common.SearchResultType;
 
 import org.junit.After;
 import org.junit.Before;
@@ -57,8 +59,11 @@ import org.robolectric.RobolectricGradleTestRunner;
 import org.robolectric.RuntimeEnvironment;
 import org.robolectric.annotation.Config;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.UUID;
 
 import static com.kyloth.serleena.persistence.sqlite.SerleenaDatabaseTestUtils.makeExperience;
@@ -82,6 +87,72 @@ public class SerleenaDatabaseTest {
     ArrayList<String> nastyStrings;
     ArrayList<String> invalidStrings;
 
+    /**
+     * Schema della versione 1 del database.
+     */
+    static final String[] SCHEMA_V1 = {
+        "CREATE TABLE experiences(" +
+            "experience_uuid TEXT PRIMARY KEY NOT NULL, " +
+            "experience_name TEXT NOT NULL)",
+        "CREATE TABLE tracks(" +
+            "track_uuid TEXT PRIMARY KEY NOT NULL, " +
+            "track_name TEXT NOT NULL, " +
+            "track_experience TEXT NOT NULL, " +
+            "FOREIGN KEY(track_experience) REFERENCES experiences (experience_uuid) ON DELETE CASCADE)",
+        "CREATE TABLE telemetries(" +
+            "telem_id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+            "telem_track TEXT NOT NULL, " +
+            "FOREIGN KEY(telem_track) REFERENCES tracks(track_uuid) ON DELETE CASCADE)",
+        "CREATE TABLE telemetry_events_checkp(" +
+            "eventc_id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+            "eventc_timestamp INTEGER NOT NULL, " +
+            "eventc_value INTEGER NOT NULL, " +
+            "eventc_telem INTEGER NOT NULL, " +
+            "FOREIGN KEY(eventc_telem) REFERENCES telemetries(telem_id) ON DELETE CASCADE)",
+        "CREATE TABLE contacts(" +
+            "contact_id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+            "contact_name TEXT NOT NULL, " +
+            "contact_value TEXT NOT NULL, " +
+            "contact_nw_corner_latitude REAL NOT NULL, " +
+            "contact_nw_corner_longitude REAL NOT NULL, " +
+            "contact_se_corner_latitude REAL NOT NULL, " +
+            "contact_se_corner_longitude REAL NOT NULL)",
+        "CREATE TABLE weather_forecasts(" +
+            "weather_id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+            "weather_date INTEGER NOT NULL, " +
+            "weather_condition_morning INTEGER NOT NULL, " +
+            "weather_temperature_morning INTEGER NOT NULL, " +
+            "weather_condition_afternoon INTEGER NOT NULL, " +
+            "weather_temperature_afternoon INTEGER NOT NULL, " +
+            "weather_condition_night INTEGER NOT NULL, " +
+            "weather_temperature_night INTEGER NOT NULL, " +
+            "weather_nw_corner_latitude REAL NOT NULL, " +
+            "weather_nw_corner_longitude REAL NOT NULL, " +
+            "weather_se_corner_latitude REAL NOT NULL, " +
+            "weather_se_corner_longitude REAL NOT NULL)",
+        "CREATE TABLE user_points(" +
+            "userpoint_id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL," +
+            "userpoint_x REAL NOT NULL, " +
+            "userpoint_y REAL NOT NULL, " +
+            "userpoint_experience TEXT NOT NULL, " +
+            "FOREIGN KEY(userpoint_experience) REFERENCES experiences(experience_uuid) ON DELETE CASCADE)",
+        "CREATE TABLE checkpoints (" +
+            "checkpoint_id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+            "checkpoint_num INTEGER NOT NULL, " +
+            "checkpoint_latitude REAL NOT NULL, " +
+            "checkpoint_longitude REAL NOT NULL, " +
+            "checkpoint_track TEXT NOT NULL, " +
+            "FOREIGN KEY(checkpoint_track) REFERENCES tracks(track_uuid) ON DELETE CASCADE)",
+        "CREATE TABLE rasters (" +
+            "raster_experience TEXT NOT NULL, " +
+            "raster_nw_corner_latitude REAL NOT NULL, " +
+            "raster_nw_corner_longitude REAL NOT NULL, " +
+            "raster_se_corner_latitude REAL NOT NULL, " +
+            "raster_se_corner_longitude REAL NOT NULL, " +
+            "raster_base64 TEXT NOT NULL, " +
+            "FOREIGN KEY(raster_experience) REFERENCES experiences(experience_uuid) ON DELETE CASCADE)"
+    };
+
     @Test
     public void testGetReadableDatabase() throws Exception {
         db = sh.getReadableDatabase();
@@ -590,6 +661,300 @@ public class SerleenaDatabaseTest {
         assertEquals(1, query.getCount());
     }
 
+    @Test
+    public void shouldBePossibleToAddARasterPage() {
+        ContentValues values = TestFixtures.pack(TestFixtures.EXPERIENCES_FIXTURE_EXPERIENCE_1);
+        db.insertOrThrow(SerleenaDatabase.TABLE_EXPERIENCES, null, values);
+        values = TestFixtures.pack(TestFixtures.RASTER_FIXTURE);
+        db.insertOrThrow(SerleenaDatabase.TABLE_RASTERS, null, values);
+        values = TestFixtures.pack(TestFixtures.RASTER_PAGE_FIXTURE);
+        db.insertOrThrow(SerleenaDatabase.TABLE_RASTER_PAGES, null, values);
+
+        Cursor query = db.query(SerleenaDatabase.TABLE_RASTER_PAGES, null,
+                "page_raster = " + TestFixtures.raster_id, null, null, null,
+                null);
+        assertEquals(1, query.getCount());
+    }
+
+    @Test(expected = SQLException.class)
+    public void testNoDuplicateRasterPages() {
+        ContentValues values = TestFixtures.pack(TestFixtures.EXPERIENCES_FIXTURE_EXPERIENCE_1);
+        db.insertOrThrow(SerleenaDatabase.TABLE_EXPERIENCES, null, values);
+        values = TestFixtures.pack(TestFixtures.RASTER_FIXTURE);
+        db.insertOrThrow(SerleenaDatabase.TABLE_RASTERS, null, values);
+        values = TestFixtures.pack(TestFixtures.RASTER_PAGE_FIXTURE);
+        db.insertOrThrow(SerleenaDatabase.TABLE_RASTER_PAGES, null, values);
+        db.insertOrThrow(SerleenaDatabase.TABLE_RASTER_PAGES, null, values);
+    }
+
+    @Test(expected = SQLException.class)
+    public void testNoRasterPageWithoutRaster() {
+        ContentValues values = TestFixtures.pack(TestFixtures.RASTER_PAGE_FIXTURE);
+        db.insertOrThrow(SerleenaDatabase.TABLE_RASTER_PAGES, null, values);
+    }
+
+    @Test
+    public void testCascadeRasterPages() {
+        ContentValues values = TestFixtures.pack(TestFixtures.EXPERIENCES_FIXTURE_EXPERIENCE_1);
+        db.insertOrThrow(SerleenaDatabase.TABLE_EXPERIENCES, null, values);
+        values = TestFixtures.pack(TestFixtures.RASTER_FIXTURE);
+        db.insertOrThrow(SerleenaDatabase.TABLE_RASTERS, null, values);
+        values = TestFixtures.pack(TestFixtures.RASTER_PAGE_FIXTURE);
+        db.insertOrThrow(SerleenaDatabase.TABLE_RASTER_PAGES, null, values);
+        db.delete(SerleenaDatabase.TABLE_EXPERIENCES, null, null);
+
+        Cursor query = db.query(SerleenaDatabase.TABLE_RASTER_PAGES, null,
+                null, null, null, null, null);
+        assertEquals(0, query.getCount());
+    }
+
+    /*
+     * Upgrade
+     */
+
+    /**
+     * Crea un database con lo schema della versione 1, contenente
+     * un'Esperienza e un raster codificato in base64.
+     */
+    static void makeVersion1Database(String name) {
+        File path = RuntimeEnvironment.application.getDatabasePath(name);
+        path.getParentFile().mkdirs();
+        SQLiteDatabase old = SQLiteDatabase.openOrCreateDatabase(path, null);
+        for (String ddl : SCHEMA_V1)
+            old.execSQL(ddl);
+
+        old.insertOrThrow(SerleenaDatabase.TABLE_EXPERIENCES, null,
+                TestFixtures.pack(TestFixtures.EXPERIENCES_FIXTURE_EXPERIENCE_1));
+        ContentValues values = new ContentValues();
+        values.put("raster_experience",
+                TestFixtures.EXPERIENCES_FIXTURE_EXPERIENCE_1_UUID.toString());
+        values.put("raster_nw_corner_latitude", TestFixtures.raster_nw_corner_latitude);
+        values.put("raster_nw_corner_longitude", TestFixtures.raster_nw_corner_longitude);
+        values.put("raster_se_corner_latitude", TestFixtures.raster_se_corner_latitude);
+        values.put("raster_se_corner_longitude", TestFixtures.raster_se_corner_longitude);
+        values.put("raster_base64", TestFixtures.raster_base64);
+        old.insertOrThrow(SerleenaDatabase.TABLE_RASTERS, null, values);
+        old.setVersion(1);
+        old.close();
+    }
+
+    /**
+     * Restituisce il contenuto di un raster ricomponendone le pagine.
+     */
+    static byte[] readRasterPages(SQLiteDatabase db, long rasterId) {
+        Cursor query = db.query(SerleenaDatabase.TABLE_RASTER_PAGES,
+                new String[] { "page_data" }, "page_raster = " + rasterId,
+                null, null, null, "page_num");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        while (query.moveToNext()) {
+            byte[] page = query.getBlob(0);
+            assertTrue(page.length <= SerleenaDatabase.RASTER_PAGE_SIZE);
+            out.write(page, 0, page.length);
+        }
+        query.close();
+        return out.toByteArray();
+    }
+
+    /**
+     * Verifica che l'aggiornamento dalla versione 1 converta i raster
+     * memorizzati in base64 in dati binari, mantenendone il contenuto.
+     */
+    @Test
+    public void upgradeFromVersion1ShouldConvertRastersToBlob() {
+        makeVersion1Database("upgrade.db");
+        SerleenaDatabase upgraded = new SerleenaDatabase(
+                RuntimeEnvironment.application, "upgrade.db", null,
+                SerleenaDatabase.DATABASE_VERSION);
+        SQLiteDatabase upgradedDb = upgraded.getReadableDatabase();
+
+        Cursor query = upgradedDb.query(
+                SerleenaDatabase.TABLE_RASTERS, new String[] { "raster_id" },
+                null, null, null, null, null);
+        assertEquals(1, query.getCount());
+        query.moveToNext();
+        assertTrue(Arrays.equals(
+                Base64.decode(TestFixtures.raster_base64, Base64.DEFAULT),
+                readRasterPages(upgradedDb, query.getLong(0))));
+        query.close();
+        upgraded.close();
+    }
+
+    /**
+     * Verifica che l'aggiornamento dalla versione 2 suddivida in più pagine
+     * i raster più grandi di RASTER_PAGE_SIZE, mantenendone il contenuto.
+     */
+    @Test
+    public void upgradeFromVersion2ShouldSplitRastersInPages() {
+        makeVersion1Database("upgrade2.db");
+        SerleenaDatabase version2 = new SerleenaDatabase(
+                RuntimeEnvironment.application, "upgrade2.db", null, 2);
+        SQLiteDatabase version2Db = version2.getWritableDatabase();
+        byte[] data = new byte[SerleenaDatabase.RASTER_PAGE_SIZE * 2 + 10];
+        for (int i = 0; i < data.length; i++)
+            data[i] = (byte) (i * 31);
+        ContentValues values = new ContentValues();
+        values.put("raster_experience",
+                TestFixtures.EXPERIENCES_FIXTURE_EXPERIENCE_1_UUID.toString());
+        values.put("raster_nw_corner_latitude", 10);
+        values.put("raster_nw_corner_longitude", 10);
+        values.put("raster_se_corner_latitude", 5);
+        values.put("raster_se_corner_longitude", 15);
+        values.put("raster_data", data);
+        version2Db.insertOrThrow(SerleenaDatabase.TABLE_RASTERS, null, values);
+        version2.close();
+
+        SerleenaDatabase upgraded = new SerleenaDatabase(
+                RuntimeEnvironment.application, "upgrade2.db", null,
+                SerleenaDatabase.DATABASE_VERSION);
+        SQLiteDatabase upgradedDb = upgraded.getReadableDatabase();
+        Cursor query = upgradedDb.query(
+                SerleenaDatabase.TABLE_RASTERS, new String[] { "raster_id" },
+                "raster_nw_corner_latitude = 10", null, null, null, null);
+        assertEquals(1, query.getCount());
+        query.moveToNext();
+        long rasterId = query.getLong(0);
+        query.close();
+
+        Cursor pages = upgradedDb.query(SerleenaDatabase.TABLE_RASTER_PAGES,
+                null, "page_raster = " + rasterId, null, null, null, null);
+        assertEquals(3, pages.getCount());
+        pages.close();
+        assertTrue(Arrays.equals(data, readRasterPages(upgradedDb, rasterId)));
+        upgraded.close();
+    }
+
+    /**
+     * Verifica che l'aggiornamento crei gli indici secondari sulle chiavi
+     * esterne.
+     */
+    @Test
+    public void upgradeShouldCreateIndexes() {
+        makeVersion1Database("upgrade3.db");
+        SerleenaDatabase upgraded = new SerleenaDatabase(
+                RuntimeEnvironment.application, "upgrade3.db", null,
+                SerleenaDatabase.DATABASE_VERSION);
+        SQLiteDatabase upgradedDb = upgraded.getReadableDatabase();
+        String[] indexes = {
+                "idx_track_experience", "idx_telem_track", "idx_eventc_telem",
+                "idx_checkpoint_track", "idx_userpoint_experience",
+                "idx_raster_experience", "idx_weather_date", "idx_best_telem",
+                "idx_archive_track"
+        };
+        for (String index : indexes) {
+            Cursor query = upgradedDb.query("sqlite_master", null,
+                    "type = 'index' AND name = ?", new String[] { index },
+                    null, null, null);
+            assertEquals(index, 1, query.getCount());
+            query.close();
+        }
+        upgraded.close();
+    }
+
+    /**
+     * Verifica che l'aggiornamento dalla versione 1 conservi i Tracciamenti
+     * e i punti utente registrati localmente.
+     */
+    @Test
+    public void upgradeShouldPreserveLocalData() {
+        makeVersion1Database("upgrade4.db");
+        SerleenaDatabase version1 = new SerleenaDatabase(
+                RuntimeEnvironment.application, "upgrade4.db", null, 1);
+        SQLiteDatabase version1Db = version1.getWritableDatabase();
+        long telemId = makeTelemetry(version1Db);
+        ContentValues values = new ContentValues();
+        values.put("userpoint_x", 1.0);
+        values.put("userpoint_y", 2.0);
+        values.put("userpoint_experience",
+                TestFixtures.EXPERIENCES_FIXTURE_EXPERIENCE_1_UUID.toString());
+        version1Db.insertOrThrow(SerleenaDatabase.TABLE_USER_POINTS, null,
+                values);
+        version1.close();
+
+        SerleenaDatabase upgraded = new SerleenaDatabase(
+                RuntimeEnvironment.application, "upgrade4.db", null,
+                SerleenaDatabase.DATABASE_VERSION);
+        SQLiteDatabase upgradedDb = upgraded.getReadableDatabase();
+        Cursor telemetries = upgradedDb.query(
+                SerleenaDatabase.TABLE_TELEMETRIES, null,
+                "telem_id = " + telemId, null, null, null, null);
+        assertEquals(1, telemetries.getCount());
+        telemetries.close();
+        Cursor points = upgradedDb.query(SerleenaDatabase.TABLE_USER_POINTS,
+                null, null, null, null, null, null);
+        assertEquals(1, points.getCount());
+        points.close();
+        upgraded.close();
+    }
+
+    /**
+     * Verifica che l'aggiornamento alla versione corrente calcoli il
+     * Tracciamento migliore dei Percorsi già presenti nel database.
+     */
+    @Test
+    public void upgradeShouldBuildBestTelemetries() {
+        makeVersion1Database("upgrade5.db");
+        SerleenaDatabase version1 = new SerleenaDatabase(
+                RuntimeEnvironment.application, "upgrade5.db", null, 1);
+        SQLiteDatabase version1Db = version1.getWritableDatabase();
+        long telemId = makeTelemetry(version1Db);
+        for (int i = 1; i <= 2; i++) {
+            ContentValues values = new ContentValues();
+            values.put("eventc_timestamp", i * 100);
+            values.put("eventc_value", i);
+            values.put("eventc_telem", telemId);
+            version1Db.insertOrThrow(
+                    SerleenaDatabase.TABLE_TELEM_EVENTS_CHECKP, null, values);
+        }
+        version1.close();
+
+        SerleenaDatabase upgraded = new SerleenaDatabase(
+                RuntimeEnvironment.application, "upgrade5.db", null,
+                SerleenaDatabase.DATABASE_VERSION);
+        SQLiteDatabase upgradedDb = upgraded.getReadableDatabase();
+        Cursor best = upgradedDb.query(
+                SerleenaDatabase.TABLE_BEST_TELEMETRIES,
+                new String[] { "best_telem", "best_duration" }, null, null,
+                null, null, null);
+        assertEquals(1, best.getCount());
+        best.moveToFirst();
+        assertEquals(telemId, best.getLong(0));
+        assertEquals(100, best.getInt(1));
+        best.close();
+        upgraded.close();
+    }
+
+    /**
+     * Verifica che l'aggiornamento alla versione corrente costruisca
+     * l'indice di ricerca sui nomi già presenti nel database.
+     */
+    @Test
+    public void upgradeShouldBuildSearchIndex() {
+        makeVersion1Database("upgrade6.db");
+        SerleenaDatabase version1 = new SerleenaDatabase(
+                RuntimeEnvironment.application, "upgrade6.db", null, 1);
+        makeTrack(version1.getWritableDatabase());
+        version1.close();
+
+        SerleenaDatabase upgraded = new SerleenaDatabase(
+                RuntimeEnvironment.application, "upgrade6.db", null,
+                SerleenaDatabase.DATABASE_VERSION);
+        SQLiteDatabase upgradedDb = upgraded.getReadableDatabase();
+        Cursor entries = upgradedDb.rawQuery(
+                "SELECT entry_type, entry_length, length(entry_name) FROM " +
+                SerleenaDatabase.TABLE_SEARCH_INDEX + " JOIN " +
+                SerleenaDatabase.TABLE_SEARCH_ENTRIES +
+                " ON entry_id = docid WHERE " +
+                SerleenaDatabase.TABLE_SEARCH_INDEX + " MATCH ?",
+                new String[] { "experience*" });
+        assertEquals(1, entries.getCount());
+        entries.moveToFirst();
+        assertEquals(SearchResultType.Experience.ordinal(),
+                entries.getInt(0));
+        assertEquals(entries.getInt(2), entries.getInt(1));
+        entries.close();
+        upgraded.close();
+    }
+
     /*
      * Util
      */
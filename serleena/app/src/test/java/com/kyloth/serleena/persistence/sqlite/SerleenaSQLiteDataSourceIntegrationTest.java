@@ -36,11 +36,13 @@
  * History:
  * Version  Programmer   Changes
  * 1.0      Tobia Tesan  Creazione file
+ * 1.0.1    Filippo Sestini  Test della ricerca su più pagine.
  */
 package com.kyloth.serleena.persistence.sqlite;
 
 import android.app.Application;
 import android.content.ContentValues;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
@@ -48,10 +50,14 @@ import android.util.Base64;
 
 import com.kyloth.serleena.BuildConfig;
 import com.kyloth.serleena.TestDB;
+import com.kyloth.serleena.common.Checkpoint;
+import com.kyloth.serleena.common.CheckpointReachedTelemetryEvent;
+import com.kyloth.serleena.common.DirectAccessList;
 import com.kyloth.serleena.common.EmergencyContact;
 import com.kyloth.serleena.common.GeoPoint;
 import com.kyloth.serleena.common.IQuadrant;
 import com.kyloth.serleena.common.Region;
+import com.kyloth.serleena.common.SearchResult;
 import com.kyloth.serleena.common.TelemetryEvent;
 import com.kyloth.serleena.persistence.IExperienceStorage;
 import com.kyloth.serleena.persistence.ITelemetryStorage;
@@ -65,12 +71,21 @@ import org.robolectric.RuntimeEnvironment;
 import org.robolectric.annotation.Config;
 
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import static com.kyloth.serleena.persistence.sqlite.SerleenaDatabaseTestUtils.makeExperience;
 import static com.kyloth.serleena.persistence.sqlite.SerleenaDatabaseTestUtils.makeTrack;
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
 import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
 import static org.mockito.Mockito.mock;
 
 /**
@@ -85,6 +100,7 @@ import static org.mockito.Mockito.mock;
 public class SerleenaSQLiteDataSourceIntegrationTest {
 
     private SerleenaSQLiteDataSource sds;
+    private SerleenaDatabase sh;
     private SQLiteDatabase db;
     private Bitmap testBitmap;
     private String testBase64;
@@ -92,7 +108,7 @@ public class SerleenaSQLiteDataSourceIntegrationTest {
     @Before
     public void setup() throws URISyntaxException {
         Application app = RuntimeEnvironment.application;
-        SerleenaDatabase sh = new SerleenaDatabase(app, null, null, 1);
+        sh = new SerleenaDatabase(app, null, null, 1);
         db = sh.getWritableDatabase();
         sds = new SerleenaSQLiteDataSource(sh);
 
@@ -183,6 +199,43 @@ public class SerleenaSQLiteDataSourceIntegrationTest {
                         new Region(new GeoPoint(5, 5), new GeoPoint(0, 10))));
     }
 
+    /**
+     * Verifica che richieste successive dello stesso quadrante vengano
+     * soddisfatte dalla cache, senza decodificare nuovamente l'immagine.
+     */
+    @Test
+    public void repeatedQuadrantRequestsShouldHitCache()
+            throws NoSuchQuadrantException {
+        UUID expId = makeExperience(db);
+        SQLiteDAOExperience expp = new SQLiteDAOExperience("experience", expId, sds);
+        TestDB.quadrantQuery(db, 2, 0, 0, 2, testBase64, expId);
+
+        IQuadrant first = sds.getQuadrant(new GeoPoint(1, 1), expp);
+        IQuadrant second = sds.getQuadrant(new GeoPoint(0.5, 1.5), expp);
+        assertTrue(first == second);
+        assertEquals(1, sds.getQuadrantCache().missCount());
+        assertEquals(1, sds.getQuadrantCache().hitCount());
+    }
+
+    /**
+     * Verifica che la cache dei quadranti venga svuotata quando i dati del
+     * database vengono sostituiti.
+     */
+    @Test
+    public void quadrantCacheShouldBeClearedWhenDataChanges()
+            throws NoSuchQuadrantException {
+        UUID expId = makeExperience(db);
+        SQLiteDAOExperience expp = new SQLiteDAOExperience("experience", expId, sds);
+        TestDB.quadrantQuery(db, 2, 0, 0, 2, testBase64, expId);
+
+        IQuadrant first = sds.getQuadrant(new GeoPoint(1, 1), expp);
+        sh.notifyDataChanged();
+        IQuadrant second = sds.getQuadrant(new GeoPoint(1, 1), expp);
+        assertTrue(first != second);
+        assertEquals(2, sds.getQuadrantCache().missCount());
+        assertEquals(0, sds.getQuadrantCache().hitCount());
+    }
+
     /**
      * Controlla che sia possibile ottenere correttamente i Percorsi per
      * un'Esperienza
@@ -268,6 +321,57 @@ public class SerleenaSQLiteDataSourceIntegrationTest {
         assertTrue(track.getCheckpoints().size() == 2);
     }
 
+    private void insertCheckpoint(UUID track, int num, double lat, double lon) {
+        ContentValues values = new ContentValues();
+        values.put("checkpoint_latitude", lat);
+        values.put("checkpoint_longitude", lon);
+        values.put("checkpoint_num", num);
+        values.put("checkpoint_track", track.toString());
+        db.insertOrThrow(SerleenaDatabase.TABLE_CHECKPOINTS, null, values);
+    }
+
+    /**
+     * Verifica che getTracks, se richiesto, legga insieme i Checkpoint di
+     * tutti i Percorsi dell'Esperienza, ordinati per numero, e che i
+     * Percorsi letti senza Checkpoint li ottengano al primo accesso.
+     */
+    @Test
+    public void getTracksShouldLoadCheckpointsInBatchOrLazily() {
+        UUID expId = makeExperience(db);
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID empty = UUID.randomUUID();
+        for (UUID track : new UUID[] { first, second, empty }) {
+            ContentValues values = new ContentValues();
+            values.put("track_uuid", track.toString());
+            values.put("track_name", "track");
+            values.put("track_experience", expId.toString());
+            db.insertOrThrow(SerleenaDatabase.TABLE_TRACKS, null, values);
+        }
+        insertCheckpoint(first, 2, 2, 2);
+        insertCheckpoint(second, 1, 10, 10);
+        insertCheckpoint(first, 1, 1, 1);
+
+        SQLiteDAOExperience exp = new SQLiteDAOExperience("experience", expId, sds);
+        for (boolean batch : new boolean[] { true, false }) {
+            int count = 0;
+            for (SQLiteDAOTrack track : sds.getTracks(exp, batch)) {
+                DirectAccessList<Checkpoint> checkpoints = track.getCheckpoints();
+                if (track.getUUID().equals(first)) {
+                    assertEquals(2, checkpoints.size());
+                    assertEquals(new Checkpoint(1, 1), checkpoints.get(0));
+                    assertEquals(new Checkpoint(2, 2), checkpoints.get(1));
+                } else if (track.getUUID().equals(second)) {
+                    assertEquals(1, checkpoints.size());
+                    assertEquals(new Checkpoint(10, 10), checkpoints.get(0));
+                } else
+                    assertEquals(0, checkpoints.size());
+                count++;
+            }
+            assertEquals(3, count);
+        }
+    }
+
     /**
      * Controll che getTelemetries restituisca correttamente i Tracciamenti.
      */
@@ -330,6 +434,359 @@ public class SerleenaSQLiteDataSourceIntegrationTest {
         assertTrue(i == 3);
     }
 
+    private void insertEvent(long telemId, long timestamp, int value) {
+        ContentValues values = new ContentValues();
+        values.put("eventc_timestamp", timestamp);
+        values.put("eventc_value", value);
+        values.put("eventc_telem", telemId);
+        db.insertOrThrow(SerleenaDatabase.TABLE_TELEM_EVENTS_CHECKP, null, values);
+    }
+
+    /**
+     * Verifica che getTelemetries raggruppi gli eventi nei rispettivi
+     * Tracciamenti, mantenendone l'ordine di inserimento, e restituisca
+     * anche i Tracciamenti privi di eventi.
+     */
+    @Test
+    public void getTelemetriesShouldGroupEventsByTelemetry() {
+        UUID trackId = makeTrack(db);
+        ContentValues values = new ContentValues();
+        values.put("telem_track", trackId.toString());
+        long first = db.insertOrThrow(SerleenaDatabase.TABLE_TELEMETRIES, null, values);
+        long second = db.insertOrThrow(SerleenaDatabase.TABLE_TELEMETRIES, null, values);
+        long empty = db.insertOrThrow(SerleenaDatabase.TABLE_TELEMETRIES, null, values);
+        insertEvent(first, 100, 1);
+        insertEvent(second, 150, 1);
+        insertEvent(first, 200, 2);
+        insertEvent(second, 250, 2);
+        insertEvent(second, 350, 3);
+
+        SQLiteDAOExperience exp =
+                (SQLiteDAOExperience) sds.getExperiences().iterator().next();
+        SQLiteDAOTrack track = sds.getTracks(exp).iterator().next();
+
+        int count = 0;
+        for (SQLiteDAOTelemetry telem : sds.getTelemetries(track)) {
+            ArrayList<Long> timestamps = new ArrayList<Long>();
+            for (TelemetryEvent event : telem.getEvents())
+                timestamps.add(event.timestamp());
+
+            if (telem.id() == first)
+                assertEquals(Arrays.asList(100L, 200L), timestamps);
+            else if (telem.id() == second)
+                assertEquals(Arrays.asList(150L, 250L, 350L), timestamps);
+            else
+                assertEquals(empty, telem.id());
+            if (telem.id() == empty)
+                assertTrue(timestamps.isEmpty());
+            count++;
+        }
+        assertEquals(3, count);
+    }
+
+    /**
+     * Verifica che getTelemetries restituisca i tempi di ciascun
+     * Tracciamento indicizzati per numero di checkpoint.
+     */
+    @Test
+    public void getTelemetriesShouldExposeCheckpointTimestamps() {
+        UUID trackId = makeTrack(db);
+        ContentValues values = new ContentValues();
+        values.put("telem_track", trackId.toString());
+        long telemId = db.insertOrThrow(SerleenaDatabase.TABLE_TELEMETRIES, null, values);
+        insertEvent(telemId, 100, 1);
+        insertEvent(telemId, 300, 3);
+
+        SQLiteDAOExperience exp =
+                (SQLiteDAOExperience) sds.getExperiences().iterator().next();
+        SQLiteDAOTrack track = sds.getTracks(exp).iterator().next();
+        SQLiteDAOTelemetry telem = sds.getTelemetries(track).iterator().next();
+        assertTrue(Arrays.equals(
+                new long[] { 100, ITelemetryStorage.NO_TIMESTAMP, 300 },
+                telem.getCheckpointTimestamps()));
+    }
+
+    /**
+     * Verifica che getTelemetries escluda il Tracciamento "fantasma" se
+     * richiesto.
+     */
+    @Test
+    public void getTelemetriesShouldExcludeGhostIfRequested() {
+        UUID trackId = makeTrack(db);
+        ContentValues values = new ContentValues();
+        values.put("telem_id", -1);
+        values.put("telem_track", trackId.toString());
+        db.insertOrThrow(SerleenaDatabase.TABLE_TELEMETRIES, null, values);
+        insertEvent(-1, 100, 1);
+        values = new ContentValues();
+        values.put("telem_track", trackId.toString());
+        db.insertOrThrow(SerleenaDatabase.TABLE_TELEMETRIES, null, values);
+
+        SQLiteDAOExperience exp =
+                (SQLiteDAOExperience) sds.getExperiences().iterator().next();
+        SQLiteDAOTrack track = sds.getTracks(exp).iterator().next();
+
+        int withGhost = 0;
+        for (SQLiteDAOTelemetry telem : sds.getTelemetries(track, true))
+            withGhost++;
+        int withoutGhost = 0;
+        for (SQLiteDAOTelemetry telem : sds.getTelemetries(track, false)) {
+            assertTrue(telem.id() != -1);
+            withoutGhost++;
+        }
+        assertEquals(2, withGhost);
+        assertEquals(1, withoutGhost);
+    }
+
+    private int countRows(String table) {
+        Cursor c = db.query(table, null, null, null, null, null, null);
+        int count = c.getCount();
+        c.close();
+        return count;
+    }
+
+    /**
+     * Verifica che createTelemetries inserisca tutti i Tracciamenti forniti,
+     * ciascuno con i propri eventi.
+     */
+    @Test
+    public void createTelemetriesShouldInsertAllTelemetries() {
+        UUID trackId = makeTrack(db);
+        SQLiteDAOTrack track = new SQLiteDAOTrack(trackId, "track", sds);
+        List<Iterable<TelemetryEvent>> telemetries =
+                new ArrayList<Iterable<TelemetryEvent>>();
+        telemetries.add(Arrays.<TelemetryEvent>asList(
+                new CheckpointReachedTelemetryEvent(100, 1),
+                new CheckpointReachedTelemetryEvent(200, 2)));
+        telemetries.add(Arrays.<TelemetryEvent>asList(
+                new CheckpointReachedTelemetryEvent(150, 1)));
+
+        sds.createTelemetries(telemetries, track);
+
+        assertEquals(2, countRows(SerleenaDatabase.TABLE_TELEMETRIES));
+        assertEquals(3, countRows(SerleenaDatabase.TABLE_TELEM_EVENTS_CHECKP));
+        int events = 0;
+        for (SQLiteDAOTelemetry telem : sds.getTelemetries(track))
+            for (TelemetryEvent event : telem.getEvents())
+                events++;
+        assertEquals(3, events);
+    }
+
+    /**
+     * Verifica che, se un inserimento fallisce a metà, nessuno dei
+     * Tracciamenti venga aggiunto.
+     */
+    @Test
+    public void createTelemetriesShouldRollBackOnFailure() {
+        UUID trackId = makeTrack(db);
+        SQLiteDAOTrack track = new SQLiteDAOTrack(trackId, "track", sds);
+        List<Iterable<TelemetryEvent>> telemetries =
+                new ArrayList<Iterable<TelemetryEvent>>();
+        telemetries.add(Arrays.<TelemetryEvent>asList(
+                new CheckpointReachedTelemetryEvent(100, 1)));
+        telemetries.add(new Iterable<TelemetryEvent>() {
+            @Override
+            public Iterator<TelemetryEvent> iterator() {
+                throw new IllegalStateException();
+            }
+        });
+
+        try {
+            sds.createTelemetries(telemetries, track);
+            fail();
+        } catch (IllegalStateException e) { }
+
+        assertEquals(0, countRows(SerleenaDatabase.TABLE_TELEMETRIES));
+        assertEquals(0, countRows(SerleenaDatabase.TABLE_TELEM_EVENTS_CHECKP));
+    }
+
+    /**
+     * Verifica che createTelemetries aggiorni il Tracciamento migliore del
+     * Percorso solo con Tracciamenti di durata inferiore e completi.
+     */
+    @Test
+    public void createTelemetriesShouldUpdateBestTelemetry() {
+        UUID trackId = makeTrack(db);
+        SQLiteDAOTrack track = new SQLiteDAOTrack(trackId, "track", sds);
+        assertNull(sds.getBestTelemetry(track));
+
+        List<Iterable<TelemetryEvent>> telemetries =
+                new ArrayList<Iterable<TelemetryEvent>>();
+        telemetries.add(Arrays.<TelemetryEvent>asList(
+                new CheckpointReachedTelemetryEvent(100, 1),
+                new CheckpointReachedTelemetryEvent(400, 2)));
+        telemetries.add(Arrays.<TelemetryEvent>asList(
+                new CheckpointReachedTelemetryEvent(100, 1),
+                new CheckpointReachedTelemetryEvent(300, 2)));
+        sds.createTelemetries(telemetries, track);
+
+        SQLiteDAOTelemetry best = sds.getBestTelemetry(track);
+        assertTrue(Arrays.equals(new long[] { 100, 300 },
+                best.getCheckpointTimestamps()));
+        int bestId = best.id();
+
+        telemetries.clear();
+        telemetries.add(Arrays.<TelemetryEvent>asList(
+                new CheckpointReachedTelemetryEvent(100, 1),
+                new CheckpointReachedTelemetryEvent(250, 2)));
+        sds.createTelemetries(telemetries, track);
+        best = sds.getBestTelemetry(track);
+        assertTrue(best.id() != bestId);
+        assertTrue(Arrays.equals(new long[] { 100, 250 },
+                best.getCheckpointTimestamps()));
+        bestId = best.id();
+
+        telemetries.clear();
+        telemetries.add(Arrays.<TelemetryEvent>asList(
+                new CheckpointReachedTelemetryEvent(500, 2)));
+        telemetries.add(Arrays.<TelemetryEvent>asList(
+                new CheckpointReachedTelemetryEvent(100, 1),
+                new CheckpointReachedTelemetryEvent(900, 2)));
+        sds.createTelemetries(telemetries, track);
+        assertEquals(bestId, sds.getBestTelemetry(track).id());
+        assertEquals(1, countRows(SerleenaDatabase.TABLE_BEST_TELEMETRIES));
+    }
+
+    /**
+     * Verifica che rebuildBestTelemetries ricalcoli il Tracciamento migliore
+     * di ciascun Percorso a partire dagli eventi memorizzati.
+     */
+    @Test
+    public void rebuildBestTelemetriesShouldSelectShortestTelemetry() {
+        UUID trackId = makeTrack(db);
+        ContentValues values = new ContentValues();
+        values.put("telem_track", trackId.toString());
+        long slow = db.insertOrThrow(SerleenaDatabase.TABLE_TELEMETRIES, null,
+                values);
+        insertEvent(slow, 100, 1);
+        insertEvent(slow, 500, 2);
+        long fast = db.insertOrThrow(SerleenaDatabase.TABLE_TELEMETRIES, null,
+                values);
+        insertEvent(fast, 200, 1);
+        insertEvent(fast, 300, 2);
+        long partial = db.insertOrThrow(SerleenaDatabase.TABLE_TELEMETRIES,
+                null, values);
+        insertEvent(partial, 50, 2);
+
+        SerleenaDatabase.rebuildBestTelemetries(db);
+
+        SQLiteDAOTrack track = new SQLiteDAOTrack(trackId, "track", sds);
+        SQLiteDAOTelemetry best = sds.getBestTelemetry(track);
+        assertEquals(fast, best.id());
+        assertTrue(Arrays.equals(new long[] { 200, 300 },
+                best.getCheckpointTimestamps()));
+    }
+
+    /**
+     * Inserisce un Tracciamento con gli eventi specificati, come coppie
+     * (tempo, checkpoint).
+     */
+    private long insertTelemetry(UUID trackId, long... events) {
+        ContentValues values = new ContentValues();
+        values.put("telem_track", trackId.toString());
+        long telemId = db.insertOrThrow(SerleenaDatabase.TABLE_TELEMETRIES,
+                null, values);
+        for (int i = 0; i < events.length; i += 2)
+            insertEvent(telemId, events[i], (int) events[i + 1]);
+        return telemId;
+    }
+
+    /**
+     * Verifica che getTelemetryDurations restituisca la durata dei soli
+     * Tracciamenti che contengono il primo checkpoint.
+     */
+    @Test
+    public void getTelemetryDurationsShouldAggregateEvents() {
+        UUID trackId = makeTrack(db);
+        long first = insertTelemetry(trackId, 100, 1, 400, 2);
+        long second = insertTelemetry(trackId, 200, 1, 250, 2, 600, 3);
+        insertTelemetry(trackId, 50, 2);
+        insertTelemetry(trackId);
+
+        SQLiteDAOTrack track = new SQLiteDAOTrack(trackId, "track", sds);
+        Map<Integer, Integer> durations = sds.getTelemetryDurations(track);
+        assertEquals(2, durations.size());
+        assertEquals(300, (int) durations.get((int) first));
+        assertEquals(400, (int) durations.get((int) second));
+    }
+
+    /**
+     * Verifica che getTrackStatistics restituisca numero, durata minima e
+     * media dei Tracciamenti di un Percorso.
+     */
+    @Test
+    public void getTrackStatisticsShouldAggregateDurations() {
+        UUID trackId = makeTrack(db);
+        SQLiteDAOTrack track = new SQLiteDAOTrack(trackId, "track", sds);
+        TrackStatistics empty = sds.getTrackStatistics(track);
+        assertEquals(0, empty.count());
+        assertEquals(CheckpointTimestamps.NO_DURATION, empty.bestDuration());
+
+        insertTelemetry(trackId, 100, 1, 400, 2);
+        insertTelemetry(trackId, 200, 1, 250, 2, 600, 3);
+        insertTelemetry(trackId, 50, 2);
+
+        TrackStatistics statistics = sds.getTrackStatistics(track);
+        assertEquals(2, statistics.count());
+        assertEquals(300, statistics.bestDuration());
+        assertEquals(350, statistics.averageDuration(), 0);
+    }
+
+    /**
+     * Verifica che getBestSplits restituisca, per ogni checkpoint, il tempo
+     * minimo dal primo checkpoint tra tutti i Tracciamenti.
+     */
+    @Test
+    public void getBestSplitsShouldReturnMinimumPerCheckpoint() {
+        UUID trackId = makeTrack(db);
+        insertTelemetry(trackId, 100, 1, 400, 2, 500, 4);
+        insertTelemetry(trackId, 200, 1, 250, 2, 900, 4);
+        insertTelemetry(trackId, 50, 2);
+
+        SQLiteDAOTrack track = new SQLiteDAOTrack(trackId, "track", sds);
+        assertTrue(Arrays.equals(
+                new long[] { 0, 50, ITelemetryStorage.NO_TIMESTAMP, 400 },
+                sds.getBestSplits(track)));
+    }
+
+    /**
+     * Verifica che i risultati di una ricerca su più pagine, con nomi
+     * uguali a cavallo delle pagine, siano restituiti tutti una sola volta
+     * e in ordine di lunghezza e nome.
+     */
+    @Test
+    public void searchShouldPageResultsInRankOrder() {
+        String[] names = { "foxes", "fox", "foxy" };
+        int count = 2 * SerleenaSQLiteDataSource.LIST_PAGE_SIZE + 5;
+        for (int i = 0; i < count; i++) {
+            ContentValues values = new ContentValues();
+            values.put("contact_name", names[i % names.length]);
+            values.put("contact_value", "value" + i);
+            values.put("contact_nw_corner_latitude", 0);
+            values.put("contact_nw_corner_longitude", 0);
+            values.put("contact_se_corner_latitude", 0);
+            values.put("contact_se_corner_longitude", 0);
+            db.insertOrThrow(SerleenaDatabase.TABLE_CONTACTS, null, values);
+        }
+        SerleenaDatabase.rebuildSearchIndex(db);
+
+        DirectAccessList<SearchResult> results = sds.search("fo");
+        assertEquals(count, results.size());
+        Set<String> values = new HashSet<String>();
+        String previous = "";
+        for (SearchResult result : results) {
+            String name = result.name();
+            assertTrue(name.length() > previous.length() ||
+                    (name.length() == previous.length() &&
+                            name.compareTo(previous) >= 0));
+            assertTrue(values.add(result.value()));
+            previous = name;
+        }
+        assertEquals(count, values.size());
+        assertEquals("foxes", results.get(count - 1).name());
+        assertEquals("fox", results.get(0).name());
+    }
+
     /**
      * Controlla che addUserPoint aggiunga i punti utente.
      */
@@ -445,5 +902,73 @@ public class SerleenaSQLiteDataSourceIntegrationTest {
         assertTrue(i == 0);
     }
 
-}
+    /**
+     * Restituisce il piano di esecuzione di una query, una riga per passo.
+     */
+    private String queryPlan(String sql, int argc) {
+        String[] args = new String[argc];
+        Arrays.fill(args, "0");
+        Cursor plan = db.rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+        StringBuilder sb = new StringBuilder();
+        int detail = plan.getColumnIndexOrThrow("detail");
+        while (plan.moveToNext())
+            sb.append(plan.getString(detail)).append('\n');
+        plan.close();
+        return sb.toString();
+    }
+
+    /**
+     * Verifica che il piano di esecuzione di una query usi l'indice
+     * specificato per ciascuna delle tabelle consultate.
+     */
+    private void assertUsesIndexes(String sql, int argc, String... indexes) {
+        String plan = queryPlan(sql, argc);
+        for (String index : indexes)
+            assertTrue(plan, plan.contains("INDEX " + index));
+        assertTrue(plan, !plan.contains("SCAN"));
+    }
 
+    /**
+     * Verifica che le query di SerleenaSQLiteDataSource filtrate per
+     * Esperienza, Percorso, Tracciamento, raster o data usino gli indici
+     * secondari del database, senza scandire le tabelle.
+     */
+    @Test
+    public void daoQueriesShouldUseIndexes() {
+        assertUsesIndexes(SerleenaSQLiteDataSource.QUERY_TRACKS, 1,
+                "idx_track_experience");
+        assertUsesIndexes(SerleenaSQLiteDataSource.QUERY_CHECKPOINTS, 1,
+                "idx_checkpoint_track");
+        assertUsesIndexes(
+                SerleenaSQLiteDataSource.QUERY_EXPERIENCE_CHECKPOINTS, 1,
+                "idx_track_experience", "idx_checkpoint_track");
+        assertUsesIndexes(SerleenaSQLiteDataSource.QUERY_TELEMETRIES, 1,
+                "idx_telem_track", "idx_eventc_telem");
+        assertUsesIndexes(
+                SerleenaSQLiteDataSource.QUERY_TELEMETRIES_NO_GHOST, 1,
+                "idx_telem_track", "idx_eventc_telem");
+        assertUsesIndexes(SerleenaSQLiteDataSource.QUERY_USER_POINTS, 1,
+                "idx_userpoint_experience");
+        assertUsesIndexes(SerleenaSQLiteDataSource.QUERY_LOCAL_USER_POINTS, 1,
+                "idx_userpoint_experience");
+        assertUsesIndexes(SerleenaSQLiteDataSource.QUERY_REGION_USER_POINTS, 5,
+                "idx_userpoint_experience");
+        assertUsesIndexes(SerleenaSQLiteDataSource.QUERY_RASTER_BOUNDS, 1,
+                "idx_raster_experience");
+        assertUsesIndexes(SerleenaSQLiteDataSource.QUERY_WEATHER, 5,
+                "idx_weather_date");
+        assertUsesIndexes(RasterPageInputStream.QUERY_PAGE, 2,
+                "sqlite_autoindex_raster_pages_1");
+        assertUsesIndexes(SerleenaSQLiteDataSource.QUERY_BEST_TELEMETRY, 1,
+                "sqlite_autoindex_best_telemetries_1");
+        assertUsesIndexes(
+                SerleenaSQLiteDataSource.QUERY_TELEMETRY_DURATIONS, 1,
+                "idx_telem_track", "idx_eventc_telem");
+        assertUsesIndexes(SerleenaSQLiteDataSource.QUERY_BEST_SPLITS, 1,
+                "idx_telem_track", "idx_eventc_telem");
+        assertUsesIndexes(
+                SerleenaSQLiteDataSource.QUERY_ARCHIVED_TELEMETRIES, 1,
+                "idx_archive_track");
+    }
+
+}
@@ -0,0 +1,198 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: SerleenaSQLiteStatementsTest.java
+ * Package: com.kyloth.serleena.persistence.sqlite
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ * 1.0.1    Filippo Sestini  Test della misura tramite PersistenceMetrics e
+ *                                          del cambio di connessione.
+ * 1.0.2    Filippo Sestini  Test dei tempi registrati per istruzione.
+ */
+
+package com.kyloth.serleena.persistence.sqlite;
+
+import android.database.Cursor;
+
+import com.kyloth.serleena.BuildConfig;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Contiene i test di unità per la classe SerleenaSQLiteStatements.
+ *
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, emulateSdk = 19)
+public class SerleenaSQLiteStatementsTest {
+
+    private static final String INSERT =
+            "INSERT INTO " + SerleenaDatabase.TABLE_CONTACTS +
+            " (contact_name, contact_value, contact_nw_corner_latitude," +
+            " contact_nw_corner_longitude, contact_se_corner_latitude," +
+            " contact_se_corner_longitude) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String QUERY =
+            "SELECT contact_name FROM " + SerleenaDatabase.TABLE_CONTACTS +
+            " WHERE contact_nw_corner_latitude >= ?" +
+            " AND contact_se_corner_latitude <= ?";
+
+    private SerleenaDatabase sh;
+    private SerleenaSQLiteStatements statements;
+
+    /**
+     * Verifica che le istruzioni di inserimento compilate possano essere
+     * eseguite più volte con parametri diversi, e che le query confrontino
+     * correttamente i parametri con colonne numeriche.
+     */
+    @Test
+    public void insertedRowsShouldBeFoundByParameterizedQuery() {
+        statements.executeInsert(INSERT, "a", "1", 5.0, 0.0, 0.0, 5.0);
+        statements.executeInsert(INSERT, "b", "2", 10, 5, 5, 10);
+
+        Cursor result = statements.query(QUERY, "2.5", "2.5");
+        assertEquals(1, result.getCount());
+        result.moveToNext();
+        assertEquals("a", result.getString(0));
+        result.close();
+
+        result = statements.query(QUERY, "5", "5");
+        assertEquals(2, result.getCount());
+        result.close();
+    }
+
+    /**
+     * Verifica che le righe lette vengano attribuite alla chiamata in corso
+     * solo se la raccolta delle misure è attiva.
+     */
+    @Test
+    public void queriesShouldBeMeteredOnlyIfEnabled() {
+        PersistenceMetrics metrics = new PersistenceMetrics();
+        statements.setMetrics(metrics);
+        statements.executeInsert(INSERT, "a", "1", 5.0, 0.0, 0.0, 5.0);
+
+        metrics.end(metrics.begin(), "disabled");
+        statements.query(QUERY, "1", "1").close();
+        assertNull(metrics.getStats("disabled"));
+
+        metrics.setEnabled(true);
+        PersistenceMetrics.Call call = metrics.begin();
+        statements.query(QUERY, "1", "1").close();
+        metrics.end(call, "enabled");
+        assertEquals(1, metrics.getStats("enabled").rows());
+    }
+
+    /**
+     * Verifica che i tempi di preparazione ed esecuzione di ciascuna
+     * istruzione vengano registrati solo se la raccolta delle misure è
+     * attiva.
+     */
+    @Test
+    public void statsShouldBeRecordedOnlyIfEnabled() {
+        statements.executeInsert(INSERT, "a", "1", 5.0, 0.0, 0.0, 5.0);
+        statements.query(QUERY, "1", "1").close();
+        assertNull(statements.getStats(INSERT));
+        assertNull(statements.getStats(QUERY));
+
+        PersistenceMetrics metrics = new PersistenceMetrics();
+        metrics.setEnabled(true);
+        statements.setMetrics(metrics);
+        statements.executeInsert(INSERT, "b", "2", 5.0, 0.0, 0.0, 5.0);
+        statements.query(QUERY, "1", "1").close();
+        statements.query(QUERY, "1", "1").close();
+
+        assertEquals(1, statements.getStats(INSERT).executeCount());
+        SerleenaSQLiteStatements.Stats stats = statements.getStats(QUERY);
+        assertEquals(2, stats.executeCount());
+        assertTrue(stats.prepareNanos() >= 0 && stats.executeNanos() >= 0);
+        assertTrue(statements.report().contains(QUERY));
+
+        metrics.setEnabled(false);
+        statements.query(QUERY, "1", "1").close();
+        assertEquals(2, statements.getStats(QUERY).executeCount());
+    }
+
+    /**
+     * Verifica che le istruzioni compilate vengano ricompilate dopo la
+     * riapertura del database.
+     */
+    @Test
+    public void insertShouldSurviveReopening() {
+        statements.executeInsert(INSERT, "a", "1", 5.0, 0.0, 0.0, 5.0);
+        sh.close();
+        statements.executeInsert(INSERT, "b", "2", 5.0, 0.0, 0.0, 5.0);
+
+        Cursor result = statements.query(QUERY, "1", "1");
+        boolean found = false;
+        while (result.moveToNext())
+            found |= "b".equals(result.getString(0));
+        result.close();
+        assertTrue(found);
+    }
+
+    /**
+     * Verifica che un parametro di tipo non supportato sollevi
+     * un'eccezione.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void unsupportedParameterShouldThrow() {
+        statements.executeInsert(INSERT, "a", "1", new Object(), 0.0, 0.0, 5.0);
+    }
+
+    /**
+     * Verifica che il costruttore sollevi un'eccezione se il database è null.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void ctorShouldThrowIfDatabaseIsNull() {
+        new SerleenaSQLiteStatements(null);
+    }
+
+    @Before
+    public void setup() {
+        sh = new SerleenaDatabase(
+                RuntimeEnvironment.application, null, null, 1);
+        statements = new SerleenaSQLiteStatements(sh);
+    }
+}
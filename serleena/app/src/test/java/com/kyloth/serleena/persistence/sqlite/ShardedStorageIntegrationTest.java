@@ -0,0 +1,442 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: ShardedStorageIntegrationTest.java
+ * Package: com.kyloth.serleena.persistence.sqlite
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ * 1.0.1    Filippo Sestini  Test della ricerca per nome.
+ * 1.0.2    Filippo Sestini  Test della pubblicazione delle generazioni di
+ *                                          database.
+ * 1.0.3    Filippo Sestini  Test della misura delle chiamate agli shard.
+ */
+
+package com.kyloth.serleena.persistence.sqlite;
+
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.kyloth.serleena.BuildConfig;
+import com.kyloth.serleena.common.DirectAccessList;
+import com.kyloth.serleena.common.EmergencyContact;
+import com.kyloth.serleena.common.GeoPoint;
+import com.kyloth.serleena.common.Region;
+import com.kyloth.serleena.common.SearchResult;
+import com.kyloth.serleena.common.UserPoint;
+import com.kyloth.serleena.persistence.IExperienceStorage;
+import com.kyloth.serleena.persistence.ITrackStorage;
+import com.kyloth.serleena.synchronization.kylothcloud.CheckpointEntity;
+import com.kyloth.serleena.synchronization.kylothcloud.EmergencyDataEntity;
+import com.kyloth.serleena.synchronization.kylothcloud.ExperienceEntity;
+import com.kyloth.serleena.synchronization.kylothcloud.InboundRootEntity;
+import com.kyloth.serleena.synchronization.kylothcloud.TelemetryEntity;
+import com.kyloth.serleena.synchronization.kylothcloud.TrackEntity;
+import com.kyloth.serleena.synchronization.kylothcloud.UserPointEntity;
+import com.kyloth.serleena.synchronization.kylothcloud.inbound.CloudSerleenaSQLiteInboundDumpBuilder;
+import com.kyloth.serleena.synchronization.kylothcloud.inbound.SerleenaSQLiteInboundDump;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+/**
+ * Test di integrazione per la memorizzazione suddivisa per Esperienza,
+ * realizzata da SerleenaDatabaseShards, ShardedSQLiteDataSource e
+ * ShardedSQLiteDataSink.
+ *
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, emulateSdk = 19)
+public class ShardedStorageIntegrationTest {
+
+    private SerleenaDatabaseShards shards;
+    private ShardedSQLiteDataSource source;
+    private ShardedSQLiteDataSink sink;
+
+    private static ExperienceEntity makeExperience(String name,
+                                                   String trackName) {
+        ExperienceEntity experience = new ExperienceEntity();
+        experience.uuid = UUID.randomUUID();
+        experience.name = name;
+        experience.region = new Region(new GeoPoint(3, 2),
+                new GeoPoint(1, 4));
+
+        TrackEntity track = new TrackEntity();
+        track.uuid = UUID.randomUUID();
+        track.name = trackName;
+        track.checkpoints = new ArrayList<CheckpointEntity>();
+        CheckpointEntity checkpoint = new CheckpointEntity();
+        checkpoint.id = 1;
+        checkpoint.point = new GeoPoint(2, 3);
+        track.checkpoints.add(checkpoint);
+        track.telemetries = new ArrayList<TelemetryEntity>();
+        experience.tracks.add(track);
+
+        UserPointEntity point = new UserPointEntity();
+        point.point = new GeoPoint(2, 3);
+        experience.userPoints.add(point);
+        return experience;
+    }
+
+    private static SerleenaSQLiteInboundDump makeDump(
+            ExperienceEntity... experiences) {
+        InboundRootEntity root = new InboundRootEntity();
+        for (ExperienceEntity experience : experiences)
+            root.experiences.add(experience);
+        EmergencyDataEntity contact = new EmergencyDataEntity();
+        contact.name = "FOO";
+        contact.number = "123456789";
+        contact.rect = new Region(new GeoPoint(3, 2), new GeoPoint(1, 4));
+        root.emergencyData.add(contact);
+        return new CloudSerleenaSQLiteInboundDumpBuilder(root).build();
+    }
+
+    private static int countRows(SQLiteDatabase db, String table) {
+        Cursor c = db.query(table, null, null, null, null, null, null);
+        int count = c.getCount();
+        c.close();
+        return count;
+    }
+
+    private Map<UUID, IExperienceStorage> experiencesByUuid() {
+        Map<UUID, IExperienceStorage> experiences =
+                new HashMap<UUID, IExperienceStorage>();
+        for (IExperienceStorage e : source.getExperiences())
+            experiences.put(e.getUUID(), e);
+        return experiences;
+    }
+
+    /**
+     * Verifica che il caricamento di un dump memorizzi ogni Esperienza nel
+     * proprio shard, lasciando nel catalogo solo l'elenco delle Esperienze
+     * e i dati comuni.
+     */
+    @Test
+    public void loadShouldSplitExperiencesIntoShards() {
+        ExperienceEntity a = makeExperience("A", "track A");
+        ExperienceEntity b = makeExperience("B", "track B");
+        sink.load(makeDump(a, b));
+
+        SQLiteDatabase catalog = shards.catalog().getReadableDatabase();
+        assertEquals(2, countRows(catalog,
+                SerleenaDatabase.TABLE_EXPERIENCES));
+        assertEquals(0, countRows(catalog, SerleenaDatabase.TABLE_TRACKS));
+        assertEquals(0, countRows(catalog,
+                SerleenaDatabase.TABLE_USER_POINTS));
+        assertEquals(1, countRows(catalog, SerleenaDatabase.TABLE_CONTACTS));
+
+        SQLiteDatabase shardA = shards.shard(a.uuid).getReadableDatabase();
+        assertEquals(1, countRows(shardA, SerleenaDatabase.TABLE_TRACKS));
+        assertEquals(1, countRows(shardA,
+                SerleenaDatabase.TABLE_CHECKPOINTS));
+        assertEquals(1, countRows(shardA,
+                SerleenaDatabase.TABLE_USER_POINTS));
+        assertFalse(RuntimeEnvironment.application.getDatabasePath(
+                ShardedSQLiteDataSink.STAGING_NAME).exists());
+    }
+
+    /**
+     * Verifica che le Esperienze restituite leggano Percorsi e punti utente
+     * dal proprio shard, e i dati comuni siano letti dal catalogo.
+     */
+    @Test
+    public void experiencesShouldReadFromTheirShard() {
+        ExperienceEntity a = makeExperience("A", "track A");
+        ExperienceEntity b = makeExperience("B", "track B");
+        sink.load(makeDump(a, b));
+
+        Map<UUID, IExperienceStorage> experiences = experiencesByUuid();
+        assertEquals(2, experiences.size());
+        for (ExperienceEntity entity : new ExperienceEntity[] { a, b }) {
+            IExperienceStorage experience = experiences.get(entity.uuid);
+            assertEquals(entity.name, experience.getName());
+            List<String> names = new ArrayList<String>();
+            for (ITrackStorage track : experience.getTracks())
+                names.add(track.name());
+            assertEquals(1, names.size());
+            assertEquals(entity.tracks.iterator().next().name, names.get(0));
+            assertEquals(1, experience.getTracks().iterator().next()
+                    .getCheckpoints().size());
+        }
+
+        IExperienceStorage experience = experiences.get(a.uuid);
+        experience.addUserPoint(new UserPoint(5, 6));
+        int points = 0;
+        for (UserPoint p : experience.getUserPoints())
+            points++;
+        assertEquals(2, points);
+
+        EmergencyContact contact =
+                source.getContacts(new GeoPoint(2, 3)).get(0);
+        assertEquals("123456789", contact.value());
+    }
+
+    /**
+     * Verifica che un nuovo caricamento sostituisca gli shard esistenti ed
+     * elimini quelli delle Esperienze non più presenti.
+     */
+    @Test
+    public void reloadShouldReplaceAndDeleteShards() {
+        ExperienceEntity a = makeExperience("A", "track A");
+        ExperienceEntity b = makeExperience("B", "track B");
+        sink.load(makeDump(a, b));
+        int first = shards.generation();
+        IExperienceStorage before = experiencesByUuid().get(a.uuid);
+        assertEquals(1, countTracks(before));
+
+        a.tracks.add(makeExperience("C", "track A2").tracks.iterator().next());
+        sink.load(makeDump(a));
+
+        Map<UUID, IExperienceStorage> experiences = experiencesByUuid();
+        assertEquals(1, experiences.size());
+        assertEquals(2, countTracks(experiences.get(a.uuid)));
+        assertEquals(2, countTracks(before));
+        assertFalse(RuntimeEnvironment.application.getDatabasePath(
+                SerleenaDatabaseShards.shardName(first, b.uuid)).exists());
+        assertFalse(RuntimeEnvironment.application.getDatabasePath(
+                SerleenaDatabaseShards.catalogName(first)).exists());
+    }
+
+    /**
+     * Verifica che la generazione pubblicata per ultima venga utilizzata
+     * anche dopo il riavvio dell'applicazione.
+     */
+    @Test
+    public void publishedGenerationShouldSurviveRestart() {
+        ExperienceEntity a = makeExperience("A", "track A");
+        sink.load(makeDump(a));
+        int generation = shards.generation();
+        shards.catalog().close();
+
+        shards = new SerleenaDatabaseShards(RuntimeEnvironment.application);
+        source = new ShardedSQLiteDataSource(shards);
+        assertEquals(generation, shards.generation());
+        Map<UUID, IExperienceStorage> experiences = experiencesByUuid();
+        assertEquals(1, experiences.size());
+        assertEquals(1, countTracks(experiences.get(a.uuid)));
+    }
+
+    /**
+     * Verifica che i file di una generazione costruita e non pubblicata
+     * vengano eliminati alla creazione di SerleenaDatabaseShards.
+     */
+    @Test
+    public void unpublishedGenerationShouldBeDeleted() {
+        ExperienceEntity a = makeExperience("A", "track A");
+        sink.load(makeDump(a));
+        int next = shards.generation() + 1;
+        SerleenaDatabase leftover = new SerleenaDatabase(
+                RuntimeEnvironment.application,
+                SerleenaDatabaseShards.shardName(next, a.uuid), null,
+                SerleenaDatabase.DATABASE_VERSION);
+        leftover.getWritableDatabase();
+        leftover.close();
+        shards.catalog().close();
+
+        shards = new SerleenaDatabaseShards(RuntimeEnvironment.application);
+        assertFalse(RuntimeEnvironment.application.getDatabasePath(
+                SerleenaDatabaseShards.shardName(next, a.uuid)).exists());
+        assertTrue(RuntimeEnvironment.application.getDatabasePath(
+                SerleenaDatabaseShards.shardName(next - 1, a.uuid)).exists());
+    }
+
+    /**
+     * Verifica che la pubblicazione di una generazione attenda il termine
+     * delle letture in corso.
+     */
+    @Test
+    public void publishShouldWaitForReaders() throws InterruptedException {
+        ExperienceEntity a = makeExperience("A", "track A");
+        sink.load(makeDump(a));
+        int generation = shards.generation();
+        final SerleenaSQLiteInboundDump dump =
+                makeDump(makeExperience("B", "track B"));
+
+        Lock lock = source.readLock();
+        lock.lock();
+        Thread loader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                sink.load(dump);
+            }
+        });
+        try {
+            loader.start();
+            loader.join(500);
+            assertTrue(loader.isAlive());
+            assertEquals(generation, shards.generation());
+            assertEquals(1, countTracks(experiencesByUuid().get(a.uuid)));
+        } finally {
+            lock.unlock();
+        }
+        loader.join();
+        assertEquals(generation + 1, shards.generation());
+        assertFalse(experiencesByUuid().containsKey(a.uuid));
+    }
+
+    /**
+     * Verifica che le liste restituite prima di una sincronizzazione
+     * leggano i dati della nuova generazione.
+     */
+    @Test
+    public void listsShouldFollowNewGeneration() {
+        ExperienceEntity a = makeExperience("A", "track A");
+        ExperienceEntity b = makeExperience("B", "track B");
+        sink.load(makeDump(a, b));
+        DirectAccessList<SearchResult> results = source.search("track");
+        assertEquals(2, results.size());
+
+        sink.load(makeDump(a));
+        assertEquals(1, results.size());
+        assertEquals(a.tracks.iterator().next().uuid, results.get(0).uuid());
+    }
+
+    /**
+     * Verifica che la ricerca trovi anche i Percorsi memorizzati negli
+     * shard, attraverso l'indice del catalogo.
+     */
+    @Test
+    public void searchShouldFindTracksOfAllShards() {
+        ExperienceEntity a = makeExperience("A", "track A");
+        ExperienceEntity b = makeExperience("B", "track B");
+        sink.load(makeDump(a, b));
+
+        DirectAccessList<SearchResult> results = source.search("track");
+        assertEquals(2, results.size());
+        assertEquals(a.tracks.iterator().next().uuid, results.get(0).uuid());
+        assertEquals(b.uuid, results.get(1).experience());
+    }
+
+    /**
+     * Verifica che un dump non caricabile per intero lasci invariati
+     * catalogo e shard.
+     */
+    @Test
+    public void failedLoadShouldLeaveShardsUnchanged() {
+        ExperienceEntity a = makeExperience("A", "track A");
+        sink.load(makeDump(a));
+
+        SerleenaSQLiteInboundDump broken = new SerleenaSQLiteInboundDump();
+        broken.add("DELETE FROM " + SerleenaDatabase.TABLE_EXPERIENCES);
+        broken.add("INSERT INTO no_such_table VALUES (1)");
+        try {
+            sink.load(broken);
+            fail();
+        } catch (SQLException e) { }
+
+        Map<UUID, IExperienceStorage> experiences = experiencesByUuid();
+        assertEquals(1, experiences.size());
+        assertEquals(1, countTracks(experiences.get(a.uuid)));
+        assertFalse(RuntimeEnvironment.application.getDatabasePath(
+                ShardedSQLiteDataSink.STAGING_NAME).exists());
+    }
+
+    /**
+     * Verifica che, se viene fornito un oggetto PersistenceMetrics, vengano
+     * misurate le chiamate ai DAO di catalogo e shard.
+     */
+    @Test
+    public void shardCallsShouldBeMeasured() {
+        ExperienceEntity a = makeExperience("A", "track A");
+        sink.load(makeDump(a));
+        PersistenceMetrics metrics = new PersistenceMetrics();
+        metrics.setEnabled(true);
+        source = new ShardedSQLiteDataSource(shards, metrics);
+
+        assertEquals(1, countTracks(experiencesByUuid().get(a.uuid)));
+        assertEquals(1, metrics.getStats("getExperiences").count());
+        assertEquals(1, metrics.getStats("getTracks").count());
+    }
+
+    /**
+     * Verifica che i costruttori sollevino un'eccezione se vengono passati
+     * parametri null.
+     */
+    @Test
+    public void ctorsShouldThrowIfArgumentsAreNull() {
+        try {
+            new SerleenaDatabaseShards(null);
+            fail();
+        } catch (IllegalArgumentException e) { }
+        try {
+            new ShardedSQLiteDataSource(null);
+            fail();
+        } catch (IllegalArgumentException e) { }
+        try {
+            new ShardedSQLiteDataSink(RuntimeEnvironment.application, null);
+            fail();
+        } catch (IllegalArgumentException e) { }
+        assertTrue(shards.catalog() != null);
+    }
+
+    private static int countTracks(IExperienceStorage experience) {
+        int count = 0;
+        for (ITrackStorage track : experience.getTracks())
+            count++;
+        return count;
+    }
+
+    @Before
+    public void setup() {
+        shards = new SerleenaDatabaseShards(RuntimeEnvironment.application);
+        source = new ShardedSQLiteDataSource(shards);
+        sink = new ShardedSQLiteDataSink(RuntimeEnvironment.application,
+                shards);
+    }
+
+    @After
+    public void tearDown() {
+        shards.catalog().close();
+    }
+}
@@ -31,6 +31,7 @@
 package com.kyloth.serleena.persistence.sqlite;
 
 import android.content.ContentValues;
+import android.util.Base64;
 
 import com.kyloth.serleena.common.GeoPoint;
 import com.kyloth.serleena.persistence.WeatherForecastEnum;
@@ -62,6 +63,8 @@ public class TestFixtures {
                 values.put(key, (Double)value);
             } else if (value.getClass() == Long.class) {
                 values.put(key, (Long)value);
+            } else if (value.getClass() == byte[].class) {
+                values.put(key, (byte[])value);
             } else if (value.getClass() == UUID.class) {
                 values.put(key, value.toString());
             } else {
@@ -281,6 +284,7 @@ public class TestFixtures {
             };
 
 
+        public static final int raster_id = 1;
         public static final float raster_nw_corner_latitude = 5;
         public static final float raster_nw_corner_longitude = 0;
         public static final float raster_se_corner_latitude = 0;
@@ -294,11 +298,20 @@ public class TestFixtures {
             tmp.put("raster_nw_corner_longitude", raster_nw_corner_longitude);
             tmp.put("raster_se_corner_latitude", raster_se_corner_latitude);
             tmp.put("raster_se_corner_longitude", raster_se_corner_longitude);
-            tmp.put("raster_base64", raster_base64);
+            tmp.put("raster_id", raster_id);
             tmp.put("raster_experience", EXPERIENCES_FIXTURE_EXPERIENCE_1_UUID);
             RASTER_FIXTURE = Collections.unmodifiableMap(tmp);
         };
 
+        public static final Map<String, Object> RASTER_PAGE_FIXTURE;
+        static {
+            Hashtable<String, Object> tmp = new Hashtable<String, Object>();
+            tmp.put("page_raster", raster_id);
+            tmp.put("page_num", 0);
+            tmp.put("page_data", Base64.decode(raster_base64, Base64.DEFAULT));
+            RASTER_PAGE_FIXTURE = Collections.unmodifiableMap(tmp);
+        };
+
 
 
 }
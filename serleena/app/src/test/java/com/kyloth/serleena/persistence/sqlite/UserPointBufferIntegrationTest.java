@@ -0,0 +1,269 @@
+///////////////////////////////////////////////////////////////////////////////
+// 
+// This file is part of Serleena.
+// 
+// The MIT License (MIT)
+//
+// Copyright (C) 2015 Antonio Cavestro, Gabriele Pozzan, Matteo Lisotto, 
+//   Nicola Mometto, Filippo Sestini, Tobia Tesan, Sebastiano Valle.    
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to 
+// deal in the Software without restriction, including without limitation the
+// rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+// sell copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+// FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+// IN THE SOFTWARE.
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+/**
+ * Name: UserPointBufferIntegrationTest.java
+ * Package: com.kyloth.serleena.persistence.sqlite
+ * Author: Filippo Sestini
+ *
+ * History:
+ * Version  Programmer       Changes
+ * 1.0.0    Filippo Sestini  Creazione file e scrittura di codice
+ *                                          e documentazione in Javadoc.
+ * 1.0.1    Filippo Sestini  Test dei punti non inseribili e delle letture
+ *                                          durante la scrittura.
+ */
+
+package com.kyloth.serleena.persistence.sqlite;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.kyloth.serleena.BuildConfig;
+import com.kyloth.serleena.common.GeoPoint;
+import com.kyloth.serleena.common.Region;
+import com.kyloth.serleena.common.UserPoint;
+import com.kyloth.serleena.synchronization.kylothcloud.inbound.SerleenaSQLiteInboundDump;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+
+import static com.kyloth.serleena.persistence.sqlite.SerleenaDatabaseTestUtils.makeExperience;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Test di integrazione tra la classe UserPointBuffer e il database SQLite
+ * dell'applicazione.
+ *
+ * @author Filippo Sestini <sestini.filippo@gmail.com>
+ * @version 1.0.0
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, emulateSdk = 19)
+public class UserPointBufferIntegrationTest {
+
+    private SerleenaDatabase sh;
+    private SQLiteDatabase db;
+    private SerleenaSQLiteDataSource source;
+    private SQLiteDAOExperience experience;
+
+    @Before
+    public void setup() {
+        sh = new SerleenaDatabase(RuntimeEnvironment.application, null, null,
+                1);
+        db = sh.getWritableDatabase();
+        makeExperience(db);
+        source = new SerleenaSQLiteDataSource(sh);
+        experience = new SQLiteDAOExperience(
+                TestFixtures.EXPERIENCES_FIXTURE_EXPERIENCE_1_NAME,
+                TestFixtures.EXPERIENCES_FIXTURE_EXPERIENCE_1_UUID, source);
+    }
+
+    /**
+     * Verifica che il costruttore sollevi un'eccezione
+     * IllegalArgumentException se la soglia non è positiva.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void ctorShouldThrowIfThresholdIsIllegal() {
+        new UserPointBuffer(sh, 0, 1000);
+    }
+
+    /**
+     * Verifica che un punto aggiunto sia restituito dalle letture prima di
+     * essere scritto nel database.
+     */
+    @Test
+    public void addedPointShouldBeVisibleBeforeFlush() {
+        experience.addUserPoint(new UserPoint(2, 3));
+
+        List<UserPoint> points = list(experience.getUserPoints());
+        assertEquals(1, points.size());
+        assertEquals(new UserPoint(2, 3), points.get(0));
+        assertEquals(1, list(experience.getUserPoints(true)).size());
+        assertEquals(1, list(experience.getUserPoints(new Region(
+                new GeoPoint(3, 2), new GeoPoint(1, 4)))).size());
+        assertEquals(0, list(experience.getUserPoints(new Region(
+                new GeoPoint(10, 10), new GeoPoint(8, 12)))).size());
+    }
+
+    /**
+     * Verifica che i punti non vengano scritti prima del raggiungimento
+     * della soglia o del tempo massimo di attesa.
+     */
+    @Test
+    public void pointsShouldStayPendingBelowThreshold() {
+        UserPointBuffer buffer = new UserPointBuffer(sh, 10, 60000);
+        buffer.add(TestFixtures.EXPERIENCES_FIXTURE_EXPERIENCE_1_UUID,
+                new UserPoint(2, 3));
+        assertEquals(1, buffer.pendingCount());
+        assertEquals(0, storedPoints());
+    }
+
+    /**
+     * Verifica che flush() scriva i punti in attesa una sola volta, senza
+     * che le letture successive li restituiscano due volte.
+     */
+    @Test
+    public void flushShouldWritePointsOnce() {
+        experience.addUserPoint(new UserPoint(2, 3));
+        experience.addUserPoint(new UserPoint(4, 5));
+        source.flush();
+
+        assertEquals(0, sh.getUserPointBuffer().pendingCount());
+        assertEquals(2, storedPoints());
+        assertEquals(2, list(experience.getUserPoints()).size());
+
+        source.flush();
+        assertEquals(2, storedPoints());
+    }
+
+    /**
+     * Verifica che il raggiungimento della soglia causi la scrittura dei
+     * punti in background.
+     */
+    @Test
+    public void thresholdShouldTriggerFlush() throws InterruptedException {
+        UserPointBuffer buffer = new UserPointBuffer(sh, 2, 60000);
+        buffer.add(TestFixtures.EXPERIENCES_FIXTURE_EXPERIENCE_1_UUID,
+                new UserPoint(2, 3));
+        buffer.add(TestFixtures.EXPERIENCES_FIXTURE_EXPERIENCE_1_UUID,
+                new UserPoint(4, 5));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (buffer.pendingCount() > 0 &&
+                System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        assertEquals(0, buffer.pendingCount());
+        assertEquals(2, storedPoints());
+    }
+
+    /**
+     * Verifica che il caricamento di un dump scriva prima i punti in
+     * attesa, in modo che il dump li possa sostituire.
+     */
+    @Test
+    public void sinkLoadShouldFlushPendingPoints() {
+        experience.addUserPoint(new UserPoint(2, 3));
+
+        SerleenaSQLiteInboundDump dump = new SerleenaSQLiteInboundDump();
+        dump.add("DELETE FROM " + SerleenaDatabase.TABLE_USER_POINTS);
+        new SerleenaSQLiteDataSink(RuntimeEnvironment.application, sh)
+                .load(dump);
+
+        assertEquals(0, sh.getUserPointBuffer().pendingCount());
+        assertEquals(0, storedPoints());
+        assertEquals(0, list(experience.getUserPoints()).size());
+    }
+
+    /**
+     * Verifica che un punto che viola un vincolo del database non impedisca
+     * la scrittura degli altri né il caricamento di un dump, e venga
+     * scartato dopo MAX_INSERT_ATTEMPTS tentativi.
+     */
+    @Test
+    public void failingPointShouldNotBlockFlush() {
+        UserPointBuffer buffer = new UserPointBuffer(sh, 100, 60000);
+        buffer.add(UUID.randomUUID(), new UserPoint(1, 1));
+        buffer.add(TestFixtures.EXPERIENCES_FIXTURE_EXPERIENCE_1_UUID,
+                new UserPoint(2, 3));
+
+        buffer.flush();
+        assertEquals(1, storedPoints());
+        assertEquals(1, buffer.pendingCount());
+
+        new SerleenaSQLiteDataSink(RuntimeEnvironment.application, sh)
+                .load(new SerleenaSQLiteInboundDump());
+        for (int i = 1; i < UserPointBuffer.MAX_INSERT_ATTEMPTS; i++)
+            buffer.flush();
+        assertEquals(0, buffer.pendingCount());
+        assertEquals(1, storedPoints());
+    }
+
+    /**
+     * Verifica che la scrittura inserisca i punti senza attendere le
+     * letture in corso, e che queste non restituiscano due volte i punti
+     * inseriti ma non ancora rimossi dalla memoria.
+     */
+    @Test
+    public void flushShouldNotDuplicatePointsForReaders()
+            throws InterruptedException {
+        experience.addUserPoint(new UserPoint(2, 3));
+        Lock lock = sh.getUserPointBuffer().readLock();
+        lock.lock();
+        Thread flusher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                source.flush();
+            }
+        });
+        try {
+            flusher.start();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (storedPoints() == 0 &&
+                    System.currentTimeMillis() < deadline)
+                Thread.sleep(10);
+            assertEquals(1, storedPoints());
+            assertTrue(flusher.isAlive());
+            assertEquals(1, sh.getUserPointBuffer().pendingCount());
+            assertEquals(1, list(experience.getUserPoints()).size());
+        } finally {
+            lock.unlock();
+        }
+        flusher.join();
+        assertEquals(0, sh.getUserPointBuffer().pendingCount());
+        assertEquals(1, list(experience.getUserPoints()).size());
+    }
+
+    private int storedPoints() {
+        Cursor c = db.rawQuery("SELECT COUNT(*) FROM " +
+                SerleenaDatabase.TABLE_USER_POINTS, null);
+        c.moveToFirst();
+        int count = c.getInt(0);
+        c.close();
+        return count;
+    }
+
+    private static List<UserPoint> list(Iterable<UserPoint> points) {
+        List<UserPoint> list = new ArrayList<UserPoint>();
+        for (UserPoint p : points)
+            list.add(p);
+        return list;
+    }
+}
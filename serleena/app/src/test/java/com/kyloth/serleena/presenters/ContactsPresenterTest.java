@@ -37,6 +37,10 @@
  * Version  Programmer       Changes
  * 1.0.0    Filippo Sestini  Creazione file scrittura
  *                           codice e documentazione Javadoc
+ * 1.0.1    Filippo Sestini  Richieste eseguite tramite una sorgente dati
+ *                           asincrona; test della lettura in background
+ * 1.0.2    Filippo Sestini  Test dei contatti rimossi dopo la lettura
+ *                           della lista
  */
 
 package com.kyloth.serleena.presenters;
@@ -52,7 +56,9 @@ import static org.junit.Assert.*;
 
 import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import org.robolectric.RobolectricGradleTestRunner;
 import org.robolectric.RuntimeEnvironment;
@@ -63,7 +69,9 @@ import android.database.sqlite.SQLiteDatabase;
 import com.kyloth.serleena.BuildConfig;
 import com.kyloth.serleena.common.DirectAccessList;
 import com.kyloth.serleena.common.EmergencyContact;
+import com.kyloth.serleena.model.AsyncSerleenaDataSource;
 import com.kyloth.serleena.model.ISerleenaDataSource;
+import com.kyloth.serleena.model.PersistenceExecutor;
 import com.kyloth.serleena.presentation.IContactsView;
 import com.kyloth.serleena.sensors.ILocationManager;
 import com.kyloth.serleena.sensors.ISensorManager;
@@ -89,6 +97,8 @@ public class ContactsPresenterTest {
     private ISerleenaActivity activity;
     private IContactsView view;
     private ILocationManager locMan;
+    private ISerleenaDataSource dataSource;
+    private boolean delivering;
 
     @Before
     public void initialize() {
@@ -98,6 +108,27 @@ public class ContactsPresenterTest {
         ISensorManager sensorManager = mock(ISensorManager.class);
         when(activity.getSensorManager()).thenReturn(sensorManager);
         when(sensorManager.getLocationSource()).thenReturn(locMan);
+        dataSource = mock(ISerleenaDataSource.class);
+        Executor direct = new Executor() {
+            @Override
+            public void execute(Runnable r) {
+                r.run();
+            }
+        };
+        Executor delivery = new Executor() {
+            @Override
+            public void execute(Runnable r) {
+                delivering = true;
+                try {
+                    r.run();
+                } finally {
+                    delivering = false;
+                }
+            }
+        };
+        when(activity.getAsyncDataSource()).thenReturn(
+                new AsyncSerleenaDataSource(dataSource,
+                        new PersistenceExecutor(direct, direct, delivery)));
         presenter = new ContactsPresenter(view, activity);
     }
 
@@ -233,6 +264,52 @@ public class ContactsPresenterTest {
                 any(String.class), any(String.class));
     }
 
+    /**
+     * Verifica che i contatti restituiti dalla sorgente dati vengano letti
+     * e confrontati solo nelle richieste in background, e mai durante la
+     * consegna del risultato sul thread principale.
+     */
+    @Test
+    public void contactsShouldNotBeReadOnDelivery() {
+        EmergencyContact ec1 = new EmergencyContact("Name1", "Value1");
+        EmergencyContact ec2 = new EmergencyContact("Name2", "Value2");
+        List<EmergencyContact> list = new ArrayList<>();
+        list.add(ec1);
+        list.add(ec2);
+        when(dataSource.getContacts(any(GeoPoint.class))).thenReturn(
+                new GuardedList(list), new GuardedList(list));
+
+        presenter.onLocationUpdate(new GeoPoint(1, 2));
+        verify(view).displayContact("Name1", "Value1");
+        presenter.nextContact();
+        verify(view).displayContact("Name2", "Value2");
+        presenter.onLocationUpdate(new GeoPoint(1, 2));
+        verify(view, times(1)).displayContact("Name1", "Value1");
+    }
+
+    /**
+     * Verifica che, se il contatto successivo è stato rimosso dopo la
+     * lettura della lista, la lista venga riletta e visualizzata dal primo
+     * contatto senza sollevare eccezioni.
+     */
+    @Test
+    public void removedContactShouldReloadList() {
+        List<EmergencyContact> list = new ArrayList<>();
+        list.add(new EmergencyContact("Name1", "Value1"));
+        list.add(new EmergencyContact("Name2", "Value2"));
+        presenter.displayContacts(new ListAdapter<EmergencyContact>(list));
+        verify(view).displayContact("Name1", "Value1");
+
+        list.remove(1);
+        presenter.nextContact();
+        verify(view, times(0)).displayContact("Name2", "Value2");
+        verify(view, times(2)).displayContact("Name1", "Value1");
+
+        list.clear();
+        presenter.nextContact();
+        verify(view).clearView();
+    }
+
     /**
      * Verifica che la vista venga pulita quando il presenter viene
      * ripristinato.
@@ -243,4 +320,33 @@ public class ContactsPresenterTest {
         verify(view).clearView();
     }
 
+    /**
+     * Lista che fallisce se viene letta durante la consegna di un risultato.
+     */
+    private class GuardedList implements DirectAccessList<EmergencyContact> {
+        private final List<EmergencyContact> list;
+
+        GuardedList(List<EmergencyContact> list) {
+            this.list = list;
+        }
+
+        @Override
+        public int size() {
+            assertFalse(delivering);
+            return list.size();
+        }
+
+        @Override
+        public EmergencyContact get(int index) {
+            assertFalse(delivering);
+            return list.get(index);
+        }
+
+        @Override
+        public Iterator<EmergencyContact> iterator() {
+            assertFalse(delivering);
+            return list.iterator();
+        }
+    }
+
 }
@@ -37,6 +37,7 @@
  * Version  Programmer       Changes
  * 1.0.0    Gabriele Pozzan  Creazione file scrittura
  *                                       codice e documentazione Javadoc
+ * 1.0.1    Filippo Sestini  Accesso alla persistenza sincrono nei test
  */
 
 package com.kyloth.serleena.presenters;
@@ -48,10 +49,13 @@ import static junit.framework.Assert.assertEquals;
 import static org.mockito.Mockito.*;
 
 import java.util.ArrayList;
+import java.util.concurrent.Executor;
 
 import com.kyloth.serleena.common.NoActiveExperienceException;
+import com.kyloth.serleena.model.AsyncSerleenaDataSource;
 import com.kyloth.serleena.model.IExperience;
 import com.kyloth.serleena.model.ISerleenaDataSource;
+import com.kyloth.serleena.model.PersistenceExecutor;
 import com.kyloth.serleena.presentation.IExperienceSelectionPresenter;
 import com.kyloth.serleena.presentation.IExperienceSelectionView;
 
@@ -80,6 +84,15 @@ public class ExperienceSelectionPresenterTest {
         ISerleenaDataSource ds = mock(ISerleenaDataSource.class);
         when(ds.getExperiences()).thenReturn(exps);
         when(activity.getDataSource()).thenReturn(ds);
+        Executor direct = new Executor() {
+            @Override
+            public void execute(Runnable r) {
+                r.run();
+            }
+        };
+        when(activity.getAsyncDataSource()).thenReturn(
+                new AsyncSerleenaDataSource(ds,
+                        new PersistenceExecutor(direct, direct, direct)));
     }
 
     /**
@@ -37,6 +37,7 @@
  * Version  Programmer       Changes
  * 1.0.0    Gabriele Pozzan  Creazione file scrittura
  *                           codice e documentazione Javadoc
+ * 1.0.1    Filippo Sestini  Accesso alla persistenza sincrono nei test
  */
 
 package com.kyloth.serleena.presenters;
@@ -50,9 +51,12 @@ import org.mockito.Mockito;
 import org.robolectric.RobolectricTestRunner;
 
 import com.kyloth.serleena.common.LocationNotAvailableException;
+import com.kyloth.serleena.common.IQuadrant;
 import com.kyloth.serleena.common.UserPoint;
+import com.kyloth.serleena.model.AsyncSerleenaDataSource;
 import com.kyloth.serleena.model.IExperience;
 import com.kyloth.serleena.model.ISerleenaDataSource;
+import com.kyloth.serleena.model.PersistenceExecutor;
 import com.kyloth.serleena.presentation.IExperienceActivationSource;
 import com.kyloth.serleena.presentation.IMapView;
 import com.kyloth.serleena.common.NoActiveExperienceException;
@@ -61,6 +65,7 @@ import com.kyloth.serleena.sensors.ILocationManager;
 import com.kyloth.serleena.sensors.ISensorManager;
 
 import java.util.ArrayList;
+import java.util.concurrent.Executor;
 
 /**
  * Contiene test di unità per la classe MapPresenter.
@@ -77,6 +82,7 @@ public class MapPresenterTest {
     ISerleenaActivity activity;
     ISensorManager sm;
     ILocationManager locMan;
+    ISerleenaDataSource dataSource;
     private IExperienceActivationSource expActSource;
 
     /**
@@ -91,7 +97,17 @@ public class MapPresenterTest {
         view = mock(IMapView.class);
         activity = mock(ISerleenaActivity.class);
         when(activity.getSensorManager()).thenReturn(sm);
-        when(activity.getDataSource()).thenReturn(mock(ISerleenaDataSource.class));
+        dataSource = mock(ISerleenaDataSource.class);
+        when(activity.getDataSource()).thenReturn(dataSource);
+        Executor direct = new Executor() {
+            @Override
+            public void execute(Runnable r) {
+                r.run();
+            }
+        };
+        when(activity.getAsyncDataSource()).thenReturn(
+                new AsyncSerleenaDataSource(dataSource,
+                        new PersistenceExecutor(direct, direct, direct)));
         expActSource = mock(IExperienceActivationSource.class);
 
         mp = new MapPresenter(view, activity, expActSource);
@@ -156,6 +172,15 @@ public class MapPresenterTest {
         verify(locMan).detachObserver(mp);
     }
 
+    /**
+     * Verifica che pause() richieda la scrittura delle modifiche in attesa.
+     */
+    @Test
+    public void pauseShouldFlushDataSource() {
+        mp.pause();
+        verify(dataSource).flush();
+    }
+
     /**
      * Verifica che setActiveExperience() pulisca la vista.
      */
@@ -211,4 +236,43 @@ public class MapPresenterTest {
         mp.newUserPoint();
     }
 
+    /**
+     * Verifica che, una volta noto il quadrante, vengano richiesti solo i
+     * punti utente in esso contenuti.
+     */
+    @Test
+    public void onLocationUpdateShouldRequestUserPointsOfQuadrant()
+            throws Exception {
+        IExperience exp = mock(IExperience.class);
+        IQuadrant quadrant = mock(IQuadrant.class);
+        GeoPoint location = mock(GeoPoint.class);
+        when(exp.getQuadrant(location)).thenReturn(quadrant);
+        when(exp.getUserPoints(quadrant)).thenReturn(
+                new ArrayList<UserPoint>());
+        when(expActSource.activeExperience()).thenReturn(exp);
+
+        mp.onLocationUpdate(location);
+        verify(view).displayQuadrant(quadrant);
+        verify(exp).getUserPoints(quadrant);
+        verify(exp, never()).getUserPoints();
+    }
+
+    /**
+     * Verifica che newUserPoint() aggiunga un punto utente all'Esperienza
+     * attiva.
+     */
+    @Test
+    public void newUserPointShouldAddUserPoint() throws Exception {
+        IExperience exp = mock(IExperience.class);
+        GeoPoint location = new GeoPoint(5, 5);
+        when(exp.getQuadrant(location)).thenReturn(mock(IQuadrant.class));
+        when(exp.getUserPoints(any(IQuadrant.class))).thenReturn(
+                new ArrayList<UserPoint>());
+        when(expActSource.activeExperience()).thenReturn(exp);
+
+        mp.onLocationUpdate(location);
+        mp.newUserPoint();
+        verify(exp).addUserPoints(new UserPoint(5, 5));
+    }
+
 }
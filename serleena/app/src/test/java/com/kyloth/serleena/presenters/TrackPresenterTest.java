@@ -37,6 +37,7 @@
  * Version  Programmer       Changes
  * 1.0.0    Gabriele Pozzan  Creazione file scrittura
  *                                       codice e documentazione Javadoc
+ * 1.0.1    Filippo Sestini  Accesso alla persistenza sincrono nei test
  */
 
 package com.kyloth.serleena.presenters;
@@ -47,6 +48,7 @@ import org.mockito.Mockito;
 import static org.mockito.Mockito.*;
 
 import java.util.ArrayList;
+import java.util.concurrent.Executor;
 
 import com.kyloth.serleena.common.ListAdapter;
 import com.kyloth.serleena.presentation.ITrackView;
@@ -54,8 +56,11 @@ import com.kyloth.serleena.sensors.CheckpointCrossing;
 import com.kyloth.serleena.sensors.IHeadingManager;
 import com.kyloth.serleena.sensors.ILocationManager;
 import com.kyloth.serleena.sensors.ISensorManager;
+import com.kyloth.serleena.model.AsyncSerleenaDataSource;
+import com.kyloth.serleena.model.ISerleenaDataSource;
 import com.kyloth.serleena.model.ITrack;
 import com.kyloth.serleena.model.NoSuchTelemetryException;
+import com.kyloth.serleena.model.PersistenceExecutor;
 import com.kyloth.serleena.common.Checkpoint;
 import com.kyloth.serleena.sensors.ITrackCrossing;
 import com.kyloth.serleena.sensors.NoActiveTrackException;
@@ -92,6 +97,15 @@ public class TrackPresenterTest {
         when(sm.getLocationSource()).thenReturn(locMan);
         when(sm.getTrackCrossingManager()).thenReturn(tc);
         when(activity.getSensorManager()).thenReturn(sm);
+        Executor direct = new Executor() {
+            @Override
+            public void execute(Runnable r) {
+                r.run();
+            }
+        };
+        when(activity.getAsyncDataSource()).thenReturn(
+                new AsyncSerleenaDataSource(mock(ISerleenaDataSource.class),
+                        new PersistenceExecutor(direct, direct, direct)));
         presenter = new TrackPresenter(view, activity);
     }
 
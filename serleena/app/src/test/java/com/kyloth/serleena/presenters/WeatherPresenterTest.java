@@ -39,6 +39,7 @@
  *                                       codice e documentazione Javadoc
  * 2.0.0    Gabriele Pozzan  Aggiunta integrazione con gli altri package,
  *                                       incrementata copertura
+ * 1.0.1    Filippo Sestini  Accesso alla persistenza sincrono nei test
  */
 
 package com.kyloth.serleena.presenters;
@@ -46,8 +47,10 @@ package com.kyloth.serleena.presenters;
 import com.kyloth.serleena.BuildConfig;
 import com.kyloth.serleena.common.GeoPoint;
 import com.kyloth.serleena.common.NoSuchWeatherForecastException;
+import com.kyloth.serleena.model.AsyncSerleenaDataSource;
 import com.kyloth.serleena.model.ISerleenaDataSource;
 import com.kyloth.serleena.model.IWeatherForecast;
+import com.kyloth.serleena.model.PersistenceExecutor;
 import com.kyloth.serleena.presentation.IWeatherView;
 import com.kyloth.serleena.sensors.ILocationManager;
 import com.kyloth.serleena.sensors.ISensorManager;
@@ -63,6 +66,7 @@ import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.TimeZone;
+import java.util.concurrent.Executor;
 
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.mock;
@@ -100,6 +104,15 @@ public class WeatherPresenterTest {
         when(sensorManager.getLocationSource()).thenReturn(locMan);
         when(activity.getSensorManager()).thenReturn(sensorManager);
         when(activity.getDataSource()).thenReturn(dataSource);
+        Executor direct = new Executor() {
+            @Override
+            public void execute(Runnable r) {
+                r.run();
+            }
+        };
+        when(activity.getAsyncDataSource()).thenReturn(
+                new AsyncSerleenaDataSource(dataSource,
+                        new PersistenceExecutor(direct, direct, direct)));
 
         Calendar calendar = new GregorianCalendar(TimeZone.getTimeZone("GMT"));
         calendar.setTimeInMillis(System.currentTimeMillis());
@@ -36,9 +36,12 @@
  * History:
  * Version  Programmer        Changes
  * 0.0.1    Tobia Tesan       Creazione file
+ * 0.0.2    Filippo Sestini   Test del caricamento in transazione
  */
 package com.kyloth.serleena.synchronization.kylothcloud.inbound;
 
+import android.database.SQLException;
+
 import com.kyloth.serleena.BuildConfig;
 import com.kyloth.serleena.common.DirectAccessList;
 import com.kyloth.serleena.common.EmergencyContact;
@@ -174,6 +177,38 @@ public class DumpBuilderIntegrationTest {
     }
 
 
+    /**
+     * Testa che un dump non caricabile per intero non alteri i dati
+     * presenti nel database.
+     */
+    @Test
+    public void testFailedLoadShouldLeaveDataUnchanged() {
+        InboundRootEntity r = new InboundRootEntity();
+        ExperienceEntity e = new ExperienceEntity();
+        e.uuid = UUID.randomUUID();
+        e.name = "FOO";
+        e.region = new Region(
+                new GeoPoint(3,2),
+                new GeoPoint(1,4)
+        );
+        r.experiences.add(e);
+        sink.load(new CloudSerleenaSQLiteInboundDumpBuilder(r).build());
+
+        SerleenaSQLiteInboundDump broken = new SerleenaSQLiteInboundDump();
+        broken.add("DELETE FROM experiences");
+        broken.add("INSERT INTO no_such_table VALUES (1)");
+        try {
+            sink.load(broken);
+            Assert.fail();
+        } catch (SQLException ex) {
+        }
+
+        int i = 0;
+        for (IExperienceStorage n : src.getExperiences())
+            i++;
+        Assert.assertEquals(1, i);
+    }
+
     @Before
     public void setup() throws URISyntaxException {
         SerleenaDatabase sh = new SerleenaDatabase(RuntimeEnvironment.application, null, null, 1);
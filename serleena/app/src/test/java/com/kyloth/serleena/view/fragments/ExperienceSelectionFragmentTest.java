@@ -52,6 +52,7 @@ import com.kyloth.serleena.model.IExperience;
 import com.kyloth.serleena.persistence.IPersistenceDataSink;
 import com.kyloth.serleena.presentation.IExperienceSelectionPresenter;
 import com.kyloth.serleena.presenters.ISerleenaActivity;
+import com.kyloth.serleena.model.AsyncSerleenaDataSource;
 import com.kyloth.serleena.model.ISerleenaDataSource;
 import com.kyloth.serleena.sensors.ISensorManager;
 
@@ -94,6 +95,7 @@ public class ExperienceSelectionFragmentTest {
             return null;
         }
         public IPersistenceDataSink getDataSink() { return null; }
+        public AsyncSerleenaDataSource getAsyncDataSource() { return null; }
     }
 
     private Activity activity;
@@ -50,6 +50,7 @@ import com.kyloth.serleena.model.ITrack;
 import com.kyloth.serleena.persistence.IPersistenceDataSink;
 import com.kyloth.serleena.presentation.ITrackSelectionPresenter;
 import com.kyloth.serleena.presenters.ISerleenaActivity;
+import com.kyloth.serleena.model.AsyncSerleenaDataSource;
 import com.kyloth.serleena.model.ISerleenaDataSource;
 import com.kyloth.serleena.sensors.ISensorManager;
 
@@ -85,6 +86,7 @@ public class TrackSelectionFragmentTest {
             return null;
         }
         public IPersistenceDataSink getDataSink() { return null; }
+        public AsyncSerleenaDataSource getAsyncDataSource() { return null; }
     }
 
     private Activity activity;